@@ -0,0 +1,269 @@
+package com.wwx.compiler;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.wwx.compiler.annotation.EnableDaoProxy;
+import com.wwx.compiler.bench.baseline.BenchRowMapper;
+import com.wwx.compiler.bench.dao.BenchRowDao;
+import com.wwx.compiler.bench.entity.BenchRow;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * JMH基准测试的环境：内存数据库H2中建表写入数据，按执行方式生成dao，同时准备手写的Mapper作为基线
+ * 执行方式在生成dao时读取，每个JMH子进程只生成一次，所以各基准测试都要在单独的子进程中运行（@Fork不能为0）
+ */
+final class BenchEnvironment implements AutoCloseable {
+    /**
+     * 执行方式：经过Mapper代理的MyBatis、Impl直接调用SqlSession、直接JDBC、手写Mapper
+     */
+    static final String MYBATIS = "mybatis";
+    static final String SESSION = "session";
+    static final String JDBC = "jdbc";
+    static final String BASELINE = "baseline";
+    /**
+     * 查询结果的行数，表中CODE为R+行数的行恰好有这么多
+     */
+    static final int[] RESULT_SIZES = {1, 100, 10000};
+    /**
+     * 增删改用的ID从这里开始，不影响查询用的行
+     */
+    static final int WRITE_ID_START = 1_000_000;
+
+    private final AnnotationConfigApplicationContext ctx;
+    private final Operations operations;
+    private final int rows;
+
+    private BenchEnvironment(String engine) throws SQLException {
+        switch (engine) {
+            case JDBC:
+                System.setProperty(DaoCodeBuilder.ENGINE_PROPERTY, JDBC);
+                break;
+            case SESSION:
+                System.setProperty(DaoCodeBuilder.DISPATCH_PROPERTY, SESSION);
+                break;
+            case MYBATIS:
+            case BASELINE:
+                break;
+            default:
+                throw new IllegalArgumentException("未知的执行方式：" + engine);
+        }
+        // Spring和MyBatis的DEBUG日志会混进JMH的输出
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        DaoFactory.createDaoImpls(BenchRowDao.class.getPackage().getName(),
+                new ArrayList<>(Collections.singletonList(BenchRowDao.class)), System.currentTimeMillis());
+        ctx = new AnnotationConfigApplicationContext(JmhConfig.class);
+        rows = createTable(ctx.getBean(DataSource.class));
+        operations = BASELINE.equals(engine) ? new MapperOperations(ctx.getBean(BenchRowMapper.class))
+                : new DaoOperations(ctx.getBean(BenchRowDao.class));
+    }
+
+    /**
+     * 在当前JVM中按执行方式生成dao，建表写入数据
+     *
+     * @param engine {@link #MYBATIS}、{@link #SESSION}、{@link #JDBC}或{@link #BASELINE}
+     */
+    static BenchEnvironment start(String engine) throws SQLException {
+        return new BenchEnvironment(engine);
+    }
+
+    Operations operations() {
+        return operations;
+    }
+
+    /**
+     * @return 查询用的行数，ID从1开始
+     */
+    int rows() {
+        return rows;
+    }
+
+    <T> T getBean(Class<T> type) {
+        return ctx.getBean(type);
+    }
+
+    static BenchRow row(int id, String code) {
+        BenchRow row = new BenchRow();
+        row.setId(id);
+        row.setName("row" + id);
+        row.setCode(code);
+        row.setVersion((long) (id / 10));
+        row.setAmount(id * 1.5);
+        row.setCreateTime(new Date());
+        return row;
+    }
+
+    /**
+     * 建表，按{@link #RESULT_SIZES}写入各组行
+     *
+     * @return 写入的行数
+     */
+    private static int createTable(DataSource dataSource) throws SQLException {
+        int id = 0;
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE BENCH_ROW (ID INT PRIMARY KEY, NAME VARCHAR(50), CODE VARCHAR(20), "
+                        + "VERSION BIGINT, AMOUNT DOUBLE, CREATE_TIME TIMESTAMP)");
+                statement.execute("CREATE INDEX BENCH_ROW_CODE ON BENCH_ROW (CODE)");
+            }
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO BENCH_ROW (" + BenchRowMapper.COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)")) {
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                for (int size : RESULT_SIZES) {
+                    for (int i = 0; i < size; i++) {
+                        id++;
+                        statement.setInt(1, id);
+                        statement.setString(2, "row" + id);
+                        statement.setString(3, "R" + size);
+                        statement.setLong(4, id / 10);
+                        statement.setDouble(5, id * 1.5);
+                        statement.setTimestamp(6, now);
+                        statement.addBatch();
+                    }
+                }
+                statement.executeBatch();
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        }
+        return id;
+    }
+
+    @Override
+    public void close() {
+        ctx.close();
+    }
+
+    /**
+     * 基准测试中的操作，生成的dao和手写Mapper各一个实现
+     */
+    interface Operations {
+        BenchRow selectById(int id);
+
+        /**
+         * @param code R+行数，见{@link #RESULT_SIZES}
+         */
+        List<BenchRow> selectByCode(String code);
+
+        int insert(BenchRow row);
+
+        /**
+         * @param row 只有ID和NAME
+         */
+        int updateNameById(BenchRow row);
+
+        int deleteById(int id);
+    }
+
+    private static final class DaoOperations implements Operations {
+        private final BenchRowDao dao;
+
+        private DaoOperations(BenchRowDao dao) {
+            this.dao = dao;
+        }
+
+        @Override
+        public BenchRow selectById(int id) {
+            return dao.SELECT_BY_ID(id);
+        }
+
+        @Override
+        public List<BenchRow> selectByCode(String code) {
+            BenchRow condition = new BenchRow();
+            condition.setCode(code);
+            return dao.SELECT(condition);
+        }
+
+        @Override
+        public int insert(BenchRow row) {
+            return dao.INSERT(row);
+        }
+
+        @Override
+        public int updateNameById(BenchRow row) {
+            return dao.UPDATE_BY_ID(row);
+        }
+
+        @Override
+        public int deleteById(int id) {
+            return dao.DELETE_BY_ID(id);
+        }
+    }
+
+    private static final class MapperOperations implements Operations {
+        private final BenchRowMapper mapper;
+
+        private MapperOperations(BenchRowMapper mapper) {
+            this.mapper = mapper;
+        }
+
+        @Override
+        public BenchRow selectById(int id) {
+            return mapper.selectById(id);
+        }
+
+        @Override
+        public List<BenchRow> selectByCode(String code) {
+            return mapper.selectByCode(code);
+        }
+
+        @Override
+        public int insert(BenchRow row) {
+            return mapper.insert(row);
+        }
+
+        @Override
+        public int updateNameById(BenchRow row) {
+            return mapper.updateNameById(row);
+        }
+
+        @Override
+        public int deleteById(int id) {
+            return mapper.deleteById(id);
+        }
+    }
+
+    @Configuration
+    @EnableDaoProxy(sqlSessionFactoryRef = "jmhSqlSessionFactory")
+    public static class JmhConfig {
+        @Bean
+        public DataSource jmhDataSource() {
+            return new PooledDataSource("org.h2.Driver", "jdbc:h2:mem:jmh;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        }
+
+        @Bean
+        public SqlSessionFactory jmhSqlSessionFactory(DataSource jmhDataSource) throws Exception {
+            org.apache.ibatis.session.Configuration configuration = new org.apache.ibatis.session.Configuration();
+            configuration.setMapUnderscoreToCamelCase(true);
+            SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+            factoryBean.setConfiguration(configuration);
+            factoryBean.setDataSource(jmhDataSource);
+            return factoryBean.getObject();
+        }
+
+        @Bean
+        public MapperFactoryBean<BenchRowMapper> benchRowMapper(SqlSessionFactory jmhSqlSessionFactory) {
+            MapperFactoryBean<BenchRowMapper> factoryBean = new MapperFactoryBean<>(BenchRowMapper.class);
+            factoryBean.setSqlSessionFactory(jmhSqlSessionFactory);
+            return factoryBean;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.wwx.compiler;
+
+import com.wwx.compiler.bench.entity.BenchRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单行语句的吞吐：按主键查询、INSERT、UPDATE、DELETE，内存数据库H2
+ * 数据库开销相同，各执行方式与手写Mapper（baseline）的差值就是调用路径本身的开销
+ * DELETE需要先有行，insertThenDeleteById每次插入一行再删除，减去insert就是DELETE
+ * <p>
+ * mvn -Pbench compile exec:exec@jmh -Dbench.jmh.include=DaoDispatchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Ddaowom.cache=false", "-Dfile.encoding=UTF-8"})
+public class DaoDispatchBenchmark {
+    @Param({BenchEnvironment.MYBATIS, BenchEnvironment.SESSION, BenchEnvironment.JDBC, BenchEnvironment.BASELINE})
+    public String engine;
+
+    private BenchEnvironment environment;
+    private BenchEnvironment.Operations operations;
+    private int rows;
+    private int next;
+    private int nextId;
+
+    @Setup
+    public void setUp() throws Exception {
+        environment = BenchEnvironment.start(engine);
+        operations = environment.operations();
+        rows = environment.rows();
+        nextId = BenchEnvironment.WRITE_ID_START;
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    /**
+     * @return 查询用的行的ID，循环使用
+     */
+    private int nextRowId() {
+        next = next % rows + 1;
+        return next;
+    }
+
+    @Benchmark
+    public BenchRow selectById() {
+        return operations.selectById(nextRowId());
+    }
+
+    @Benchmark
+    public int insert() {
+        return operations.insert(BenchEnvironment.row(nextId++, "W"));
+    }
+
+    @Benchmark
+    public int updateById() {
+        BenchRow row = new BenchRow();
+        row.setId(nextRowId());
+        row.setName("updated" + next);
+        return operations.updateNameById(row);
+    }
+
+    @Benchmark
+    public int insertThenDeleteById() {
+        int id = nextId++;
+        operations.insert(BenchEnvironment.row(id, "W"));
+        return operations.deleteById(id);
+    }
+}
@@ -0,0 +1,206 @@
+package com.wwx.compiler;
+
+import com.wwx.compiler.annotation.EnableDaoProxy;
+import com.wwx.compiler.bench.dao.BenchRowDao;
+import com.wwx.compiler.bench.entity.BenchRow;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * 比较几种执行方式的吞吐：经过Mapper代理的MyBatis、Impl直接调用SqlSession（-Ddaowom.dispatch=session）、
+ * 直接JDBC（-Ddaowom.engine=jdbc）
+ * 每种方式各启动若干个新的JVM，使用内存数据库H2，预热后在固定时间内循环调用dao，统计每秒次数
+ * 数据库开销相同，差值就是执行方式本身的开销
+ * <p>
+ * mvn -Pbench compile exec:exec@jdbc-engine-comparison -Dbench.rows=1000 -Dbench.seconds=3 -Dbench.rounds=3
+ */
+public class JdbcEngineComparison {
+    private static final String RESULT = "RESULT ";
+    /**
+     * 执行方式->子进程的系统属性
+     */
+    private static final Map<String, String> ENGINES = new LinkedHashMap<>();
+    private static final List<String> OPERATIONS = Arrays.asList("SELECT", "SELECT_BY_ID", "INSERT", "UPDATE_BY_ID");
+
+    static {
+        ENGINES.put("mybatis", DaoCodeBuilder.ENGINE_PROPERTY + "=mybatis");
+        ENGINES.put("session", DaoCodeBuilder.DISPATCH_PROPERTY + "=session");
+        ENGINES.put("jdbc", DaoCodeBuilder.ENGINE_PROPERTY + "=jdbc");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+
+        // 引擎->操作->每轮的每秒次数
+        Map<String, Map<String, List<Long>>> results = new LinkedHashMap<>();
+        for (int round = 1; round <= rounds; round++) {
+            for (String engine : ENGINES.keySet()) {
+                Map<String, Long> opsPerSecond = fork(engine, rows, seconds);
+                for (Map.Entry<String, Long> entry : opsPerSecond.entrySet()) {
+                    results.computeIfAbsent(engine, k -> new LinkedHashMap<>())
+                            .computeIfAbsent(entry.getKey(), k -> new ArrayList<>()).add(entry.getValue());
+                }
+                System.out.println("第" + round + "轮 " + engine + "：" + opsPerSecond);
+            }
+        }
+        System.out.println();
+        System.out.println(String.format("%-14s %12s %12s %8s %12s %8s", "operation", "mybatis", "session", "ratio", "jdbc", "ratio"));
+        for (String operation : OPERATIONS) {
+            long mybatis = Collections.max(results.get("mybatis").get(operation));
+            long session = Collections.max(results.get("session").get(operation));
+            long jdbc = Collections.max(results.get("jdbc").get(operation));
+            System.out.println(String.format("%-14s %12d %12d %7.2fx %12d %7.2fx", operation, mybatis,
+                    session, mybatis == 0 ? 0.0 : (double) session / mybatis, jdbc, mybatis == 0 ? 0.0 : (double) jdbc / mybatis));
+        }
+        System.out.println("单位：次/秒，取各轮最大值，ratio相对于mybatis");
+    }
+
+    /**
+     * 在新JVM中用指定执行方式测量各操作
+     *
+     * @return 操作->每秒次数
+     */
+    private static Map<String, Long> fork(String engine, int rows, int seconds) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder pb = new ProcessBuilder(java, "-Ddaowom.cache=false", "-D" + ENGINES.get(engine),
+                "-cp", System.getProperty("java.class.path"), Child.class.getName(), String.valueOf(rows), String.valueOf(seconds));
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        StringBuilder output = new StringBuilder();
+        Map<String, Long> opsPerSecond = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append('\n');
+                if (line.startsWith(RESULT)) {
+                    String[] result = line.substring(RESULT.length()).trim().split(" ");
+                    opsPerSecond.put(result[0], Long.parseLong(result[1]));
+                }
+            }
+        }
+        if (process.waitFor() != 0 || opsPerSecond.size() != OPERATIONS.size()) {
+            System.err.println(output);
+            throw new IllegalStateException(engine + "测量失败");
+        }
+        return opsPerSecond;
+    }
+
+    /**
+     * 子进程：生成dao，建表写入rows行，依次测量各操作
+     */
+    public static class Child {
+        public static void main(String[] args) throws Exception {
+            int rows = Integer.parseInt(args[0]);
+            int seconds = Integer.parseInt(args[1]);
+            DaoFactory.createDaoImpls(BenchRowDao.class.getPackage().getName(),
+                    new ArrayList<>(Collections.singletonList(BenchRowDao.class)), System.currentTimeMillis());
+            try (AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext(BenchConfig.class)) {
+                createTable(ctx.getBean(DataSource.class));
+                BenchRowDao dao = ctx.getBean(BenchRowDao.class);
+                List<BenchRow> batch = new ArrayList<>(rows);
+                for (int i = 1; i <= rows; i++) {
+                    batch.add(row(i));
+                }
+                dao.INSERT_BATCH(batch);
+
+                int[] nextId = {rows};
+                Map<String, IntConsumer> operations = new LinkedHashMap<>();
+                operations.put("SELECT", i -> {
+                    // 每次约10行
+                    BenchRow condition = new BenchRow();
+                    condition.setVersion((long) (i % (rows / 10 + 1)));
+                    dao.SELECT(condition);
+                });
+                operations.put("SELECT_BY_ID", i -> dao.SELECT_BY_ID(i % rows + 1));
+                operations.put("INSERT", i -> dao.INSERT(row(++nextId[0])));
+                operations.put("UPDATE_BY_ID", i -> {
+                    BenchRow row = new BenchRow();
+                    row.setId(i % rows + 1);
+                    row.setName("updated" + i);
+                    dao.UPDATE_BY_ID(row);
+                });
+                for (Map.Entry<String, IntConsumer> entry : operations.entrySet()) {
+                    // 预热：让JIT编译完调用路径
+                    measure(entry.getValue(), Math.max(1, seconds / 2));
+                    System.out.println(RESULT + entry.getKey() + " " + measure(entry.getValue(), seconds));
+                }
+            }
+        }
+
+        /**
+         * @return 每秒调用次数
+         */
+        private static long measure(IntConsumer operation, int seconds) {
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            long count = 0;
+            long start = System.nanoTime();
+            while (System.nanoTime() < deadline) {
+                for (int i = 0; i < 100; i++) {
+                    operation.accept((int) count++);
+                }
+            }
+            return count * 1_000_000_000L / (System.nanoTime() - start);
+        }
+
+        private static BenchRow row(int id) {
+            BenchRow row = new BenchRow();
+            row.setId(id);
+            row.setName("row" + id);
+            row.setCode("C" + id % 100);
+            row.setVersion((long) (id / 10));
+            row.setAmount(id * 1.5);
+            row.setCreateTime(new Date());
+            return row;
+        }
+
+        private static void createTable(DataSource dataSource) throws SQLException {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE BENCH_ROW (ID INT PRIMARY KEY, NAME VARCHAR(50), CODE VARCHAR(20), "
+                        + "VERSION BIGINT, AMOUNT DOUBLE, CREATE_TIME TIMESTAMP)");
+            }
+        }
+    }
+
+    @Configuration
+    @EnableDaoProxy(sqlSessionFactoryRef = "benchSqlSessionFactory")
+    public static class BenchConfig {
+        @Bean
+        public DataSource benchDataSource() {
+            return new PooledDataSource("org.h2.Driver", "jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        }
+
+        @Bean
+        public SqlSessionFactory benchSqlSessionFactory(DataSource benchDataSource) throws Exception {
+            org.apache.ibatis.session.Configuration configuration = new org.apache.ibatis.session.Configuration();
+            configuration.setMapUnderscoreToCamelCase(true);
+            SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+            factoryBean.setConfiguration(configuration);
+            factoryBean.setDataSource(benchDataSource);
+            return factoryBean.getObject();
+        }
+    }
+}
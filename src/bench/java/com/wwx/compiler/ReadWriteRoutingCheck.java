@@ -0,0 +1,185 @@
+package com.wwx.compiler;
+
+import com.wwx.compiler.annotation.EnableDaoProxy;
+import com.wwx.compiler.bench.dao.BenchRowDao;
+import com.wwx.compiler.bench.entity.BenchRow;
+import com.wwx.compiler.runtime.DaoRouting;
+import com.wwx.compiler.runtime.ReadWriteDataSource;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionFactoryBean;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 检查读写分离的路由：一个主库、两个从库都是内存数据库H2，每个库里ID为1的行的NAME是库名，
+ * 由查询结果判断语句在哪个库执行
+ * 可以用-Ddaowom.backend、-Ddaowom.engine、-Ddaowom.dispatch检查各种生成方式，有不符合的路由时退出码为1
+ * <p>
+ * mvn -Pbench compile exec:exec@read-write-routing-check
+ */
+public class ReadWriteRoutingCheck {
+    private static final String PRIMARY = "primary";
+    private static final List<String> REPLICAS = Arrays.asList("replica0", "replica1");
+
+    private static final List<String> failures = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        DaoFactory.createDaoImpls(BenchRowDao.class.getPackage().getName(),
+                new ArrayList<>(Collections.singletonList(BenchRowDao.class)), System.currentTimeMillis());
+        try (AnnotationConfigApplicationContext ctx = new AnnotationConfigApplicationContext(RoutingConfig.class)) {
+            ReadWriteDataSource dataSource = ctx.getBean(ReadWriteDataSource.class);
+            Map<String, DataSource> databases = new HashMap<>();
+            databases.put(PRIMARY, dataSource.getPrimary());
+            for (int i = 0; i < REPLICAS.size(); i++) {
+                databases.put(REPLICAS.get(i), dataSource.getReplicas().get(i));
+            }
+            for (Map.Entry<String, DataSource> database : databases.entrySet()) {
+                createTable(database.getValue(), database.getKey());
+            }
+            BenchRowDao dao = ctx.getBean(BenchRowDao.class);
+            TransactionTemplate transaction = new TransactionTemplate(ctx.getBean(PlatformTransactionManager.class));
+
+            // 查询轮询各从库
+            List<String> reads = new ArrayList<>();
+            for (int i = 0; i < REPLICAS.size() * 2; i++) {
+                reads.add(dao.SELECT_BY_ID(1).getName());
+            }
+            for (String replica : REPLICAS) {
+                check("SELECT_BY_ID轮询" + reads, 2L, reads.stream().filter(replica::equals).count());
+            }
+            check("SELECT", true, REPLICAS.contains(dao.SELECT(row(1, null)).get(0).getName()));
+            check("SELECT_ONE", true, REPLICAS.contains(dao.SELECT_ONE(row(1, null)).getName()));
+            try (Stream<BenchRow> stream = dao.SELECT_STREAM(row(1, null))) {
+                check("SELECT_STREAM", true, REPLICAS.contains(stream.findFirst().map(BenchRow::getName).orElse(null)));
+            }
+            check("路由已恢复", DaoRouting.NONE, DaoRouting.current());
+
+            // @ReadFrom(PRIMARY)的方法和DaoRouting.primary中的查询读主库
+            check("@ReadFrom(PRIMARY)", PRIMARY, dao.selectOneFromPrimary(row(1, null)).getName());
+            check("DaoRouting.primary", PRIMARY, DaoRouting.primary(() -> dao.SELECT_BY_ID(1)).getName());
+            check("DaoRouting.primary后", true, REPLICAS.contains(dao.SELECT_BY_ID(1).getName()));
+
+            // 写方法在主库执行
+            dao.INSERT(row(2, "inserted"));
+            dao.INSERT_BATCH(Arrays.asList(row(3, "batch"), row(4, "batch")));
+            dao.UPDATE_BY_ID(row(2, "updated"));
+            dao.DELETE_BY_ID(4);
+            check("写入主库", Arrays.asList(1, 2, 3), ids(dataSource.getPrimary()));
+            for (String replica : REPLICAS) {
+                check("从库没有写入：" + replica, Collections.singletonList(1), ids(databases.get(replica)));
+            }
+
+            // 事务中的查询读主库，读到事务中的写入
+            check("事务", "updated", transaction.execute(status -> {
+                dao.UPDATE_BY_ID(row(3, "updated"));
+                check("事务中的SELECT_BY_ID", PRIMARY, dao.SELECT_BY_ID(1).getName());
+                return dao.SELECT_BY_ID(3).getName();
+            }));
+            transaction.setReadOnly(true);
+            check("只读事务", PRIMARY, transaction.execute(status -> dao.SELECT_BY_ID(1).getName()));
+
+            System.out.println("主库取连接" + dataSource.getPrimaryConnections() + "次，从库"
+                    + REPLICAS.stream().map(replica -> replica + " " + dataSource.getReplicaConnections(REPLICAS.indexOf(replica)) + "次")
+                    .collect(Collectors.joining("，")));
+        }
+        if (!failures.isEmpty()) {
+            failures.forEach(System.err::println);
+            System.exit(1);
+        }
+        System.out.println("读写分离路由检查通过");
+    }
+
+    private static void check(String name, Object expected, Object actual) {
+        if (!Objects.equals(expected, actual)) {
+            failures.add(name + "：期望" + expected + "，实际" + actual);
+        }
+    }
+
+    private static BenchRow row(int id, String name) {
+        BenchRow row = new BenchRow();
+        row.setId(id);
+        row.setName(name);
+        return row;
+    }
+
+    /**
+     * 建表并写入ID为1、NAME为库名的行
+     */
+    private static void createTable(DataSource dataSource, String database) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE BENCH_ROW (ID INT PRIMARY KEY, NAME VARCHAR(50), CODE VARCHAR(20), "
+                    + "VERSION BIGINT, AMOUNT DOUBLE, CREATE_TIME TIMESTAMP)");
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO BENCH_ROW (ID, NAME) VALUES (1, ?)")) {
+                insert.setString(1, database);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * @return 库中所有行的ID
+     */
+    private static List<Integer> ids(DataSource dataSource) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT ID FROM BENCH_ROW ORDER BY ID")) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    @Configuration
+    @EnableDaoProxy(sqlSessionFactoryRef = "routingSqlSessionFactory")
+    public static class RoutingConfig {
+        @Bean
+        public ReadWriteDataSource routingDataSource() {
+            List<DataSource> replicas = new ArrayList<>();
+            for (String replica : REPLICAS) {
+                replicas.add(h2(replica));
+            }
+            return new ReadWriteDataSource(h2(PRIMARY), replicas);
+        }
+
+        @Bean
+        public SqlSessionFactory routingSqlSessionFactory(ReadWriteDataSource routingDataSource) throws Exception {
+            org.apache.ibatis.session.Configuration configuration = new org.apache.ibatis.session.Configuration();
+            configuration.setMapUnderscoreToCamelCase(true);
+            SqlSessionFactoryBean factoryBean = new SqlSessionFactoryBean();
+            factoryBean.setConfiguration(configuration);
+            factoryBean.setDataSource(routingDataSource);
+            return factoryBean.getObject();
+        }
+
+        @Bean
+        public PlatformTransactionManager routingTransactionManager(ReadWriteDataSource routingDataSource) {
+            return new DataSourceTransactionManager(routingDataSource);
+        }
+
+        private static DataSource h2(String database) {
+            return new PooledDataSource("org.h2.Driver", "jdbc:h2:mem:" + database + ";MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "");
+        }
+    }
+}
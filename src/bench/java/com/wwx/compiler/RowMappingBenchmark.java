@@ -0,0 +1,65 @@
+package com.wwx.compiler;
+
+import com.wwx.compiler.bench.entity.BenchRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按条件查询1、100、10000行，主要是结果的行映射：
+ * 生成的dao用生成的行映射（jdbc引擎用生成的按列下标读取），手写Mapper（baseline）用MyBatis的自动映射
+ * <p>
+ * mvn -Pbench compile exec:exec@jmh -Dbench.jmh.include=RowMappingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Ddaowom.cache=false", "-Dfile.encoding=UTF-8"})
+public class RowMappingBenchmark {
+    @Param({BenchEnvironment.MYBATIS, BenchEnvironment.SESSION, BenchEnvironment.JDBC, BenchEnvironment.BASELINE})
+    public String engine;
+    /**
+     * 查询结果的行数，取值见{@link BenchEnvironment#RESULT_SIZES}
+     */
+    @Param({"1", "100", "10000"})
+    public int resultSize;
+
+    private BenchEnvironment environment;
+    private BenchEnvironment.Operations operations;
+    private String code;
+
+    @Setup
+    public void setUp() throws Exception {
+        environment = BenchEnvironment.start(engine);
+        operations = environment.operations();
+        code = "R" + resultSize;
+        int size = operations.selectByCode(code).size();
+        if (size != resultSize) {
+            throw new IllegalStateException(code + "查询到" + size + "行，应为" + resultSize);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public List<BenchRow> select() {
+        return operations.selectByCode(code);
+    }
+}
@@ -0,0 +1,93 @@
+package com.wwx.compiler;
+
+import com.wwx.compiler.bench.baseline.BenchRowMapper;
+import com.wwx.compiler.bench.entity.BenchRow;
+import org.apache.ibatis.annotations.SelectProvider;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拼SQL的开销，不访问数据库：
+ * providerSql是生成的Provider方法本身（算掩码、按掩码取模板）；
+ * boundSql是MyBatis每次执行前通过Provider得到BoundSql，包括反射调用Provider和解析#{}；
+ * baselineBoundSql是手写Mapper的固定SQL，MyBatis在启动时已经解析好
+ * <p>
+ * mvn -Pbench compile exec:exec@jmh -Dbench.jmh.include=SqlBuildingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Ddaowom.cache=false", "-Dfile.encoding=UTF-8"})
+public class SqlBuildingBenchmark {
+    private BenchEnvironment environment;
+    /**
+     * 生成的Provider的SELECT方法，已绑定到一个Provider实例
+     */
+    private MethodHandle providerSelect;
+    private MappedStatement generatedSelect;
+    private MappedStatement baselineSelect;
+    private BenchRow condition;
+    private String code;
+
+    @Setup
+    public void setUp() throws Exception {
+        environment = BenchEnvironment.start(BenchEnvironment.MYBATIS);
+        org.apache.ibatis.session.Configuration configuration = environment.getBean(SqlSessionFactory.class).getConfiguration();
+        for (Class<?> mapper : configuration.getMapperRegistry().getMappers()) {
+            if (mapper == BenchRowMapper.class) {
+                baselineSelect = configuration.getMappedStatement(mapper.getName() + ".selectByCode");
+                continue;
+            }
+            Method select = mapper.getMethod("SELECT", BenchRow.class);
+            Class<?> provider = select.getAnnotation(SelectProvider.class).type();
+            providerSelect = MethodHandles.publicLookup()
+                    .findVirtual(provider, "SELECT", MethodType.methodType(String.class, BenchRow.class))
+                    .bindTo(provider.newInstance());
+            generatedSelect = configuration.getMappedStatement(mapper.getName() + ".SELECT");
+        }
+        // 两个可选条件不为空
+        condition = new BenchRow();
+        condition.setCode("R100");
+        condition.setVersion(1L);
+        code = "R100";
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.close();
+    }
+
+    @Benchmark
+    public String providerSql() throws Throwable {
+        return (String) providerSelect.invokeExact(condition);
+    }
+
+    @Benchmark
+    public Object boundSql() {
+        return generatedSelect.getBoundSql(condition);
+    }
+
+    @Benchmark
+    public Object baselineBoundSql() {
+        return baselineSelect.getBoundSql(code);
+    }
+}
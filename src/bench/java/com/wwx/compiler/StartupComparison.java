@@ -0,0 +1,176 @@
+package com.wwx.compiler;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 比较两种生成方式的启动用时：源码+javac 与 直接生成字节码
+ * 先生成N个合成的实体和dao并编译，再为每种方式各启动若干个新的JVM，测量生成全部dao的用时
+ * 每次都是新JVM且关闭生成缓存，测的是冷启动
+ * <p>
+ * mvn -Pbench compile exec:exec@startup-comparison -Dbench.daos=200 -Dbench.rounds=3
+ */
+public class StartupComparison {
+    static final String DAO_PKG = "bench.dao";
+    private static final String ENTITY_PKG = "bench.entity";
+    private static final String MAPPER_PKG = "bench.mapper";
+    private static final String RESULT = "RESULT ";
+    private static final List<String> BACKENDS = Arrays.asList("source", "bytecode");
+
+    public static void main(String[] args) throws Exception {
+        int daoNum = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Path workDir = Files.createTempDirectory("daowom-bench");
+        Path classesDir = generateDaos(workDir, daoNum);
+        System.out.println("已生成" + daoNum + "个dao：" + classesDir);
+
+        Map<String, List<Long>> results = new LinkedHashMap<>();
+        for (int round = 1; round <= rounds; round++) {
+            for (String backend : BACKENDS) {
+                long cost = fork(classesDir, backend, daoNum);
+                results.computeIfAbsent(backend, k -> new ArrayList<>()).add(cost);
+                System.out.println("第" + round + "轮 " + backend + "：" + cost + "毫秒");
+            }
+        }
+        System.out.println();
+        System.out.println(String.format("%-10s %8s %8s %8s", "backend", "min", "avg", "max"));
+        for (Map.Entry<String, List<Long>> entry : results.entrySet()) {
+            List<Long> costs = entry.getValue();
+            long min = costs.stream().mapToLong(Long::longValue).min().orElse(0);
+            long max = costs.stream().mapToLong(Long::longValue).max().orElse(0);
+            double avg = costs.stream().mapToLong(Long::longValue).average().orElse(0);
+            System.out.println(String.format("%-10s %8d %8.0f %8d", entry.getKey(), min, avg, max));
+        }
+    }
+
+    /**
+     * 生成并编译N个实体类和dao接口
+     *
+     * @return 编译后的类目录
+     */
+    static Path generateDaos(Path workDir, int daoNum) throws IOException {
+        Path sourcesDir = workDir.resolve("src");
+        Path classesDir = workDir.resolve("classes");
+        Files.createDirectories(classesDir);
+        List<String> files = new ArrayList<>(daoNum * 2);
+        for (int i = 0; i < daoNum; i++) {
+            String entity = "Entity" + i;
+            files.add(write(sourcesDir, ENTITY_PKG, entity, entityCode(entity, i)));
+            files.add(write(sourcesDir, DAO_PKG, entity + "Dao", daoCode(entity)));
+        }
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        List<String> options = new ArrayList<>(Arrays.asList("-encoding", "UTF-8", "-nowarn",
+                "-cp", System.getProperty("java.class.path"), "-d", classesDir.toString()));
+        options.addAll(files);
+        if (javac.run(null, null, null, options.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("合成dao编译失败");
+        }
+        return classesDir;
+    }
+
+    private static String write(Path sourcesDir, String pkg, String className, String code) throws IOException {
+        Path path = sourcesDir.resolve(pkg.replace('.', '/')).resolve(className + ".java");
+        Files.createDirectories(path.getParent());
+        Files.write(path, code.getBytes(StandardCharsets.UTF_8));
+        return path.toString();
+    }
+
+    private static String entityCode(String entity, int i) {
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(ENTITY_PKG).append(";\n");
+        code.append("import com.wwx.compiler.annotation.Table;\n");
+        code.append("import com.wwx.compiler.annotation.sql.ID;\n");
+        code.append("import java.util.Date;\n");
+        code.append("@Table(\"T_").append(i).append("\")\n");
+        code.append("public class ").append(entity).append(" {\n");
+        code.append("\t@ID(seq = \"T_").append(i).append("_SEQ\")\n");
+        String[][] fields = {{"Integer", "id"}, {"String", "name"}, {"String", "code"}, {"Long", "version"},
+                {"Double", "amount"}, {"Date", "createTime"}};
+        for (String[] field : fields) {
+            code.append("\tprivate ").append(field[0]).append(" ").append(field[1]).append(";\n");
+        }
+        for (String[] field : fields) {
+            String property = Character.toUpperCase(field[1].charAt(0)) + field[1].substring(1);
+            code.append("\tpublic ").append(field[0]).append(" get").append(property).append("() { return ")
+                    .append(field[1]).append("; }\n");
+            code.append("\tpublic void set").append(property).append("(").append(field[0]).append(" v) { this.")
+                    .append(field[1]).append(" = v; }\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    private static String daoCode(String entity) {
+        return "package " + DAO_PKG + ";\n"
+                + "import com.wwx.compiler.Dao;\n"
+                + "import com.wwx.compiler.annotation.*;\n"
+                + "import java.util.List;\n"
+                + "import " + ENTITY_PKG + "." + entity + ";\n"
+                + "@DaoProxy(output = \"" + MAPPER_PKG + "\")\n"
+                + "public interface " + entity + "Dao extends Dao<" + entity + "> {\n"
+                + "\t@AutoSelect(orderDescBy = \"CREATE_TIME\")\n"
+                + "\tList<" + entity + "> selectLatest(" + entity + " e);\n"
+                + "\t@AutoSelect(compare = \"NAME:LIKE\")\n"
+                + "\tList<" + entity + "> selectByName(" + entity + " e);\n"
+                + "\t@AutoUpdate(compare = \"VERSION:<\")\n"
+                + "\tint updateOlder(" + entity + " s, " + entity + " c);\n"
+                + "}\n";
+    }
+
+    /**
+     * 在新JVM中生成全部dao，返回用时
+     */
+    private static long fork(Path classesDir, String backend, int daoNum) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = classesDir + File.pathSeparator + System.getProperty("java.class.path");
+        ProcessBuilder pb = new ProcessBuilder(java, "-Ddaowom.cache=false", "-D" + DaoFactory.BACKEND_PROPERTY + "=" + backend,
+                "-cp", classPath, Child.class.getName(), String.valueOf(daoNum));
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        StringBuilder output = new StringBuilder();
+        long cost = -1;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append('\n');
+                if (line.startsWith(RESULT)) {
+                    cost = Long.parseLong(line.substring(RESULT.length()).trim());
+                }
+            }
+        }
+        if (process.waitFor() != 0 || cost < 0) {
+            System.err.println(output);
+            throw new IllegalStateException(backend + "方式生成失败");
+        }
+        return cost;
+    }
+
+    /**
+     * 子进程：加载合成的dao接口并生成实现
+     */
+    public static class Child {
+        public static void main(String[] args) throws Exception {
+            int daoNum = Integer.parseInt(args[0]);
+            long timeStart = System.currentTimeMillis();
+            List<Class<?>> daos = new ArrayList<>(daoNum);
+            for (int i = 0; i < daoNum; i++) {
+                daos.add(Class.forName(DAO_PKG + ".Entity" + i + "Dao", false, Child.class.getClassLoader()));
+            }
+            DaoFactory.createDaoImpls(DAO_PKG, daos, timeStart);
+            System.out.println(RESULT + (System.currentTimeMillis() - timeStart));
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.wwx.compiler;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动用时随dao数量的变化：合成N个字段数和Auto*注解各不相同的实体和dao，在新的JVM中走完整的
+ * 扫描（ComponentScanner）→ 生成代码（DaoCodeBuilder）→ 编译（DynamicCompiler）→ 加载，
+ * 按{@link GenerationPhases}输出每个N、每个阶段的墙钟时间、CPU时间、堆峰值和元空间增长
+ * 每个N各启动若干个新JVM且关闭生成缓存，取总用时最短的一轮
+ * <p>
+ * mvn -Pbench compile exec:exec@startup-scaling -Dbench.scaling.sizes=10,100,500,1000,2000 -Dbench.scaling.rounds=3 -Dbench.scaling.backend=source
+ */
+public class StartupScaling {
+    /**
+     * 合成类的根包
+     */
+    static final String ROOT_PKG = "scaling";
+    static final String DAO_PKG = ROOT_PKG + ".dao";
+    private static final String ENTITY_PKG = ROOT_PKG + ".entity";
+    private static final String MAPPER_PKG = ROOT_PKG + ".mapper";
+    private static final String MARKER = ROOT_PKG + ".ScalingMain";
+    private static final String RESULT = "RESULT ";
+    /**
+     * 附加字段的类型，按字段序号循环
+     */
+    private static final String[] EXTRA_TYPES = {"String", "Integer", "Long", "Double", "Date"};
+
+    public static void main(String[] args) throws Exception {
+        String sizes = args.length > 0 ? args[0] : "10,100,500,1000,2000";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        String backend = args.length > 2 ? args[2] : "source";
+
+        // N->阶段->[墙钟毫秒, CPU毫秒, 堆峰值MB, 元空间增长MB]
+        Map<Integer, Map<String, double[]>> results = new LinkedHashMap<>();
+        for (String size : sizes.split(",")) {
+            int daoNum = Integer.parseInt(size.trim());
+            Path workDir = Files.createTempDirectory("daowom-scaling");
+            Path classesDir = generateDaos(workDir, daoNum);
+            Map<String, double[]> best = null;
+            for (int round = 1; round <= rounds; round++) {
+                Map<String, double[]> phases = fork(classesDir, backend, daoNum);
+                double total = total(phases);
+                System.out.println(daoNum + "个dao 第" + round + "轮：" + Math.round(total) + "毫秒");
+                if (best == null || total < total(best)) {
+                    best = phases;
+                }
+            }
+            results.put(daoNum, best);
+        }
+
+        System.out.println();
+        System.out.println("backend=" + backend + "，取各N总用时最短的一轮");
+        System.out.println(String.format("%6s %-8s %10s %10s %12s %14s", "daos", "phase", "wall(ms)", "cpu(ms)",
+                "peakHeap(MB)", "metaspace(MB)"));
+        for (Map.Entry<Integer, Map<String, double[]>> entry : results.entrySet()) {
+            for (Map.Entry<String, double[]> phase : entry.getValue().entrySet()) {
+                double[] value = phase.getValue();
+                System.out.println(String.format("%6d %-8s %10.0f %10.0f %12.1f %14.1f", entry.getKey(), phase.getKey(),
+                        value[0], value[1], value[2], value[3]));
+            }
+            System.out.println(String.format("%6d %-8s %10.0f", entry.getKey(), "total", total(entry.getValue())));
+        }
+    }
+
+    private static double total(Map<String, double[]> phases) {
+        return phases.values().stream().mapToDouble(value -> value[0]).sum();
+    }
+
+    /**
+     * 合成并编译N个实体类和dao接口，以及扫描起点的类
+     *
+     * @return 编译后的类目录
+     */
+    static Path generateDaos(Path workDir, int daoNum) throws IOException {
+        Path sourcesDir = workDir.resolve("src");
+        Path classesDir = workDir.resolve("classes");
+        Files.createDirectories(classesDir);
+        List<String> files = new ArrayList<>(daoNum * 2 + 1);
+        files.add(write(sourcesDir, ROOT_PKG, MARKER.substring(ROOT_PKG.length() + 1),
+                "package " + ROOT_PKG + ";\npublic class ScalingMain {\n}\n"));
+        for (int i = 0; i < daoNum; i++) {
+            String entity = "Entity" + i;
+            files.add(write(sourcesDir, ENTITY_PKG, entity, entityCode(entity, i)));
+            files.add(write(sourcesDir, DAO_PKG, entity + "Dao", daoCode(entity, i)));
+        }
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        List<String> options = new ArrayList<>(Arrays.asList("-encoding", "UTF-8", "-nowarn",
+                "-cp", System.getProperty("java.class.path"), "-d", classesDir.toString()));
+        options.addAll(files);
+        if (javac.run(null, null, null, options.toArray(new String[0])) != 0) {
+            throw new IllegalStateException("合成dao编译失败");
+        }
+        return classesDir;
+    }
+
+    private static String write(Path sourcesDir, String pkg, String className, String code) throws IOException {
+        Path path = sourcesDir.resolve(pkg.replace('.', '/')).resolve(className + ".java");
+        Files.createDirectories(path.getParent());
+        Files.write(path, code.getBytes(StandardCharsets.UTF_8));
+        return path.toString();
+    }
+
+    /**
+     * 实体有4个固定字段，再加0到20个附加字段，按序号循环
+     */
+    private static String entityCode(String entity, int i) {
+        List<String[]> fields = new ArrayList<>(Arrays.asList(new String[]{"Integer", "id"}, new String[]{"String", "name"},
+                new String[]{"Long", "version"}, new String[]{"Date", "createTime"}));
+        int extraNum = i % 5 * 5;
+        for (int j = 0; j < extraNum; j++) {
+            fields.add(new String[]{EXTRA_TYPES[j % EXTRA_TYPES.length], "extra" + j});
+        }
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(ENTITY_PKG).append(";\n");
+        code.append("import com.wwx.compiler.annotation.Table;\n");
+        code.append("import com.wwx.compiler.annotation.sql.ID;\n");
+        code.append("import java.util.Date;\n");
+        code.append("@Table(\"T_").append(i).append("\")\n");
+        code.append("public class ").append(entity).append(" {\n");
+        code.append("\t@ID\n");
+        for (String[] field : fields) {
+            code.append("\tprivate ").append(field[0]).append(" ").append(field[1]).append(";\n");
+        }
+        for (String[] field : fields) {
+            String property = Character.toUpperCase(field[1].charAt(0)) + field[1].substring(1);
+            code.append("\tpublic ").append(field[0]).append(" get").append(property).append("() { return ")
+                    .append(field[1]).append("; }\n");
+            code.append("\tpublic void set").append(property).append("(").append(field[0]).append(" v) { this.")
+                    .append(field[1]).append(" = v; }\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /**
+     * dao除了{@link Dao}的方法，按序号附加不同的Auto*方法
+     */
+    private static String daoCode(String entity, int i) {
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(DAO_PKG).append(";\n");
+        code.append("import com.wwx.compiler.Dao;\n");
+        code.append("import com.wwx.compiler.annotation.*;\n");
+        code.append("import java.util.List;\n");
+        code.append("import java.util.stream.Stream;\n");
+        code.append("import ").append(ENTITY_PKG).append(".").append(entity).append(";\n");
+        code.append("@DaoProxy(output = \"").append(MAPPER_PKG).append("\")\n");
+        code.append("public interface ").append(entity).append("Dao extends Dao<").append(entity).append("> {\n");
+        switch (i % 4) {
+            case 0:
+                code.append("\t@AutoSelect(orderDescBy = \"CREATE_TIME\", limit = 20)\n");
+                code.append("\tList<").append(entity).append("> selectLatest(").append(entity).append(" e);\n");
+                code.append("\t@AutoSelect(compare = \"NAME:LIKE\")\n");
+                code.append("\tList<").append(entity).append("> selectByName(").append(entity).append(" e);\n");
+                break;
+            case 1:
+                code.append("\t@AutoUpdate(compare = \"VERSION:<\")\n");
+                code.append("\tint updateOlder(").append(entity).append(" s, ").append(entity).append(" c);\n");
+                code.append("\t@AutoDelete(compare = \"VERSION:<\")\n");
+                code.append("\tint deleteOlder(").append(entity).append(" e);\n");
+                break;
+            case 2:
+                code.append("\t@AutoSelectStream(fetchSize = 100)\n");
+                code.append("\tStream<").append(entity).append("> streamAll(").append(entity).append(" e);\n");
+                code.append("\t@AutoInsertBatch(chunkSize = 100)\n");
+                code.append("\tint[] insertChunks(List<").append(entity).append("> list);\n");
+                break;
+            default:
+                code.append("\t@AutoSelectOne(columns = {\"ID\", \"NAME\"})\n");
+                code.append("\t").append(entity).append(" selectIdName(").append(entity).append(" e);\n");
+                break;
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /**
+     * 在新JVM中扫描并生成全部dao
+     *
+     * @return 阶段->[墙钟毫秒, CPU毫秒, 堆峰值MB, 元空间增长MB]
+     */
+    private static Map<String, double[]> fork(Path classesDir, String backend, int daoNum) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = classesDir + File.pathSeparator + System.getProperty("java.class.path");
+        ProcessBuilder pb = new ProcessBuilder(java, "-Ddaowom.cache=false", "-D" + DaoFactory.BACKEND_PROPERTY + "=" + backend,
+                "-Dfile.encoding=UTF-8", "-cp", classPath, Child.class.getName(), String.valueOf(daoNum));
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        StringBuilder output = new StringBuilder();
+        Map<String, double[]> phases = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append('\n');
+                if (line.startsWith(RESULT)) {
+                    String[] result = line.substring(RESULT.length()).trim().split(" ");
+                    phases.put(result[0], new double[]{Double.parseDouble(result[1]), Double.parseDouble(result[2]),
+                            Double.parseDouble(result[3]), Double.parseDouble(result[4])});
+                }
+            }
+        }
+        if (process.waitFor() != 0 || phases.isEmpty()) {
+            System.err.println(output);
+            throw new IllegalStateException(daoNum + "个dao生成失败");
+        }
+        return phases;
+    }
+
+    /**
+     * 子进程：从扫描开始生成全部dao，每个阶段输出一行
+     */
+    public static class Child {
+        public static void main(String[] args) throws Exception {
+            int daoNum = Integer.parseInt(args[0]);
+            DaoFactory.createDaoImpls(DAO_PKG, Class.forName(MARKER));
+            if (DaoFactory.getImplClasses().size() != daoNum) {
+                throw new IllegalStateException("生成了" + DaoFactory.getImplClasses().size() + "个dao，应为" + daoNum);
+            }
+            for (GenerationPhases.Phase phase : GenerationPhases.phases()) {
+                System.out.println(RESULT + phase.getName() + " " + phase.getWallNanos() / 1e6 + " " + phase.getCpuNanos() / 1e6
+                        + " " + phase.getPeakHeap() / 1048576.0 + " " + phase.getMetaspaceGrowth() / 1048576.0);
+            }
+        }
+    }
+}
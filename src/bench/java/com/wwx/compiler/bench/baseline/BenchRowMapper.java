@@ -0,0 +1,33 @@
+package com.wwx.compiler.bench.baseline;
+
+import com.wwx.compiler.bench.entity.BenchRow;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * 手写的MyBatis Mapper，作为生成的dao的基线：固定SQL，结果由MyBatis自动映射
+ * SQL与生成的dao在基准测试中执行的语句相同
+ */
+public interface BenchRowMapper {
+    String COLUMNS = "ID, NAME, CODE, VERSION, AMOUNT, CREATE_TIME";
+
+    @Select("SELECT " + COLUMNS + " FROM BENCH_ROW WHERE ID = #{id}")
+    BenchRow selectById(Object id);
+
+    @Select("SELECT " + COLUMNS + " FROM BENCH_ROW WHERE CODE = #{code}")
+    List<BenchRow> selectByCode(String code);
+
+    @Insert("INSERT INTO BENCH_ROW (ID, NAME, CODE, VERSION, AMOUNT, CREATE_TIME) "
+            + "VALUES (#{id}, #{name}, #{code}, #{version}, #{amount}, #{createTime})")
+    int insert(BenchRow row);
+
+    @Update("UPDATE BENCH_ROW SET NAME = #{name} WHERE ID = #{id}")
+    int updateNameById(BenchRow row);
+
+    @Delete("DELETE FROM BENCH_ROW WHERE ID = #{id}")
+    int deleteById(Object id);
+}
@@ -0,0 +1,18 @@
+package com.wwx.compiler.bench.dao;
+
+import com.wwx.compiler.Dao;
+import com.wwx.compiler.annotation.AutoSelectOne;
+import com.wwx.compiler.annotation.DaoProxy;
+import com.wwx.compiler.annotation.ReadFrom;
+import com.wwx.compiler.bench.entity.BenchRow;
+
+@DaoProxy(output = "com.wwx.compiler.bench.mapper")
+public interface BenchRowDao extends Dao<BenchRow> {
+
+    /**
+     * 读写分离时从主库读取，用于写入后立即读
+     */
+    @ReadFrom(ReadFrom.Source.PRIMARY)
+    @AutoSelectOne(columns = {"ID", "NAME"})
+    BenchRow selectOneFromPrimary(BenchRow row);
+}
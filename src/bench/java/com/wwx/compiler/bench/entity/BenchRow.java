@@ -0,0 +1,68 @@
+package com.wwx.compiler.bench.entity;
+
+import com.wwx.compiler.annotation.Table;
+import com.wwx.compiler.annotation.sql.ID;
+
+import java.util.Date;
+
+/**
+ * 基准测试用的实体，对应内存数据库里的BENCH_ROW表
+ */
+@Table("BENCH_ROW")
+public class BenchRow {
+    @ID
+    private Integer id;
+    private String name;
+    private String code;
+    private Long version;
+    private Double amount;
+    private Date createTime;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public void setCode(String code) {
+        this.code = code;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Double amount) {
+        this.amount = amount;
+    }
+
+    public Date getCreateTime() {
+        return createTime;
+    }
+
+    public void setCreateTime(Date createTime) {
+        this.createTime = createTime;
+    }
+}
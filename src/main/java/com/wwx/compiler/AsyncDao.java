@@ -0,0 +1,38 @@
+package com.wwx.compiler;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link Dao}的异步版本，由生成器实现，在{@link com.wwx.compiler.runtime.DaoExecutor}中调用同步的dao
+ * 继承它并在同步dao的@DaoProxy(async = ...)中指定：
+ * <pre>
+ * public interface MovieDaoAsync extends AsyncDao&lt;Movie&gt; {
+ *     CompletableFuture&lt;List&lt;Movie&gt;&gt; selectByLastsLimits(Movie movie);
+ * }
+ * </pre>
+ * 每个方法对应同步dao中同名、同参数的方法，返回其结果的CompletableFuture；流式查询没有异步版本
+ */
+public interface AsyncDao<T> {
+
+    CompletableFuture<Integer> INSERT(T t);
+
+    CompletableFuture<int[]> INSERT_BATCH(List<T> list);
+
+    CompletableFuture<Integer> DELETE(T t);
+
+    CompletableFuture<Integer> UPDATE(T s, T c);
+
+    CompletableFuture<T> SELECT_ONE(T t);
+
+    CompletableFuture<List<T>> SELECT(T t);
+
+    /**
+     * 实体类没有@ID字段时，返回的future以IDaoNoIdException失败
+     */
+    CompletableFuture<T> SELECT_BY_ID(Object id);
+
+    CompletableFuture<Integer> DELETE_BY_ID(Object id);
+
+    CompletableFuture<Integer> UPDATE_BY_ID(T t);
+}
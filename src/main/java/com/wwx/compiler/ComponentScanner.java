@@ -1,95 +1,285 @@
 package com.wwx.compiler;
 
+import com.wwx.compiler.annotation.DaoProxy;
+import com.wwx.compiler.exception.DynamicCompileException;
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.asm.Type;
+
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
-import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
 
+/**
+ * 扫描包下的dao接口
+ * 支持类路径上的目录和jar，包括jar中嵌套的jar和目录（如Spring Boot可执行jar的BOOT-INF/lib/*.jar、BOOT-INF/classes）
+ * 目录在ForkJoinPool中并行遍历；每个类只用ASM读取头部（访问标志、父接口、类上的注解），不加载，
+ * 只有带@DaoProxy或直接继承{@link Dao}的接口才加载，加载时不初始化，包下的Impl等类的静态初始化块都不会执行
+ */
 class ComponentScanner {
     static final String CLASS_SUFFIX = ".class";
+    private static final String DAO_PROXY_DESC = Type.getDescriptor(DaoProxy.class);
+    private static final String DAO_NAME = Type.getInternalName(Dao.class);
+    /**
+     * jar URL中jar与其中条目的分隔符，嵌套的jar有多个
+     */
+    private static final String JAR_SEPARATOR = "!/";
+    private static final String JAR_SUFFIX = ".jar";
 
-    private String buildClassPath;
+    private final ClassLoader classLoader;
 
-    ComponentScanner(String buildClassPath) {
-        this.buildClassPath = buildClassPath.replace('.', '\\');
+    /**
+     * @param classLoader 在它的类路径上查找，dao接口也由它加载
+     */
+    ComponentScanner(ClassLoader classLoader) {
+        this.classLoader = classLoader;
     }
-    private static final Pattern INNER_PATTERN =
-            Pattern.compile("\\$(\\d+).", Pattern.CASE_INSENSITIVE);
 
+    /**
+     * @return 包及子包下带@DaoProxy或直接继承Dao的接口，按类名排序，都没有初始化
+     */
     List<Class<?>> findComponents(String pkg) {
-        List<Class<?>> classSet = new ArrayList<>(16);
+        Set<String> classNames = scan(pkg, ComponentScanner::isCandidate);
+        List<Class<?>> classes = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            try {
+                classes.add(Class.forName(className, false, classLoader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                System.err.println(className + "加载失败，跳过：" + e);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * @return 包及子包下所有类（包括内部类、匿名类）的类名，按类名排序，不读取也不加载
+     */
+    Set<String> findClassNames(String pkg) {
+        return scan(pkg, in -> true);
+    }
+
+    /**
+     * @param filter 按类文件的内容筛选
+     * @return 筛选出的类名，按类名排序
+     */
+    private Set<String> scan(String pkg, ClassFilter filter) {
         if (pkg.endsWith(".")) {
             pkg = pkg.substring(0, pkg.length() - 1);
         }
-        String pkgPath = pkg.replaceAll("\\.", "/");
-        Enumeration<URL> urls = findAllClassPathResources(pkgPath);
+        String pkgPath = pkg.replace('.', '/');
+        // 同一个包可能在多个目录或jar中
+        Set<String> classNames = new ConcurrentSkipListSet<>();
+        Enumeration<URL> urls;
+        try {
+            urls = classLoader.getResources(pkgPath);
+        } catch (IOException e) {
+            throw new DynamicCompileException("扫描" + pkg + "失败：" + e.getMessage());
+        }
         while (urls.hasMoreElements()) {
             URL url = urls.nextElement();
-            String protocol = url.getProtocol();
-            if ("file".equals(protocol)) {
-                String fileName;
-                try {
-                    fileName = URLDecoder.decode(url.getFile(), "UTF-8");
-                    File file = new File(fileName);
-                    if (file.isDirectory()) {
-                        this.parseClassFile(file, classSet);
-                    } else {
+            try {
+                if ("file".equals(url.getProtocol())) {
+                    File dir = new File(url.toURI());
+                    if (!dir.isDirectory()) {
                         throw new IllegalArgumentException("包路径对应的不是文件夹");
                     }
-                } catch (UnsupportedEncodingException e) {
-                    e.printStackTrace();
+                    ForkJoinPool.commonPool().invoke(new DirectoryScan(dir, pkg, filter, classNames));
+                } else if ("jar".equals(url.getProtocol())) {
+                    scanJar(url, pkgPath, filter, classNames);
+                } else {
+                    System.err.println("不支持的类路径，跳过：" + url);
                 }
+            } catch (IOException | URISyntaxException e) {
+                throw new DynamicCompileException("扫描" + url + "失败：" + e.getMessage());
             }
         }
-        return classSet;
+        return classNames;
     }
 
-    private void parseClassFile(File file, List<Class<?>> classSet) {
-        if (file.isDirectory()) {
-            File[] files = file.listFiles();
-            assert files != null;
-            for (File f : files) {
-                parseClassFile(f, classSet);
+    /**
+     * 读取类的头部
+     *
+     * @return 是否带@DaoProxy或直接继承Dao的接口
+     */
+    private static boolean isCandidate(InputStream in) throws IOException {
+        ClassReader reader = new ClassReader(in);
+        if ((reader.getAccess() & Opcodes.ACC_INTERFACE) == 0) {
+            return false;
+        }
+        if (Arrays.asList(reader.getInterfaces()).contains(DAO_NAME)) {
+            return true;
+        }
+        boolean[] daoProxy = new boolean[1];
+        reader.accept(new ClassVisitor(SpringAsmInfo.ASM_VERSION) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                if (DAO_PROXY_DESC.equals(descriptor)) {
+                    daoProxy[0] = true;
+                }
+                return null;
             }
-        } else if (!"Dao.class".equals(file.getName()) && file.getName().endsWith(CLASS_SUFFIX)) {
-            String path = file.getPath();
-            String name = path.substring(path.indexOf(buildClassPath))
-                    .replace(File.separator, ".");
+        }, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return daoProxy[0];
+    }
 
-            addToClassSet(name, classSet);
+    /**
+     * 扫描jar中包路径下的类，URL形如jar:file:/app.jar!/BOOT-INF/lib/dao.jar!/pkg
+     * 最外层的jar随机读取，嵌套的jar逐个条目顺序读取
+     */
+    private static void scanJar(URL url, String pkgPath, ClassFilter filter, Set<String> classNames) throws IOException, URISyntaxException {
+        String[] parts = url.getPath().split(JAR_SEPARATOR);
+        File file = new File(new URL(parts[0]).toURI());
+        // 最后一段是包路径，中间各段是嵌套的jar或目录
+        String prefix = "";
+        try (JarFile jarFile = new JarFile(file)) {
+            JarInputStream nested = null;
+            try {
+                for (int i = 1; i < parts.length - 1; i++) {
+                    String part = prefix + parts[i];
+                    if (!part.endsWith(JAR_SUFFIX)) {
+                        // 嵌套的目录，如BOOT-INF/classes
+                        prefix = part + "/";
+                        continue;
+                    }
+                    JarInputStream in = nested == null ? openEntry(jarFile, part) : openEntry(nested, part);
+                    nested = in;
+                    prefix = "";
+                }
+                String pkgPrefix = prefix + pkgPath + "/";
+                if (nested == null) {
+                    scanJarFile(jarFile, prefix, pkgPrefix, filter, classNames);
+                } else {
+                    scanJarStream(nested, prefix, pkgPrefix, filter, classNames);
+                }
+            } finally {
+                if (nested != null) {
+                    nested.close();
+                }
+            }
         }
     }
 
-    private void addToClassSet(String name, List<Class<?>> classSet) {
-        // 过滤掉匿名内部类
-        /*if (INNER_PATTERN.matcher(name).find()) {
-            return;
-        }*/
+    private static JarInputStream openEntry(JarFile jarFile, String name) throws IOException {
+        JarEntry entry = jarFile.getJarEntry(name);
+        if (entry == null) {
+            throw new IOException("jar中没有" + name);
+        }
+        return new JarInputStream(jarFile.getInputStream(entry));
+    }
 
-        String className = name.substring(0, name.length() - CLASS_SUFFIX.length());
-        try {
-            Class<?> clz = Class.forName(className);
-            classSet.add(clz);
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
+    private static JarInputStream openEntry(JarInputStream jar, String name) throws IOException {
+        for (JarEntry entry = jar.getNextJarEntry(); entry != null; entry = jar.getNextJarEntry()) {
+            if (entry.getName().equals(name)) {
+                return new JarInputStream(jar);
+            }
         }
+        throw new IOException("jar中没有" + name);
     }
 
-    private Enumeration<URL> findAllClassPathResources(String path) {
-        if (path.startsWith("/")) {
-            path = path.substring(1);
+    /**
+     * 并行读取jar中各类的头部
+     *
+     * @param prefix    类名之前的路径，如BOOT-INF/classes/
+     * @param pkgPrefix 包路径，包括prefix
+     */
+    private static void scanJarFile(JarFile jarFile, String prefix, String pkgPrefix, ClassFilter filter,
+                                    Set<String> classNames) {
+        List<JarEntry> entries = new ArrayList<>();
+        for (JarEntry entry : Collections.list(jarFile.entries())) {
+            if (entry.getName().startsWith(pkgPrefix) && entry.getName().endsWith(CLASS_SUFFIX)) {
+                entries.add(entry);
+            }
         }
-        try {
-            return ComponentScanner.class.getClassLoader().getResources(path);
-        } catch (IOException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
+        entries.parallelStream().forEach(entry -> {
+            try (InputStream in = jarFile.getInputStream(entry)) {
+                if (filter.accept(in)) {
+                    classNames.add(classNameOf(entry.getName(), prefix));
+                }
+            } catch (IOException e) {
+                throw new DynamicCompileException("读取" + entry.getName() + "失败：" + e.getMessage());
+            }
+        });
+    }
+
+    private static void scanJarStream(JarInputStream jar, String prefix, String pkgPrefix, ClassFilter filter,
+                                      Set<String> classNames) throws IOException {
+        for (JarEntry entry = jar.getNextJarEntry(); entry != null; entry = jar.getNextJarEntry()) {
+            if (entry.getName().startsWith(pkgPrefix) && entry.getName().endsWith(CLASS_SUFFIX) && filter.accept(jar)) {
+                classNames.add(classNameOf(entry.getName(), prefix));
+            }
+        }
+    }
+
+    private static String classNameOf(String entryName, String prefix) {
+        return entryName.substring(prefix.length(), entryName.length() - CLASS_SUFFIX.length()).replace('/', '.');
+    }
+
+    /**
+     * 遍历一个目录：子目录各分出一个任务，类文件在当前任务中读取头部
+     */
+    private static class DirectoryScan extends RecursiveAction {
+        private final File dir;
+        /**
+         * 目录对应的包名
+         */
+        private final String pkg;
+        private final ClassFilter filter;
+        private final Set<String> classNames;
+
+        DirectoryScan(File dir, String pkg, ClassFilter filter, Set<String> classNames) {
+            this.dir = dir;
+            this.pkg = pkg;
+            this.filter = filter;
+            this.classNames = classNames;
+        }
+
+        @Override
+        protected void compute() {
+            File[] files = dir.listFiles();
+            if (files == null) {
+                return;
+            }
+            List<DirectoryScan> subDirs = new ArrayList<>();
+            for (File file : files) {
+                String name = file.getName();
+                if (file.isDirectory()) {
+                    subDirs.add(new DirectoryScan(file, pkg + "." + name, filter, classNames));
+                } else if (name.endsWith(CLASS_SUFFIX)) {
+                    try (InputStream in = new FileInputStream(file)) {
+                        if (filter.accept(in)) {
+                            classNames.add(pkg + "." + name.substring(0, name.length() - CLASS_SUFFIX.length()));
+                        }
+                    } catch (IOException e) {
+                        throw new DynamicCompileException("读取" + file + "失败：" + e.getMessage());
+                    }
+                }
+            }
+            invokeAll(subDirs);
         }
     }
 
+    private interface ClassFilter {
+        /**
+         * @param in 类文件的内容，不需要时可以不读
+         */
+        boolean accept(InputStream in) throws IOException;
+    }
 }
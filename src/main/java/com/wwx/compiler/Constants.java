@@ -17,6 +17,10 @@ public interface Constants {
     String SELECT_PROVIDER = "@" + SelectProvider.class.getSimpleName();
     String DELETE_PROVIDER = "@" + DeleteProvider.class.getSimpleName();
     String UPDATE_PROVIDER = "@" + UpdateProvider.class.getSimpleName();
+    String LANG = "@" + Lang.class.getSimpleName();
+    String SELECT_FIXED = "@" + Select.class.getSimpleName();
+    String DELETE_FIXED = "@" + Delete.class.getSimpleName();
+    String UPDATE_FIXED = "@" + Update.class.getSimpleName();
 
     String PUBLIC = "public ";
     String PRIVATE = "private ";
@@ -1,14 +1,19 @@
 package com.wwx.compiler;
 
 import com.wwx.compiler.annotation.*;
+import com.wwx.compiler.exception.IDaoNoIdException;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface Dao<T> {
 
     @AutoInsert
     int INSERT(T t);
 
+    @AutoInsertBatch
+    int[] INSERT_BATCH(List<T> list);
+
     @AutoDelete
     int DELETE(T t);
 
@@ -20,4 +25,25 @@ public interface Dao<T> {
 
     @AutoSelect
     List<T> SELECT(T t);
+
+    @AutoSelectStream
+    Stream<T> SELECT_STREAM(T t);
+
+    /**
+     * 实体类有@ID字段时由生成的Impl实现
+     */
+    @AutoSelectById
+    default T SELECT_BY_ID(Object id) {
+        throw new IDaoNoIdException(getClass().getName() + "的实体类没有@ID字段");
+    }
+
+    @AutoDeleteById
+    default int DELETE_BY_ID(Object id) {
+        throw new IDaoNoIdException(getClass().getName() + "的实体类没有@ID字段");
+    }
+
+    @AutoUpdateById
+    default int UPDATE_BY_ID(T t) {
+        throw new IDaoNoIdException(getClass().getName() + "的实体类没有@ID字段");
+    }
 }
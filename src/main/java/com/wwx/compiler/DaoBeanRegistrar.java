@@ -0,0 +1,100 @@
+package com.wwx.compiler;
+
+import com.wwx.compiler.annotation.EnableDaoProxy;
+import com.wwx.compiler.runtime.DaoExecutor;
+import com.wwx.compiler.util.StringUtils;
+import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.core.type.AnnotationMetadata;
+
+import java.beans.Introspector;
+
+/**
+ * 把DaoFactory在内存中生成的Mapper和Impl注册成bean
+ * 这些类没有class文件，@MapperScan和组件扫描都找不到，所以按扫描时的bean名手动注册
+ * Mapper使用{@link DaoMapperFactoryBean}，同时登记生成的行映射
+ * 有异步接口的dao还注册Impl中的异步实现，以及它们共用的{@link DaoExecutor}
+ */
+public class DaoBeanRegistrar implements ImportBeanDefinitionRegistrar {
+    /**
+     * 有异步dao时注册的执行器的bean名，已有同名bean时使用已有的
+     */
+    public static final String EXECUTOR_BEAN_NAME = "daoExecutor";
+
+    @Override
+    public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        AnnotationAttributes attributes = AnnotationAttributes.fromMap(
+                importingClassMetadata.getAnnotationAttributes(EnableDaoProxy.class.getName()));
+        String sqlSessionFactoryRef = attributes == null ? "" : attributes.getString("sqlSessionFactoryRef");
+
+        for (Class<?> mapperClass : DaoFactory.getMapperClasses()) {
+            String beanName = Introspector.decapitalize(mapperClass.getSimpleName());
+            if (registry.containsBeanDefinition(beanName)) {
+                // 预编译的Mapper先被@MapperScan注册了，换成能登记行映射的MapperFactoryBean
+                BeanDefinition existing = registry.getBeanDefinition(beanName);
+                if (MapperFactoryBean.class.getName().equals(existing.getBeanClassName())) {
+                    existing.setBeanClassName(DaoMapperFactoryBean.class.getName());
+                }
+                continue;
+            }
+            GenericBeanDefinition definition = new GenericBeanDefinition();
+            definition.setBeanClass(DaoMapperFactoryBean.class);
+            definition.getConstructorArgumentValues().addGenericArgumentValue(mapperClass);
+            if (StringUtils.isEmpty(sqlSessionFactoryRef)) {
+                definition.setAutowireMode(AutowireCapableBeanFactory.AUTOWIRE_BY_TYPE);
+            } else {
+                definition.getPropertyValues().add("sqlSessionFactory", new RuntimeBeanReference(sqlSessionFactoryRef));
+            }
+            registry.registerBeanDefinition(beanName, definition);
+        }
+        boolean hasAsync = false;
+        for (Class<?> implClass : DaoFactory.getImplClasses()) {
+            String beanName = Introspector.decapitalize(implClass.getSimpleName());
+            Class<?> asyncClass = asyncClassOf(implClass);
+            if (asyncClass != null) {
+                hasAsync = true;
+                registerIfAbsent(registry, beanName + DaoCodeBuilder.ASYNC, asyncClass);
+            }
+            registerIfAbsent(registry, beanName, implClass);
+        }
+        if (hasAsync && !registry.containsBeanDefinition(EXECUTOR_BEAN_NAME)) {
+            // 按SqlSessionFactory的连接池大小创建执行器，容器关闭时停止
+            GenericBeanDefinition definition = new GenericBeanDefinition();
+            definition.setBeanClass(DaoExecutor.class);
+            definition.setFactoryMethodName("forPool");
+            if (StringUtils.isEmpty(sqlSessionFactoryRef)) {
+                definition.setAutowireMode(AutowireCapableBeanFactory.AUTOWIRE_CONSTRUCTOR);
+            } else {
+                definition.getConstructorArgumentValues().addGenericArgumentValue(new RuntimeBeanReference(sqlSessionFactoryRef));
+            }
+            definition.setDestroyMethodName("shutdown");
+            registry.registerBeanDefinition(EXECUTOR_BEAN_NAME, definition);
+        }
+    }
+
+    private static void registerIfAbsent(BeanDefinitionRegistry registry, String beanName, Class<?> beanClass) {
+        if (registry.containsBeanDefinition(beanName)) {
+            return;
+        }
+        GenericBeanDefinition definition = new GenericBeanDefinition();
+        definition.setBeanClass(beanClass);
+        registry.registerBeanDefinition(beanName, definition);
+    }
+
+    /**
+     * @return Impl中实现异步接口的内部类，没有时为null
+     */
+    private static Class<?> asyncClassOf(Class<?> implClass) {
+        try {
+            return Class.forName(implClass.getName() + "$" + DaoCodeBuilder.ASYNC, false, implClass.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+}
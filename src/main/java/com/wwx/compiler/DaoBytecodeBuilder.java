@@ -0,0 +1,1404 @@
+package com.wwx.compiler;
+
+import com.wwx.compiler.annotation.AutoInsertBatch;
+import com.wwx.compiler.annotation.CacheById;
+import com.wwx.compiler.annotation.AutoSelectStream;
+import com.wwx.compiler.runtime.AsyncDaoSupport;
+import com.wwx.compiler.runtime.CachingLanguageDriver;
+import com.wwx.compiler.runtime.DaoBatch;
+import com.wwx.compiler.runtime.DaoRouting;
+import com.wwx.compiler.runtime.DaoStreams;
+import com.wwx.compiler.runtime.EntityRowMapper;
+import com.wwx.compiler.runtime.IdCache;
+import com.wwx.compiler.runtime.QueryCache;
+import com.wwx.compiler.runtime.SessionParams;
+import com.wwx.compiler.runtime.InsertBatchChunks;
+import com.wwx.compiler.runtime.JdbcCall;
+import com.wwx.compiler.runtime.JdbcColumns;
+import com.wwx.compiler.runtime.DaoMetrics;
+import com.wwx.compiler.runtime.MethodMetrics;
+import com.wwx.compiler.runtime.SqlLog;
+import com.wwx.compiler.runtime.SqlTemplate;
+import com.wwx.compiler.util.StringUtils;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.DeleteProvider;
+import org.apache.ibatis.annotations.InsertProvider;
+import org.apache.ibatis.annotations.Lang;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.SelectProvider;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.annotations.UpdateProvider;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.SqlSession;
+import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.mybatis.spring.support.SqlSessionDaoSupport;
+import org.springframework.asm.AnnotationVisitor;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * dao字节码生产器
+ * 和{@link DaoCodeBuilder}使用同一个SQL模型，直接生成Impl、Mapper、Provider的字节码，不经过javac
+ * 生成的类和源码方式编译出的类行为一致
+ */
+class DaoBytecodeBuilder implements Opcodes {
+    private static final String OBJECT = Type.getInternalName(Object.class);
+    private static final String OBJECT_DESC = Type.getDescriptor(Object.class);
+    private static final String TEMPLATE = Type.getInternalName(SqlTemplate.class);
+    private static final String TEMPLATE_DESC = Type.getDescriptor(SqlTemplate.class);
+    private static final String STRING_DESC = Type.getDescriptor(String.class);
+    private static final String LIST = Type.getInternalName(List.class);
+    private static final String LIST_DESC = Type.getDescriptor(List.class);
+    private static final String BIT_SET = Type.getInternalName(BitSet.class);
+    private static final String BIT_SET_DESC = Type.getDescriptor(BitSet.class);
+    private static final String SQL_LOG = Type.getInternalName(SqlLog.class);
+    private static final String DAO_ROUTING = Type.getInternalName(DaoRouting.class);
+    private static final String METHOD_METRICS = Type.getInternalName(MethodMetrics.class);
+    private static final String METHOD_METRICS_DESC = Type.getDescriptor(MethodMetrics.class);
+    private static final String CURSOR_DESC = Type.getDescriptor(Cursor.class);
+    private static final String ID_CACHE = Type.getInternalName(IdCache.class);
+    private static final String ID_CACHE_DESC = Type.getDescriptor(IdCache.class);
+    private static final String QUERY_CACHE = Type.getInternalName(QueryCache.class);
+    private static final String QUERY_CACHE_DESC = Type.getDescriptor(QueryCache.class);
+    private static final String JDBC_CALL = Type.getInternalName(JdbcCall.class);
+    private static final String JDBC_CALL_DESC = Type.getDescriptor(JdbcCall.class);
+    private static final String JDBC_COLUMNS = Type.getInternalName(JdbcColumns.class);
+    private static final String JDBC_COLUMNS_DESC = Type.getDescriptor(JdbcColumns.class);
+
+    private final DaoCodeBuilder daoCodeBuilder;
+    private final List<DaoCodeBuilder.ProviderMethodCodeCache> methods;
+    private final String beanName;
+    private final String beanDesc;
+    /**
+     * List<实体>的泛型签名
+     */
+    private final String listOfBean;
+    private final String implName;
+    private final String mapperName;
+    private final String providerName;
+    /**
+     * Mapper中的行映射，实体不支持时为null
+     */
+    private final List<DaoCodeBuilder.RowColumn> rowMapperColumns;
+    private final String rowMapperName;
+    private final String asyncName;
+
+    DaoBytecodeBuilder(Class<?> iDao) {
+        daoCodeBuilder = new DaoCodeBuilder(iDao);
+        methods = daoCodeBuilder.buildModels();
+        beanName = Type.getInternalName(daoCodeBuilder.getBeanClz());
+        beanDesc = Type.getDescriptor(daoCodeBuilder.getBeanClz());
+        listOfBean = LIST_DESC.replace(";", "<" + beanDesc + ">;");
+        implName = daoCodeBuilder.getImplClassName().replace('.', '/');
+        mapperName = daoCodeBuilder.getMapperClassName().replace('.', '/');
+        providerName = daoCodeBuilder.getProviderClassName().replace('.', '/');
+        rowMapperColumns = daoCodeBuilder.rowMapperColumns();
+        rowMapperName = mapperName + "$" + DaoCodeBuilder.ROW_MAPPER;
+        asyncName = implName + "$" + DaoCodeBuilder.ASYNC;
+    }
+
+    DaoCodeBuilder getDaoCodeBuilder() {
+        return daoCodeBuilder;
+    }
+
+    /**
+     * @return 类全名->字节码
+     */
+    Map<String, byte[]> build() {
+        Map<String, byte[]> classBytes = new HashMap<>(3);
+        classBytes.put(daoCodeBuilder.getProviderClassName(), buildProvider());
+        classBytes.put(daoCodeBuilder.getMapperClassName(), buildMapper());
+        if (rowMapperColumns != null) {
+            classBytes.put(daoCodeBuilder.getMapperClassName() + "$" + DaoCodeBuilder.ROW_MAPPER, buildRowMapper());
+        }
+        classBytes.put(daoCodeBuilder.getImplClassName(), buildImpl());
+        if (daoCodeBuilder.getAsyncMethods() != null) {
+            classBytes.put(daoCodeBuilder.getImplClassName() + "$" + DaoCodeBuilder.ASYNC, buildAsync());
+        }
+        return classBytes;
+    }
+
+    private byte[] buildProvider() {
+        ClassWriter cw = newClassWriter();
+        cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, providerName, null, OBJECT, null);
+        writeDefaultConstructor(cw);
+        // templates
+        MethodVisitor clinit = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        clinit.visitCode();
+        for (DaoCodeBuilder.ProviderMethodCodeCache method : methods) {
+            SqlMethodModel model = method.getModel();
+            if (model.isFixed()) {
+                continue;
+            }
+            FieldVisitor fv = cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, model.getTemplateField(), TEMPLATE_DESC, null, null);
+            fv.visitEnd();
+            writeTemplate(clinit, model);
+            clinit.visitFieldInsn(PUTSTATIC, providerName, model.getTemplateField(), TEMPLATE_DESC);
+        }
+        clinit.visitInsn(RETURN);
+        clinit.visitMaxs(0, 0);
+        clinit.visitEnd();
+        // methods
+        for (DaoCodeBuilder.ProviderMethodCodeCache method : methods) {
+            if (!method.getModel().isFixed()) {
+                writeProviderMethod(cw, method.getModel());
+            }
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * 按模型创建模板，留在栈顶
+     */
+    private static void writeTemplate(MethodVisitor clinit, SqlMethodModel model) {
+        clinit.visitLdcInsn(model.getTable());
+        if (model.getColumns() != null) {
+            clinit.visitLdcInsn(model.getColumns());
+            clinit.visitMethodInsn(INVOKESTATIC, TEMPLATE, model.getType(), "(" + STRING_DESC + STRING_DESC + ")" + TEMPLATE_DESC, false);
+        } else {
+            clinit.visitMethodInsn(INVOKESTATIC, TEMPLATE, model.getType(), "(" + STRING_DESC + ")" + TEMPLATE_DESC, false);
+        }
+        for (SqlMethodModel.Clause clause : model.getClauses()) {
+            pushInt(clinit, clause.getBit());
+            StringBuilder desc = new StringBuilder("(I");
+            for (String arg : clause.getArgs()) {
+                clinit.visitLdcInsn(arg);
+                desc.append(STRING_DESC);
+            }
+            desc.append(")").append(TEMPLATE_DESC);
+            clinit.visitMethodInsn(INVOKEVIRTUAL, TEMPLATE, clause.getMethod(), desc.toString(), false);
+        }
+        if (model.getOrderBy() != null) {
+            clinit.visitLdcInsn(model.getOrderBy());
+            clinit.visitMethodInsn(INVOKEVIRTUAL, TEMPLATE, "orderBy", "(" + STRING_DESC + ")" + TEMPLATE_DESC, false);
+        }
+        if (model.getLimit() > 0) {
+            pushInt(clinit, model.getLimit());
+            clinit.visitMethodInsn(INVOKEVIRTUAL, TEMPLATE, model.getLimitMethod(), "(I)" + TEMPLATE_DESC, false);
+        }
+    }
+
+    /**
+     * 计算参数掩码，按掩码从模板取SQL，与{@link DaoCodeBuilder.ProviderMethodCodeCache}输出的源码等价
+     */
+    private void writeProviderMethod(ClassWriter cw, SqlMethodModel model) {
+        List<String> params = model.getParams();
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, model.getMethodName(), paramsDescriptor(model) + STRING_DESC, null, null);
+        if (params.size() > 1 || model.isBatch()) {
+            writeParamAnnotations(mv, params);
+        }
+        mv.visitCode();
+        int maskIndex = params.size() + 1;
+        writeMask(mv, model, maskIndex);
+        mv.visitFieldInsn(GETSTATIC, providerName, model.getTemplateField(), TEMPLATE_DESC);
+        writeTemplateSql(mv, model, maskIndex);
+        mv.visitMethodInsn(INVOKESTATIC, SQL_LOG, "capture", "(" + STRING_DESC + ")" + STRING_DESC, false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 栈顶是模板，按maskIndex中的掩码取SQL
+     */
+    private void writeTemplateSql(MethodVisitor mv, SqlMethodModel model, int maskIndex) {
+        String maskDesc = model.isWideMask() ? BIT_SET_DESC : "J";
+        mv.visitVarInsn(model.isWideMask() ? ALOAD : LLOAD, maskIndex);
+        if (model.isBatch()) {
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitMethodInsn(INVOKEINTERFACE, LIST, "size", "()I", true);
+            mv.visitMethodInsn(INVOKEVIRTUAL, TEMPLATE, "sql", "(" + maskDesc + "I)" + STRING_DESC, false);
+        } else {
+            mv.visitMethodInsn(INVOKEVIRTUAL, TEMPLATE, "sql", "(" + maskDesc + ")" + STRING_DESC, false);
+        }
+    }
+
+    /**
+     * 计算参数掩码存入maskIndex，可选条件超过64个时是BitSet；多行INSERT遍历每一行，maskIndex之后的两个局部变量存迭代器和当前行
+     */
+    private void writeMask(MethodVisitor mv, SqlMethodModel model, int maskIndex) {
+        List<String> params = model.getParams();
+        int iteratorIndex = maskIndex + 2;
+        int rowIndex = iteratorIndex + 1;
+        if (model.isWideMask()) {
+            mv.visitTypeInsn(NEW, BIT_SET);
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKESPECIAL, BIT_SET, "<init>", "()V", false);
+            mv.visitVarInsn(ASTORE, maskIndex);
+        } else {
+            mv.visitInsn(LCONST_0);
+            mv.visitVarInsn(LSTORE, maskIndex);
+        }
+        Label loop = new Label();
+        Label loopEnd = new Label();
+        if (model.isBatch()) {
+            writeLoopStart(mv, loop, loopEnd, iteratorIndex, rowIndex);
+        }
+        List<SqlMethodModel.Check> checks = model.getChecks();
+        for (int bit = 0; bit < checks.size(); bit++) {
+            SqlMethodModel.Check check = checks.get(bit);
+            Method getter = check.getGetter();
+            Label skip = new Label();
+            mv.visitVarInsn(ALOAD, model.isBatch() ? rowIndex : params.indexOf(check.getParam()) + 1);
+            mv.visitMethodInsn(INVOKEVIRTUAL, beanName, getter.getName(), Type.getMethodDescriptor(getter), false);
+            if (check.isEmptyString()) {
+                mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(StringUtils.class), "isEmpty",
+                        "(" + STRING_DESC + ")Z", false);
+                mv.visitJumpInsn(IFNE, skip);
+            } else {
+                mv.visitJumpInsn(IFNULL, skip);
+            }
+            if (model.isWideMask()) {
+                mv.visitVarInsn(ALOAD, maskIndex);
+                pushInt(mv, bit);
+                mv.visitMethodInsn(INVOKEVIRTUAL, BIT_SET, "set", "(I)V", false);
+            } else {
+                mv.visitVarInsn(LLOAD, maskIndex);
+                mv.visitLdcInsn(1L << bit);
+                mv.visitInsn(LOR);
+                mv.visitVarInsn(LSTORE, maskIndex);
+            }
+            mv.visitLabel(skip);
+        }
+        if (model.isBatch()) {
+            mv.visitJumpInsn(GOTO, loop);
+            mv.visitLabel(loopEnd);
+        }
+    }
+
+    /**
+     * 遍历第一个参数（实体的List）的循环开头，当前行存入rowIndex
+     */
+    private void writeLoopStart(MethodVisitor mv, Label loop, Label loopEnd, int iteratorIndex, int rowIndex) {
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEINTERFACE, LIST, "iterator", "()" + Type.getDescriptor(Iterator.class), true);
+        mv.visitVarInsn(ASTORE, iteratorIndex);
+        mv.visitLabel(loop);
+        mv.visitVarInsn(ALOAD, iteratorIndex);
+        mv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(Iterator.class), "hasNext", "()Z", true);
+        mv.visitJumpInsn(IFEQ, loopEnd);
+        mv.visitVarInsn(ALOAD, iteratorIndex);
+        mv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(Iterator.class), "next", "()" + OBJECT_DESC, true);
+        mv.visitTypeInsn(CHECKCAST, beanName);
+        mv.visitVarInsn(ASTORE, rowIndex);
+    }
+
+    private byte[] buildMapper() {
+        ClassWriter cw = newClassWriter();
+        cw.visit(V1_8, ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE, mapperName, null, OBJECT, null);
+        cw.visitAnnotation(Type.getDescriptor(Mapper.class), true).visitEnd();
+        if (rowMapperColumns != null) {
+            cw.visitInnerClass(rowMapperName, mapperName, DaoCodeBuilder.ROW_MAPPER, ACC_PUBLIC | ACC_STATIC);
+        }
+        for (DaoCodeBuilder.ProviderMethodCodeCache method : methods) {
+            SqlMethodModel model = method.getModel();
+            String signature = null;
+            if ("AutoSelect".equals(method.getMode())) {
+                signature = "(" + beanDesc + ")" + listOfBean;
+            } else if ("AutoSelectStream".equals(method.getMode())) {
+                signature = "(" + beanDesc + ")" + CURSOR_DESC.replace(";", "<" + beanDesc + ">;");
+            } else if (model.isBatch()) {
+                signature = "(" + listOfBean + ")I";
+            }
+            MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_ABSTRACT, model.getMethodName(),
+                    mapperMethodDescriptor(method), signature, null);
+            AnnotationVisitor lang = mv.visitAnnotation(Type.getDescriptor(Lang.class), true);
+            lang.visit("value", Type.getType(CachingLanguageDriver.class));
+            lang.visitEnd();
+            if (model.isFixed()) {
+                AnnotationVisitor av = mv.visitAnnotation(Type.getDescriptor(fixedAnnotation(method.getMode())), true);
+                AnnotationVisitor value = av.visitArray("value");
+                value.visit(null, model.getFixedSql());
+                value.visitEnd();
+                av.visitEnd();
+            } else {
+                AnnotationVisitor av = mv.visitAnnotation(Type.getDescriptor(providerAnnotation(method.getMode())), true);
+                av.visit("type", Type.getObjectType(providerName));
+                av.visit("method", model.getMethodName());
+                av.visitEnd();
+            }
+            if ("AutoSelectStream".equals(method.getMode())) {
+                AnnotationVisitor options = mv.visitAnnotation(Type.getDescriptor(Options.class), true);
+                options.visit("fetchSize", DaoCodeBuilder.fetchSize((AutoSelectStream) method.getAnt()));
+                options.visitEnum("resultSetType", Type.getDescriptor(ResultSetType.class), ResultSetType.FORWARD_ONLY.name());
+                options.visitEnd();
+            }
+            if (model.getParams().size() > 1 || model.isBatch()) {
+                writeParamAnnotations(mv, model.getParams());
+            }
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Mapper中的行映射，与源码中的内部类等价；newRow、set直接实现擦除后的方法，不需要桥接方法
+     */
+    private byte[] buildRowMapper() {
+        String superName = Type.getInternalName(EntityRowMapper.class);
+        ClassWriter cw = newClassWriter();
+        cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, rowMapperName, "L" + superName + "<" + beanDesc + ">;", superName, null);
+        cw.visitInnerClass(rowMapperName, mapperName, DaoCodeBuilder.ROW_MAPPER, ACC_PUBLIC | ACC_STATIC);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitLdcInsn(Type.getObjectType(beanName));
+        mv.visitLdcInsn(DaoCodeBuilder.rowMapperProperties(rowMapperColumns));
+        mv.visitLdcInsn(DaoCodeBuilder.rowMapperTypes(rowMapperColumns));
+        mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>",
+                "(" + Type.getDescriptor(Class.class) + STRING_DESC + STRING_DESC + ")V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PROTECTED, "newRow", "()" + OBJECT_DESC, null, null);
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, beanName);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, beanName, "<init>", "()V", false);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PROTECTED, "set", "(" + OBJECT_DESC + "I" + OBJECT_DESC + ")V", null, null);
+        mv.visitCode();
+        Label end = new Label();
+        Label[] cases = new Label[rowMapperColumns.size()];
+        for (int i = 0; i < cases.length; i++) {
+            cases[i] = new Label();
+        }
+        mv.visitVarInsn(ILOAD, 2);
+        mv.visitTableSwitchInsn(0, cases.length - 1, end, cases);
+        for (int i = 0; i < cases.length; i++) {
+            Method setter = rowMapperColumns.get(i).getSetter();
+            mv.visitLabel(cases[i]);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, beanName);
+            mv.visitVarInsn(ALOAD, 3);
+            mv.visitTypeInsn(CHECKCAST, Type.getInternalName(setter.getParameterTypes()[0]));
+            mv.visitMethodInsn(INVOKEVIRTUAL, beanName, setter.getName(), Type.getMethodDescriptor(setter), false);
+            Type setterReturn = Type.getReturnType(setter);
+            if (setterReturn.getSort() != Type.VOID) {
+                mv.visitInsn(setterReturn.getSize() == 2 ? POP2 : POP);
+            }
+            mv.visitJumpInsn(GOTO, end);
+        }
+        mv.visitLabel(end);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private byte[] buildImpl() {
+        ClassWriter cw = newClassWriter();
+        cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, implName, null, OBJECT,
+                new String[]{Type.getInternalName(daoCodeBuilder.getIDao())});
+        cw.visitAnnotation(Type.getDescriptor(Component.class), true).visitEnd();
+        if (daoCodeBuilder.getAsyncMethods() != null) {
+            cw.visitInnerClass(asyncName, implName, DaoCodeBuilder.ASYNC, ACC_PUBLIC | ACC_STATIC);
+        }
+        String mapperDesc = "L" + mapperName + ";";
+        FieldVisitor fv = cw.visitField(ACC_PRIVATE, "mapper", mapperDesc, null, null);
+        fv.visitAnnotation(Type.getDescriptor(Autowired.class), true).visitEnd();
+        fv.visitEnd();
+        if (daoCodeBuilder.hasStreamMethods() || daoCodeBuilder.hasJdbcMethods() || daoCodeBuilder.hasSessionMethods()) {
+            fv = cw.visitField(ACC_PRIVATE, "mapperFactory", Type.getDescriptor(MapperFactoryBean.class),
+                    Type.getDescriptor(MapperFactoryBean.class).replace(";", "<" + mapperDesc + ">;"), null);
+            AnnotationVisitor resource = fv.visitAnnotation(Type.getDescriptor(Resource.class), true);
+            resource.visit("name", "&" + daoCodeBuilder.getMapperBeanName());
+            resource.visitEnd();
+            fv.visitEnd();
+        }
+        for (DaoCodeBuilder.ProviderMethodCodeCache method : methods) {
+            if (daoCodeBuilder.isSession(method.getMethod())) {
+                cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, method.getModel().getStatementField(), STRING_DESC, null,
+                        daoCodeBuilder.getStatementId(method.getMethod())).visitEnd();
+            }
+        }
+        writeDefaultConstructor(cw);
+        CacheById cacheAnt = daoCodeBuilder.cacheAnt();
+        boolean queryCache = daoCodeBuilder.hasQueryCache();
+        boolean jdbc = daoCodeBuilder.hasJdbcMethods();
+        MethodVisitor clinit = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        clinit.visitCode();
+        // 各方法的统计
+        for (DaoCodeBuilder.ProviderMethodCodeCache method : methods) {
+            String field = method.getModel().getMetricsField();
+            cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, field, METHOD_METRICS_DESC, null, null).visitEnd();
+            clinit.visitLdcInsn(daoCodeBuilder.getIDao().getName());
+            clinit.visitLdcInsn(method.getMethod().getName());
+            clinit.visitLdcInsn(method.getModel().getParamNames());
+            clinit.visitLdcInsn(method.getModel().getCheckNames());
+            clinit.visitMethodInsn(INVOKESTATIC, Type.getInternalName(DaoMetrics.class), "method",
+                    "(" + STRING_DESC + STRING_DESC + STRING_DESC + STRING_DESC + ")" + METHOD_METRICS_DESC, false);
+            clinit.visitFieldInsn(PUTSTATIC, implName, field, METHOD_METRICS_DESC);
+        }
+        if (cacheAnt != null) {
+            cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, DaoCodeBuilder.CACHE_FIELD, ID_CACHE_DESC, null, null).visitEnd();
+            clinit.visitLdcInsn(Type.getObjectType(beanName));
+            clinit.visitLdcInsn(Type.getType(daoCodeBuilder.idType()));
+            pushInt(clinit, cacheAnt.maxSize());
+            clinit.visitLdcInsn(cacheAnt.ttlSeconds());
+            String classDesc = Type.getDescriptor(Class.class);
+            clinit.visitMethodInsn(INVOKESTATIC, ID_CACHE, "of", "(" + classDesc + classDesc + "IJ)" + ID_CACHE_DESC, false);
+            clinit.visitFieldInsn(PUTSTATIC, implName, DaoCodeBuilder.CACHE_FIELD, ID_CACHE_DESC);
+        }
+        if (queryCache) {
+            cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, DaoCodeBuilder.QUERY_CACHE_FIELD, QUERY_CACHE_DESC, null, null).visitEnd();
+            clinit.visitLdcInsn(daoCodeBuilder.getTable());
+            clinit.visitMethodInsn(INVOKESTATIC, QUERY_CACHE, "of", "(" + STRING_DESC + ")" + QUERY_CACHE_DESC, false);
+            clinit.visitFieldInsn(PUTSTATIC, implName, DaoCodeBuilder.QUERY_CACHE_FIELD, QUERY_CACHE_DESC);
+        }
+        if (jdbc) {
+            writeJdbcFields(cw, clinit);
+        }
+        clinit.visitInsn(RETURN);
+        clinit.visitMaxs(0, 0);
+        clinit.visitEnd();
+        for (DaoCodeBuilder.ProviderMethodCodeCache method : methods) {
+            writeImplMethod(cw, method, mapperDesc);
+            if (daoCodeBuilder.isJdbc(method.getMethod())) {
+                writeJdbcMethod(cw, method, mapperDesc);
+            }
+            if (daoCodeBuilder.isSession(method.getMethod())) {
+                writeSessionMethod(cw, method);
+            }
+        }
+        if (daoCodeBuilder.hasJdbcSelects()) {
+            writeMapRows(cw);
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * jdbc引擎的模板和结果列，与源码中的静态字段等价
+     */
+    private void writeJdbcFields(ClassWriter cw, MethodVisitor clinit) {
+        for (DaoCodeBuilder.ProviderMethodCodeCache method : methods) {
+            if (!daoCodeBuilder.isJdbc(method.getMethod())) {
+                continue;
+            }
+            SqlMethodModel model = method.getModel();
+            if (!model.isFixed()) {
+                cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, model.getJdbcTemplateField(), TEMPLATE_DESC, null, null).visitEnd();
+                writeTemplate(clinit, model);
+                clinit.visitMethodInsn(INVOKEVIRTUAL, TEMPLATE, "jdbc", "()" + TEMPLATE_DESC, false);
+                clinit.visitFieldInsn(PUTSTATIC, implName, model.getJdbcTemplateField(), TEMPLATE_DESC);
+            }
+            if (SqlMethodModel.SELECT.equals(model.getType())) {
+                cw.visitField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, model.getColumnsField(), JDBC_COLUMNS_DESC, null, null).visitEnd();
+                clinit.visitTypeInsn(NEW, JDBC_COLUMNS);
+                clinit.visitInsn(DUP);
+                clinit.visitLdcInsn(daoCodeBuilder.rowLabels());
+                clinit.visitMethodInsn(INVOKESPECIAL, JDBC_COLUMNS, "<init>", "(" + STRING_DESC + ")V", false);
+                clinit.visitFieldInsn(PUTSTATIC, implName, model.getColumnsField(), JDBC_COLUMNS_DESC);
+            }
+        }
+    }
+
+    /**
+     * jdbc引擎执行语句的方法，与源码中的jdbc_方法等价：
+     * 写方法在批量作用域中调用批量SqlSession的mapper；否则计算掩码，取?占位的SQL，依次绑定参数，执行后关闭
+     */
+    /**
+     * Impl中的异步实现，与源码中的内部类等价；实现异步接口中每个擦除后的方法，不需要桥接方法
+     */
+    private byte[] buildAsync() {
+        String superName = Type.getInternalName(AsyncDaoSupport.class);
+        Class<?> iDao = daoCodeBuilder.getIDao();
+        String daoName = Type.getInternalName(iDao);
+        String daoDesc = Type.getDescriptor(iDao);
+        String futureDesc = Type.getDescriptor(CompletableFuture.class);
+        String argsDesc = "[" + OBJECT_DESC;
+        List<DaoCodeBuilder.AsyncMethod> asyncMethods = daoCodeBuilder.getAsyncMethods();
+        ClassWriter cw = newClassWriter();
+        cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, asyncName, null, superName,
+                new String[]{Type.getInternalName(daoCodeBuilder.asyncInterface())});
+        cw.visitInnerClass(asyncName, implName, DaoCodeBuilder.ASYNC, ACC_PUBLIC | ACC_STATIC);
+        FieldVisitor fv = cw.visitField(ACC_PRIVATE, "dao", daoDesc, null, null);
+        fv.visitAnnotation(Type.getDescriptor(Autowired.class), true).visitEnd();
+        fv.visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitLdcInsn(iDao.getName());
+        mv.visitMethodInsn(INVOKESPECIAL, superName, "<init>", "(" + STRING_DESC + ")V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        for (int i = 0; i < asyncMethods.size(); i++) {
+            for (Method method : asyncMethods.get(i).getMethods()) {
+                mv = cw.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+                mv.visitCode();
+                mv.visitVarInsn(ALOAD, 0);
+                pushInt(mv, i);
+                Type[] argumentTypes = Type.getArgumentTypes(method);
+                pushInt(mv, argumentTypes.length);
+                mv.visitTypeInsn(ANEWARRAY, OBJECT);
+                int local = 1;
+                for (int j = 0; j < argumentTypes.length; j++) {
+                    mv.visitInsn(DUP);
+                    pushInt(mv, j);
+                    mv.visitVarInsn(argumentTypes[j].getOpcode(ILOAD), local);
+                    box(mv, argumentTypes[j]);
+                    mv.visitInsn(AASTORE);
+                    local += argumentTypes[j].getSize();
+                }
+                mv.visitMethodInsn(INVOKEVIRTUAL, superName, "submit", "(I" + argsDesc + ")" + futureDesc, false);
+                mv.visitInsn(ARETURN);
+                mv.visitMaxs(0, 0);
+                mv.visitEnd();
+            }
+        }
+
+        mv = cw.visitMethod(ACC_PROTECTED, "call", "(I" + argsDesc + ")" + OBJECT_DESC, null, null);
+        mv.visitCode();
+        Label noMethod = new Label();
+        Label[] cases = new Label[asyncMethods.size()];
+        for (int i = 0; i < cases.length; i++) {
+            cases[i] = new Label();
+        }
+        mv.visitVarInsn(ILOAD, 1);
+        if (cases.length > 0) {
+            mv.visitTableSwitchInsn(0, cases.length - 1, noMethod, cases);
+        } else {
+            mv.visitInsn(POP);
+        }
+        for (int i = 0; i < cases.length; i++) {
+            Method daoMethod = asyncMethods.get(i).getDaoMethod();
+            mv.visitLabel(cases[i]);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, asyncName, "dao", daoDesc);
+            Class<?>[] parameterTypes = daoMethod.getParameterTypes();
+            for (int j = 0; j < parameterTypes.length; j++) {
+                mv.visitVarInsn(ALOAD, 2);
+                pushInt(mv, j);
+                mv.visitInsn(AALOAD);
+                if (!Object.class.equals(parameterTypes[j])) {
+                    mv.visitTypeInsn(CHECKCAST, Type.getInternalName(parameterTypes[j]));
+                }
+            }
+            mv.visitMethodInsn(INVOKEINTERFACE, daoName, daoMethod.getName(), Type.getMethodDescriptor(daoMethod), true);
+            Type returnType = Type.getReturnType(daoMethod);
+            if (returnType.getSort() == Type.VOID) {
+                mv.visitInsn(ACONST_NULL);
+            } else {
+                box(mv, returnType);
+            }
+            mv.visitInsn(ARETURN);
+        }
+        mv.visitLabel(noMethod);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, superName, "noMethod", "(I)" + Type.getDescriptor(RuntimeException.class), false);
+        mv.visitInsn(ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private void writeJdbcMethod(ClassWriter cw, DaoCodeBuilder.ProviderMethodCodeCache method, String mapperDesc) {
+        SqlMethodModel model = method.getModel();
+        String desc = mapperMethodDescriptor(method);
+        Type returnType = Type.getReturnType(desc);
+        int paramNum = model.getParams().size();
+        int maskIndex = paramNum + 1;
+        int iteratorIndex = maskIndex + 2;
+        int rowIndex = iteratorIndex + 1;
+        int callIndex = rowIndex + 1;
+        int resultIndex = callIndex + 1;
+        int throwableIndex = resultIndex + 2;
+        MethodVisitor mv = cw.visitMethod(ACC_PRIVATE, DaoCodeBuilder.JDBC_PREFIX + model.getMethodName(), desc, null, null);
+        mv.visitCode();
+        if (DaoCodeBuilder.isWriteMode(method.getMode())) {
+            Label direct = new Label();
+            mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(DaoBatch.class), "current",
+                    "()" + Type.getDescriptor(DaoBatch.class), false);
+            mv.visitJumpInsn(IFNULL, direct);
+            loadMapperTarget(mv, method, mapperDesc);
+            for (int i = 1; i <= paramNum; i++) {
+                mv.visitVarInsn(ALOAD, i);
+            }
+            invokeMapperTarget(mv, method);
+            mv.visitInsn(returnType.getOpcode(IRETURN));
+            mv.visitLabel(direct);
+        }
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, implName, "mapperFactory", Type.getDescriptor(MapperFactoryBean.class));
+        if (model.isFixed()) {
+            mv.visitLdcInsn(SqlTemplate.jdbcSql(model.getFixedSql()));
+        } else {
+            writeMask(mv, model, maskIndex);
+            mv.visitFieldInsn(GETSTATIC, implName, model.getJdbcTemplateField(), TEMPLATE_DESC);
+            writeTemplateSql(mv, model, maskIndex);
+        }
+        mv.visitMethodInsn(INVOKESTATIC, SQL_LOG, "capture", "(" + STRING_DESC + ")" + STRING_DESC, false);
+        mv.visitMethodInsn(INVOKESTATIC, JDBC_CALL, "prepare",
+                "(" + Type.getDescriptor(SqlSessionDaoSupport.class) + STRING_DESC + ")" + JDBC_CALL_DESC, false);
+        mv.visitVarInsn(ASTORE, callIndex);
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        mv.visitTryCatchBlock(tryStart, tryEnd, handler, null);
+        mv.visitLabel(tryStart);
+        Label loop = new Label();
+        Label loopEnd = new Label();
+        if (model.isBatch()) {
+            writeLoopStart(mv, loop, loopEnd, iteratorIndex, rowIndex);
+        }
+        for (DaoCodeBuilder.JdbcParam param : daoCodeBuilder.jdbcParams(model)) {
+            Label skip = new Label();
+            if (param.getBit() != SqlTemplate.ALWAYS && model.isWideMask()) {
+                mv.visitVarInsn(ALOAD, maskIndex);
+                pushInt(mv, param.getBit());
+                mv.visitMethodInsn(INVOKEVIRTUAL, BIT_SET, "get", "(I)Z", false);
+                mv.visitJumpInsn(IFEQ, skip);
+            } else if (param.getBit() != SqlTemplate.ALWAYS) {
+                mv.visitVarInsn(LLOAD, maskIndex);
+                mv.visitLdcInsn(1L << param.getBit());
+                mv.visitInsn(LAND);
+                mv.visitInsn(LCONST_0);
+                mv.visitInsn(LCMP);
+                mv.visitJumpInsn(IFEQ, skip);
+            }
+            mv.visitVarInsn(ALOAD, callIndex);
+            mv.visitVarInsn(ALOAD, model.isBatch() ? rowIndex : model.getParams().indexOf(param.getParam()) + 1);
+            Method getter = param.getGetter();
+            if (getter != null) {
+                mv.visitMethodInsn(INVOKEVIRTUAL, beanName, getter.getName(), Type.getMethodDescriptor(getter), false);
+                box(mv, Type.getType(getter.getReturnType()));
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, JDBC_CALL, param.getSetter(), jdbcCallDescriptor(param.getSetter()), false);
+            mv.visitLabel(skip);
+        }
+        if (model.isBatch()) {
+            mv.visitJumpInsn(GOTO, loop);
+            mv.visitLabel(loopEnd);
+        }
+        if (SqlMethodModel.SELECT.equals(model.getType())) {
+            mv.visitVarInsn(ALOAD, callIndex);
+            mv.visitFieldInsn(GETSTATIC, implName, model.getColumnsField(), JDBC_COLUMNS_DESC);
+            mv.visitMethodInsn(INVOKESTATIC, implName, DaoCodeBuilder.MAP_ROWS,
+                    "(" + JDBC_CALL_DESC + JDBC_COLUMNS_DESC + ")" + LIST_DESC, false);
+            if (!"AutoSelect".equals(method.getMode())) {
+                mv.visitMethodInsn(INVOKESTATIC, JDBC_CALL, "one", "(" + LIST_DESC + ")" + OBJECT_DESC, false);
+                mv.visitTypeInsn(CHECKCAST, beanName);
+            }
+        } else {
+            mv.visitVarInsn(ALOAD, callIndex);
+            mv.visitMethodInsn(INVOKEVIRTUAL, JDBC_CALL, "update", "()I", false);
+            writeUpdateResult(mv, daoCodeBuilder.updateReturn(method.getMethod()), returnType);
+        }
+        mv.visitVarInsn(returnType.getOpcode(ISTORE), resultIndex);
+        mv.visitLabel(tryEnd);
+        mv.visitVarInsn(ALOAD, callIndex);
+        mv.visitMethodInsn(INVOKEVIRTUAL, JDBC_CALL, "close", "()V", false);
+        mv.visitVarInsn(returnType.getOpcode(ILOAD), resultIndex);
+        mv.visitInsn(returnType.getOpcode(IRETURN));
+        mv.visitLabel(handler);
+        mv.visitVarInsn(ASTORE, throwableIndex);
+        mv.visitVarInsn(ALOAD, callIndex);
+        mv.visitMethodInsn(INVOKEVIRTUAL, JDBC_CALL, "close", "()V", false);
+        mv.visitVarInsn(ALOAD, throwableIndex);
+        mv.visitInsn(ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 把栈顶的行数转换为写方法的返回类型，见{@link DaoCodeBuilder#updateReturn(Method)}
+     */
+    private static void writeUpdateResult(MethodVisitor mv, String kind, Type returnType) {
+        Type primitive = Type.INT_TYPE;
+        if ("long".equals(kind)) {
+            mv.visitInsn(I2L);
+            primitive = Type.LONG_TYPE;
+        } else if ("boolean".equals(kind)) {
+            Label zero = new Label();
+            Label done = new Label();
+            mv.visitJumpInsn(IFLE, zero);
+            mv.visitInsn(ICONST_1);
+            mv.visitJumpInsn(GOTO, done);
+            mv.visitLabel(zero);
+            mv.visitInsn(ICONST_0);
+            mv.visitLabel(done);
+            primitive = Type.BOOLEAN_TYPE;
+        }
+        if (returnType.getSort() == Type.OBJECT) {
+            box(mv, primitive);
+        }
+    }
+
+    /**
+     * jdbc引擎的行映射，与源码中的mapRows等价
+     */
+    private void writeMapRows(ClassWriter cw) {
+        String arrayList = Type.getInternalName(ArrayList.class);
+        MethodVisitor mv = cw.visitMethod(ACC_PRIVATE | ACC_STATIC, DaoCodeBuilder.MAP_ROWS,
+                "(" + JDBC_CALL_DESC + JDBC_COLUMNS_DESC + ")" + LIST_DESC, listOfBean.replace(LIST_DESC, "(" + JDBC_CALL_DESC
+                        + JDBC_COLUMNS_DESC + ")" + LIST_DESC), null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, JDBC_CALL, "query", "(" + JDBC_COLUMNS_DESC + ")[I", false);
+        mv.visitVarInsn(ASTORE, 2);
+        mv.visitTypeInsn(NEW, arrayList);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, arrayList, "<init>", "()V", false);
+        mv.visitVarInsn(ASTORE, 3);
+        Label loop = new Label();
+        Label loopEnd = new Label();
+        mv.visitLabel(loop);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, JDBC_CALL, "next", "()Z", false);
+        mv.visitJumpInsn(IFEQ, loopEnd);
+        mv.visitTypeInsn(NEW, beanName);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, beanName, "<init>", "()V", false);
+        mv.visitVarInsn(ASTORE, 4);
+        List<DaoCodeBuilder.RowColumn> rowColumns = daoCodeBuilder.rowColumns();
+        for (int i = 0; i < rowColumns.size(); i++) {
+            DaoCodeBuilder.RowColumn column = rowColumns.get(i);
+            Method setter = column.getSetter();
+            Label skip = new Label();
+            mv.visitVarInsn(ALOAD, 2);
+            pushInt(mv, i);
+            mv.visitInsn(IALOAD);
+            mv.visitJumpInsn(IFEQ, skip);
+            mv.visitVarInsn(ALOAD, 4);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 2);
+            pushInt(mv, i);
+            mv.visitInsn(IALOAD);
+            mv.visitMethodInsn(INVOKEVIRTUAL, JDBC_CALL, column.getJdbcGetter(), jdbcCallDescriptor(column.getJdbcGetter()), false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, beanName, setter.getName(), Type.getMethodDescriptor(setter), false);
+            // 返回this的setter
+            Type setterReturn = Type.getReturnType(setter);
+            if (setterReturn.getSort() != Type.VOID) {
+                mv.visitInsn(setterReturn.getSize() == 2 ? POP2 : POP);
+            }
+            mv.visitLabel(skip);
+        }
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitVarInsn(ALOAD, 4);
+        mv.visitMethodInsn(INVOKEINTERFACE, LIST, "add", "(" + OBJECT_DESC + ")Z", true);
+        mv.visitInsn(POP);
+        mv.visitJumpInsn(GOTO, loop);
+        mv.visitLabel(loopEnd);
+        mv.visitVarInsn(ALOAD, 3);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * @return JdbcCall中set、get方法的描述符
+     */
+    private static String jdbcCallDescriptor(String name) {
+        for (Method method : JdbcCall.class.getMethods()) {
+            if (method.getName().equals(name)) {
+                return Type.getMethodDescriptor(method);
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    /**
+     * 调用mapper，前后记录SQL日志，与源码中的try-finally等价
+     */
+    private void writeImplMethod(ClassWriter cw, DaoCodeBuilder.ProviderMethodCodeCache method, String mapperDesc) {
+        Method daoMethod = method.getMethod();
+        String daoMethodDesc = Type.getMethodDescriptor(daoMethod);
+        Type returnType = Type.getReturnType(daoMethodDesc);
+        int paramCount = daoMethod.getParameterCount();
+        int startIndex = paramCount + 1;
+        int resultIndex = startIndex + 2;
+        int keyIndex = resultIndex + 1;
+        int stampIndex = resultIndex + 2;
+        int routeIndex = stampIndex + 2;
+        int startedIndex = routeIndex + 1;
+        String metricsField = method.getModel().getMetricsField();
+        boolean replica = daoCodeBuilder.readsReplica(daoMethod);
+        String logName = daoCodeBuilder.logName(daoMethod);
+        String cacheRole = daoCodeBuilder.cacheRole(daoMethod);
+        boolean cacheRead = DaoCodeBuilder.CACHE_READ.equals(cacheRole);
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, daoMethod.getName(), daoMethodDesc, null, null);
+        mv.visitCode();
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label handler = new Label();
+        mv.visitTryCatchBlock(tryStart, tryEnd, handler, null);
+        long cacheSeconds = daoCodeBuilder.queryCacheSeconds(daoMethod);
+        if (cacheRead) {
+            writeCacheLookup(mv, method, resultIndex, keyIndex, stampIndex);
+        } else if (cacheSeconds > 0) {
+            writeQueryCacheLookup(mv, method, resultIndex, keyIndex, stampIndex);
+        }
+        mv.visitMethodInsn(INVOKESTATIC, SQL_LOG, "start", "()J", false);
+        mv.visitVarInsn(LSTORE, startIndex);
+        mv.visitFieldInsn(GETSTATIC, implName, metricsField, METHOD_METRICS_DESC);
+        mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_METRICS, "start", "()J", false);
+        mv.visitVarInsn(LSTORE, startedIndex);
+        if (replica) {
+            mv.visitInsn(ICONST_0 + DaoRouting.REPLICA);
+            mv.visitMethodInsn(INVOKESTATIC, DAO_ROUTING, "enter", "(I)I", false);
+            mv.visitVarInsn(ISTORE, routeIndex);
+        }
+        mv.visitLabel(tryStart);
+        if (method.getModel().isFixed()) {
+            // 固定SQL不经过Provider，在这里记下SQL
+            mv.visitLdcInsn(method.getModel().getFixedSql());
+            mv.visitMethodInsn(INVOKESTATIC, SQL_LOG, "capture", "(" + STRING_DESC + ")" + STRING_DESC, false);
+            mv.visitInsn(POP);
+        }
+        if (method.getModel().isBatch()) {
+            writeBatchCall(mv, method, mapperDesc, resultIndex);
+            mv.visitFieldInsn(GETSTATIC, implName, metricsField, METHOD_METRICS_DESC);
+            mv.visitVarInsn(ALOAD, resultIndex);
+            writeMetricsSuccess(mv, startedIndex, paramCount, Type.getType(int[].class));
+            mv.visitVarInsn(ASTORE, resultIndex);
+        } else if ("AutoSelectStream".equals(method.getMode())) {
+            mv.visitFieldInsn(GETSTATIC, implName, metricsField, METHOD_METRICS_DESC);
+            writeStreamCall(mv, method);
+            writeMetricsSuccess(mv, startedIndex, paramCount, returnType);
+            mv.visitVarInsn(ASTORE, resultIndex);
+        } else {
+            if (cacheRead) {
+                mv.visitFieldInsn(GETSTATIC, implName, DaoCodeBuilder.CACHE_FIELD, ID_CACHE_DESC);
+                mv.visitVarInsn(ALOAD, keyIndex);
+            } else if (cacheSeconds > 0) {
+                mv.visitFieldInsn(GETSTATIC, implName, DaoCodeBuilder.QUERY_CACHE_FIELD, QUERY_CACHE_DESC);
+                mv.visitVarInsn(ALOAD, keyIndex);
+            }
+            mv.visitFieldInsn(GETSTATIC, implName, metricsField, METHOD_METRICS_DESC);
+            boolean jdbc = daoCodeBuilder.isJdbc(daoMethod);
+            if (jdbc) {
+                mv.visitVarInsn(ALOAD, 0);
+            } else {
+                loadMapperTarget(mv, method, mapperDesc);
+            }
+            for (int i = 1; i <= daoMethod.getParameterCount(); i++) {
+                mv.visitVarInsn(ALOAD, i);
+                if (!SqlMethodModel.ID_PARAM.equals(method.getModel().getParams().get(i - 1))) {
+                    mv.visitTypeInsn(CHECKCAST, beanName);
+                }
+            }
+            if (jdbc) {
+                mv.visitMethodInsn(INVOKESPECIAL, implName, DaoCodeBuilder.JDBC_PREFIX + daoMethod.getName(),
+                        mapperMethodDescriptor(method), false);
+            } else {
+                invokeMapperTarget(mv, method);
+            }
+            writeMetricsSuccess(mv, startedIndex, paramCount, Type.getReturnType(mapperMethodDescriptor(method)));
+            if (cacheRead) {
+                mv.visitVarInsn(LLOAD, stampIndex);
+                mv.visitMethodInsn(INVOKEVIRTUAL, ID_CACHE, "put", "(" + OBJECT_DESC + OBJECT_DESC + "J)" + OBJECT_DESC, false);
+                mv.visitTypeInsn(CHECKCAST, beanName);
+            } else if (cacheSeconds > 0) {
+                mv.visitVarInsn(LLOAD, stampIndex);
+                mv.visitLdcInsn(cacheSeconds);
+                mv.visitMethodInsn(INVOKEVIRTUAL, QUERY_CACHE, "put", "(" + LIST_DESC + LIST_DESC + "JJ)" + LIST_DESC, false);
+            }
+            if (returnType.getSort() != Type.VOID) {
+                mv.visitVarInsn(returnType.getOpcode(ISTORE), resultIndex);
+            }
+        }
+        mv.visitLabel(tryEnd);
+        writeCacheInvalidate(mv, method, cacheRole);
+        writeRouteExit(mv, replica, routeIndex);
+        writeLogEnd(mv, startIndex, logName);
+        if (returnType.getSort() != Type.VOID) {
+            mv.visitVarInsn(returnType.getOpcode(ILOAD), resultIndex);
+        }
+        mv.visitInsn(returnType.getOpcode(IRETURN));
+        mv.visitLabel(handler);
+        mv.visitVarInsn(ASTORE, resultIndex);
+        mv.visitFieldInsn(GETSTATIC, implName, metricsField, METHOD_METRICS_DESC);
+        mv.visitVarInsn(LLOAD, startedIndex);
+        writeMetricsArgs(mv, paramCount);
+        mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_METRICS, "failure", "(J" + OBJECT_DESC + OBJECT_DESC + ")V", false);
+        writeCacheInvalidate(mv, method, cacheRole);
+        writeRouteExit(mv, replica, routeIndex);
+        writeLogEnd(mv, startIndex, logName);
+        mv.visitVarInsn(ALOAD, resultIndex);
+        mv.visitInsn(ATHROW);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 按批调用mapper，每批的行数存入int[]，与源码中的循环等价
+     *
+     * @param countsIndex 存放结果数组的局部变量
+     */
+    private void writeBatchCall(MethodVisitor mv, DaoCodeBuilder.ProviderMethodCodeCache method, String mapperDesc,
+                                int countsIndex) {
+        String chunks = Type.getInternalName(InsertBatchChunks.class);
+        int chunkSizeIndex = countsIndex + 1;
+        int iIndex = countsIndex + 2;
+        pushInt(mv, ((AutoInsertBatch) method.getAnt()).chunkSize());
+        mv.visitMethodInsn(INVOKESTATIC, chunks, "chunkSize", "(I)I", false);
+        mv.visitVarInsn(ISTORE, chunkSizeIndex);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ILOAD, chunkSizeIndex);
+        mv.visitMethodInsn(INVOKESTATIC, chunks, "chunkCount", "(" + LIST_DESC + "I)I", false);
+        mv.visitIntInsn(NEWARRAY, T_INT);
+        mv.visitVarInsn(ASTORE, countsIndex);
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, iIndex);
+        Label loop = new Label();
+        Label loopEnd = new Label();
+        mv.visitLabel(loop);
+        mv.visitVarInsn(ILOAD, iIndex);
+        mv.visitVarInsn(ALOAD, countsIndex);
+        mv.visitInsn(ARRAYLENGTH);
+        mv.visitJumpInsn(IF_ICMPGE, loopEnd);
+        mv.visitVarInsn(ALOAD, countsIndex);
+        mv.visitVarInsn(ILOAD, iIndex);
+        boolean jdbc = daoCodeBuilder.isJdbc(method.getMethod());
+        if (jdbc) {
+            mv.visitVarInsn(ALOAD, 0);
+        } else {
+            loadMapperTarget(mv, method, mapperDesc);
+        }
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ILOAD, iIndex);
+        mv.visitVarInsn(ILOAD, chunkSizeIndex);
+        mv.visitMethodInsn(INVOKESTATIC, chunks, "chunk", "(" + LIST_DESC + "II)" + LIST_DESC, false);
+        if (jdbc) {
+            mv.visitMethodInsn(INVOKESPECIAL, implName, DaoCodeBuilder.JDBC_PREFIX + method.getMethod().getName(),
+                    mapperMethodDescriptor(method), false);
+        } else {
+            invokeMapperTarget(mv, method);
+        }
+        mv.visitInsn(IASTORE);
+        mv.visitIincInsn(iIndex, 1);
+        mv.visitJumpInsn(GOTO, loop);
+        mv.visitLabel(loopEnd);
+    }
+
+    /**
+     * 先查缓存，命中时直接返回；未命中时记下键和版本，与源码中的缓存读等价
+     */
+    private void writeCacheLookup(MethodVisitor mv, DaoCodeBuilder.ProviderMethodCodeCache method,
+                                  int cachedIndex, int keyIndex, int stampIndex) {
+        Method idGetter = daoCodeBuilder.idGetter();
+        if ("AutoSelectById".equals(method.getMode())) {
+            mv.visitVarInsn(ALOAD, 1);
+        } else {
+            // 只有@ID字段不为空时才以它为键
+            Label noKey = new Label();
+            Label keyDone = new Label();
+            SqlMethodModel model = method.getModel();
+            SqlMethodModel.Check idCheck = daoCodeBuilder.idCheck(model);
+            for (SqlMethodModel.Check check : model.getChecks()) {
+                mv.visitVarInsn(ALOAD, 1);
+                mv.visitTypeInsn(CHECKCAST, beanName);
+                Method getter = check.getGetter();
+                mv.visitMethodInsn(INVOKEVIRTUAL, beanName, getter.getName(), Type.getMethodDescriptor(getter), false);
+                if (check == idCheck) {
+                    mv.visitJumpInsn(IFNULL, noKey);
+                } else if (check.isEmptyString()) {
+                    mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(StringUtils.class), "isEmpty",
+                            "(" + STRING_DESC + ")Z", false);
+                    mv.visitJumpInsn(IFEQ, noKey);
+                } else {
+                    mv.visitJumpInsn(IFNONNULL, noKey);
+                }
+            }
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, beanName);
+            mv.visitMethodInsn(INVOKEVIRTUAL, beanName, idGetter.getName(), Type.getMethodDescriptor(idGetter), false);
+            mv.visitJumpInsn(GOTO, keyDone);
+            mv.visitLabel(noKey);
+            mv.visitInsn(ACONST_NULL);
+            mv.visitLabel(keyDone);
+        }
+        mv.visitVarInsn(ASTORE, keyIndex);
+        Label miss = new Label();
+        mv.visitFieldInsn(GETSTATIC, implName, DaoCodeBuilder.CACHE_FIELD, ID_CACHE_DESC);
+        mv.visitVarInsn(ALOAD, keyIndex);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ID_CACHE, "get", "(" + OBJECT_DESC + ")" + OBJECT_DESC, false);
+        mv.visitVarInsn(ASTORE, cachedIndex);
+        mv.visitVarInsn(ALOAD, cachedIndex);
+        mv.visitJumpInsn(IFNULL, miss);
+        mv.visitVarInsn(ALOAD, cachedIndex);
+        mv.visitTypeInsn(CHECKCAST, beanName);
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(miss);
+        mv.visitFieldInsn(GETSTATIC, implName, DaoCodeBuilder.CACHE_FIELD, ID_CACHE_DESC);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ID_CACHE, "stamp", "()J", false);
+        mv.visitVarInsn(LSTORE, stampIndex);
+    }
+
+    /**
+     * 先查结果缓存，命中时直接返回；未命中时记下键和版本，与源码中的结果缓存读等价
+     */
+    private void writeQueryCacheLookup(MethodVisitor mv, DaoCodeBuilder.ProviderMethodCodeCache method,
+                                       int cachedIndex, int keyIndex, int stampIndex) {
+        List<Method> getters = daoCodeBuilder.queryKeyGetters();
+        mv.visitLdcInsn(daoCodeBuilder.queryCacheName(method.getMethod()));
+        pushInt(mv, getters.size());
+        mv.visitTypeInsn(ANEWARRAY, OBJECT);
+        for (int i = 0; i < getters.size(); i++) {
+            Method getter = getters.get(i);
+            mv.visitInsn(DUP);
+            pushInt(mv, i);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitTypeInsn(CHECKCAST, beanName);
+            mv.visitMethodInsn(INVOKEVIRTUAL, beanName, getter.getName(), Type.getMethodDescriptor(getter), false);
+            box(mv, Type.getType(getter.getReturnType()));
+            mv.visitInsn(AASTORE);
+        }
+        mv.visitMethodInsn(INVOKESTATIC, QUERY_CACHE, "key", "(" + STRING_DESC + "[" + OBJECT_DESC + ")" + LIST_DESC, false);
+        mv.visitVarInsn(ASTORE, keyIndex);
+        Label miss = new Label();
+        mv.visitFieldInsn(GETSTATIC, implName, DaoCodeBuilder.QUERY_CACHE_FIELD, QUERY_CACHE_DESC);
+        mv.visitVarInsn(ALOAD, keyIndex);
+        mv.visitMethodInsn(INVOKEVIRTUAL, QUERY_CACHE, "get", "(" + LIST_DESC + ")" + LIST_DESC, false);
+        mv.visitVarInsn(ASTORE, cachedIndex);
+        mv.visitVarInsn(ALOAD, cachedIndex);
+        mv.visitJumpInsn(IFNULL, miss);
+        mv.visitVarInsn(ALOAD, cachedIndex);
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(miss);
+        mv.visitFieldInsn(GETSTATIC, implName, DaoCodeBuilder.QUERY_CACHE_FIELD, QUERY_CACHE_DESC);
+        mv.visitMethodInsn(INVOKEVIRTUAL, QUERY_CACHE, "stamp", "()J", false);
+        mv.visitVarInsn(LSTORE, stampIndex);
+    }
+
+    /**
+     * 基本类型装箱
+     */
+    private static void box(MethodVisitor mv, Type type) {
+        Type boxed;
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                boxed = Type.getType(Boolean.class);
+                break;
+            case Type.CHAR:
+                boxed = Type.getType(Character.class);
+                break;
+            case Type.BYTE:
+                boxed = Type.getType(Byte.class);
+                break;
+            case Type.SHORT:
+                boxed = Type.getType(Short.class);
+                break;
+            case Type.INT:
+                boxed = Type.getType(Integer.class);
+                break;
+            case Type.FLOAT:
+                boxed = Type.getType(Float.class);
+                break;
+            case Type.LONG:
+                boxed = Type.getType(Long.class);
+                break;
+            case Type.DOUBLE:
+                boxed = Type.getType(Double.class);
+                break;
+            default:
+                return;
+        }
+        mv.visitMethodInsn(INVOKESTATIC, boxed.getInternalName(), "valueOf",
+                "(" + type.getDescriptor() + ")" + boxed.getDescriptor(), false);
+    }
+
+    /**
+     * 写方法结束时使缓存失效，与源码中finally里的失效等价
+     */
+    private void writeCacheInvalidate(MethodVisitor mv, DaoCodeBuilder.ProviderMethodCodeCache method, String cacheRole) {
+        if (DaoCodeBuilder.isWriteMode(method.getMode())) {
+            mv.visitLdcInsn(daoCodeBuilder.getTable());
+            mv.visitMethodInsn(INVOKESTATIC, QUERY_CACHE, "invalidate", "(" + STRING_DESC + ")V", false);
+        }
+        if (DaoCodeBuilder.CACHE_INVALIDATE_ALL.equals(cacheRole)) {
+            mv.visitFieldInsn(GETSTATIC, implName, DaoCodeBuilder.CACHE_FIELD, ID_CACHE_DESC);
+            mv.visitMethodInsn(INVOKEVIRTUAL, ID_CACHE, "invalidateAll", "()V", false);
+        } else if (DaoCodeBuilder.CACHE_INVALIDATE.equals(cacheRole)) {
+            mv.visitFieldInsn(GETSTATIC, implName, DaoCodeBuilder.CACHE_FIELD, ID_CACHE_DESC);
+            mv.visitVarInsn(ALOAD, 1);
+            if ("AutoUpdateById".equals(method.getMode())) {
+                Method idGetter = daoCodeBuilder.idGetter();
+                mv.visitTypeInsn(CHECKCAST, beanName);
+                mv.visitMethodInsn(INVOKEVIRTUAL, beanName, idGetter.getName(), Type.getMethodDescriptor(idGetter), false);
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, ID_CACHE, "invalidate", "(" + OBJECT_DESC + ")V", false);
+        }
+    }
+
+    /**
+     * 流式查询，与源码中的DaoStreams.stream(...)或DaoStreams.cursor(...)等价
+     */
+    private void writeStreamCall(MethodVisitor mv, DaoCodeBuilder.ProviderMethodCodeCache method) {
+        boolean cursor = Cursor.class.equals(method.getMethod().getReturnType());
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, implName, "mapperFactory", Type.getDescriptor(MapperFactoryBean.class));
+        mv.visitLdcInsn(daoCodeBuilder.getStatementId(method.getMethod()));
+        mv.visitVarInsn(ALOAD, 1);
+        String returnDesc = cursor ? Type.getDescriptor(DaoStreams.SessionCursor.class) : Type.getDescriptor(Stream.class);
+        mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(DaoStreams.class), cursor ? "cursor" : "stream",
+                "(" + Type.getDescriptor(SqlSessionDaoSupport.class) + STRING_DESC + OBJECT_DESC + ")" + returnDesc, false);
+    }
+
+    /**
+     * 执行Mapper方法对应语句的调用对象：session调用时是this，否则是mapper；之后压入参数，再由{@link #invokeMapperTarget}调用
+     */
+    private void loadMapperTarget(MethodVisitor mv, DaoCodeBuilder.ProviderMethodCodeCache method, String mapperDesc) {
+        if (daoCodeBuilder.isSession(method.getMethod())) {
+            mv.visitVarInsn(ALOAD, 0);
+        } else {
+            loadMapper(mv, method, mapperDesc);
+        }
+    }
+
+    private void invokeMapperTarget(MethodVisitor mv, DaoCodeBuilder.ProviderMethodCodeCache method) {
+        String name = method.getMethod().getName();
+        if (daoCodeBuilder.isSession(method.getMethod())) {
+            mv.visitMethodInsn(INVOKESPECIAL, implName, DaoCodeBuilder.SESSION_PREFIX + name, mapperMethodDescriptor(method), false);
+        } else {
+            mv.visitMethodInsn(INVOKEINTERFACE, mapperName, name, mapperMethodDescriptor(method), true);
+        }
+    }
+
+    /**
+     * session调用执行语句的方法，与源码中的session_方法等价
+     */
+    private void writeSessionMethod(ClassWriter cw, DaoCodeBuilder.ProviderMethodCodeCache method) {
+        SqlMethodModel model = method.getModel();
+        String desc = mapperMethodDescriptor(method);
+        Type returnType = Type.getReturnType(desc);
+        boolean write = DaoCodeBuilder.isWriteMode(method.getMode());
+        String sqlSessionDesc = Type.getDescriptor(SqlSession.class);
+        MethodVisitor mv = cw.visitMethod(ACC_PRIVATE, DaoCodeBuilder.SESSION_PREFIX + model.getMethodName(), desc, null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, implName, "mapperFactory", Type.getDescriptor(MapperFactoryBean.class));
+        mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(MapperFactoryBean.class), "getSqlSession",
+                "()" + sqlSessionDesc, false);
+        if (write) {
+            mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(DaoBatch.class), "sqlSession",
+                    "(" + sqlSessionDesc + ")" + sqlSessionDesc, false);
+        }
+        mv.visitLdcInsn(daoCodeBuilder.getStatementId(method.getMethod()));
+        List<String> params = model.getParams();
+        if (model.isBatch() || params.size() > 1) {
+            StringBuilder namedDesc = new StringBuilder("(");
+            for (int i = 0; i < params.size(); i++) {
+                mv.visitLdcInsn(params.get(i));
+                mv.visitVarInsn(ALOAD, i + 1);
+                namedDesc.append(STRING_DESC).append(OBJECT_DESC);
+            }
+            mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(SessionParams.class), "named",
+                    namedDesc.append(")").append(OBJECT_DESC).toString(), false);
+        } else {
+            mv.visitVarInsn(ALOAD, 1);
+        }
+        String operation = daoCodeBuilder.sessionOperation(method.getMethod());
+        String operationReturn = write ? "I" : "selectList".equals(operation) ? LIST_DESC : OBJECT_DESC;
+        mv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(SqlSession.class), operation,
+                "(" + STRING_DESC + OBJECT_DESC + ")" + operationReturn, true);
+        if (write) {
+            writeUpdateResult(mv, daoCodeBuilder.updateReturn(method.getMethod()), returnType);
+        } else if ("selectOne".equals(operation)) {
+            mv.visitTypeInsn(CHECKCAST, beanName);
+        }
+        mv.visitInsn(returnType.getOpcode(IRETURN));
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * 写方法在批量作用域中使用批量SqlSession的mapper，与源码中的DaoBatch.mapper(...)等价
+     */
+    private void loadMapper(MethodVisitor mv, DaoCodeBuilder.ProviderMethodCodeCache method, String mapperDesc) {
+        boolean write = DaoCodeBuilder.isWriteMode(method.getMode());
+        if (write) {
+            mv.visitLdcInsn(Type.getObjectType(mapperName));
+        }
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, implName, "mapper", mapperDesc);
+        if (write) {
+            mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(DaoBatch.class), "mapper",
+                    "(" + Type.getDescriptor(Class.class) + OBJECT_DESC + ")" + OBJECT_DESC, false);
+            mv.visitTypeInsn(CHECKCAST, mapperName);
+        }
+    }
+
+    /**
+     * 栈顶是统计和结果，调用对应类型的success，与源码中按结果类型选择的重载等价
+     */
+    private static void writeMetricsSuccess(MethodVisitor mv, int startedIndex, int paramCount, Type resultType) {
+        mv.visitVarInsn(LLOAD, startedIndex);
+        writeMetricsArgs(mv, paramCount);
+        String desc = resultType.getDescriptor();
+        if (resultType.getSort() == Type.OBJECT || (resultType.getSort() == Type.ARRAY && !"[I".equals(desc))) {
+            mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_METRICS, "success",
+                    "(" + OBJECT_DESC + "J" + OBJECT_DESC + OBJECT_DESC + ")" + OBJECT_DESC, false);
+            mv.visitTypeInsn(CHECKCAST, resultType.getInternalName());
+        } else {
+            mv.visitMethodInsn(INVOKEVIRTUAL, METHOD_METRICS, "success", "(" + desc + "J" + OBJECT_DESC + OBJECT_DESC + ")" + desc, false);
+        }
+    }
+
+    /**
+     * 压入记入方法统计的两个参数，只有一个参数时第二个为null
+     */
+    private static void writeMetricsArgs(MethodVisitor mv, int paramCount) {
+        mv.visitVarInsn(ALOAD, 1);
+        if (paramCount > 1) {
+            mv.visitVarInsn(ALOAD, 2);
+        } else {
+            mv.visitInsn(ACONST_NULL);
+        }
+    }
+
+    private static void writeRouteExit(MethodVisitor mv, boolean replica, int routeIndex) {
+        if (replica) {
+            mv.visitVarInsn(ILOAD, routeIndex);
+            mv.visitMethodInsn(INVOKESTATIC, DAO_ROUTING, "exit", "(I)V", false);
+        }
+    }
+
+    private static void writeLogEnd(MethodVisitor mv, int startIndex, String logName) {
+        mv.visitVarInsn(LLOAD, startIndex);
+        mv.visitLdcInsn(logName);
+        mv.visitMethodInsn(INVOKESTATIC, SQL_LOG, "end", "(J" + STRING_DESC + ")V", false);
+    }
+
+    /**
+     * Mapper方法的描述符：查询返回List、实体或Cursor，其他返回dao方法的返回类型
+     */
+    private String mapperMethodDescriptor(DaoCodeBuilder.ProviderMethodCodeCache method) {
+        StringBuilder desc = new StringBuilder(paramsDescriptor(method.getModel()));
+        switch (method.getMode()) {
+            case "AutoInsertBatch":
+                desc.append("I");
+                break;
+            case "AutoSelect":
+                desc.append(LIST_DESC);
+                break;
+            case "AutoSelectOne":
+            case "AutoSelectById":
+                desc.append(beanDesc);
+                break;
+            case "AutoSelectStream":
+                desc.append(CURSOR_DESC);
+                break;
+            default:
+                desc.append(Type.getDescriptor(method.getMethod().getReturnType()));
+        }
+        return desc.toString();
+    }
+
+    /**
+     * @return 参数部分的描述符：多行INSERT是一个List，按ID的主键值是Object，其他是若干实体
+     */
+    private String paramsDescriptor(SqlMethodModel model) {
+        if (model.isBatch()) {
+            return "(" + LIST_DESC + ")";
+        }
+        StringBuilder desc = new StringBuilder("(");
+        for (String param : model.getParams()) {
+            desc.append(SqlMethodModel.ID_PARAM.equals(param) ? OBJECT_DESC : beanDesc);
+        }
+        return desc.append(")").toString();
+    }
+
+    private static Class<?> providerAnnotation(String mode) {
+        switch (mode) {
+            case "AutoInsert":
+            case "AutoInsertBatch":
+                return InsertProvider.class;
+            case "AutoDelete":
+                return DeleteProvider.class;
+            case "AutoUpdate":
+                return UpdateProvider.class;
+            default:
+                return SelectProvider.class;
+        }
+    }
+
+    private static Class<?> fixedAnnotation(String mode) {
+        switch (mode) {
+            case "AutoDeleteById":
+                return Delete.class;
+            case "AutoUpdateById":
+                return Update.class;
+            default:
+                return Select.class;
+        }
+    }
+
+    private static void writeParamAnnotations(MethodVisitor mv, List<String> params) {
+        for (int i = 0; i < params.size(); i++) {
+            AnnotationVisitor av = mv.visitParameterAnnotation(i, Type.getDescriptor(Param.class), true);
+            av.visit("value", params.get(i));
+            av.visitEnd();
+        }
+    }
+
+    private static void writeDefaultConstructor(ClassWriter cw) {
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, OBJECT, "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private static void pushInt(MethodVisitor mv, int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * 生成的类只在同一局部变量类型之间合并栈帧，不需要加载类来求公共父类
+     */
+    private static ClassWriter newClassWriter() {
+        return new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return OBJECT;
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.wwx.compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 生成缓存
+ * 每个dao一个文件，保存指纹和编译好的字节码；重启时指纹不变则直接使用，不再生成代码和编译
+ * 缓存读写失败只打印警告，不影响生成
+ */
+class DaoClassCache {
+    private static final int MAGIC = 0x44414F43;
+    private static final String SUFFIX = ".daoc";
+    private final Path dir;
+
+    DaoClassCache(String dir) {
+        this.dir = Paths.get(dir);
+    }
+
+    /**
+     * 读取缓存
+     *
+     * @param dao         dao接口类对象
+     * @param fingerprint dao当前的指纹
+     * @return 指纹一致时返回缓存的类，否则返回null
+     */
+    GeneratedDao load(Class<?> dao, String fingerprint) {
+        Path file = dir.resolve(dao.getName() + SUFFIX);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !fingerprint.equals(in.readUTF())) {
+                return null;
+            }
+            GeneratedDao generatedDao = new GeneratedDao(dao, fingerprint, in.readUTF(), in.readUTF(), in.readUTF());
+            int classNum = in.readInt();
+            Map<String, byte[]> classBytes = new HashMap<>(classNum);
+            for (int i = 0; i < classNum; i++) {
+                String name = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                classBytes.put(name, bytes);
+            }
+            generatedDao.setClassBytes(classBytes);
+            return generatedDao;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println(dao.getName() + "的生成缓存读取失败：" + e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存，先写临时文件再替换，避免并发启动时读到写了一半的文件
+     *
+     * @param generatedDao 编译好的dao
+     */
+    void store(GeneratedDao generatedDao) {
+        Path file = dir.resolve(generatedDao.getDao().getName() + SUFFIX);
+        try {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, generatedDao.getDao().getSimpleName(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(generatedDao.getFingerprint());
+                out.writeUTF(generatedDao.getImplName());
+                out.writeUTF(generatedDao.getMapperName());
+                out.writeUTF(generatedDao.getProviderName());
+                Map<String, byte[]> classBytes = generatedDao.getClassBytes();
+                out.writeInt(classBytes.size());
+                for (Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println(generatedDao.getDao().getName() + "的生成缓存写入失败：" + e);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.wwx.compiler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 生成类的类加载器
+ * 直接用内存中的字节码定义Impl、Mapper、Provider，不依赖class文件
+ */
+class DaoClassLoader extends ClassLoader {
+    static {
+        registerAsParallelCapable();
+    }
+
+    /**
+     * 尚未定义的类，类全名->字节码
+     */
+    private final Map<String, byte[]> classBytes = new ConcurrentHashMap<>();
+
+    DaoClassLoader(ClassLoader parent) {
+        super(parent);
+    }
+
+    void addClasses(Map<String, byte[]> classes) {
+        classBytes.putAll(classes);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        byte[] bytes = classBytes.remove(name);
+        if (bytes == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+}
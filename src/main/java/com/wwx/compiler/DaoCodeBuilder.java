@@ -4,17 +4,42 @@ import com.wwx.compiler.annotation.*;
 import com.wwx.compiler.annotation.sql.ID;
 import com.wwx.compiler.exception.DynamicCompileException;
 import com.wwx.compiler.exception.IDaoMethodArgumentException;
+import com.wwx.compiler.exception.IDaoNoIdException;
 import com.wwx.compiler.exception.IDaoTypeParamException;
+import com.wwx.compiler.runtime.AsyncDaoSupport;
+import com.wwx.compiler.runtime.CachingLanguageDriver;
+import com.wwx.compiler.runtime.DaoBatch;
+import com.wwx.compiler.runtime.DaoMetrics;
+import com.wwx.compiler.runtime.DaoRouting;
+import com.wwx.compiler.runtime.DaoStreams;
+import com.wwx.compiler.runtime.EntityRowMapper;
+import com.wwx.compiler.runtime.IdCache;
+import com.wwx.compiler.runtime.InsertBatchChunks;
+import com.wwx.compiler.runtime.JdbcCall;
+import com.wwx.compiler.runtime.JdbcColumns;
+import com.wwx.compiler.runtime.MethodMetrics;
+import com.wwx.compiler.runtime.QueryCache;
+import com.wwx.compiler.runtime.SessionParams;
+import com.wwx.compiler.runtime.SqlLog;
+import com.wwx.compiler.runtime.SqlTemplate;
 import com.wwx.compiler.util.StringUtils;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.jdbc.SQL;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
 
-import javax.validation.constraints.NotNull;
+import java.beans.Introspector;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import static com.wwx.compiler.ComponentScanner.CLASS_SUFFIX;
 import static com.wwx.compiler.Constants.*;
@@ -30,6 +55,56 @@ import static com.wwx.compiler.DaoFactory.idaoPkg;
 class DaoCodeBuilder {
     static final String IMPL = "Impl";
     static final String MAPPER = "Mapper";
+    /**
+     * 流式查询的默认fetchSize，影响生成的代码
+     */
+    static final String STREAM_FETCH_SIZE_PROPERTY = "daowom.stream.fetchSize";
+    static final String CACHE_READ = "read";
+    static final String CACHE_INVALIDATE = "invalidate";
+    static final String CACHE_INVALIDATE_ALL = "invalidateAll";
+    /**
+     * Impl中实体缓存的静态字段名
+     */
+    static final String CACHE_FIELD = "ID_CACHE";
+    /**
+     * Impl中查询结果缓存的静态字段名
+     */
+    static final String QUERY_CACHE_FIELD = "QUERY_CACHE";
+    /**
+     * 执行引擎：mybatis（默认）经过Mapper和Provider；jdbc由Impl直接执行SQL，见{@link JdbcCall}
+     */
+    static final String ENGINE_PROPERTY = "daowom.engine";
+    /**
+     * jdbc引擎中执行语句的Impl方法名前缀
+     */
+    static final String JDBC_PREFIX = "jdbc_";
+    /**
+     * jdbc引擎中把查询结果映射为实体的Impl方法名
+     */
+    static final String MAP_ROWS = "mapRows";
+    /**
+     * Mapper中生成的行映射内部类名，见{@link EntityRowMapper}
+     */
+    static final String ROW_MAPPER = "RowMapper";
+    /**
+     * Impl调用语句的方式：proxy（默认）经过注入的Mapper（MapperProxy和MapperMethod）；
+     * session由Impl以语句id常量直接调用SqlSession的selectList、insert、update等
+     */
+    static final String DISPATCH_PROPERTY = "daowom.dispatch";
+    /**
+     * 数据库方言：mysql（默认）的LIKE写作CONCAT('%', x, '%')，行数上限写作LIMIT n；
+     * oracle写作'%' || x || '%'和FETCH FIRST n ROWS ONLY（12c及以上）
+     */
+    static final String DIALECT_PROPERTY = "daowom.dialect";
+    /**
+     * session调用方式中执行语句的Impl方法名前缀
+     */
+    static final String SESSION_PREFIX = "session_";
+    /**
+     * Impl中实现异步接口的内部类名，见{@link AsyncDaoSupport}
+     */
+    static final String ASYNC = "Async";
+    private static final Pattern PLACEHOLDER = Pattern.compile("#\\{([^}]*)}");
     private static final String PREFIX = "Proxy";
     private static final String PROVIDER = "Provider";
     /**
@@ -68,14 +143,30 @@ class DaoCodeBuilder {
      * 所有provider方法代码，方法与所属接口类名映射
      */
     private List<ProviderMethodCodeCache> providerMethodCodes = new ArrayList<>(4);
+    /**
+     * 实体类的列，首次使用时解析
+     */
+    private List<BeanColumn> beanColumns;
+    /**
+     * 异步接口的方法，没有异步接口时为null
+     */
+    private List<AsyncMethod> asyncMethods;
+    private final boolean jdbcEngine = "jdbc".equals(System.getProperty(ENGINE_PROPERTY));
+    private final boolean sessionDispatch = "session".equals(System.getProperty(DISPATCH_PROPERTY));
+    private final boolean oracleDialect = "oracle".equals(System.getProperty(DIALECT_PROPERTY));
 
     DaoCodeBuilder(Class iDao) {
         definedAnnotationList = new ArrayList<>(5);
         definedAnnotationList.add(AutoSelect.class);
         definedAnnotationList.add(AutoUpdate.class);
         definedAnnotationList.add(AutoInsert.class);
+        definedAnnotationList.add(AutoInsertBatch.class);
         definedAnnotationList.add(AutoDelete.class);
         definedAnnotationList.add(AutoSelectOne.class);
+        definedAnnotationList.add(AutoSelectStream.class);
+        definedAnnotationList.add(AutoSelectById.class);
+        definedAnnotationList.add(AutoDeleteById.class);
+        definedAnnotationList.add(AutoUpdateById.class);
         this.iDao = iDao;
         init();
     }
@@ -98,6 +189,55 @@ class DaoCodeBuilder {
         return codeMap;
     }
 
+    /**
+     * @return Impl的类全名
+     */
+    String getImplClassName() {
+        return idaoPkg + ".impl." + iDao.getSimpleName() + PREFIX + IMPL;
+    }
+
+    /**
+     * @return Mapper的类全名
+     */
+    String getMapperClassName() {
+        return mapperPath + "." + beanClz.getSimpleName() + PREFIX + MAPPER;
+    }
+
+    /**
+     * @return Mapper在Spring中的bean名，与DaoBeanRegistrar和@MapperScan的默认命名一致
+     */
+    String getMapperBeanName() {
+        return Introspector.decapitalize(beanClz.getSimpleName() + PREFIX + MAPPER);
+    }
+
+    /**
+     * @return 是否有流式查询方法
+     */
+    boolean hasStreamMethods() {
+        for (List<Annotation> annotations : methodMap.values()) {
+            for (Annotation annotation : annotations) {
+                if (annotation instanceof AutoSelectStream) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 流式查询的fetchSize：注解中的值，为0时取系统属性，默认1000
+     */
+    static int fetchSize(AutoSelectStream ant) {
+        return ant.fetchSize() != 0 ? ant.fetchSize() : Integer.getInteger(STREAM_FETCH_SIZE_PROPERTY, 1000);
+    }
+
+    /**
+     * @return Provider的类全名
+     */
+    String getProviderClassName() {
+        return mapperPath + ".provider." + beanClz.getSimpleName() + PREFIX + PROVIDER;
+    }
+
     private Map<String, String> buildImplCode() {
         Map<String, String> implCode = new HashMap<>(1);
         StringBuilder code = new StringBuilder();
@@ -106,9 +246,29 @@ class DaoCodeBuilder {
         code.append(IMPORT).append(iDao.getName()).append(";\n");
         code.append(IMPORT).append(beanClz.getName()).append(";\n");
         code.append(IMPORT).append(mapperPath).append(".").append(beanClz.getSimpleName()).append("ProxyMapper;\n");
+        code.append(IMPORT).append(SqlLog.class.getName()).append(";\n");
+        code.append(IMPORT).append(InsertBatchChunks.class.getName()).append(";\n");
+        code.append(IMPORT).append(DaoBatch.class.getName()).append(";\n");
+        code.append(IMPORT).append(DaoStreams.class.getName()).append(";\n");
+        code.append(IMPORT).append(DaoRouting.class.getName()).append(";\n");
+        code.append(IMPORT).append(DaoMetrics.class.getName()).append(";\n");
+        code.append(IMPORT).append(MethodMetrics.class.getName()).append(";\n");
+        code.append(IMPORT).append(IdCache.class.getName()).append(";\n");
+        code.append(IMPORT).append(QueryCache.class.getName()).append(";\n");
+        code.append(IMPORT).append(JdbcCall.class.getName()).append(";\n");
+        code.append(IMPORT).append(JdbcColumns.class.getName()).append(";\n");
+        code.append(IMPORT).append(SqlTemplate.class.getName()).append(";\n");
+        code.append(IMPORT).append(SessionParams.class.getName()).append(";\n");
+        code.append(IMPORT).append(AsyncDaoSupport.class.getName()).append(";\n");
+        code.append(IMPORT).append(StringUtils.class.getName()).append(";\n");
+        code.append("import org.apache.ibatis.cursor.Cursor;\n");
+        code.append("import org.mybatis.spring.mapper.MapperFactoryBean;\n");
+        code.append("import javax.annotation.Resource;\n");
+        code.append("import java.util.stream.Stream;\n");
         code.append("import org.springframework.beans.factory.annotation.Autowired;\n");
         code.append("import org.springframework.stereotype.Component;\n");
         code.append("import java.util.List;\n");
+        code.append("import java.util.ArrayList;\n");
         // class
         code.append(COMPONENT);
         String className = iDao.getSimpleName() + "Proxy" + IMPL;
@@ -116,25 +276,199 @@ class DaoCodeBuilder {
         // fields
         code.append("\t").append(AUTOWIRED);
         code.append("\t").append(PRIVATE).append(beanClz.getSimpleName()).append("ProxyMapper ").append("mapper;\n");
+        CacheById cacheAnt = cacheAnt();
+        if (cacheAnt != null) {
+            code.append("\t").append(PRIVATE).append("static final IdCache ").append(CACHE_FIELD).append(" = IdCache.of(")
+                    .append(beanClz.getSimpleName()).append(CLASS_SUFFIX).append(", ").append(idType().getCanonicalName())
+                    .append(CLASS_SUFFIX).append(", ").append(cacheAnt.maxSize()).append(", ")
+                    .append(cacheAnt.ttlSeconds()).append("L);\n");
+        }
+        if (hasQueryCache()) {
+            code.append("\t").append(PRIVATE).append("static final QueryCache ").append(QUERY_CACHE_FIELD)
+                    .append(" = QueryCache.of(").append(javaString(getTable())).append(");\n");
+        }
+        if (hasStreamMethods() || hasJdbcMethods() || hasSessionMethods()) {
+            // 流式查询需要mapper的SqlSessionFactory来单独打开SqlSession，jdbc引擎从中取DataSource，session调用从中取SqlSessionTemplate
+            code.append("\t@Resource(name = ").append(javaString("&" + getMapperBeanName())).append(")\n");
+            code.append("\t").append(PRIVATE).append("MapperFactoryBean<").append(beanClz.getSimpleName())
+                    .append("ProxyMapper> mapperFactory;\n");
+        }
+        // 各方法的统计
+        for (ProviderMethodCodeCache methodCodeCache : providerMethodCodes) {
+            code.append("\t").append(PRIVATE).append("static final MethodMetrics ").append(methodCodeCache.getModel().getMetricsField())
+                    .append(" = DaoMetrics.method(").append(javaString(iDao.getName())).append(", ")
+                    .append(javaString(methodCodeCache.getMethod().getName())).append(", ")
+                    .append(javaString(methodCodeCache.getModel().getParamNames())).append(", ")
+                    .append(javaString(methodCodeCache.getModel().getCheckNames())).append(");\n");
+        }
+        // session调用的语句id
+        for (ProviderMethodCodeCache methodCodeCache : providerMethodCodes) {
+            if (isSession(methodCodeCache.getMethod())) {
+                code.append("\t").append(PRIVATE).append("static final String ").append(methodCodeCache.getModel().getStatementField())
+                        .append(" = ").append(javaString(getStatementId(methodCodeCache.getMethod()))).append(";\n");
+            }
+        }
+        // jdbc引擎的模板和结果列
+        for (ProviderMethodCodeCache methodCodeCache : providerMethodCodes) {
+            if (!isJdbc(methodCodeCache.getMethod())) {
+                continue;
+            }
+            SqlMethodModel model = methodCodeCache.getModel();
+            if (!model.isFixed()) {
+                code.append(methodCodeCache.templateCode(model.getJdbcTemplateField(), true));
+            }
+            if (SqlMethodModel.SELECT.equals(model.getType())) {
+                code.append("\t").append(PRIVATE).append("static final JdbcColumns ").append(model.getColumnsField())
+                        .append(" = new JdbcColumns(").append(javaString(rowLabels())).append(");\n");
+            }
+        }
         // methods
         for (ImplMethodCodeCache methodCodeCache : implMethodCodes) {
             code.append(methodCodeCache);
         }
+        if (hasJdbcSelects()) {
+            code.append(mapRowsCode());
+        }
+        if (asyncMethods != null) {
+            code.append(asyncCode());
+        }
         code.append("}\n");
         implCode.put(className, code.toString());
         return implCode;
     }
 
+    /**
+     * Impl中的异步实现：每个异步方法按下标提交，在执行器中由call调用注入的同步dao
+     */
+    private String asyncCode() {
+        StringBuilder code = new StringBuilder();
+        code.append("\t").append(PUBLIC).append("static class ").append(ASYNC).append(" extends AsyncDaoSupport implements ")
+                .append(asyncInterface().getCanonicalName()).append(" {\n");
+        code.append("\t\t").append(AUTOWIRED);
+        code.append("\t\t").append(PRIVATE).append(iDao.getSimpleName()).append(" dao;\n");
+        code.append("\t\t").append(PUBLIC).append(ASYNC).append("() {\n");
+        code.append("\t\t\tsuper(").append(javaString(iDao.getName())).append(");\n");
+        code.append("\t\t}\n");
+        for (int i = 0; i < asyncMethods.size(); i++) {
+            AsyncMethod asyncMethod = asyncMethods.get(i);
+            List<String> paramTypes = asyncMethod.getParamTypes();
+            StringBuilder params = new StringBuilder();
+            StringBuilder args = new StringBuilder();
+            for (int j = 0; j < paramTypes.size(); j++) {
+                if (j > 0) {
+                    params.append(", ");
+                    args.append(", ");
+                }
+                params.append(paramTypes.get(j)).append(" p").append(j);
+                args.append("p").append(j);
+            }
+            code.append("\t\t").append(OVER_RIDE);
+            code.append("\t\t").append(PUBLIC).append(asyncMethod.getReturnType()).append(" ").append(asyncMethod.getName())
+                    .append("(").append(params).append(") {\n");
+            code.append("\t\t\t").append(RETURN).append("submit(").append(i).append(", new Object[]{").append(args).append("});\n");
+            code.append("\t\t}\n");
+        }
+        code.append("\t\t").append(OVER_RIDE);
+        code.append("\t\tprotected Object call(int method, Object[] args) {\n");
+        code.append("\t\t\tswitch (method) {\n");
+        for (int i = 0; i < asyncMethods.size(); i++) {
+            AsyncMethod asyncMethod = asyncMethods.get(i);
+            List<String> daoParamTypes = asyncMethod.getDaoParamTypes();
+            boolean isVoid = void.class.equals(asyncMethod.getDaoMethod().getReturnType());
+            code.append("\t\t\t\tcase ").append(i).append(":\n");
+            code.append("\t\t\t\t\t").append(isVoid ? "" : RETURN).append("dao.").append(asyncMethod.getDaoMethod().getName()).append("(");
+            for (int j = 0; j < daoParamTypes.size(); j++) {
+                if (j > 0) {
+                    code.append(", ");
+                }
+                code.append("(").append(daoParamTypes.get(j)).append(") args[").append(j).append("]");
+            }
+            code.append(");\n");
+            if (isVoid) {
+                code.append("\t\t\t\t\t").append(RETURN).append("null;\n");
+            }
+        }
+        code.append("\t\t\t\tdefault:\n");
+        code.append("\t\t\t\t\tthrow noMethod(method);\n");
+        code.append("\t\t\t}\n");
+        code.append("\t\t}\n");
+        code.append("\t}\n");
+        return code.toString();
+    }
+
+    /**
+     * jdbc引擎的行映射：按列下标读取，直接调用实体的setter，结果中没有的列不调用
+     */
+    private String mapRowsCode() {
+        String bean = beanClz.getSimpleName();
+        StringBuilder code = new StringBuilder();
+        code.append("\t").append(PRIVATE).append("static List<").append(bean).append("> ").append(MAP_ROWS)
+                .append("(JdbcCall call, JdbcColumns columns) {\n");
+        code.append("\t\tint[] index = call.query(columns);\n");
+        code.append("\t\tList<").append(bean).append("> rows = new ArrayList<>();\n");
+        code.append("\t\twhile (call.next()) {\n");
+        code.append("\t\t\t").append(bean).append(" row = new ").append(bean).append("();\n");
+        List<RowColumn> rowColumns = rowColumns();
+        for (int i = 0; i < rowColumns.size(); i++) {
+            RowColumn column = rowColumns.get(i);
+            code.append("\t\t\tif (index[").append(i).append("] != 0) {\n");
+            code.append("\t\t\t\trow.").append(column.getSetter().getName()).append("(call.").append(column.getJdbcGetter())
+                    .append("(index[").append(i).append("]));\n");
+            code.append("\t\t\t}\n");
+        }
+        code.append("\t\t\trows.add(row);\n");
+        code.append("\t\t}\n");
+        code.append("\t\treturn rows;\n");
+        code.append("\t}\n");
+        return code.toString();
+    }
+
+    /**
+     * Mapper中的行映射：按属性下标直接调用实体的setter
+     */
+    private String rowMapperCode(List<RowColumn> rowColumns) {
+        String bean = beanClz.getSimpleName();
+        StringBuilder code = new StringBuilder();
+        code.append("\tclass ").append(ROW_MAPPER).append(" extends EntityRowMapper<").append(bean).append("> {\n");
+        code.append("\t\t").append(PUBLIC).append(ROW_MAPPER).append("() {\n");
+        code.append("\t\t\tsuper(").append(bean).append(CLASS_SUFFIX).append(", ").append(javaString(rowMapperProperties(rowColumns)))
+                .append(", ").append(javaString(rowMapperTypes(rowColumns))).append(");\n");
+        code.append("\t\t}\n");
+        code.append("\t\t@Override\n");
+        code.append("\t\tprotected ").append(bean).append(" newRow() {\n");
+        code.append("\t\t\t").append(RETURN).append("new ").append(bean).append("();\n");
+        code.append("\t\t}\n");
+        code.append("\t\t@Override\n");
+        code.append("\t\tprotected void set(").append(bean).append(" row, int property, Object value) {\n");
+        code.append("\t\t\tswitch (property) {\n");
+        for (int i = 0; i < rowColumns.size(); i++) {
+            RowColumn column = rowColumns.get(i);
+            code.append("\t\t\t\tcase ").append(i).append(":\n");
+            code.append("\t\t\t\t\trow.").append(column.getSetter().getName()).append("((").append(column.getSetter().getParameterTypes()[0].getName())
+                    .append(") value);\n");
+            code.append("\t\t\t\t\tbreak;\n");
+        }
+        code.append("\t\t\t\tdefault:\n");
+        code.append("\t\t\t}\n");
+        code.append("\t\t}\n");
+        code.append("\t}\n");
+        return code.toString();
+    }
+
     private Map<String, String> buildMapperCode() {
         Map<String, String> mapperCode = new HashMap<>(1);
         StringBuilder code = new StringBuilder();
         code.append(PACKAGE).append(mapperPath).append(";\n");
         // imports
         code.append("import org.apache.ibatis.annotations.*;\n");
+        code.append("import org.apache.ibatis.cursor.Cursor;\n");
+        code.append("import org.apache.ibatis.mapping.ResultSetType;\n");
         code.append("import java.util.List;\n");
         code.append("import org.apache.ibatis.annotations.Param;\n");
         code.append(IMPORT).append(beanClz.getName()).append(";\n");
         code.append(IMPORT).append(mapperPath).append(".provider.").append(beanClz.getSimpleName()).append("ProxyProvider;\n");
+        code.append(IMPORT).append(CachingLanguageDriver.class.getName()).append(";\n");
+        code.append(IMPORT).append(EntityRowMapper.class.getName()).append(";\n");
         // class
         code.append(MAPPER_ANT);
         String className = beanClz.getSimpleName() + "ProxyMapper";
@@ -143,6 +477,10 @@ class DaoCodeBuilder {
         for (MapperMethodCodeCache methodCodeCache : mapperMethodCodes) {
             code.append(methodCodeCache);
         }
+        List<RowColumn> rowMapperColumns = rowMapperColumns();
+        if (rowMapperColumns != null) {
+            code.append(rowMapperCode(rowMapperColumns));
+        }
         code.append("}\n");
         mapperCode.put(className, code.toString());
         return mapperCode;
@@ -153,15 +491,19 @@ class DaoCodeBuilder {
         StringBuilder code = new StringBuilder();
         code.append(PACKAGE).append(mapperPath).append(".provider;\n");
         // imports
+        code.append(IMPORT).append(SqlTemplate.class.getName()).append(";\n");
+        code.append(IMPORT).append(SqlLog.class.getName()).append(";\n");
+        code.append(IMPORT).append(StringUtils.class.getName()).append(";\n");
         code.append("import java.util.List;\n");
-        code.append("import org.apache.ibatis.jdbc.SQL;\n");
-        code.append("import ").append(StringUtils.class.getName()).append(";\n");
-        code.append("import java.text.SimpleDateFormat;\n");
         code.append("import org.apache.ibatis.annotations.Param;\n");
         code.append(IMPORT).append(beanClz.getName()).append(";\n");
         // class
         String className = beanClz.getSimpleName() + "ProxyProvider";
         code.append(PUBLIC).append("class ").append(className).append(" {\n");
+        // templates
+        for (ProviderMethodCodeCache methodCodeCache : providerMethodCodes) {
+            code.append(methodCodeCache.templateCode());
+        }
         // methods
         for (ProviderMethodCodeCache methodCodeCache : providerMethodCodes) {
             code.append(methodCodeCache);
@@ -176,23 +518,150 @@ class DaoCodeBuilder {
         mapperPath = daoProxyAnt.output();
         implPath = iDao.getName().substring(iDao.getName().lastIndexOf("."));
 
+        beanClz = beanClassOf(iDao);
+        if (cacheAnt() != null && idColumn() == null) {
+            throw new IDaoNoIdException(beanClz.getName() + "开启了@CacheById，但没有@ID字段");
+        }
+        if (cacheAnt() != null && !hasNoArgConstructor(beanClz)) {
+            throw new DynamicCompileException(beanClz.getName() + "开启了@CacheById，缓存要复制实体，需要无参构造器");
+        }
+        checkMethods(iDao);
+        asyncMethods = resolveAsyncMethods();
+    }
+
+    private static boolean hasNoArgConstructor(Class<?> clz) {
+        try {
+            clz.getDeclaredConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return @DaoProxy(async = ...)指定的异步接口，没有时为null
+     */
+    Class<?> asyncInterface() {
+        Class<?> async = ((DaoProxy) iDao.getAnnotation(DaoProxy.class)).async();
+        return void.class.equals(async) ? null : async;
+    }
+
+    List<AsyncMethod> getAsyncMethods() {
+        return asyncMethods;
+    }
+
+    /**
+     * 为异步接口的每个抽象方法找到dao中同名、同参数（解析泛型后）的方法，检查返回类型
+     * 擦除后签名不同但解析后相同的方法（子接口用具体类型重新声明的）合成一个，共用一个下标
+     */
+    private List<AsyncMethod> resolveAsyncMethods() {
+        Class<?> async = asyncInterface();
+        if (async == null) {
+            return null;
+        }
+        if (!async.isInterface()) {
+            throw new IDaoMethodArgumentException(iDao.getName() + " - 异步接口" + async.getName() + "必须是接口");
+        }
+        Method[] methods = async.getMethods();
+        // 按签名排序，生成的下标与getMethods的顺序无关
+        Arrays.sort(methods, Comparator.comparing(Method::toGenericString));
+        Map<String, AsyncMethod> resolved = new LinkedHashMap<>();
+        for (Method method : methods) {
+            if (!Modifier.isAbstract(method.getModifiers())) {
+                continue;
+            }
+            String name = async.getName() + "." + method.getName();
+            if (!CompletableFuture.class.equals(method.getReturnType())) {
+                throw new IDaoMethodArgumentException(name + " - 异步方法必须返回CompletableFuture");
+            }
+            List<Class<?>> params = resolveParams(method, async);
+            String key = method.getName() + params;
+            AsyncMethod existing = resolved.get(key);
+            if (existing != null) {
+                existing.methods.add(method);
+                continue;
+            }
+            Method daoMethod = daoMethodOf(method.getName(), params);
+            if (daoMethod == null) {
+                throw new IDaoMethodArgumentException(name + " - " + iDao.getName() + "中没有同名、同参数的方法");
+            }
+            if (Stream.class.equals(daoMethod.getReturnType()) || Cursor.class.equals(daoMethod.getReturnType())) {
+                throw new IDaoMethodArgumentException(name + " - 流式查询没有异步方法");
+            }
+            ResolvableType result = ResolvableType.forMethodReturnType(method, async).getGeneric(0);
+            ResolvableType daoResult = ResolvableType.forMethodReturnType(daoMethod, iDao);
+            if (daoMethod.getReturnType().isPrimitive()) {
+                daoResult = ResolvableType.forClass(ClassUtils.resolvePrimitiveIfNecessary(daoMethod.getReturnType()));
+            }
+            if (result != ResolvableType.NONE && !result.isAssignableFrom(daoResult)) {
+                throw new IDaoMethodArgumentException(name + " - 返回类型CompletableFuture<" + result + ">与"
+                        + iDao.getSimpleName() + "." + daoMethod.getName() + "的返回类型" + daoResult + "不一致");
+            }
+            resolved.put(key, new AsyncMethod(method, daoMethod, sourceType(ResolvableType.forMethodReturnType(method, async)),
+                    sourceTypes(method, async), sourceTypes(daoMethod, iDao)));
+        }
+        return new ArrayList<>(resolved.values());
+    }
+
+    /**
+     * @return dao中同名、解析泛型后参数相同的方法，优先非桥接方法
+     */
+    private Method daoMethodOf(String name, List<Class<?>> params) {
+        Method found = null;
+        for (Method method : iDao.getMethods()) {
+            if (!method.getName().equals(name) || Modifier.isStatic(method.getModifiers())
+                    || !resolveParams(method, iDao).equals(params)) {
+                continue;
+            }
+            if (found == null || found.isBridge()) {
+                found = method;
+            }
+        }
+        return found;
+    }
+
+    private static List<Class<?>> resolveParams(Method method, Class<?> implementation) {
+        List<Class<?>> params = new ArrayList<>(method.getParameterCount());
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            params.add(ResolvableType.forMethodParameter(method, i, implementation).resolve(Object.class));
+        }
+        return params;
+    }
+
+    private static List<String> sourceTypes(Method method, Class<?> implementation) {
+        List<String> types = new ArrayList<>(method.getParameterCount());
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            types.add(sourceType(ResolvableType.forMethodParameter(method, i, implementation)));
+        }
+        return types;
+    }
+
+    /**
+     * @return 源码中的类型：全名，带泛型，内部类用.分隔
+     */
+    private static String sourceType(ResolvableType type) {
+        return type.toString().replace('$', '.');
+    }
+
+    /**
+     * 从dao接口继承的Dao的泛型中取出实体类
+     *
+     * @param iDao dao接口类对象
+     * @return 实体类的类对象，没有继承Dao时返回null
+     */
+    static Class<?> beanClassOf(Class<?> iDao) {
         Type[] genericInterfaces = iDao.getGenericInterfaces();
         for (Type type : genericInterfaces) {
             String typeName = type.getTypeName();
             if (typeName.startsWith(Dao.class.getName()) && typeName.endsWith(">")) {
-                try {
-                    Type[] actualTypeArguments = ((ParameterizedType) type).getActualTypeArguments();
-                    if (actualTypeArguments.length == 0) {
-                        throw new IDaoTypeParamException(iDao.getName() + "-需要规定泛型：泛型为实体类的类型\n");
-                    }
-                    beanClz = Class.forName(actualTypeArguments[0].getTypeName());
-                } catch (ClassNotFoundException e) {
-                    e.printStackTrace();
+                Type[] actualTypeArguments = ((ParameterizedType) type).getActualTypeArguments();
+                if (actualTypeArguments.length == 0 || !(actualTypeArguments[0] instanceof Class)) {
+                    throw new IDaoTypeParamException(iDao.getName() + "-需要规定泛型：泛型为实体类的类型\n");
                 }
-                break;
+                return (Class<?>) actualTypeArguments[0];
             }
         }
-        checkMethods(iDao);
+        return null;
     }
 
     /**
@@ -201,7 +670,11 @@ class DaoCodeBuilder {
      * 1.注解包含@AutoSelect、@AutoInsert、@AutoUpdate、@AutoDelete中的仅一个
      * 且不同方法不能包含同一个上述注解的对象（注解类和参数均相同）
      * 2.带@AutoSelect、@AutoInsert、@AutoDelete注解的方法有且仅有一个参数，
+     * 带@AutoInsertBatch的有且仅有一个List参数并返回int[]，
+     * 带@AutoSelectStream的有且仅有一个参数并返回Stream或Cursor，
      * 带@AutoUpdate的有两个参数
+     * 3.按ID的方法（@AutoSelectById等）有且仅有一个参数，实体类没有@ID字段时，
+     * Dao中的按ID方法不代理（调用时抛出异常），dao接口自己声明的报错
      *
      * @param iDao dao接口类对象
      */
@@ -222,6 +695,34 @@ class DaoCodeBuilder {
                                 + annotation.annotationType().getSimpleName().substring("Auto".length()) + "方法必须有且仅有一个参数");
                     }
                     ants.add(annotation);
+                } else if (annotation instanceof AutoSelectStream) {
+                    if (parameterTypes.length != 1 || !(Stream.class.equals(method.getReturnType())
+                            || Cursor.class.equals(method.getReturnType()))) {
+                        throw new IDaoMethodArgumentException(iDao.getName() + "." + method.getName() + " - "
+                                + "SelectStream方法必须有且仅有一个参数，返回Stream或Cursor");
+                    }
+                    ants.add(annotation);
+                } else if (annotation instanceof AutoSelectById || annotation instanceof AutoDeleteById
+                        || annotation instanceof AutoUpdateById) {
+                    if (idColumn() == null) {
+                        if (Dao.class.equals(method.getDeclaringClass())) {
+                            continue;
+                        }
+                        throw new IDaoNoIdException(iDao.getName() + "." + method.getName() + " - "
+                                + beanClz.getSimpleName() + "没有@ID字段");
+                    }
+                    if (parameterTypes.length != 1) {
+                        throw new IDaoMethodArgumentException(iDao.getName() + "." + method.getName() + " - "
+                                + annotation.annotationType().getSimpleName().substring("Auto".length()) + "方法必须有且仅有一个参数");
+                    }
+                    ants.add(annotation);
+                } else if (annotation instanceof AutoInsertBatch) {
+                    if (parameterTypes.length != 1 || !List.class.isAssignableFrom(parameterTypes[0])
+                            || !int[].class.equals(method.getReturnType())) {
+                        throw new IDaoMethodArgumentException(iDao.getName() + "." + method.getName() + " - "
+                                + "InsertBatch方法必须有且仅有一个List参数，返回int[]");
+                    }
+                    ants.add(annotation);
                 } else if (annotation instanceof AutoUpdate) {
                     if (parameterTypes.length != 2) {
                         throw new IDaoMethodArgumentException(iDao.getName() + "." + method.getName() + " - "
@@ -233,6 +734,11 @@ class DaoCodeBuilder {
                     throw new IDaoMethodArgumentException(iDao.getName() + " - " + method.getName() + "方法有冲突注解");
                 }
             }
+            ReadFrom readFrom = method.getAnnotation(ReadFrom.class);
+            if (readFrom != null && readFrom.value() == ReadFrom.Source.REPLICA && !ants.isEmpty()
+                    && isWriteMode(ants.get(0).annotationType().getSimpleName())) {
+                throw new IDaoMethodArgumentException(iDao.getName() + "." + method.getName() + " - 写方法只能在主库执行");
+            }
             if (!ants.isEmpty()) {
                 methodMap.put(method, ants);
             }
@@ -282,113 +788,1226 @@ class DaoCodeBuilder {
      * @param annotation 增删改查
      */
     private void createMethodCode(Method method, Annotation annotation) {
+        // Provider先建立SQL模型，固定SQL的Impl和Mapper要用到
+        ProviderMethodCodeCache providerMethodCodeCache = new ProviderMethodCodeCache(method, annotation);
+        providerMethodCodes.add(providerMethodCodeCache);
         ImplMethodCodeCache implMethodCodeCache = new ImplMethodCodeCache(method, annotation);
         MapperMethodCodeCache mapperMethodCodeCache = new MapperMethodCodeCache(method, annotation);
-        ProviderMethodCodeCache providerMethodCodeCache = new ProviderMethodCodeCache(method, annotation);
         implMethodCodes.add(implMethodCodeCache);
         mapperMethodCodes.add(mapperMethodCodeCache);
-        providerMethodCodes.add(providerMethodCodeCache);
     }
 
     /**
-     * Impl方法代码封装类
-     * 封装：所属类，方法
-     * 最后用于输出方法代码字符串
+     * 实体类中可映射的列，按getter解析一次，供各provider方法共用
+     *
+     * @return 实体类的列
      */
-    public class ImplMethodCodeCache {
-        private String className;
-        private Method method;
-        private String mode;
-        private StringBuilder code = new StringBuilder();
-
-        ImplMethodCodeCache(Method method, Annotation ant) {
-            this.className = method.getDeclaringClass().getSimpleName();
-            this.mode = ant.annotationType().getSimpleName();
-            this.method = method;
-            init();
+    private List<BeanColumn> beanColumns() {
+        if (beanColumns != null) {
+            return beanColumns;
         }
+        List<BeanColumn> columns = new ArrayList<>();
+        for (Method getter : beanClz.getDeclaredMethods()) {
+            String getterName = getter.getName();
+            if (!getterName.startsWith("get")) {
+                continue;
+            }
+            String fieldName;
+            String columnName;
+            String baseName = getterName.substring("get".length());
+            if (beanClz.getAnnotation(NonCamelCase.class) == null) {
+                fieldName = StringUtils.toCamelCase(StringUtils.camelCase2_(baseName));
+                columnName = StringUtils.camelCase2_(fieldName);
+            } else {
+                fieldName = baseName;
+                columnName = fieldName;
+            }
+            Field field = null;
+            try {
+                field = getter.getDeclaringClass().getDeclaredField(fieldName);
+            } catch (NoSuchFieldException e) {
+                // 字段名不符合驼峰规则，由使用处决定是否报错
+            }
+            columns.add(new BeanColumn(getter, fieldName, columnName, field));
+        }
+        beanColumns = columns;
+        return beanColumns;
+    }
 
-        private void init() {
-            String methodName = method.getName();
-            Class<?> returnType = method.getReturnType();
-            switch (mode) {
-                case "AutoInsert":
-                case "AutoDelete":
-                    code.append("\t").append(OVER_RIDE);
-                    code.append("\t").append(PUBLIC).append(returnType.getSimpleName()).append(" ").append(methodName).
-                            append("(").append(beanClz.getSimpleName()).append(" var) {\n");
-                    code.append("\t\t").append(RETURN).append("mapper.").append(methodName).append("(var);\n");
-                    code.append("\t}\n");
+    /**
+     * 转为java字符串字面量
+     */
+    static String javaString(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (char c : s.toCharArray()) {
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
                     break;
-                case "AutoUpdate":
-                    code.append("\t").append(OVER_RIDE);
-                    code.append("\t").append(PUBLIC).append(returnType.getSimpleName()).append(" ").append(methodName)
-                            .append("(").append(beanClz.getSimpleName()).append(" set, ").append(beanClz.getSimpleName()).append(" con) {\n");
-                    code.append("\t\t").append(RETURN).append("mapper.").append(methodName).append("(set, con);\n");
-                    code.append("\t}\n");
+                case '\\':
+                    sb.append("\\\\");
                     break;
-                case "AutoSelect":
-                    code.append("\t").append(OVER_RIDE);
-                    code.append("\t").append(PUBLIC).append(returnType.getSimpleName()).append("<").append(beanClz.getSimpleName()).append("> ").
-                            append(methodName).append("(").append(beanClz.getSimpleName()).append(" var) {\n");
-                    code.append("\t\t").append(RETURN).append("mapper.").append(methodName).append("(var);\n");
-                    code.append("\t}\n");
+                case '\n':
+                    sb.append("\\n");
                     break;
-                case "AutoSelectOne":
-                    code.append("\t").append(OVER_RIDE);
-                    code.append("\t").append(PUBLIC).append(beanClz.getSimpleName()).append(" ").append(methodName)
-                            .append("(").append(beanClz.getSimpleName()).append(" var) {\n");
-                    code.append("\t\t").append(RETURN).append("mapper.").append(methodName).append("(var);\n");
-                    code.append("\t}\n");
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
                     break;
                 default:
+                    sb.append(c);
             }
         }
+        return sb.append('"').toString();
+    }
 
-        @Override
-        public String toString() {
-            return code.toString();
-        }
+    /**
+     * @return 掩码变量的声明，可选条件超过64个时用BitSet
+     */
+    private static String maskDeclaration(SqlMethodModel model) {
+        return model.isWideMask() ? "java.util.BitSet mask = new java.util.BitSet();" : "long mask = 0L;";
+    }
 
-        String getClassName() {
-            return className;
-        }
+    /**
+     * @return 置位的语句
+     */
+    private static String maskSet(SqlMethodModel model, int bit) {
+        return model.isWideMask() ? "mask.set(" + bit + ");" : "mask |= 1L << " + bit + ";";
     }
 
     /**
-     * provider中的方法代码类
+     * @return 判断某位是否置位的表达式
      */
-    public class ProviderMethodCodeCache {
-        private String className;
-        private Method method;
-        private String methodName;
-        private Annotation ant;
-        private String mode;
-        private StringBuilder code = new StringBuilder();
-        private String table;
+    private static String maskTest(SqlMethodModel model, int bit) {
+        return model.isWideMask() ? "mask.get(" + bit + ")" : "(mask & 1L << " + bit + ") != 0L";
+    }
 
-        ProviderMethodCodeCache(Method method, Annotation ant) {
-            this.className = method.getDeclaringClass().getSimpleName();
-            this.ant = ant;
-            this.mode = ant.annotationType().getSimpleName();
-            this.method = method;
-            init();
-        }
+    Class getIDao() {
+        return iDao;
+    }
 
-        private void init() {
-            methodName = method.getName();
-            Table tableAnt = (Table) beanClz.getAnnotation(Table.class);
-            if (tableAnt == null) {
-                throw new IDaoTypeParamException(beanClz.getName() + "没有对应表的注解");
-            }
-            table = tableAnt.value();
-            switch (mode) {
-                case "AutoInsert":
-                    writeInsertCode();
-                    break;
-                case "AutoDelete":
-                    writeDeleteCode();
-                    break;
+    Class getBeanClz() {
+        return beanClz;
+    }
+
+    /**
+     * 建立各方法的SQL模型，不拼接类代码，供字节码生成使用
+     *
+     * @return 各方法的provider模型
+     */
+    List<ProviderMethodCodeCache> buildModels() {
+        createMethodsCode();
+        return providerMethodCodes;
+    }
+
+    /**
+     * @return @ID字段的类型，基本类型转为包装类型，缓存的键统一转成这个类型
+     */
+    Class<?> idType() {
+        return ClassUtils.resolvePrimitiveIfNecessary(idColumn().field.getType());
+    }
+
+    /**
+     * @return 带@ID的列，没有时为null
+     */
+    private BeanColumn idColumn() {
+        for (BeanColumn column : beanColumns()) {
+            if (column.field != null && column.field.getAnnotation(ID.class) != null) {
+                return column;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 实体类的一列：getter、字段名、列名、字段（可能为null）
+     */
+    private static class BeanColumn {
+        private final Method getter;
+        private final String fieldName;
+        private final String columnName;
+        private final Field field;
+
+        BeanColumn(Method getter, String fieldName, String columnName, Field field) {
+            this.getter = getter;
+            this.fieldName = fieldName;
+            this.columnName = columnName;
+            this.field = field;
+        }
+    }
+
+    /**
+     * jdbc引擎绑定的一个参数：掩码位（ALWAYS表示总是绑定）、参数名、取值的getter（为null时是参数本身）、JdbcCall的set方法
+     */
+    static class JdbcParam {
+        private final int bit;
+        private final String param;
+        private final Method getter;
+        private final String setter;
+
+        JdbcParam(int bit, String param, Method getter, String setter) {
+            this.bit = bit;
+            this.param = param;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        int getBit() {
+            return bit;
+        }
+
+        String getParam() {
+            return param;
+        }
+
+        Method getGetter() {
+            return getter;
+        }
+
+        String getSetter() {
+            return setter;
+        }
+    }
+
+    /**
+     * 异步接口的一个方法及其对应的dao方法
+     */
+    static class AsyncMethod {
+        /**
+         * 解析泛型后签名相同的异步方法，字节码方式要逐个实现
+         */
+        private final List<Method> methods = new ArrayList<>(1);
+        private final Method daoMethod;
+        private final String returnType;
+        private final List<String> paramTypes;
+        private final List<String> daoParamTypes;
+
+        AsyncMethod(Method method, Method daoMethod, String returnType, List<String> paramTypes, List<String> daoParamTypes) {
+            this.methods.add(method);
+            this.daoMethod = daoMethod;
+            this.returnType = returnType;
+            this.paramTypes = paramTypes;
+            this.daoParamTypes = daoParamTypes;
+        }
+
+        String getName() {
+            return daoMethod.getName();
+        }
+
+        List<Method> getMethods() {
+            return methods;
+        }
+
+        Method getDaoMethod() {
+            return daoMethod;
+        }
+
+        /**
+         * @return 源码中异步方法的返回类型
+         */
+        String getReturnType() {
+            return returnType;
+        }
+
+        /**
+         * @return 源码中异步方法的参数类型
+         */
+        List<String> getParamTypes() {
+            return paramTypes;
+        }
+
+        /**
+         * @return 源码中dao方法的参数类型
+         */
+        List<String> getDaoParamTypes() {
+            return daoParamTypes;
+        }
+    }
+
+    /**
+     * jdbc引擎映射的一列：列名、实体的setter、JdbcCall的get方法
+     */
+    static class RowColumn {
+        private final String columnName;
+        private final Method setter;
+        private final String jdbcGetter;
+
+        RowColumn(String columnName, Method setter, String jdbcGetter) {
+            this.columnName = columnName;
+            this.setter = setter;
+            this.jdbcGetter = jdbcGetter;
+        }
+
+        String getColumnName() {
+            return columnName;
+        }
+
+        Method getSetter() {
+            return setter;
+        }
+
+        String getJdbcGetter() {
+            return jdbcGetter;
+        }
+
+        /**
+         * @return MyBatis中setter对应的属性名
+         */
+        String getProperty() {
+            return Introspector.decapitalize(setter.getName().substring("set".length()));
+        }
+
+        String getTypeName() {
+            return setter.getParameterTypes()[0].getSimpleName();
+        }
+    }
+
+    /**
+     * Impl方法代码封装类
+     * 封装：所属类，方法
+     * 最后用于输出方法代码字符串
+     */
+    public class ImplMethodCodeCache {
+        private String className;
+        private Method method;
+        private Annotation ant;
+        private String mode;
+        private StringBuilder code = new StringBuilder();
+
+        ImplMethodCodeCache(Method method, Annotation ant) {
+            this.className = method.getDeclaringClass().getSimpleName();
+            this.ant = ant;
+            this.mode = ant.annotationType().getSimpleName();
+            this.method = method;
+            init();
+        }
+
+        private void init() {
+            String methodName = method.getName();
+            Class<?> returnType = method.getReturnType();
+            switch (mode) {
+                case "AutoInsert":
+                case "AutoDelete":
+                    code.append("\t").append(OVER_RIDE);
+                    code.append("\t").append(PUBLIC).append(returnType.getSimpleName()).append(" ").append(methodName).
+                            append("(").append(beanClz.getSimpleName()).append(" var) {\n");
+                    writeCall(methodName, "var");
+                    break;
+                case "AutoInsertBatch":
+                    code.append("\t").append(OVER_RIDE);
+                    code.append("\t").append(PUBLIC).append("int[] ").append(methodName).append("(List<")
+                            .append(beanClz.getSimpleName()).append("> list) {\n");
+                    writeBatchCall(methodName, ((AutoInsertBatch) ant).chunkSize());
+                    break;
+                case "AutoUpdate":
+                    code.append("\t").append(OVER_RIDE);
+                    code.append("\t").append(PUBLIC).append(returnType.getSimpleName()).append(" ").append(methodName)
+                            .append("(").append(beanClz.getSimpleName()).append(" set, ").append(beanClz.getSimpleName()).append(" con) {\n");
+                    writeCall(methodName, "set, con");
+                    break;
+                case "AutoSelect":
+                    code.append("\t").append(OVER_RIDE);
+                    code.append("\t").append(PUBLIC).append(returnType.getSimpleName()).append("<").append(beanClz.getSimpleName()).append("> ").
+                            append(methodName).append("(").append(beanClz.getSimpleName()).append(" var) {\n");
+                    writeCall(methodName, "var");
+                    break;
+                case "AutoSelectOne":
+                    code.append("\t").append(OVER_RIDE);
+                    code.append("\t").append(PUBLIC).append(beanClz.getSimpleName()).append(" ").append(methodName)
+                            .append("(").append(beanClz.getSimpleName()).append(" var) {\n");
+                    writeCall(methodName, "var");
+                    break;
+                case "AutoSelectById":
+                    code.append("\t").append(OVER_RIDE);
+                    code.append("\t").append(PUBLIC).append(beanClz.getSimpleName()).append(" ").append(methodName)
+                            .append("(Object id) {\n");
+                    writeCall(methodName, "id");
+                    break;
+                case "AutoDeleteById":
+                    code.append("\t").append(OVER_RIDE);
+                    code.append("\t").append(PUBLIC).append("int ").append(methodName).append("(Object id) {\n");
+                    writeCall(methodName, "id");
+                    break;
+                case "AutoUpdateById":
+                    code.append("\t").append(OVER_RIDE);
+                    code.append("\t").append(PUBLIC).append("int ").append(methodName)
+                            .append("(").append(beanClz.getSimpleName()).append(" var) {\n");
+                    writeCall(methodName, "var");
+                    break;
+                case "AutoSelectStream":
+                    code.append("\t").append(OVER_RIDE);
+                    code.append("\t").append(PUBLIC).append(returnType.getSimpleName()).append("<").append(beanClz.getSimpleName()).append("> ")
+                            .append(methodName).append("(").append(beanClz.getSimpleName()).append(" var) {\n");
+                    writeStreamCall(methodName, Cursor.class.equals(returnType) ? "cursor" : "stream");
+                    break;
+                default:
+            }
+            if (isJdbc(method)) {
+                writeJdbcMethod(methodName);
+            }
+            if (isSession(method)) {
+                writeSessionMethod(methodName);
+            }
+        }
+
+        /**
+         * 调用mapper，前后记录SQL日志
+         */
+        private void writeCall(String methodName, String args) {
+            String cacheRole = cacheRole(method);
+            String call = isJdbc(method) ? JDBC_PREFIX + methodName + "(" + args + ")" : mapperCall(methodName, args);
+            call = metricsField() + ".success(" + call + ", started, " + metricsArgs() + ")";
+            if (CACHE_READ.equals(cacheRole)) {
+                // 先查缓存，查询结果写入缓存
+                code.append("\t\tObject key = ").append(cacheKey()).append(";\n");
+                code.append("\t\t").append(beanClz.getSimpleName()).append(" cached = (").append(beanClz.getSimpleName())
+                        .append(") ").append(CACHE_FIELD).append(".get(key);\n");
+                code.append("\t\tif (cached != null) {\n");
+                code.append("\t\t\treturn cached;\n");
+                code.append("\t\t}\n");
+                code.append("\t\tlong stamp = ").append(CACHE_FIELD).append(".stamp();\n");
+                call = "(" + beanClz.getSimpleName() + ") " + CACHE_FIELD + ".put(key, " + call + ", stamp)";
+            }
+            long cacheSeconds = queryCacheSeconds(method);
+            if (cacheSeconds > 0) {
+                // 先查结果缓存，查询结果写入缓存
+                code.append("\t\tList<Object> key = QueryCache.key(").append(javaString(queryCacheName(method)));
+                for (Method getter : queryKeyGetters()) {
+                    code.append(", var.").append(getter.getName()).append("()");
+                }
+                code.append(");\n");
+                code.append("\t\tList<").append(beanClz.getSimpleName()).append("> cached = ").append(QUERY_CACHE_FIELD).append(".get(key);\n");
+                code.append("\t\tif (cached != null) {\n");
+                code.append("\t\t\treturn cached;\n");
+                code.append("\t\t}\n");
+                code.append("\t\tlong stamp = ").append(QUERY_CACHE_FIELD).append(".stamp();\n");
+                call = QUERY_CACHE_FIELD + ".put(key, " + call + ", stamp, " + cacheSeconds + "L)";
+            }
+            code.append("\t\tlong start = SqlLog.start();\n");
+            writeMetricsStart();
+            writeRouteEnter();
+            code.append("\t\ttry {\n");
+            String fixedSql = fixedSqlOf(method);
+            if (fixedSql != null) {
+                // 固定SQL不经过Provider，在这里记下SQL
+                code.append("\t\t\tSqlLog.capture(").append(javaString(fixedSql)).append(");\n");
+            }
+            code.append("\t\t\t").append(RETURN).append(call).append(";\n");
+            writeMetricsFailure();
+            code.append("\t\t} finally {\n");
+            writeQueryCacheInvalidate();
+            if (CACHE_INVALIDATE.equals(cacheRole)) {
+                code.append("\t\t\t").append(CACHE_FIELD).append(".invalidate(").append(cacheKey()).append(");\n");
+            } else if (CACHE_INVALIDATE_ALL.equals(cacheRole)) {
+                code.append("\t\t\t").append(CACHE_FIELD).append(".invalidateAll();\n");
+            }
+            writeRouteExit();
+            code.append("\t\t\tSqlLog.end(start, ").append(javaString(logName(method))).append(");\n");
+            code.append("\t\t}\n");
+            code.append("\t}\n");
+        }
+
+        private String metricsField() {
+            return providerMethodCodeOf(method).getModel().getMetricsField();
+        }
+
+        /**
+         * @return 记入方法统计的两个参数，慢查询时按它们算出SQL的形状，只有一个参数时第二个为null
+         */
+        private String metricsArgs() {
+            List<String> params = providerMethodCodeOf(method).getModel().getParams();
+            return params.get(0) + ", " + (params.size() > 1 ? params.get(1) : "null");
+        }
+
+        private void writeMetricsStart() {
+            code.append("\t\tlong started = ").append(metricsField()).append(".start();\n");
+        }
+
+        /**
+         * 抛出异常时记入方法统计，原样抛出
+         */
+        private void writeMetricsFailure() {
+            code.append("\t\t} catch (Throwable e) {\n");
+            code.append("\t\t\t").append(metricsField()).append(".failure(started, ").append(metricsArgs()).append(");\n");
+            code.append("\t\t\tthrow e;\n");
+        }
+
+        /**
+         * 读从库的查询执行期间标记当前线程的路由
+         */
+        private void writeRouteEnter() {
+            if (readsReplica(method)) {
+                code.append("\t\tint route = DaoRouting.enter(DaoRouting.REPLICA);\n");
+            }
+        }
+
+        private void writeRouteExit() {
+            if (readsReplica(method)) {
+                code.append("\t\t\tDaoRouting.exit(route);\n");
+            }
+        }
+
+        /**
+         * 写方法结束时使表的查询结果失效
+         */
+        private void writeQueryCacheInvalidate() {
+            if (isWriteMode(mode)) {
+                code.append("\t\t\tQueryCache.invalidate(").append(javaString(getTable())).append(");\n");
+            }
+        }
+
+        /**
+         * @return 缓存键的表达式：按ID的方法是主键参数或实体的@ID字段；
+         * @AutoSelectOne只有@ID字段不为空时是@ID字段，否则为null（不查缓存）
+         */
+        private String cacheKey() {
+            String idCall = "var." + idGetter().getName() + "()";
+            switch (mode) {
+                case "AutoSelectById":
+                case "AutoDeleteById":
+                    return SqlMethodModel.ID_PARAM;
+                case "AutoUpdateById":
+                    return idCall;
+                default:
+            }
+            SqlMethodModel.Check idCheck = idCheck(providerMethodCodeOf(method).getModel());
+            StringBuilder condition = new StringBuilder();
+            for (SqlMethodModel.Check check : providerMethodCodeOf(method).getModel().getChecks()) {
+                String getterCall = check.getParam() + "." + check.getGetter().getName() + "()";
+                if (condition.length() > 0) {
+                    condition.append(" && ");
+                }
+                if (check == idCheck) {
+                    condition.append(getterCall).append(" != null");
+                } else if (check.isEmptyString()) {
+                    condition.append("StringUtils.isEmpty(").append(getterCall).append(")");
+                } else {
+                    condition.append(getterCall).append(" == null");
+                }
+            }
+            return condition + " ? " + idCall + " : null";
+        }
+
+        /**
+         * 流式查询用单独的SqlSession执行mapper方法对应的语句
+         *
+         * @param streamMethod DaoStreams中的方法：stream或cursor
+         */
+        private void writeStreamCall(String methodName, String streamMethod) {
+            code.append("\t\tlong start = SqlLog.start();\n");
+            writeMetricsStart();
+            writeRouteEnter();
+            code.append("\t\ttry {\n");
+            code.append("\t\t\t").append(RETURN).append(metricsField()).append(".success(DaoStreams.").append(streamMethod)
+                    .append("(mapperFactory, ").append(javaString(getStatementId(method))).append(", var), started, ")
+                    .append(metricsArgs()).append(");\n");
+            writeMetricsFailure();
+            code.append("\t\t} finally {\n");
+            writeRouteExit();
+            code.append("\t\t\tSqlLog.end(start, ").append(javaString(logName(method))).append(");\n");
+            code.append("\t\t}\n");
+            code.append("\t}\n");
+        }
+
+        /**
+         * @return 执行Mapper方法对应语句的表达式：经过mapper，或session调用时直接调用SqlSession的Impl方法
+         */
+        private String mapperCall(String methodName, String args) {
+            if (isSession(method)) {
+                return SESSION_PREFIX + methodName + "(" + args + ")";
+            }
+            return mapperRef() + "." + methodName + "(" + args + ")";
+        }
+
+        /**
+         * 写方法在批量作用域中使用批量SqlSession的mapper
+         */
+        private String mapperRef() {
+            if (!isWriteMode(mode)) {
+                return "mapper";
+            }
+            return "DaoBatch.mapper(" + beanClz.getSimpleName() + PREFIX + MAPPER + CLASS_SUFFIX + ", mapper)";
+        }
+
+        /**
+         * 按批调用mapper，每批一条多行INSERT，返回每批的行数
+         */
+        private void writeBatchCall(String methodName, int chunkSize) {
+            code.append("\t\tlong start = SqlLog.start();\n");
+            writeMetricsStart();
+            code.append("\t\ttry {\n");
+            code.append("\t\t\tint chunkSize = InsertBatchChunks.chunkSize(").append(chunkSize).append(");\n");
+            code.append("\t\t\tint[] counts = new int[InsertBatchChunks.chunkCount(list, chunkSize)];\n");
+            code.append("\t\t\tfor (int i = 0; i < counts.length; i++) {\n");
+            String chunk = "InsertBatchChunks.chunk(list, i, chunkSize)";
+            code.append("\t\t\t\tcounts[i] = ").append(isJdbc(method) ? JDBC_PREFIX + methodName + "(" + chunk + ")"
+                    : mapperCall(methodName, chunk)).append(";\n");
+            code.append("\t\t\t}\n");
+            code.append("\t\t\t").append(RETURN).append(metricsField()).append(".success(counts, started, ")
+                    .append(metricsArgs()).append(");\n");
+            writeMetricsFailure();
+            code.append("\t\t} finally {\n");
+            writeQueryCacheInvalidate();
+            code.append("\t\t\tSqlLog.end(start, ").append(javaString(logName(method))).append(");\n");
+            code.append("\t\t}\n");
+            code.append("\t}\n");
+        }
+
+        /**
+         * jdbc引擎执行语句的方法，参数和返回值与Mapper方法相同：
+         * 计算掩码，从模板取?占位的SQL，按掩码依次绑定参数，执行后映射结果或返回行数
+         * 写方法在批量作用域中仍然经过批量SqlSession的mapper
+         */
+        private void writeJdbcMethod(String methodName) {
+            SqlMethodModel model = providerMethodCodeOf(method).getModel();
+            String bean = beanClz.getSimpleName();
+            String[] signature = mapperSignature();
+            String args = signature[2];
+            code.append("\t").append(PRIVATE).append(signature[0]).append(" ").append(JDBC_PREFIX).append(methodName)
+                    .append("(").append(signature[1]).append(") {\n");
+            if (isWriteMode(mode)) {
+                code.append("\t\tif (DaoBatch.current() != null) {\n");
+                code.append("\t\t\t").append(RETURN).append(mapperCall(methodName, args)).append(";\n");
+                code.append("\t\t}\n");
+            }
+            String sql;
+            if (model.isFixed()) {
+                sql = javaString(SqlTemplate.jdbcSql(model.getFixedSql()));
+            } else {
+                code.append("\t\t").append(maskDeclaration(model)).append("\n");
+                String indent = "\t\t";
+                if (model.isBatch()) {
+                    code.append("\t\tfor (").append(bean).append(" ").append(SqlTemplate.BATCH_ROW).append(" : ")
+                            .append(SqlTemplate.BATCH_LIST).append(") {\n");
+                    indent = "\t\t\t";
+                }
+                List<SqlMethodModel.Check> checks = model.getChecks();
+                for (int bit = 0; bit < checks.size(); bit++) {
+                    SqlMethodModel.Check check = checks.get(bit);
+                    String getterCall = check.getParam() + "." + check.getGetter().getName() + "()";
+                    if (check.isEmptyString()) {
+                        code.append(indent).append("if (!StringUtils.isEmpty(").append(getterCall).append(")) {\n");
+                    } else {
+                        code.append(indent).append("if (").append(getterCall).append(" != null) {\n");
+                    }
+                    code.append(indent).append("\t").append(maskSet(model, bit)).append("\n");
+                    code.append(indent).append("}\n");
+                }
+                if (model.isBatch()) {
+                    code.append("\t\t}\n");
+                    sql = model.getJdbcTemplateField() + ".sql(mask, " + SqlTemplate.BATCH_LIST + ".size())";
+                } else {
+                    sql = model.getJdbcTemplateField() + ".sql(mask)";
+                }
+            }
+            code.append("\t\tJdbcCall call = JdbcCall.prepare(mapperFactory, SqlLog.capture(").append(sql).append("));\n");
+            code.append("\t\ttry {\n");
+            String indent = "\t\t\t";
+            if (model.isBatch()) {
+                code.append("\t\t\tfor (").append(bean).append(" ").append(SqlTemplate.BATCH_ROW).append(" : ")
+                        .append(SqlTemplate.BATCH_LIST).append(") {\n");
+                indent = "\t\t\t\t";
+            }
+            for (JdbcParam param : jdbcParams(model)) {
+                String value = param.getGetter() == null ? param.getParam()
+                        : param.getParam() + "." + param.getGetter().getName() + "()";
+                if (param.getBit() == SqlTemplate.ALWAYS) {
+                    code.append(indent).append("call.").append(param.getSetter()).append("(").append(value).append(");\n");
+                } else {
+                    code.append(indent).append("if (").append(maskTest(model, param.getBit())).append(") {\n");
+                    code.append(indent).append("\tcall.").append(param.getSetter()).append("(").append(value).append(");\n");
+                    code.append(indent).append("}\n");
+                }
+            }
+            if (model.isBatch()) {
+                code.append("\t\t\t}\n");
+            }
+            code.append("\t\t\t").append(RETURN);
+            if (!SqlMethodModel.SELECT.equals(model.getType())) {
+                code.append(updateResult("call.update()"));
+            } else if ("AutoSelect".equals(mode)) {
+                code.append(MAP_ROWS).append("(call, ").append(model.getColumnsField()).append(")");
+            } else {
+                code.append("JdbcCall.one(").append(MAP_ROWS).append("(call, ").append(model.getColumnsField()).append("))");
+            }
+            code.append(";\n");
+            code.append("\t\t} finally {\n");
+            code.append("\t\t\tcall.close();\n");
+            code.append("\t\t}\n");
+            code.append("\t}\n");
+        }
+
+        /**
+         * @return Mapper方法在Impl中的返回类型、参数列表和实参：{返回类型, 形参, 实参}
+         */
+        private String[] mapperSignature() {
+            String bean = beanClz.getSimpleName();
+            String returnType;
+            String params;
+            String args;
+            switch (mode) {
+                case "AutoInsertBatch":
+                    returnType = "int";
+                    params = "List<" + bean + "> " + SqlTemplate.BATCH_LIST;
+                    args = SqlTemplate.BATCH_LIST;
+                    break;
+                case "AutoUpdate":
+                    returnType = method.getReturnType().getSimpleName();
+                    params = bean + " set, " + bean + " con";
+                    args = "set, con";
+                    break;
+                case "AutoSelect":
+                    returnType = "List<" + bean + ">";
+                    params = bean + " var";
+                    args = "var";
+                    break;
+                case "AutoSelectOne":
+                    returnType = bean;
+                    params = bean + " var";
+                    args = "var";
+                    break;
+                case "AutoSelectById":
+                    returnType = bean;
+                    params = "Object id";
+                    args = "id";
+                    break;
+                case "AutoDeleteById":
+                case "AutoUpdateById":
+                    returnType = "int";
+                    params = "AutoDeleteById".equals(mode) ? "Object id" : bean + " var";
+                    args = "AutoDeleteById".equals(mode) ? "id" : "var";
+                    break;
+                default:
+                    returnType = method.getReturnType().getSimpleName();
+                    params = bean + " var";
+                    args = "var";
+            }
+            return new String[]{returnType, params, args};
+        }
+
+        /**
+         * session调用执行语句的方法，参数和返回值与Mapper方法相同：
+         * 以语句id常量直接调用SqlSession，参数对象与MapperProxy的一致（见{@link SessionParams}）
+         * 写方法在批量作用域中使用批量SqlSession
+         */
+        private void writeSessionMethod(String methodName) {
+            SqlMethodModel model = providerMethodCodeOf(method).getModel();
+            String[] signature = mapperSignature();
+            code.append("\t").append(PRIVATE).append(signature[0]).append(" ").append(SESSION_PREFIX).append(methodName)
+                    .append("(").append(signature[1]).append(") {\n");
+            String sqlSession = isWriteMode(mode) ? "DaoBatch.sqlSession(mapperFactory.getSqlSession())"
+                    : "mapperFactory.getSqlSession()";
+            String param = signature[2];
+            if (model.isBatch() || model.getParams().size() > 1) {
+                // 有@Param的参数按名字放入ParamMap
+                StringBuilder named = new StringBuilder("SessionParams.named(");
+                List<String> params = model.getParams();
+                for (int i = 0; i < params.size(); i++) {
+                    if (i > 0) {
+                        named.append(", ");
+                    }
+                    named.append(javaString(params.get(i))).append(", ").append(params.get(i));
+                }
+                param = named.append(")").toString();
+            }
+            String call = sqlSession + "." + sessionOperation(method) + "(" + model.getStatementField() + ", " + param + ")";
+            code.append("\t\t").append(RETURN).append(isWriteMode(mode) ? updateResult(call) : call).append(";\n");
+            code.append("\t}\n");
+        }
+
+        /**
+         * @param count 影响的行数的表达式
+         * @return 写方法的返回值：影响的行数按Mapper方法的返回类型转换
+         */
+        private String updateResult(String count) {
+            switch (updateReturn(method)) {
+                case "long":
+                    return "(long) " + count;
+                case "boolean":
+                    return count + " > 0";
+                default:
+                    return count;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return code.toString();
+        }
+
+        String getClassName() {
+            return className;
+        }
+    }
+
+    /**
+     * @return 方法是否由jdbc引擎执行：开启jdbc引擎时，流式查询以外的方法
+     */
+    boolean isJdbc(Method method) {
+        return jdbcEngine && !"AutoSelectStream".equals(providerMethodCodeOf(method).getMode());
+    }
+
+    /**
+     * @return 是否有方法由jdbc引擎执行
+     */
+    boolean hasJdbcMethods() {
+        for (ProviderMethodCodeCache providerMethodCode : providerMethodCodes) {
+            if (isJdbc(providerMethodCode.getMethod())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 方法是否直接调用SqlSession：开启session调用方式时，流式查询以外的方法
+     */
+    boolean isSession(Method method) {
+        return sessionDispatch && !"AutoSelectStream".equals(providerMethodCodeOf(method).getMode());
+    }
+
+    /**
+     * @return 是否有方法直接调用SqlSession
+     */
+    boolean hasSessionMethods() {
+        for (ProviderMethodCodeCache providerMethodCode : providerMethodCodes) {
+            if (isSession(providerMethodCode.getMethod())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Mapper方法对应的MappedStatement的id
+     */
+    String getStatementId(Method method) {
+        return getMapperClassName() + "." + method.getName();
+    }
+
+    /**
+     * @return session调用中执行语句的SqlSession方法
+     */
+    String sessionOperation(Method method) {
+        switch (providerMethodCodeOf(method).getMode()) {
+            case "AutoSelect":
+                return "selectList";
+            case "AutoSelectOne":
+            case "AutoSelectById":
+                return "selectOne";
+            case "AutoInsert":
+            case "AutoInsertBatch":
+                return "insert";
+            case "AutoDelete":
+            case "AutoDeleteById":
+                return "delete";
+            default:
+                return "update";
+        }
+    }
+
+    /**
+     * @return 是否有查询方法由jdbc引擎执行，有时生成行映射方法
+     */
+    boolean hasJdbcSelects() {
+        for (ProviderMethodCodeCache providerMethodCode : providerMethodCodes) {
+            if (isJdbc(providerMethodCode.getMethod())
+                    && SqlMethodModel.SELECT.equals(providerMethodCode.getModel().getType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * jdbc引擎和session调用的写方法返回的行数按Mapper方法的返回类型转换
+     *
+     * @return int（int、Integer，以及多行INSERT的每批）、long（long、Long）或boolean（boolean、Boolean）
+     */
+    String updateReturn(Method method) {
+        if ("AutoInsertBatch".equals(providerMethodCodeOf(method).getMode())) {
+            return "int";
+        }
+        Class<?> returnType = method.getReturnType();
+        if (int.class.equals(returnType) || Integer.class.equals(returnType)) {
+            return "int";
+        }
+        if (long.class.equals(returnType) || Long.class.equals(returnType)) {
+            return "long";
+        }
+        if (boolean.class.equals(returnType) || Boolean.class.equals(returnType)) {
+            return "boolean";
+        }
+        throw new IDaoMethodArgumentException(iDao.getName() + "." + method.getName() + " - "
+                + "jdbc引擎和session调用的写方法只能返回int、long、boolean或它们的包装类");
+    }
+
+    /**
+     * jdbc引擎中按SQL中?的顺序绑定的参数：UPDATE的SET、INSERT的值、WHERE，各子句内按#{...}出现的顺序
+     * 多行INSERT的参数是一行的，对每一行绑定一遍
+     *
+     * @return 模型的参数
+     */
+    List<JdbcParam> jdbcParams(SqlMethodModel model) {
+        List<JdbcParam> params = new ArrayList<>();
+        if (model.isFixed()) {
+            addJdbcParams(params, model, SqlTemplate.ALWAYS, model.getFixedSql());
+            return params;
+        }
+        for (String type : new String[]{"set", "value", "where"}) {
+            for (SqlMethodModel.Clause clause : model.getClauses()) {
+                if (type.equals(clause.getMethod())) {
+                    String[] args = clause.getArgs();
+                    addJdbcParams(params, model, clause.getBit(), args[args.length - 1]);
+                }
+            }
+        }
+        return params;
+    }
+
+    private void addJdbcParams(List<JdbcParam> params, SqlMethodModel model, int bit, String text) {
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        while (matcher.find()) {
+            String expression = matcher.group(1).split(",")[0].trim();
+            if (model.getParams().contains(SqlMethodModel.ID_PARAM)) {
+                params.add(new JdbcParam(bit, SqlMethodModel.ID_PARAM, null, "setObject"));
+                continue;
+            }
+            int dot = expression.indexOf('.');
+            String param = dot < 0 ? model.getParams().get(0) : expression.substring(0, dot);
+            String fieldName = expression.substring(dot + 1);
+            boolean knownParam = model.isBatch() ? SqlTemplate.BATCH_ROW.equals(param) : model.getParams().contains(param);
+            BeanColumn beanColumn = null;
+            for (BeanColumn column : beanColumns()) {
+                if (column.fieldName.equals(fieldName)) {
+                    beanColumn = column;
+                    break;
+                }
+            }
+            if (!knownParam || beanColumn == null) {
+                throw new DynamicCompileException(iDao.getName() + "." + model.getMethodName()
+                        + " - jdbc引擎无法绑定参数#{" + matcher.group(1) + "}");
+            }
+            params.add(new JdbcParam(bit, param, beanColumn.getter, jdbcSetter(beanColumn.getter.getReturnType())));
+        }
+    }
+
+    /**
+     * @return 绑定该类型参数的JdbcCall方法，其他类型按Object绑定
+     */
+    private static String jdbcSetter(Class<?> type) {
+        if (String.class.equals(type)) {
+            return "setString";
+        } else if (Integer.class.equals(type)) {
+            return "setInteger";
+        } else if (Long.class.equals(type)) {
+            return "setLong";
+        } else if (Double.class.equals(type)) {
+            return "setDouble";
+        } else if (Date.class.equals(type)) {
+            return "setDate";
+        }
+        return "setObject";
+    }
+
+    /**
+     * jdbc引擎映射的列：类型为String、Integer、Long、Double、Date且有setter的列
+     *
+     * @return 行映射中的列，顺序与{@link #rowLabels()}一致
+     */
+    List<RowColumn> rowColumns() {
+        List<RowColumn> rowColumns = new ArrayList<>();
+        for (BeanColumn column : beanColumns()) {
+            Class<?> type = column.getter.getReturnType();
+            String jdbcGetter;
+            if (String.class.equals(type)) {
+                jdbcGetter = "getString";
+            } else if (Integer.class.equals(type)) {
+                jdbcGetter = "getInteger";
+            } else if (Long.class.equals(type)) {
+                jdbcGetter = "getLong";
+            } else if (Double.class.equals(type)) {
+                jdbcGetter = "getDouble";
+            } else if (Date.class.equals(type)) {
+                jdbcGetter = "getDate";
+            } else {
+                continue;
+            }
+            try {
+                Method setter = beanClz.getMethod("set" + column.getter.getName().substring("get".length()), type);
+                rowColumns.add(new RowColumn(column.columnName, setter, jdbcGetter));
+            } catch (NoSuchMethodException e) {
+                // 只读的列不映射
+            }
+        }
+        return rowColumns;
+    }
+
+    /**
+     * @return 行映射中的列名，用逗号分隔
+     */
+    /**
+     * Mapper中行映射的列：有非流式的查询方法，并且实体所有MyBatis能写入的属性都在{@link #rowColumns()}中时才生成，
+     * 否则这些属性会丢失，仍由MyBatis映射
+     *
+     * @return 行映射的列，不生成时为null
+     */
+    List<RowColumn> rowMapperColumns() {
+        boolean hasSelects = false;
+        for (ProviderMethodCodeCache providerMethodCode : providerMethodCodes) {
+            if (SqlMethodModel.SELECT.equals(providerMethodCode.getModel().getType())
+                    && !"AutoSelectStream".equals(providerMethodCode.getMode())) {
+                hasSelects = true;
+            }
+        }
+        List<RowColumn> rowColumns = rowColumns();
+        if (!hasSelects || rowColumns.isEmpty()) {
+            return null;
+        }
+        Set<String> properties = new HashSet<>();
+        for (RowColumn column : rowColumns) {
+            properties.add(column.getProperty().toUpperCase(Locale.ENGLISH));
+        }
+        for (Method method : beanClz.getMethods()) {
+            String name = method.getName();
+            if (name.startsWith("set") && name.length() > "set".length() && method.getParameterCount() == 1
+                    && !Modifier.isStatic(method.getModifiers())
+                    && !properties.contains(Introspector.decapitalize(name.substring("set".length())).toUpperCase(Locale.ENGLISH))) {
+                return null;
+            }
+        }
+        // 没有setter的字段MyBatis直接写入
+        for (Class<?> clz = beanClz; clz != null && clz != Object.class; clz = clz.getSuperclass()) {
+            for (Field field : clz.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (!field.isSynthetic() && !Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers)
+                        && !properties.contains(field.getName().toUpperCase(Locale.ENGLISH))) {
+                    return null;
+                }
+            }
+        }
+        return rowColumns;
+    }
+
+    static String rowMapperProperties(List<RowColumn> rowColumns) {
+        StringJoiner properties = new StringJoiner(",");
+        for (RowColumn column : rowColumns) {
+            properties.add(column.getProperty());
+        }
+        return properties.toString();
+    }
+
+    static String rowMapperTypes(List<RowColumn> rowColumns) {
+        StringJoiner types = new StringJoiner(",");
+        for (RowColumn column : rowColumns) {
+            types.add(column.getTypeName());
+        }
+        return types.toString();
+    }
+
+    String rowLabels() {
+        StringJoiner labels = new StringJoiner(",");
+        for (RowColumn column : rowColumns()) {
+            labels.add(column.getColumnName());
+        }
+        return labels.toString();
+    }
+
+    /**
+     * @return 是否写方法：写方法在批量作用域中进入批
+     */
+    static boolean isWriteMode(String mode) {
+        return !"AutoSelect".equals(mode) && !"AutoSelectOne".equals(mode) && !"AutoSelectStream".equals(mode)
+                && !"AutoSelectById".equals(mode);
+    }
+
+    /**
+     * @return 方法的固定SQL，不是固定SQL时为null
+     */
+    String fixedSqlOf(Method method) {
+        return providerMethodCodeOf(method).getModel().getFixedSql();
+    }
+
+    private ProviderMethodCodeCache providerMethodCodeOf(Method method) {
+        for (ProviderMethodCodeCache providerMethodCode : providerMethodCodes) {
+            if (providerMethodCode.getMethod().equals(method)) {
+                return providerMethodCode;
+            }
+        }
+        throw new DynamicCompileException(method + "没有SQL模型");
+    }
+
+    /**
+     * @return 实体缓存的注解，实体类没有开启缓存时为null
+     */
+    CacheById cacheAnt() {
+        return (CacheById) beanClz.getAnnotation(CacheById.class);
+    }
+
+    /**
+     * 方法对实体缓存的作用
+     * 读：不带投影的SELECT_BY_ID，以及只有@ID条件、不带投影的@AutoSelectOne（参数中只有@ID字段不为空时才查缓存）
+     * 按键失效：按ID的删除、更新；整体失效：其他UPDATE、DELETE
+     *
+     * @return CACHE_READ、CACHE_INVALIDATE、CACHE_INVALIDATE_ALL，不涉及缓存时为null
+     */
+    String cacheRole(Method method) {
+        if (cacheAnt() == null) {
+            return null;
+        }
+        ProviderMethodCodeCache providerMethodCode = providerMethodCodeOf(method);
+        SqlMethodModel model = providerMethodCode.getModel();
+        switch (providerMethodCode.getMode()) {
+            case "AutoSelectById":
+                return "*".equals(model.getColumns()) ? CACHE_READ : null;
+            case "AutoSelectOne":
+                for (SqlMethodModel.Clause clause : model.getClauses()) {
+                    if (clause.getBit() == SqlTemplate.ALWAYS) {
+                        return null;
+                    }
+                }
+                return "*".equals(model.getColumns()) && idCheck(model) != null ? CACHE_READ : null;
+            case "AutoDeleteById":
+            case "AutoUpdateById":
+                return CACHE_INVALIDATE;
+            case "AutoUpdate":
+            case "AutoDelete":
+                return CACHE_INVALIDATE_ALL;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return 方法执行期间是否标记读从库：写方法不标记；查询方法按方法上的@ReadFrom，其次dao接口上的，都没有时读从库
+     */
+    boolean readsReplica(Method method) {
+        if (isWriteMode(providerMethodCodeOf(method).getMode())) {
+            return false;
+        }
+        ReadFrom readFrom = method.getAnnotation(ReadFrom.class);
+        if (readFrom == null) {
+            readFrom = (ReadFrom) iDao.getAnnotation(ReadFrom.class);
+        }
+        return readFrom == null || readFrom.value() == ReadFrom.Source.REPLICA;
+    }
+
+    /**
+     * @return 方法的查询结果缓存秒数，不缓存时为0
+     */
+    long queryCacheSeconds(Method method) {
+        for (Annotation annotation : methodMap.get(method)) {
+            if (annotation instanceof AutoSelect) {
+                return ((AutoSelect) annotation).cacheSeconds();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return 是否有方法缓存查询结果
+     */
+    boolean hasQueryCache() {
+        for (Method method : methodMap.keySet()) {
+            if (queryCacheSeconds(method) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 实体类对应的表
+     */
+    String getTable() {
+        Table tableAnt = (Table) beanClz.getAnnotation(Table.class);
+        if (tableAnt == null) {
+            throw new IDaoTypeParamException(beanClz.getName() + "没有对应表的注解");
+        }
+        return tableAnt.value();
+    }
+
+    /**
+     * @return 查询结果缓存的键所取的getter：实体的所有getter，决定了掩码和所有参数值
+     */
+    List<Method> queryKeyGetters() {
+        List<Method> getters = new ArrayList<>();
+        for (BeanColumn column : beanColumns()) {
+            getters.add(column.getter);
+        }
+        return getters;
+    }
+
+    /**
+     * @return 模型中检查@ID字段的检查，没有时为null
+     */
+    SqlMethodModel.Check idCheck(SqlMethodModel model) {
+        for (SqlMethodModel.Check check : model.getChecks()) {
+            if (check.getGetter().equals(idColumn().getter)) {
+                return check;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return @ID字段的getter
+     */
+    Method idGetter() {
+        return idColumn().getter;
+    }
+
+    /**
+     * @return SQL日志中的方法名：dao接口名.方法名
+     */
+    String logName(Method method) {
+        return iDao.getSimpleName() + "." + method.getName();
+    }
+
+    /**
+     * @return 结果缓存键中的方法名：dao接口全名.方法名，不同包中的同名dao不共用结果
+     */
+    String queryCacheName(Method method) {
+        return iDao.getName() + "." + method.getName();
+    }
+
+    /**
+     * provider中的方法代码类
+     * 先根据注解和实体类建立SQL模型，再由模型输出代码
+     */
+    public class ProviderMethodCodeCache {
+        private String className;
+        private Method method;
+        private String methodName;
+        private Annotation ant;
+        private String mode;
+        private StringBuilder code = new StringBuilder();
+        private String table;
+        private SqlMethodModel model;
+
+        ProviderMethodCodeCache(Method method, Annotation ant) {
+            this.className = method.getDeclaringClass().getSimpleName();
+            this.ant = ant;
+            this.mode = ant.annotationType().getSimpleName();
+            this.method = method;
+            init();
+        }
+
+        private void init() {
+            methodName = method.getName();
+            table = getTable();
+            switch (mode) {
+                case "AutoInsert":
+                    writeInsertCode();
+                    break;
+                case "AutoInsertBatch":
+                    writeInsertBatchCode();
+                    break;
+                case "AutoDelete":
+                    writeDeleteCode();
+                    break;
                 case "AutoUpdate":
                     writeUpdateCode();
                     break;
@@ -396,135 +2015,44 @@ class DaoCodeBuilder {
                     writeSelectCode(true);
                     break;
                 case "AutoSelect":
+                case "AutoSelectStream":
                     writeSelectCode();
                     break;
+                case "AutoSelectById":
+                case "AutoDeleteById":
+                case "AutoUpdateById":
+                    writeByIdCode();
+                    break;
                 default:
             }
+            if (model != null && !model.isFixed()) {
+                writeCode();
+            }
         }
 
         private void writeUpdateCode() {
-            code.append("\t").append(PUBLIC).append("String ").append(methodName).append("(@Param(\"set\") ").append(beanClz.getSimpleName())
-                    .append(" set, @Param(\"con\") ").append(beanClz.getSimpleName()).append(" con) {\n");
-            code.append("\t\tSQL sql = new SQL();\n");
-
-            code.append("\t\tsql.UPDATE(\"").append(table).append("\");\n");
-            List<Method> getterOrSetters = getterOrSetters(beanClz, "get");
+            model = new SqlMethodModel(methodName, SqlMethodModel.UPDATE, table, null, "set", "con");
             // SETS
-            for (Method getter : getterOrSetters) {
-                Class<?> getterReturnType = getter.getReturnType();
-                String getterName = getter.getName();
-                String fieldName;
-                String columnName;
-                String baseName = getterName.substring("get".length());
-                if (beanClz.getAnnotation(NonCamelCase.class) == null) {
-                    fieldName = StringUtils.toCamelCase(StringUtils.camelCase2_(baseName));
-                    columnName = StringUtils.camelCase2_(fieldName);
-                } else {
-                    fieldName = baseName;
-                    columnName = fieldName;
-                }
+            for (BeanColumn column : beanColumns()) {
+                Class<?> getterReturnType = column.getter.getReturnType();
                 if (String.class.equals(getterReturnType)) {
-                    Field field = null;
-                    try {
-                        field = getter.getDeclaringClass().getDeclaredField(fieldName);
-                    } catch (NoSuchFieldException e) {
-                        e.printStackTrace();
-                    }
-                    SQLDatePattern datePattern = field != null ? field.getAnnotation(SQLDatePattern.class) : null;
+                    SQLDatePattern datePattern = column.field != null ? column.field.getAnnotation(SQLDatePattern.class) : null;
                     if (datePattern == null) {
-                        code.append("\t\tif (!StringUtils.isEmpty(set.").append(getterName).append("())) {\n");
-                        code.append("\t\t\tsql.SET(\"").append(columnName).append(" = #{set.").append(fieldName).append("}\");\n");
-                        code.append("\t\t}\n");
+                        model.set(model.check("set", column.getter, true), column.columnName + " = #{set." + column.fieldName + "}");
                     } else {
-                        String pattern = datePattern.pattern();
-                        String func = datePattern.func();
-                        code.append("\t\tif (set.").append(getterName).append("() != null) {\n");
-                        code.append("\t\t\tsql.SET(\"").append(columnName).append(" = ").append(func).append("(#{set.").append(fieldName)
-                                .append("}, \\'").append(pattern).append("\\')\");\n");
-                        code.append("\t\t}\n");
+                        model.set(model.check("set", column.getter, false), column.columnName + " = " + datePattern.func()
+                                + "(#{set." + column.fieldName + "}, '" + datePattern.pattern() + "')");
                     }
                 } else if (Integer.class.equals(getterReturnType) || Double.class.equals(getterReturnType)
                         || Long.class.equals(getterReturnType) || Date.class.equals(getterReturnType)) {
-                    code.append("\t\tif (set.").append(getterName).append("() != null) {\n");
-                    code.append("\t\t\tsql.SET(\"").append(columnName).append(" = #{set.").append(fieldName).append("}\");\n");
-                    code.append("\t\t}\n");
+                    model.set(model.check("set", column.getter, false), column.columnName + " = #{set." + column.fieldName + "}");
                 }
             }
             // WHERE
             // 查看注解
-            String[] other;
-            String[] compare;
-            other = ((AutoUpdate) ant).other();
-            compare = ((AutoUpdate) ant).compare();
-            Map<String, String> otherMap = new HashMap<>(3);
-            for (String o : other) {
-                String column = o.split("->")[0].trim().toUpperCase();
-                String condition = o.split("->")[1];
-                otherMap.put(column, condition);
-            }
-            Map<String, String> compareMap = new HashMap<>(2);
-            for (String c : compare) {
-                String column = c.split(":")[0].trim().toUpperCase();
-                String operator = c.split(":")[1];
-                compareMap.put(column, operator);
-            }
-            for (Method getter : getterOrSetters) {
-                Class<?> getterReturnType = getter.getReturnType();
-                String getterName = getter.getName();
-                String fieldName;
-                String columnName;
-                String baseName = getterName.substring("get".length());
-                if (beanClz.getAnnotation(NonCamelCase.class) == null) {
-                    fieldName = StringUtils.toCamelCase(StringUtils.camelCase2_(baseName));
-                    columnName = StringUtils.camelCase2_(fieldName);
-                } else {
-                    fieldName = baseName;
-                    columnName = fieldName;
-                }
-                // 优先拼接注解中的条件
-                if (otherMap.containsKey(columnName)) {
-                    code.append("\t\tsql.WHERE(\"(").append(otherMap.get(columnName)).append(")\");\n");
-                    continue;
-                }
-                if (compareMap.containsKey(columnName)) {
-                    if ("LIKE".equals(compareMap.get(columnName).trim().toUpperCase())) {
-                        code.append("\t\tsql.WHERE(\"").append(columnName).append(" ").append(compareMap.get(columnName))
-                                .append(" '%\" + con.").append(getterName).append("() + \"%'\");\n");
-                    } else {
-                        code.append("\t\tsql.WHERE(\"").append(columnName).append(" ").append(compareMap.get(columnName))
-                                .append(" #{con.").append(fieldName).append("}\");\n");
-                    }
-                    continue;
-                }
-
-                if (String.class.equals(getterReturnType)) {
-                    Field field = null;
-                    try {
-                        field = getter.getDeclaringClass().getDeclaredField(fieldName);
-                    } catch (NoSuchFieldException e) {
-                        e.printStackTrace();
-                    }
-                    SQLDatePattern datePattern = field != null ? field.getAnnotation(SQLDatePattern.class) : null;
-                    if (datePattern == null) {
-                        code.append("\t\tif (!StringUtils.isEmpty(con.").append(getterName).append("())) {\n");
-                        code.append("\t\t\tsql.WHERE(\"").append(columnName).append(" = #{con.").append(fieldName).append("}\");\n");
-                        code.append("\t\t}\n");
-                    } else {
-                        String func = datePattern.func();
-                        String pattern = datePattern.pattern();
-                        code.append("\t\tif (con.").append(getterName).append("() != null) {\n");
-                        code.append("\t\t\tsql.WHERE(\"").append(columnName).append(" = ").append(func).append("(#{con.").append(fieldName)
-                                .append("}, \\'").append(pattern).append("\\')\");\n");
-                        code.append("\t\t}\n");
-                    }
-                } else if (Integer.class.equals(getterReturnType) || Double.class.equals(getterReturnType)
-                        || Long.class.equals(getterReturnType) || Date.class.equals(getterReturnType)) {
-                    code.append("\t\tif (con.").append(getterName).append("() != null) {\n");
-                    code.append("\t\t\tsql.WHERE(\"").append(columnName).append(" = #{con.").append(fieldName).append("}\");\n");
-                    code.append("\t\t}\n");
-                }
-            }
-            tail();
+            String[] other = ((AutoUpdate) ant).other();
+            String[] compare = ((AutoUpdate) ant).compare();
+            makeWhere("con", "con.", otherMap(other), compareMap(compare));
         }
 
         private void writeSelectCode() {
@@ -535,222 +2063,409 @@ class DaoCodeBuilder {
          * 生成select的代码
          * 优先查看注解
          *
-         * @param single AutoSelectOne \ AutoSelect
+         * @param single AutoSelectOne \ AutoSelect、AutoSelectStream
          */
         private void writeSelectCode(boolean single) {
-            code.append("\t").append(PUBLIC).append("String ").append(methodName).
-                    append("(").append(beanClz.getSimpleName()).append(" var) {\n");
-            code.append("\t\tSQL sql = new SQL();\n");
-            code.append("\t\tsql.SELECT(\"*\").FROM(\"").append(table).append("\");\n");
             // 查看注解
             String[] other;
             String[] compare;
+            String[] columns;
             String[] orderBy = {};
             boolean desc = false;
+            int limit = 0;
+            String seekBy = "";
             if (single) {
                 other = ((AutoSelectOne) ant).other();
                 compare = ((AutoSelectOne) ant).compare();
+                columns = ((AutoSelectOne) ant).columns();
+                // 取两行就能判断结果是否多于一行
+                limit = 2;
+            } else if (ant instanceof AutoSelectStream) {
+                other = ((AutoSelectStream) ant).other();
+                compare = ((AutoSelectStream) ant).compare();
+                columns = ((AutoSelectStream) ant).columns();
+                orderBy = ((AutoSelectStream) ant).orderBy();
+                if (orderBy.length == 0) {
+                    orderBy = ((AutoSelectStream) ant).orderDescBy();
+                    desc = true;
+                }
             } else {
                 other = ((AutoSelect) ant).other();
                 compare = ((AutoSelect) ant).compare();
+                columns = ((AutoSelect) ant).columns();
                 orderBy = ((AutoSelect) ant).orderBy();
                 if (orderBy.length == 0) {
                     orderBy = ((AutoSelect) ant).orderDescBy();
                     desc = true;
                 }
+                limit = ((AutoSelect) ant).limit();
+                seekBy = ((AutoSelect) ant).seekBy();
             }
-            Map<String, String> otherMap = new HashMap<>();
-            for (String o : other) {
-                String column = o.split("->")[0].trim().toUpperCase();
-                String condition = o.split("->")[1];
-                otherMap.put(column, condition);
+            if (limit < 0) {
+                throw new IDaoMethodArgumentException(iDao.getName() + "." + methodName + " - limit不能为负数");
             }
-            Map<String, String> compareMap = new HashMap<>();
-            for (String c : compare) {
-                String column = c.split(":")[0].trim().toUpperCase();
-                String operator = c.split(":")[1];
-                compareMap.put(column, operator);
+            List<String> projection = projection(columns);
+            model = new SqlMethodModel(methodName, SqlMethodModel.SELECT, table,
+                    projection.isEmpty() ? "*" : String.join(", ", projection), "var");
+            String seekColumn = seekColumn(seekBy, orderBy);
+            if (seekColumn != null && !projection.isEmpty() && !projection.contains(seekColumn)) {
+                throw new IDaoMethodArgumentException(iDao.getName() + "." + methodName + " - "
+                        + "columns中必须包含seekBy的列：" + seekColumn);
+            }
+            if (seekColumn != null && orderBy.length == 0) {
+                orderBy = new String[]{seekColumn};
+                desc = false;
             }
-            makeWhere(code, otherMap, compareMap);
+            makeWhere("var", "", otherMap(other), compareMap(compare), seekColumn, desc ? "<" : ">");
             if (orderBy.length > 0) {
-                code.append("\t\tsql.ORDER_BY(\"").append(Arrays.stream(orderBy).collect(Collectors.joining(",")));
-                if (desc) {
-                    code.append(" DESC\");\n");
-                } else {
-                    code.append("\");\n");
+                model.orderBy(String.join(",", orderBy) + (desc ? " DESC" : ""));
+            }
+            if (limit > 0) {
+                model.limit(limit, oracleDialect);
+            }
+        }
+
+        /**
+         * @param columns 注解中的列
+         * @return 实体中存在的列名，没有指定时为空
+         */
+        private List<String> projection(String[] columns) {
+            List<String> projection = new ArrayList<>(columns.length);
+            for (String c : columns) {
+                String columnName = null;
+                for (BeanColumn column : beanColumns()) {
+                    if (column.columnName.equalsIgnoreCase(c.trim())) {
+                        columnName = column.columnName;
+                        break;
+                    }
+                }
+                if (columnName == null) {
+                    throw new IDaoMethodArgumentException(iDao.getName() + "." + methodName + " - "
+                            + beanClz.getSimpleName() + "中没有columns的列：" + c);
+                }
+                if (!projection.contains(columnName)) {
+                    projection.add(columnName);
+                }
+            }
+            return projection;
+        }
+
+        /**
+         * @param seekBy  注解中的按键翻页列
+         * @param orderBy 注解中的排序列
+         * @return 按键翻页的列名，没有时为null
+         */
+        private String seekColumn(String seekBy, String[] orderBy) {
+            if (StringUtils.isEmpty(seekBy)) {
+                return null;
+            }
+            String seekColumn = null;
+            for (BeanColumn column : beanColumns()) {
+                boolean matched = AutoSelect.SEEK_ID.equals(seekBy)
+                        ? column.field != null && column.field.getAnnotation(ID.class) != null
+                        : column.columnName.equalsIgnoreCase(seekBy.trim());
+                if (matched) {
+                    seekColumn = column.columnName;
+                    break;
                 }
             }
-            tail();
+            if (seekColumn == null) {
+                throw new IDaoMethodArgumentException(iDao.getName() + "." + methodName + " - "
+                        + beanClz.getSimpleName() + "中没有seekBy的列：" + seekBy);
+            }
+            if (orderBy.length > 0 && !seekColumn.equalsIgnoreCase(orderBy[0].trim())) {
+                throw new IDaoMethodArgumentException(iDao.getName() + "." + methodName + " - "
+                        + "seekBy的列必须是排序的第一列：" + seekColumn);
+            }
+            return seekColumn;
+        }
+
+        /**
+         * 按ID的语句：固定SQL，WHERE只有@ID列，UPDATE的SET包含其他所有列
+         */
+        private void writeByIdCode() {
+            BeanColumn idColumn = idColumn();
+            SQL sql = new SQL();
+            switch (mode) {
+                case "AutoSelectById":
+                    List<String> projection = projection(((AutoSelectById) ant).columns());
+                    String columns = projection.isEmpty() ? "*" : String.join(", ", projection);
+                    model = new SqlMethodModel(methodName, SqlMethodModel.SELECT, table, columns, SqlMethodModel.ID_PARAM);
+                    sql.SELECT(columns).FROM(table);
+                    break;
+                case "AutoDeleteById":
+                    model = new SqlMethodModel(methodName, SqlMethodModel.DELETE, table, null, SqlMethodModel.ID_PARAM);
+                    sql.DELETE_FROM(table);
+                    break;
+                default:
+                    model = new SqlMethodModel(methodName, SqlMethodModel.UPDATE, table, null, "var");
+                    sql.UPDATE(table);
+                    for (BeanColumn column : beanColumns()) {
+                        Class<?> getterReturnType = column.getter.getReturnType();
+                        if (column == idColumn || !(String.class.equals(getterReturnType) || Integer.class.equals(getterReturnType)
+                                || Double.class.equals(getterReturnType) || Long.class.equals(getterReturnType)
+                                || Date.class.equals(getterReturnType))) {
+                            continue;
+                        }
+                        String value = "#{" + column.fieldName + "}";
+                        SQLDatePattern datePattern = column.field != null ? column.field.getAnnotation(SQLDatePattern.class) : null;
+                        if (datePattern != null && String.class.equals(getterReturnType)) {
+                            value = datePattern.func() + "(" + value + ", '" + datePattern.pattern() + "')";
+                        }
+                        sql.SET(column.columnName + " = " + value);
+                    }
+            }
+            sql.WHERE(idColumn.columnName + " = #{" + idColumn.fieldName + "}");
+            model.fixedSql(sql.toString());
         }
 
         private void writeInsertCode() {
-            code.append("\t").append(PUBLIC).append("String ").append(methodName).
-                    append("(").append(beanClz.getSimpleName()).append(" var) {\n");
-            code.append("\t\tSQL sql = new SQL();\n");
-            code.append("\t\tsql.INSERT_INTO(\"").append(table).append("\");\n");
+            model = new SqlMethodModel(methodName, SqlMethodModel.INSERT, table, null, "var");
             // 查看注解
-            boolean idSeq = ((AutoInsert) ant).idSeq();
-
-            List<Method> getters = this.getterOrSetters(beanClz, "get");
-            for (Method getter : getters) {
-                Class<?> getterReturnType = getter.getReturnType();
-                String getterName = getter.getName();
-                String fieldName;
-                String columnName;
-                String baseName = getterName.substring("get".length());
-                if (beanClz.getAnnotation(NonCamelCase.class) == null) {
-                    fieldName = StringUtils.toCamelCase(StringUtils.camelCase2_(baseName));
-                    columnName = StringUtils.camelCase2_(fieldName);
-                } else {
-                    fieldName = baseName;
-                    columnName = fieldName;
-                }
+            writeValues("var", "", ((AutoInsert) ant).idSeq());
+        }
+
+        /**
+         * 多行INSERT的值写作#{row.字段}，拼SQL时按行替换
+         */
+        private void writeInsertBatchCode() {
+            model = new SqlMethodModel(methodName, SqlMethodModel.INSERT_BATCH, table, null, SqlTemplate.BATCH_LIST);
+            writeValues(SqlTemplate.BATCH_ROW, SqlTemplate.BATCH_ROW + ".", ((AutoInsertBatch) ant).idSeq());
+        }
+
+        /**
+         * 拼接INSERT的列和值
+         *
+         * @param param  检查字段是否为空的参数名
+         * @param prefix #{}中的参数前缀
+         * @param idSeq  @ID字段是否使用序列
+         */
+        private void writeValues(String param, String prefix, boolean idSeq) {
+            for (BeanColumn column : beanColumns()) {
+                Class<?> getterReturnType = column.getter.getReturnType();
+                String value = "#{" + prefix + column.fieldName + "}";
                 if (String.class.equals(getterReturnType)) {
-                    Field field = null;
-                    try {
-                        field = getter.getDeclaringClass().getDeclaredField(fieldName);
-                    } catch (NoSuchFieldException e) {
-                        e.printStackTrace();
-                    }
-                    SQLDatePattern datePattern = field != null ? field.getAnnotation(SQLDatePattern.class) : null;
+                    SQLDatePattern datePattern = column.field != null ? column.field.getAnnotation(SQLDatePattern.class) : null;
                     if (datePattern == null) {
-                        code.append("\t\tif (!StringUtils.isEmpty(var.").append(getterName).append("())) {\n");
-                        code.append("\t\t\tsql.INTO_COLUMNS(\"").append(columnName).append("\").INTO_VALUES(\"#{").append(fieldName).append("}\");\n");
-                        code.append("\t\t}\n");
+                        model.value(model.check(param, column.getter, true), column.columnName, value);
                     } else {
-                        String sqlPattern = datePattern.pattern();
-                        String func = datePattern.func();
-                        code.append("\t\tif (var.").append(getterName).append("() != null) {\n");
-                        code.append("\t\t\tsql.INTO_COLUMNS(\"").append(columnName).append("\").INTO_VALUES(\"").append(func).append("(\\'\" + var.").
-                                append(getterName).append("() + \"\\', \\'").append(sqlPattern).append("\\')\");\n");
-                        code.append("\t\t}\n");
+                        model.value(model.check(param, column.getter, false), column.columnName, datePattern.func()
+                                + "(" + value + ", '" + datePattern.pattern() + "')");
                     }
                 } else if (Integer.class.equals(getterReturnType)) {
-                    Field field = null;
-                    try {
-                        field = getter.getDeclaringClass().getDeclaredField(fieldName);
-                    } catch (NoSuchFieldException e) {
-                        e.printStackTrace();
-                    }
-                    assert field != null;
-                    ID idAnt = field.getAnnotation(ID.class);
-                    if (idSeq && idAnt != null) {
-                        code.append("\t\tsql.INTO_COLUMNS(\"").append(columnName).append("\").INTO_VALUES(\"").append(idAnt.seq()).append(".NEXTVAL\"");
+                    ID idAnt = column.field != null ? column.field.getAnnotation(ID.class) : null;
+                    if (idSeq && idAnt != null && !StringUtils.isEmpty(idAnt.seq())) {
+                        model.value(SqlTemplate.ALWAYS, column.columnName, idAnt.seq() + ".NEXTVAL");
                     } else {
-                        code.append("\t\tif (var.").append(getterName).append("() != null) {\n");
-                        code.append("\t\t\tsql.INTO_COLUMNS(\"").append(columnName).append("\").INTO_VALUES(\"#{").append(fieldName).append("}\");\n");
-                        code.append("\t\t}\n");
+                        model.value(model.check(param, column.getter, false), column.columnName, value);
                     }
                 } else if (Double.class.equals(getterReturnType) || Long.class.equals(getterReturnType)
                         || Date.class.equals(getterReturnType)) {
-                    code.append("\t\tif (var.").append(getterName).append("() != null) {\n");
-                    code.append("\t\t\tsql.INTO_COLUMNS(\"").append(columnName).append("\").INTO_VALUES(\"#{").append(fieldName).append("}\");\n");
-                    code.append("\t\t}\n");
+                    model.value(model.check(param, column.getter, false), column.columnName, value);
                 }
             }
-            tail();
-        }
-
-        private void tail() {
-            code.append("\t\tSystem.out.println(sql);\n");
-            code.append("\t\t").append(RETURN).append("sql.toString();\n");
-            code.append("\t}\n");
         }
 
         private void writeDeleteCode() {
-            code.append("\t").append(PUBLIC).append("String ").append(methodName).
-                    append("(").append(beanClz.getSimpleName()).append(" var) {\n");
-            code.append("\t\tSQL sql = new SQL();\n");
-            code.append("\t\tsql.DELETE_FROM(\"").append(table).append("\");\n");
+            model = new SqlMethodModel(methodName, SqlMethodModel.DELETE, table, null, "var");
             // 查看注解
-            String[] other;
-            String[] compare;
-            other = ((AutoDelete) ant).other();
-            compare = ((AutoDelete) ant).compare();
+            String[] other = ((AutoDelete) ant).other();
+            String[] compare = ((AutoDelete) ant).compare();
+            makeWhere("var", "", otherMap(other), compareMap(compare));
+        }
+
+        private Map<String, String> otherMap(String[] other) {
             Map<String, String> otherMap = new HashMap<>();
             for (String o : other) {
                 String column = o.split("->")[0].trim().toUpperCase();
                 String condition = o.split("->")[1];
                 otherMap.put(column, condition);
             }
+            return otherMap;
+        }
+
+        private Map<String, String> compareMap(String[] compare) {
             Map<String, String> compareMap = new HashMap<>();
             for (String c : compare) {
                 String column = c.split(":")[0].trim().toUpperCase();
                 String operator = c.split(":")[1];
                 compareMap.put(column, operator);
             }
-            makeWhere(code, otherMap, compareMap);
-            tail();
+            return compareMap;
         }
 
         /**
          * 拼接WHERE条件
-         * SELECT和DELETE中的拼接WHERE条件的方式完全一样
+         * SELECT、DELETE和UPDATE中的拼接WHERE条件的方式完全一样，只是参数不同
+         * LIKE的值也作为参数传入，这样SQL只取决于哪些字段为空
          *
-         * @param code       继续写的provider代码
-         * @param otherMap   @AutoSelect或@AutoDelete注解中的自定义条件
-         * @param compareMap @AutoSelect或@AutoDelete注解中的比较条件
+         * @param param      条件所在的参数名
+         * @param prefix     #{}中的参数前缀
+         * @param otherMap   注解中的自定义条件
+         * @param compareMap 注解中的比较条件
          */
-        private void makeWhere(StringBuilder code, Map<String, String> otherMap, Map<String, String> compareMap) {
-            List<Method> getters = this.getterOrSetters(beanClz, "get");
-            for (Method getter : getters) {
-                Class<?> getterReturnType = getter.getReturnType();
-                String getterName = getter.getName();
-                String fieldName;
-                String columnName;
-                String baseName = getterName.substring("get".length());
-                if (beanClz.getAnnotation(NonCamelCase.class) == null) {
-                    fieldName = StringUtils.toCamelCase(StringUtils.camelCase2_(baseName));
-                    columnName = StringUtils.camelCase2_(fieldName);
-                } else {
-                    fieldName = baseName;
-                    columnName = fieldName;
+        private void makeWhere(String param, String prefix, Map<String, String> otherMap, Map<String, String> compareMap) {
+            makeWhere(param, prefix, otherMap, compareMap, null, null);
+        }
+
+        /**
+         * @param seekColumn   按键翻页的列，参数中的值不为空时用seekOperator比较，没有时为null
+         * @param seekOperator 按键翻页的比较符
+         */
+        private void makeWhere(String param, String prefix, Map<String, String> otherMap, Map<String, String> compareMap,
+                               String seekColumn, String seekOperator) {
+            for (BeanColumn column : beanColumns()) {
+                Class<?> getterReturnType = column.getter.getReturnType();
+                String columnName = column.columnName;
+                String value = "#{" + prefix + column.fieldName + "}";
+                if (columnName.equals(seekColumn)) {
+                    model.where(model.check(param, column.getter, String.class.equals(getterReturnType)),
+                            columnName + " " + seekOperator + " " + value);
+                    continue;
                 }
                 // 优先拼接注解中的条件
                 if (otherMap.containsKey(columnName)) {
-                    code.append("\t\tsql.WHERE(\"(").append(otherMap.get(columnName)).append(")\");\n");
+                    model.where(SqlTemplate.ALWAYS, "(" + otherMap.get(columnName) + ")");
                     continue;
                 }
                 if (compareMap.containsKey(columnName)) {
-                    if ("LIKE".equals(compareMap.get(columnName).trim().toUpperCase())) {
-                        code.append("\t\tsql.WHERE(\"").append(columnName).append(" ").append(compareMap.get(columnName))
-                                .append(" '%\" + con.").append(getterName).append("() + \"%'\");\n");
+                    String operator = compareMap.get(columnName);
+                    if ("LIKE".equals(operator.trim().toUpperCase())) {
+                        String pattern = oracleDialect ? "'%' || " + value + " || '%'" : "CONCAT('%', " + value + ", '%')";
+                        model.where(SqlTemplate.ALWAYS, columnName + " " + operator + " " + pattern);
                     } else {
-                        code.append("\t\tsql.WHERE(\"").append(columnName).append(" ").append(compareMap.get(columnName))
-                                .append(" #{").append(fieldName).append("}\");\n");
+                        model.where(SqlTemplate.ALWAYS, columnName + " " + operator + " " + value);
                     }
                     continue;
                 }
                 if (String.class.equals(getterReturnType)) {
-                    Field field;
-                    try {
-                        field = getter.getDeclaringClass().getDeclaredField(fieldName);
-                    } catch (NoSuchFieldException e) {
+                    if (column.field == null) {
                         System.err.println(beanClz);
-                        e.printStackTrace();
                         DaoFactory.hasException = true;
                         throw new DynamicCompileException(beanClz + "中字段可能驼峰规则有问题");
                     }
-                    SQLDatePattern datePattern = field != null ? field.getAnnotation(SQLDatePattern.class) : null;
+                    SQLDatePattern datePattern = column.field.getAnnotation(SQLDatePattern.class);
                     if (datePattern == null) {
-                        code.append("\t\tif (!StringUtils.isEmpty(var.").append(getterName).append("())) {\n");
-                        code.append("\t\t\tsql.WHERE(\"").append(columnName).append(" = #{").append(fieldName).append("}\");\n");
-                        code.append("\t\t}\n");
+                        model.where(model.check(param, column.getter, true), columnName + " = " + value);
                     } else {
-                        String func = datePattern.func();
-                        String pattern = datePattern.pattern();
-                        code.append("\t\tif (var.").append(getterName).append("() != null) {\n");
-                        code.append("\t\t\tsql.WHERE(\"").append(columnName).append(" = ").append(func).append("(#{").append(fieldName)
-                                .append("}, \\'").append(pattern).append("\\')\");\n");
-                        code.append("\t\t}\n");
+                        model.where(model.check(param, column.getter, false), columnName + " = " + datePattern.func()
+                                + "(" + value + ", '" + datePattern.pattern() + "')");
                     }
                 } else if (Integer.class.equals(getterReturnType) || Double.class.equals(getterReturnType)
                         || Long.class.equals(getterReturnType) || Date.class.equals(getterReturnType)) {
-                    code.append("\t\tif (var.").append(getterName).append("() != null) {\n");
-                    code.append("\t\t\tsql.WHERE(\"").append(columnName).append(" = #{").append(fieldName).append("}\");\n");
-                    code.append("\t\t}\n");
+                    model.where(model.check(param, column.getter, false), columnName + " = " + value);
+                }
+            }
+        }
+
+        /**
+         * 由模型输出代码：计算参数掩码，按掩码从模板取SQL
+         */
+        private void writeCode() {
+            code.append("\t").append(PUBLIC).append("String ").append(methodName).append("(");
+            List<String> params = model.getParams();
+            if (model.isBatch()) {
+                code.append("@Param(\"").append(params.get(0)).append("\") List<").append(beanClz.getSimpleName())
+                        .append("> ").append(params.get(0));
+            }
+            for (int i = 0; i < params.size() && !model.isBatch(); i++) {
+                if (i > 0) {
+                    code.append(", ");
+                }
+                if (params.size() > 1) {
+                    code.append("@Param(\"").append(params.get(i)).append("\") ");
+                }
+                code.append(beanClz.getSimpleName()).append(" ").append(params.get(i));
+            }
+            code.append(") {\n");
+            code.append("\t\t").append(maskDeclaration(model)).append("\n");
+            String indent = "\t\t";
+            if (model.isBatch()) {
+                // 任意一行不为空的列都要插入
+                code.append("\t\tfor (").append(beanClz.getSimpleName()).append(" ").append(SqlTemplate.BATCH_ROW)
+                        .append(" : ").append(params.get(0)).append(") {\n");
+                indent = "\t\t\t";
+            }
+            List<SqlMethodModel.Check> checks = model.getChecks();
+            for (int bit = 0; bit < checks.size(); bit++) {
+                SqlMethodModel.Check check = checks.get(bit);
+                String getterCall = check.getParam() + "." + check.getGetter().getName() + "()";
+                if (check.isEmptyString()) {
+                    code.append(indent).append("if (!StringUtils.isEmpty(").append(getterCall).append(")) {\n");
+                } else {
+                    code.append(indent).append("if (").append(getterCall).append(" != null) {\n");
+                }
+                code.append(indent).append("\t").append(maskSet(model, bit)).append("\n");
+                code.append(indent).append("}\n");
+            }
+            if (model.isBatch()) {
+                code.append("\t\t}\n");
+                code.append("\t\t").append(RETURN).append("SqlLog.capture(").append(model.getTemplateField())
+                        .append(".sql(mask, ").append(params.get(0)).append(".size()));\n");
+            } else {
+                code.append("\t\t").append(RETURN).append("SqlLog.capture(").append(model.getTemplateField()).append(".sql(mask));\n");
+            }
+            code.append("\t}\n");
+        }
+
+        /**
+         * @return 模板字段的声明
+         */
+        String templateCode() {
+            if (model.isFixed()) {
+                return "";
+            }
+            return templateCode(model.getTemplateField(), false);
+        }
+
+        /**
+         * @param fieldName 字段名
+         * @param jdbc      是否拼出?占位的SQL
+         * @return 模板字段的声明
+         */
+        String templateCode(String fieldName, boolean jdbc) {
+            StringBuilder field = new StringBuilder();
+            field.append("\t").append(PRIVATE).append("static final SqlTemplate ").append(fieldName)
+                    .append(" = SqlTemplate.").append(model.getType()).append("(").append(javaString(model.getTable()));
+            if (model.getColumns() != null) {
+                field.append(", ").append(javaString(model.getColumns()));
+            }
+            field.append(")");
+            for (SqlMethodModel.Clause clause : model.getClauses()) {
+                field.append("\n\t\t\t.").append(clause.getMethod()).append("(")
+                        .append(clause.getBit() == SqlTemplate.ALWAYS ? "SqlTemplate.ALWAYS" : String.valueOf(clause.getBit()));
+                for (String arg : clause.getArgs()) {
+                    field.append(", ").append(javaString(arg));
                 }
+                field.append(")");
+            }
+            if (model.getOrderBy() != null) {
+                field.append("\n\t\t\t.orderBy(").append(javaString(model.getOrderBy())).append(")");
+            }
+            if (model.getLimit() > 0) {
+                field.append("\n\t\t\t.").append(model.getLimitMethod()).append("(").append(model.getLimit()).append(")");
+            }
+            if (jdbc) {
+                field.append("\n\t\t\t.jdbc()");
             }
+            field.append(";\n");
+            return field.toString();
+        }
+
+        SqlMethodModel getModel() {
+            return model;
+        }
+
+        Method getMethod() {
+            return method;
+        }
+
+        Annotation getAnt() {
+            return ant;
+        }
+
+        String getMode() {
+            return mode;
         }
 
         @Override
@@ -761,17 +2476,6 @@ class DaoCodeBuilder {
         String getClassName() {
             return className;
         }
-
-        private List<Method> getterOrSetters(Class beanClz, @NotNull String getOrSet) {
-            Method[] methods = beanClz.getDeclaredMethods();
-            List<Method> list = new ArrayList<>(methods.length / 2);
-            for (Method m : methods) {
-                if (m.getName().startsWith(getOrSet)) {
-                    list.add(m);
-                }
-            }
-            return list;
-        }
     }
 
     /**
@@ -781,10 +2485,12 @@ class DaoCodeBuilder {
         private String className;
         private Method method;
         private String mode;
+        private Annotation ant;
         private StringBuilder code = new StringBuilder();
 
         MapperMethodCodeCache(Method method, Annotation ant) {
             this.className = method.getDeclaringClass().getSimpleName();
+            this.ant = ant;
             this.mode = ant.annotationType().getSimpleName();
             this.method = method;
             init();
@@ -793,6 +2499,8 @@ class DaoCodeBuilder {
         private void init() {
             String methodName = method.getName();
             Class<?> returnType = method.getReturnType();
+            // 同一形状的SQL只解析一次
+            code.append("\t").append(LANG).append("(").append(CachingLanguageDriver.class.getSimpleName()).append(CLASS_SUFFIX).append(")\n");
             switch (mode) {
                 case "AutoInsert":
                     code.append("\t").append(INSERT_PROVIDER).append("(type = ").append(beanClz.getSimpleName()).append("Proxy").append(PROVIDER).append(CLASS_SUFFIX).
@@ -800,6 +2508,12 @@ class DaoCodeBuilder {
                     code.append("\t").append(returnType.getSimpleName()).append(" ").append(methodName).
                             append("(").append(beanClz.getSimpleName()).append(" var);\n");
                     break;
+                case "AutoInsertBatch":
+                    code.append("\t").append(INSERT_PROVIDER).append("(type = ").append(beanClz.getSimpleName()).append("Proxy").append(PROVIDER).append(CLASS_SUFFIX).
+                            append(", method = \"").append(methodName).append("\")\n");
+                    code.append("\tint ").append(methodName).append("(@Param(\"").append(SqlTemplate.BATCH_LIST).append("\") List<")
+                            .append(beanClz.getSimpleName()).append("> ").append(SqlTemplate.BATCH_LIST).append(");\n");
+                    break;
                 case "AutoDelete":
                     code.append("\t").append(DELETE_PROVIDER).append("(type = ").append(beanClz.getSimpleName()).append("Proxy").append(PROVIDER).append(CLASS_SUFFIX).
                             append(", method = \"").append(methodName).append("\")\n");
@@ -819,6 +2533,26 @@ class DaoCodeBuilder {
                             .append(methodName).append("(").append(beanClz.getSimpleName()).append(" var);\n");
 
                     break;
+                case "AutoSelectById":
+                    code.append("\t").append(SELECT_FIXED).append("(").append(javaString(fixedSqlOf(method))).append(")\n");
+                    code.append("\t").append(beanClz.getSimpleName()).append(" ").append(methodName).append("(Object id);\n");
+                    break;
+                case "AutoDeleteById":
+                    code.append("\t").append(DELETE_FIXED).append("(").append(javaString(fixedSqlOf(method))).append(")\n");
+                    code.append("\tint ").append(methodName).append("(Object id);\n");
+                    break;
+                case "AutoUpdateById":
+                    code.append("\t").append(UPDATE_FIXED).append("(").append(javaString(fixedSqlOf(method))).append(")\n");
+                    code.append("\tint ").append(methodName).append("(").append(beanClz.getSimpleName()).append(" var);\n");
+                    break;
+                case "AutoSelectStream":
+                    code.append("\t").append(SELECT_PROVIDER).append("(type = ").append(beanClz.getSimpleName())
+                            .append("Proxy").append(PROVIDER).append(CLASS_SUFFIX).append(", method = \"").append(methodName).append("\")\n");
+                    code.append("\t@Options(fetchSize = ").append(fetchSize((AutoSelectStream) ant))
+                            .append(", resultSetType = ResultSetType.FORWARD_ONLY)\n");
+                    code.append("\tCursor<").append(beanClz.getSimpleName()).append("> ")
+                            .append(methodName).append("(").append(beanClz.getSimpleName()).append(" var);\n");
+                    break;
                 case "AutoSelectOne":
                     code.append("\t").append(SELECT_PROVIDER).append("(type = ").append(beanClz.getSimpleName())
                             .append("Proxy").append(PROVIDER).append(CLASS_SUFFIX).append(", method = \"").append(methodName).append("\")\n");
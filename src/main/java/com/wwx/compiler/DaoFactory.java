@@ -2,16 +2,30 @@ package com.wwx.compiler;
 
 
 import com.wwx.compiler.annotation.DaoProxy;
+import com.wwx.compiler.exception.DynamicCompileException;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.Method;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -21,127 +35,354 @@ import static com.wwx.compiler.DaoCodeBuilder.MAPPER;
 
 public class DaoFactory {
     static String idaoPkg;
-    private static final String CLASS_ROOT_PATH = DaoFactory.class.getClassLoader().getResource("").getPath();
-    private static final int THREADS_NUM = 4;
+    /**
+     * 预编译信息所在的目录，每个dao一个文件：指纹、Mapper类名、Impl类名各占一行
+     */
+    static final String PREBUILT_DIR = "META-INF/daowom/";
+    static final String PREBUILT_SUFFIX = ".fingerprint";
+    /**
+     * 调试用：设置后会把生成的class文件写到该目录下，不要设置成项目的类根目录，否则会被Spring重复扫描
+     */
+    private static final String CLASS_DUMP_DIR = System.getProperty("daowom.classDumpDir");
+    /**
+     * 生成缓存，-Ddaowom.cache=false关闭，-Ddaowom.cacheDir指定目录
+     */
+    private static final boolean CACHE_ENABLED = !"false".equals(System.getProperty("daowom.cache"));
+    private static final String CACHE_DIR = System.getProperty("daowom.cacheDir",
+            Paths.get(System.getProperty("user.home"), ".daowom", "cache").toString());
+    /**
+     * 生成方式：source（默认）生成源码再用javac编译；bytecode直接生成字节码，不需要javac
+     */
+    static final String BACKEND_PROPERTY = "daowom.backend";
+    private static final boolean BYTECODE_BACKEND = "bytecode".equals(System.getProperty(BACKEND_PROPERTY));
+    private static final int THREADS_NUM = Runtime.getRuntime().availableProcessors();
+    /**
+     * 每批编译的最少dao数量，dao较少时只起一个javac任务
+     */
+    private static final int DAOS_PER_BATCH = 32;
     static boolean hasException;
     static Throwable e;
     private static AtomicInteger totalDao = new AtomicInteger();
-    private static AtomicInteger compileTaskNum;
+    /**
+     * 已生成的Mapper和Impl，由{@link DaoBeanRegistrar}注册到Spring
+     */
+    private static final List<Class<?>> mapperClasses = new CopyOnWriteArrayList<>();
+    private static final List<Class<?>> implClasses = new CopyOnWriteArrayList<>();
 
     public static void createDaoImpls(String daoPkg, Class mainClass) {
-        String name = mainClass.getName();
-        String buildClassPath = name.substring(0, name.lastIndexOf('.'));
-        createDaoImpls(daoPkg, buildClassPath);
+        createDaoImpls(daoPkg, mainClass.getClassLoader());
     }
 
-    private static void createDaoImpls(String daoPkg, String buildClassPath) {
+    /**
+     * 扫描classLoader类路径上dao包下的接口并生成实现
+     */
+    private static void createDaoImpls(String daoPkg, ClassLoader classLoader) {
         idaoPkg = daoPkg;
         long timeStart = System.currentTimeMillis();
 
+        GenerationPhases.clear();
         // 扫描dao包下的接口，生成dao集合
-        ComponentScanner componentScanner = new ComponentScanner(buildClassPath);
+        GenerationPhases.Phase scan = GenerationPhases.begin(GenerationPhases.SCAN);
+        ComponentScanner componentScanner = new ComponentScanner(classLoader);
         List<Class<?>> daoSet = componentScanner.findComponents(daoPkg);
-        List<Class<?>> daoImpls = componentScanner.findComponents(daoPkg + ".impl");
-        distinct(daoSet, daoImpls);
+        scan.end();
+        generateDaoImpls(daoPkg, daoSet, timeStart);
+    }
 
+    /**
+     * 为给定的dao生成实现
+     *
+     * @param daoPkg    dao所在的包
+     * @param daoSet    dao接口
+     * @param timeStart 开始时间，用于统计总用时
+     */
+    static void createDaoImpls(String daoPkg, List<Class<?>> daoSet, long timeStart) {
+        GenerationPhases.clear();
+        generateDaoImpls(daoPkg, daoSet, timeStart);
+    }
+
+    /**
+     * 查缓存、生成代码、编译、加载，各阶段的开销记入{@link GenerationPhases}
+     */
+    private static void generateDaoImpls(String daoPkg, List<Class<?>> daoSet, long timeStart) {
+        idaoPkg = daoPkg;
 		/*
         遍历dao集合
 			对每一个接口生成：
                 1.DaoImpl代码
                 2.Mapper代码
                 3.Provider代码
-			编译这些代码到接口注解的包路径下（编译到项目的类根目录即可，类的位置会根据package自动放置）
+			编译这些代码到内存中，由DaoClassLoader直接定义，不写class文件
 		 */
-        int daoNum = daoSet.size();
-        if (daoNum <= 0) {
+        List<Class<?>> daos = filterDaos(daoSet);
+        if (daos.isEmpty()) {
             System.out.println("没有需要生成的Dao");
             return;
         }
-        ExecutorService executorService = Executors.newScheduledThreadPool(THREADS_NUM, new CaughtThreadFactory());
-        int daoPerTask = daoNum / THREADS_NUM == 0 ? 1 : daoNum / THREADS_NUM;
-        compileTaskNum = new AtomicInteger((int) Math.ceil(1.0 * daoNum / daoPerTask));
-        System.out.println("编译任务数量：" + compileTaskNum.get());
-        for (int i = 0; i < daoNum; i += daoPerTask) {
-            int startIndex = i;
-            int endIndex = startIndex + daoPerTask - 1 > daoNum ? daoNum - 1 : startIndex + daoPerTask - 1;
-            System.out.println(startIndex + " - " + endIndex);
-            executorService.submit(() -> {
-                try {
-                    buildClasses(daoSet, startIndex, endIndex);
-                    compileTaskNum.decrementAndGet();
-                } catch (Exception e) {
-                    hasException = true;
-                    DaoFactory.e = e;
+        GenerationPhases.Phase cache = GenerationPhases.begin(GenerationPhases.CACHE);
+        DaoClassCache classCache = CACHE_ENABLED ? new DaoClassCache(CACHE_DIR) : null;
+        // 构建时已预编译的dao直接使用类路径上的类；指纹没变的dao使用缓存的字节码；都不需要生成代码和编译
+        List<GeneratedDao> cachedDaos = new ArrayList<>(daos.size());
+        Map<Class<?>, String> missedDaos = new LinkedHashMap<>(daos.size());
+        int prebuiltNum = 0;
+        for (Class<?> dao : daos) {
+            String fingerprint = DaoFingerprint.of(daoPkg, dao);
+            if (loadPrebuilt(dao, fingerprint)) {
+                prebuiltNum++;
+                continue;
+            }
+            GeneratedDao cachedDao = classCache == null ? null : classCache.load(dao, fingerprint);
+            if (cachedDao == null) {
+                missedDaos.put(dao, fingerprint);
+            } else {
+                cachedDaos.add(cachedDao);
+            }
+        }
+        System.out.println("预编译的dao：" + prebuiltNum + "个，命中生成缓存的dao：" + cachedDaos.size()
+                + "个，需要生成的dao：" + missedDaos.size() + "个");
+        cache.end();
+        if (cachedDaos.isEmpty() && missedDaos.isEmpty()) {
+            return;
+        }
+        DaoClassLoader classLoader = new DaoClassLoader(daos.get(0).getClassLoader());
+        cachedDaos.forEach(cachedDao -> classLoader.addClasses(cachedDao.getClassBytes()));
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS_NUM, new CaughtThreadFactory());
+        try {
+            // 先生成所有dao的代码，再统一编译，避免每个类都启动一次javac
+            GenerationPhases.Phase build = GenerationPhases.begin(GenerationPhases.BUILD);
+            List<GeneratedDao> generatedDaos = buildCodes(missedDaos, executorService);
+            build.end();
+            GenerationPhases.Phase compile = GenerationPhases.begin(GenerationPhases.COMPILE);
+            compileCodes(generatedDaos, executorService);
+            compile.end();
+            GenerationPhases.Phase load = GenerationPhases.begin(GenerationPhases.LOAD);
+            for (GeneratedDao generatedDao : generatedDaos) {
+                classLoader.addClasses(generatedDao.getClassBytes());
+                if (classCache != null) {
+                    classCache.store(generatedDao);
                 }
-            });
+            }
+            loadClasses(cachedDaos, classLoader);
+            loadClasses(generatedDaos, classLoader);
+            load.end();
+        } finally {
+            executorService.shutdown();
+        }
+
+        long timeEnd = System.currentTimeMillis();
+        System.out.println("生成daos用时：" + (timeEnd - timeStart) + "毫秒");
+        for (GenerationPhases.Phase phase : GenerationPhases.phases()) {
+            System.out.println("  " + phase);
         }
-        while (compileTaskNum.get() > 0) {
-            if (hasException) {
-                throw new RuntimeException(e);
+    }
+
+    /**
+     * 生成并编译给定dao的类，不加载，供构建时预编译使用
+     *
+     * @param daoPkg dao所在的包
+     * @param daoSet dao接口
+     * @return 每个dao生成的代码和字节码
+     */
+    static List<GeneratedDao> generate(String daoPkg, List<Class<?>> daoSet) {
+        idaoPkg = daoPkg;
+        Map<Class<?>, String> daos = new LinkedHashMap<>(daoSet.size());
+        for (Class<?> dao : filterDaos(daoSet)) {
+            daos.put(dao, DaoFingerprint.of(daoPkg, dao));
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(THREADS_NUM, new CaughtThreadFactory());
+        try {
+            List<GeneratedDao> generatedDaos = buildCodes(daos, executorService);
+            compileCodes(generatedDaos, executorService);
+            return generatedDaos;
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * 只保留带@DaoProxy的dao接口，跳过异步接口（随同步dao一起生成）
+     */
+    private static List<Class<?>> filterDaos(List<Class<?>> daoSet) {
+        List<Class<?>> daos = new ArrayList<>(daoSet.size());
+        Set<Class<?>> asyncInterfaces = new HashSet<>();
+        for (Class<?> dao : daoSet) {
+            DaoProxy daoProxy = dao.getAnnotation(DaoProxy.class);
+            if (daoProxy != null) {
+                asyncInterfaces.add(daoProxy.async());
+            }
+        }
+        for (Class<?> dao : daoSet) {
+            if (!dao.isInterface() || dao == Dao.class || AsyncDao.class.isAssignableFrom(dao) || asyncInterfaces.contains(dao)) {
+                continue;
+            }
+            if (dao.getAnnotation(DaoProxy.class) == null) {
+                System.err.println(dao.getSimpleName() + "没有配置编译输出路径，将不会被自动代理");
+                continue;
             }
+            daos.add(dao);
+        }
+        return daos;
+    }
+
+    /**
+     * 查找构建时预编译的类（见{@link DaoPrecompiler}）
+     * 预编译的类在类路径上，由@MapperScan和组件扫描发现，这里也登记一份，扫描不到时由{@link DaoBeanRegistrar}注册
+     *
+     * @param dao         dao接口类对象
+     * @param fingerprint dao当前的指纹
+     * @return 是否有预编译的类
+     */
+    private static boolean loadPrebuilt(Class<?> dao, String fingerprint) {
+        ClassLoader classLoader = dao.getClassLoader();
+        InputStream in = classLoader.getResourceAsStream(PREBUILT_DIR + dao.getName() + PREBUILT_SUFFIX);
+        if (in == null) {
+            return false;
+        }
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            lines = reader.lines().collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new DynamicCompileException(dao.getName() + "的预编译信息读取失败：" + e.getMessage());
+        }
+        if (lines.size() < 3 || !fingerprint.equals(lines.get(0))) {
+            // 预编译的类与同名的运行时生成类无法共存，只能重新构建
+            throw new DynamicCompileException(dao.getName() + "的预编译类已过期，请重新执行mvn compile -Pprecompile");
         }
-        executorService.shutdown();
         try {
-            executorService.awaitTermination(1, TimeUnit.DAYS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            mapperClasses.add(Class.forName(lines.get(1), false, classLoader));
+            implClasses.add(Class.forName(lines.get(2), false, classLoader));
+        } catch (ClassNotFoundException e) {
+            throw new DynamicCompileException(dao.getName() + "的预编译类加载失败：" + e.getMessage());
         }
+        return true;
+    }
 
-        long timeEnd = System.currentTimeMillis();
-        System.out.println("生成daos用时：" + (timeEnd - timeStart) / 1000 + "秒");
+    static List<Class<?>> getMapperClasses() {
+        return mapperClasses;
+    }
+
+    static List<Class<?>> getImplClasses() {
+        return implClasses;
     }
 
     /**
-     * 去重，从给定类对象集合中去掉指定类对象集合中的类对象
-     * 根据类名和方法数量比较
+     * 并行生成每个dao的Provider、Mapper、Impl代码
      *
-     * @param daoSet   给定类对象
-     * @param daoImpls 指定类对象
+     * @param daos dao接口及其指纹
+     * @return 每个dao生成的类
      */
-    private static void distinct(List<Class<?>> daoSet, List<Class<?>> daoImpls) {
-        for (int i = 0; i < daoSet.size(); i++) {
-            Class<?> dao = daoSet.get(i);
-            for (Class<?> daoImpl : daoImpls) {
-                String daoImplName = daoImpl.getSimpleName();
-                String daoName = dao.getSimpleName();
-                boolean toExcept = false;
-                if (daoName.endsWith("ProxyImpl")) {
-                    toExcept = true;
-                } else if (daoImplName.startsWith(daoName)) {
-                    List<Method> implMethods = Arrays.asList(daoImpl.getDeclaredMethods());
-                    List<String> implMethodNames = implMethods.stream().map(Method::getName).distinct().sorted().collect(Collectors.toList());
-                    List<Method> daoMethods = Arrays.asList(dao.getMethods());
-                    List<String> daoMethodNames = daoMethods.stream().map(Method::getName).sorted().collect(Collectors.toList());
-                    if (implMethodNames.equals(daoMethodNames)) {
-                        toExcept = true;
+    private static List<GeneratedDao> buildCodes(Map<Class<?>, String> daos, ExecutorService executorService) {
+        List<Future<GeneratedDao>> futures = new ArrayList<>(daos.size());
+        for (Map.Entry<Class<?>, String> entry : daos.entrySet()) {
+            Class<?> dao = entry.getKey();
+            futures.add(executorService.submit(() -> {
+                if (BYTECODE_BACKEND) {
+                    DaoBytecodeBuilder bytecodeBuilder = new DaoBytecodeBuilder(dao);
+                    DaoCodeBuilder daoCodeBuilder = bytecodeBuilder.getDaoCodeBuilder();
+                    GeneratedDao generatedDao = new GeneratedDao(dao, entry.getValue(), daoCodeBuilder.getImplClassName(),
+                            daoCodeBuilder.getMapperClassName(), daoCodeBuilder.getProviderClassName());
+                    Map<String, byte[]> classBytes = bytecodeBuilder.build();
+                    generatedDao.setClassBytes(classBytes);
+                    if (CLASS_DUMP_DIR != null) {
+                        dumpClasses(classBytes);
                     }
+                    totalDao.incrementAndGet();
+                    return generatedDao;
                 }
-                if (toExcept) {
-                    daoSet.remove(i--);
-                    break;
-                }
-            }
+                DaoCodeBuilder daoCodeBuilder = new DaoCodeBuilder(dao);
+                Map<String, Map<String, String>> codeMap = daoCodeBuilder.buildCode();
+                GeneratedDao generatedDao = new GeneratedDao(dao, entry.getValue(), daoCodeBuilder.getImplClassName(),
+                        daoCodeBuilder.getMapperClassName(), daoCodeBuilder.getProviderClassName());
+                generatedDao.setCodes(Arrays.asList(codeMap.get(PROVIDER), codeMap.get(MAPPER), codeMap.get(IMPL)));
+                return generatedDao;
+            }));
         }
+        List<GeneratedDao> generatedDaos = new ArrayList<>(futures.size());
+        for (Future<GeneratedDao> future : futures) {
+            generatedDaos.add(await(future));
+        }
+        return generatedDaos;
     }
 
-    private static void buildClasses(List<Class<?>> daoSet, int startIndex, int endIndex) {
-        for (int i = startIndex; i <= endIndex; i++) {
-            Class<?> dao = daoSet.get(i);
+    /**
+     * 按CPU数量把所有dao分成几批，每批在一个javac任务中编译，字节码存回各自的GeneratedDao
+     * 同一个dao的类必须在同一批中，因为Impl引用Mapper，Mapper引用Provider
+     *
+     * 直接生成字节码的dao没有代码，不参与编译
+     *
+     * @param generatedDaos 所有dao的代码
+     */
+    private static void compileCodes(List<GeneratedDao> generatedDaos, ExecutorService executorService) {
+        generatedDaos = generatedDaos.stream().filter(generatedDao -> generatedDao.getCodes() != null)
+                .collect(Collectors.toList());
+        int daoNum = generatedDaos.size();
+        if (daoNum == 0) {
+            return;
+        }
+        int batchNum = Math.min(THREADS_NUM, (daoNum + DAOS_PER_BATCH - 1) / DAOS_PER_BATCH);
+        int daoPerBatch = (daoNum + batchNum - 1) / batchNum;
+        System.out.println("编译任务数量：" + (daoNum + daoPerBatch - 1) / daoPerBatch);
+        DynamicCompiler dynamicCompiler = new DynamicCompiler();
+        List<Future<Long>> futures = new ArrayList<>(batchNum);
+        for (int i = 0; i < daoNum; i += daoPerBatch) {
+            int batchNo = i / daoPerBatch + 1;
+            List<GeneratedDao> batchDaos = generatedDaos.subList(i, Math.min(i + daoPerBatch, daoNum));
+            List<Map<String, String>> batch = new ArrayList<>(batchDaos.size() * 3);
+            batchDaos.forEach(generatedDao -> batch.addAll(generatedDao.getCodes()));
+            futures.add(executorService.submit(() -> {
+                long timeStart = System.currentTimeMillis();
+                Map<String, byte[]> classBytes = dynamicCompiler.compile(batch);
+                long cost = System.currentTimeMillis() - timeStart;
+                batchDaos.forEach(generatedDao -> generatedDao.collectClassBytes(classBytes));
+                if (CLASS_DUMP_DIR != null) {
+                    dumpClasses(classBytes);
+                }
+                totalDao.addAndGet(batchDaos.size());
+                System.out.println("第" + batchNo + "批编译完成：" + batchDaos.size() + "个dao，"
+                        + batch.size() + "个类，用时" + cost + "毫秒");
+                return cost;
+            }));
+        }
+        for (Future<Long> future : futures) {
+            await(future);
+        }
+    }
 
-            DaoCodeBuilder daoCodeBuilder = new DaoCodeBuilder(dao);
-            DaoProxy daoProxyAnt = dao.getAnnotation(DaoProxy.class);
-            if (daoProxyAnt == null) {
-                System.err.println(dao.getSimpleName() + "没有配置编译输出路径，将不会被自动代理");
-                continue;
+    /**
+     * 加载生成的Mapper和Impl，供Spring注册
+     */
+    private static void loadClasses(List<GeneratedDao> generatedDaos, DaoClassLoader classLoader) {
+        for (GeneratedDao generatedDao : generatedDaos) {
+            try {
+                mapperClasses.add(classLoader.loadClass(generatedDao.getMapperName()));
+                implClasses.add(classLoader.loadClass(generatedDao.getImplName()));
+            } catch (ClassNotFoundException e) {
+                throw new DynamicCompileException(generatedDao.getDao().getName() + "的生成类加载失败：" + e.getMessage());
             }
-            Map<String, Map<String, String>> codeMap = daoCodeBuilder.buildCode();
+        }
+    }
 
-            DynamicCompiler dynamicCompiler = new DynamicCompiler();
-            dynamicCompiler.compile(codeMap.get(PROVIDER), CLASS_ROOT_PATH);
-            dynamicCompiler.compile(codeMap.get(MAPPER), CLASS_ROOT_PATH);
-            dynamicCompiler.compile(codeMap.get(IMPL), CLASS_ROOT_PATH);
+    private static void dumpClasses(Map<String, byte[]> classBytes) throws IOException {
+        for (Map.Entry<String, byte[]> entry : classBytes.entrySet()) {
+            Path path = Paths.get(CLASS_DUMP_DIR, entry.getKey().replace('.', '/') + ComponentScanner.CLASS_SUFFIX);
+            Files.createDirectories(path.getParent());
+            Files.write(path, entry.getValue());
+        }
+    }
 
-            totalDao.incrementAndGet();
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            hasException = true;
+            DaoFactory.e = e.getCause();
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
         }
     }
 
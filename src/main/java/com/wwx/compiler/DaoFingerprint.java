@@ -0,0 +1,201 @@
+package com.wwx.compiler;
+
+import com.wwx.compiler.annotation.DaoProxy;
+import com.wwx.compiler.runtime.SqlTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * dao指纹
+ * 对dao接口、异步接口、实体类、所有注解的值以及生成器和runtime包做摘要，指纹不变则生成的类不变
+ */
+final class DaoFingerprint {
+    /**
+     * 影响生成结果的系统属性
+     */
+    private static final String[] CODEGEN_SETTINGS = {DaoFactory.BACKEND_PROPERTY,
+            DaoCodeBuilder.STREAM_FETCH_SIZE_PROPERTY, DaoCodeBuilder.ENGINE_PROPERTY, DaoCodeBuilder.DISPATCH_PROPERTY,
+            DaoCodeBuilder.DIALECT_PROPERTY};
+    private static volatile String generatorDigest;
+
+    private DaoFingerprint() {
+    }
+
+    /**
+     * 计算dao的指纹
+     *
+     * @param daoPkg dao所在的包，决定Impl的包名
+     * @param dao    dao接口类对象
+     * @return 十六进制的SHA-256摘要
+     */
+    static String of(String daoPkg, Class<?> dao) {
+        MessageDigest digest = newDigest();
+        update(digest, generatorDigest());
+        update(digest, settings());
+        update(digest, daoPkg);
+        // dao接口：@DaoProxy、泛型、方法及其@Auto*注解
+        update(digest, describe(dao, dao.getName()));
+        for (Type type : dao.getGenericInterfaces()) {
+            update(digest, type.getTypeName());
+        }
+        List<String> members = new ArrayList<>();
+        for (Method method : dao.getMethods()) {
+            members.add(describe(method, method.toGenericString()));
+        }
+        updateSorted(digest, members);
+        // 异步接口的方法
+        Class<?> async = dao.getAnnotation(DaoProxy.class).async();
+        members.clear();
+        for (Method method : async.getMethods()) {
+            members.add(method.toGenericString());
+        }
+        updateSorted(digest, members);
+        // 实体类：@Table、@NonCamelCase、字段上的@ID、@SQLDatePattern，以及getter
+        Class<?> beanClz = DaoCodeBuilder.beanClassOf(dao);
+        if (beanClz != null) {
+            update(digest, describe(beanClz, beanClz.getName()));
+            members.clear();
+            for (Field field : beanClz.getDeclaredFields()) {
+                members.add(describe(field, field.toGenericString()));
+            }
+            for (Method method : beanClz.getDeclaredMethods()) {
+                members.add(method.toGenericString());
+            }
+            updateSorted(digest, members);
+        }
+        return toHex(digest.digest());
+    }
+
+    private static String describe(AnnotatedElement element, String signature) {
+        List<String> annotations = new ArrayList<>();
+        for (Annotation annotation : element.getDeclaredAnnotations()) {
+            annotations.add(describe(annotation));
+        }
+        Collections.sort(annotations);
+        return signature + annotations;
+    }
+
+    /**
+     * 注解的规范描述，不用Annotation.toString()，因为它的格式随JDK版本变化，
+     * 而预编译的指纹在构建的JDK上计算，在运行的JDK上校验
+     */
+    private static String describe(Annotation annotation) {
+        StringBuilder sb = new StringBuilder(annotation.annotationType().getName()).append('(');
+        Method[] members = annotation.annotationType().getDeclaredMethods();
+        Arrays.sort(members, Comparator.comparing(Method::getName));
+        for (Method member : members) {
+            Object value;
+            try {
+                value = member.invoke(annotation);
+            } catch (ReflectiveOperationException e) {
+                value = e.getClass().getName();
+            }
+            sb.append(member.getName()).append('=').append(Arrays.deepToString(new Object[]{value})).append(',');
+        }
+        return sb.append(')').toString();
+    }
+
+    /**
+     * 影响生成结果的配置
+     */
+    private static String settings() {
+        Map<String, String> settings = new TreeMap<>();
+        for (String name : CODEGEN_SETTINGS) {
+            settings.put(name, System.getProperty(name));
+        }
+        return settings.toString();
+    }
+
+    /**
+     * 框架的字节码摘要，框架升级后旧的缓存自动失效
+     * 包括生成器（连同内部类、匿名类）和生成的代码链接的runtime包，runtime的签名变了，旧的Impl在调用时才会报NoSuchMethodError
+     */
+    private static String generatorDigest() {
+        String result = generatorDigest;
+        if (result == null) {
+            MessageDigest digest = newDigest();
+            ClassLoader classLoader = DaoFingerprint.class.getClassLoader();
+            String runtimePkg = SqlTemplate.class.getPackage().getName() + ".";
+            String[] generators = {DaoCodeBuilder.class.getName(), DaoBytecodeBuilder.class.getName(),
+                    SqlMethodModel.class.getName()};
+            // 按类名排序，与类路径的顺序无关
+            Set<String> classNames = new ComponentScanner(classLoader).findClassNames(DaoFingerprint.class.getPackage().getName());
+            for (String className : classNames) {
+                if (!className.startsWith(runtimePkg) && !isGenerator(className, generators)) {
+                    continue;
+                }
+                update(digest, className);
+                String resource = className.replace('.', '/') + ComponentScanner.CLASS_SUFFIX;
+                try (InputStream in = classLoader.getResourceAsStream(resource)) {
+                    if (in == null) {
+                        continue;
+                    }
+                    byte[] buffer = new byte[4096];
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        digest.update(buffer, 0, n);
+                    }
+                } catch (IOException e) {
+                    update(digest, e.toString());
+                }
+            }
+            result = toHex(digest.digest());
+            generatorDigest = result;
+        }
+        return result;
+    }
+
+    private static boolean isGenerator(String className, String[] generators) {
+        for (String generator : generators) {
+            if (className.equals(generator) || className.startsWith(generator + "$")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void updateSorted(MessageDigest digest, List<String> values) {
+        Collections.sort(values);
+        for (String value : values) {
+            update(digest, value);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.wwx.compiler;
+
+import com.wwx.compiler.exception.DynamicCompileException;
+import com.wwx.compiler.runtime.EntityRowMapper;
+import com.wwx.compiler.runtime.RowMapperInterceptor;
+import org.mybatis.spring.mapper.MapperFactoryBean;
+
+/**
+ * 生成的Mapper的MapperFactoryBean，由{@link DaoBeanRegistrar}注册
+ * 把mapper加入Configuration之后，再登记Mapper中生成的行映射（内部类{@value DaoCodeBuilder#ROW_MAPPER}），
+ * 见{@link RowMapperInterceptor}；实体有行映射不支持的属性时不生成，仍由MyBatis映射
+ */
+public class DaoMapperFactoryBean<T> extends MapperFactoryBean<T> {
+
+    public DaoMapperFactoryBean() {
+    }
+
+    public DaoMapperFactoryBean(Class<T> mapperInterface) {
+        super(mapperInterface);
+    }
+
+    @Override
+    protected void checkDaoConfig() {
+        super.checkDaoConfig();
+        Class<T> mapperInterface = getMapperInterface();
+        Class<?> rowMapperClass;
+        try {
+            rowMapperClass = Class.forName(mapperInterface.getName() + "$" + DaoCodeBuilder.ROW_MAPPER, true,
+                    mapperInterface.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            return;
+        }
+        EntityRowMapper<?> rowMapper;
+        try {
+            rowMapper = (EntityRowMapper<?>) rowMapperClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new DynamicCompileException(rowMapperClass.getName() + "实例化失败：" + e.getMessage());
+        }
+        if (!RowMapperInterceptor.register(getSqlSession().getConfiguration(), mapperInterface, rowMapper)) {
+            System.out.println(mapperInterface.getSimpleName() + "的SqlSessionFactory有自定义的ObjectFactory或TypeHandler，不使用生成的行映射");
+        }
+    }
+}
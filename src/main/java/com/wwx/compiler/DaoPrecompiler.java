@@ -0,0 +1,97 @@
+package com.wwx.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 构建时预编译
+ * 在mvn compile之后运行（见pom.xml的precompile profile），为dao包下的所有dao生成Impl、Mapper、Provider：
+ * 源码写到generated-sources目录，class文件和指纹写到类输出目录。
+ * 运行时{@link DaoFactory}发现指纹一致的预编译类就不再生成，也不需要javac
+ *
+ * 参数：dao所在的包 类输出目录 源码输出目录
+ */
+public class DaoPrecompiler {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("用法：DaoPrecompiler <dao包> <类输出目录> <源码输出目录>");
+        }
+        String daoPkg = args[0];
+        Path classesDir = Paths.get(args[1]);
+        Path sourcesDir = Paths.get(args[2]);
+        long timeStart = System.currentTimeMillis();
+
+        List<Class<?>> daoSet = findClasses(classesDir, daoPkg);
+        List<GeneratedDao> generatedDaos = DaoFactory.generate(daoPkg, daoSet);
+        for (GeneratedDao generatedDao : generatedDaos) {
+            if (generatedDao.getCodes() != null) {
+                writeSources(generatedDao, sourcesDir);
+            }
+            for (Map.Entry<String, byte[]> entry : generatedDao.getClassBytes().entrySet()) {
+                write(classesDir.resolve(entry.getKey().replace('.', '/') + ComponentScanner.CLASS_SUFFIX), entry.getValue());
+            }
+            String prebuilt = generatedDao.getFingerprint() + "\n" + generatedDao.getMapperName() + "\n"
+                    + generatedDao.getImplName() + "\n";
+            write(classesDir.resolve(DaoFactory.PREBUILT_DIR + generatedDao.getDao().getName() + DaoFactory.PREBUILT_SUFFIX),
+                    prebuilt.getBytes(StandardCharsets.UTF_8));
+        }
+        System.out.println("预编译" + generatedDaos.size() + "个dao，用时" + (System.currentTimeMillis() - timeStart) + "毫秒");
+    }
+
+    /**
+     * 加载类输出目录中dao包下的类，不初始化
+     */
+    private static List<Class<?>> findClasses(Path classesDir, String daoPkg) throws IOException {
+        Path pkgDir = classesDir.resolve(daoPkg.replace('.', File.separatorChar));
+        if (!Files.isDirectory(pkgDir)) {
+            return new ArrayList<>();
+        }
+        List<String> classNames;
+        try (Stream<Path> paths = Files.walk(pkgDir)) {
+            classNames = paths.map(path -> classesDir.relativize(path).toString())
+                    .filter(name -> name.endsWith(ComponentScanner.CLASS_SUFFIX))
+                    .map(name -> name.substring(0, name.length() - ComponentScanner.CLASS_SUFFIX.length())
+                            .replace(File.separatorChar, '.'))
+                    .collect(Collectors.toList());
+        }
+        ClassLoader classLoader = DaoPrecompiler.class.getClassLoader();
+        List<Class<?>> classes = new ArrayList<>(classNames.size());
+        for (String className : classNames) {
+            try {
+                classes.add(Class.forName(className, false, classLoader));
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException(className + "不在类路径上", e);
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * 源码按Provider、Mapper、Impl的顺序存放
+     */
+    private static void writeSources(GeneratedDao generatedDao, Path sourcesDir) throws IOException {
+        List<String> classNames = Arrays.asList(generatedDao.getProviderName(), generatedDao.getMapperName(),
+                generatedDao.getImplName());
+        List<Map<String, String>> codes = generatedDao.getCodes();
+        for (int i = 0; i < classNames.size(); i++) {
+            String code = codes.get(i).values().iterator().next();
+            write(sourcesDir.resolve(classNames.get(i).replace('.', '/') + ".java"), code.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void write(Path path, byte[] bytes) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, bytes);
+    }
+}
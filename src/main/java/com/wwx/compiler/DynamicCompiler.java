@@ -3,47 +3,86 @@ package com.wwx.compiler;
 import com.wwx.compiler.exception.DynamicCompileException;
 import com.wwx.compiler.util.StringUtils;
 
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
 import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * 动态编译器
+ * 一次编译任务编译多个类，同一任务中的类共用一个文件管理器，避免每个类都重新初始化javac
+ * 字节码输出到内存，由{@link DaoClassLoader}直接定义
+ */
 class DynamicCompiler {
+    private final JavaCompiler javaCompiler;
 
-    void compile(Map<String, String> classCode, String output) {
-        String name = classCode.keySet().iterator().next();
-        String code = classCode.get(name);
-        if (StringUtils.isEmpty(name) || StringUtils.isEmpty(code)) {
-            throw new DynamicCompileException("类名或代码为空");
+    DynamicCompiler() {
+        javaCompiler = ToolProvider.getSystemJavaCompiler();
+        if (javaCompiler == null) {
+            throw new DynamicCompileException("找不到javac，请使用JDK运行");
         }
-        JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
-        StringWriter out = new StringWriter();
-        PrintWriter writer = new PrintWriter(out);
-        writer.println(code);
-        JavaFileObject fileObject = new JavaSourceObject(name, out.toString());
-        List<String> options = new ArrayList<>(4);
+    }
+
+    /**
+     * 在一个javac任务中编译所有给定的类
+     * 文件管理器不是线程安全的，所以每个任务各自持有一个，任务内的所有类共用
+     *
+     * @param classCodes 每个元素是 类名->代码 的map
+     * @return 类全名->字节码
+     */
+    Map<String, byte[]> compile(List<Map<String, String>> classCodes) {
+        List<JavaFileObject> fileObjects = new ArrayList<>(classCodes.size());
+        for (Map<String, String> classCode : classCodes) {
+            for (Map.Entry<String, String> entry : classCode.entrySet()) {
+                String name = entry.getKey();
+                String code = entry.getValue();
+                if (StringUtils.isEmpty(name) || StringUtils.isEmpty(code)) {
+                    throw new DynamicCompileException("类名或代码为空");
+                }
+                fileObjects.add(new JavaSourceObject(name, code));
+            }
+        }
+        List<String> options = new ArrayList<>(2);
         options.add("-encoding");
         options.add("UTF-8");
-        options.add("-d");
-        options.add(output);
-        JavaCompiler.CompilationTask task = javaCompiler.getTask(null, null, null,
-                options, null, Collections.singletonList(fileObject));
-        Boolean isSuccess = task.call();
-        if (isSuccess) {
-            System.out.println(name + "编译成功");
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        StandardJavaFileManager standardFileManager =
+                javaCompiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+        try (MemoryJavaFileManager fileManager = new MemoryJavaFileManager(standardFileManager)) {
+            JavaCompiler.CompilationTask task = javaCompiler.getTask(null, fileManager, diagnostics,
+                    options, null, fileObjects);
+            if (!task.call()) {
+                throw new DynamicCompileException("编译失败：\n" + format(diagnostics));
+            }
+            return fileManager.getClassBytes();
+        } catch (IOException e) {
+            throw new DynamicCompileException("关闭文件管理器失败：" + e.getMessage());
         }
+    }
 
+    private static String format(DiagnosticCollector<JavaFileObject> diagnostics) {
+        StringBuilder sb = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() != Diagnostic.Kind.ERROR) {
+                continue;
+            }
+            JavaFileObject source = diagnostic.getSource();
+            sb.append(source == null ? "" : source.getName()).append(":").append(diagnostic.getLineNumber())
+                    .append(" ").append(diagnostic.getMessage(null)).append("\n");
+        }
+        return sb.toString();
     }
 
-    private class JavaSourceObject extends SimpleJavaFileObject {
+    private static class JavaSourceObject extends SimpleJavaFileObject {
         private final String code;
 
         JavaSourceObject(String name, String code) {
@@ -0,0 +1,91 @@
+package com.wwx.compiler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 一个dao生成的类：Impl、Mapper、Provider的类全名，生成的代码以及编译后的字节码
+ * 从生成缓存中读出的dao没有代码，只有字节码
+ */
+class GeneratedDao {
+    private final Class<?> dao;
+    /**
+     * dao接口、实体类及生成器的指纹，作为生成缓存的键
+     */
+    private final String fingerprint;
+    private final String implName;
+    private final String mapperName;
+    private final String providerName;
+    /**
+     * 每个元素是 类名->代码 的map
+     */
+    private List<Map<String, String>> codes;
+    /**
+     * 类全名->字节码，包括内部类
+     */
+    private Map<String, byte[]> classBytes;
+
+    GeneratedDao(Class<?> dao, String fingerprint, String implName, String mapperName, String providerName) {
+        this.dao = dao;
+        this.fingerprint = fingerprint;
+        this.implName = implName;
+        this.mapperName = mapperName;
+        this.providerName = providerName;
+    }
+
+    Class<?> getDao() {
+        return dao;
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+
+    String getImplName() {
+        return implName;
+    }
+
+    String getMapperName() {
+        return mapperName;
+    }
+
+    String getProviderName() {
+        return providerName;
+    }
+
+    List<Map<String, String>> getCodes() {
+        return codes;
+    }
+
+    void setCodes(List<Map<String, String>> codes) {
+        this.codes = codes;
+    }
+
+    Map<String, byte[]> getClassBytes() {
+        return classBytes;
+    }
+
+    void setClassBytes(Map<String, byte[]> classBytes) {
+        this.classBytes = classBytes;
+    }
+
+    /**
+     * 从一批编译结果中取出属于这个dao的类
+     *
+     * @param batchBytes 一个编译任务的全部字节码
+     */
+    void collectClassBytes(Map<String, byte[]> batchBytes) {
+        classBytes = new HashMap<>(4);
+        for (Map.Entry<String, byte[]> entry : batchBytes.entrySet()) {
+            String name = entry.getKey();
+            if (isOwnClass(name, implName) || isOwnClass(name, mapperName) || isOwnClass(name, providerName)) {
+                classBytes.put(name, entry.getValue());
+            }
+        }
+    }
+
+    private static boolean isOwnClass(String name, String topLevelName) {
+        return name.equals(topLevelName) || name.startsWith(topLevelName + "$");
+    }
+}
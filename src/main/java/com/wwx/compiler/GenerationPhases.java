@@ -0,0 +1,134 @@
+package com.wwx.compiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 生成dao各阶段的开销：墙钟时间、进程CPU时间（包括线程池中的线程）、堆的峰值、元空间的增长
+ * 由DaoFactory在扫描、查缓存、生成代码、编译、加载前后调用，生成结束时打印；启动规模的基准测试也从这里读取
+ * 各阶段依次执行，堆的峰值在阶段开始时重置，是阶段中各堆内存池峰值之和
+ */
+final class GenerationPhases {
+    static final String SCAN = "scan";
+    static final String CACHE = "cache";
+    static final String BUILD = "build";
+    static final String COMPILE = "compile";
+    static final String LOAD = "load";
+
+    private static final List<Phase> PHASES = new CopyOnWriteArrayList<>();
+
+    private GenerationPhases() {
+    }
+
+    /**
+     * 开始一个阶段，结束时调用{@link Phase#end()}
+     */
+    static Phase begin(String name) {
+        Phase phase = new Phase(name);
+        PHASES.add(phase);
+        return phase;
+    }
+
+    /**
+     * @return 记录的各阶段，按开始的顺序
+     */
+    static List<Phase> phases() {
+        return new ArrayList<>(PHASES);
+    }
+
+    static void clear() {
+        PHASES.clear();
+    }
+
+    /**
+     * @return 进程CPU时间（纳秒），JVM不支持时为-1
+     */
+    private static long processCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    private static long metaspaceUsed() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if ("Metaspace".equals(pool.getName())) {
+                return pool.getUsage().getUsed();
+            }
+        }
+        return 0;
+    }
+
+    static final class Phase {
+        private final String name;
+        private final long startNanos;
+        private final long startCpuNanos;
+        private final long startMetaspace;
+        private long wallNanos = -1;
+        private long cpuNanos;
+        private long peakHeap;
+        private long metaspaceGrowth;
+
+        private Phase(String name) {
+            this.name = name;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                    pool.resetPeakUsage();
+                }
+            }
+            startMetaspace = metaspaceUsed();
+            startCpuNanos = processCpuNanos();
+            startNanos = System.nanoTime();
+        }
+
+        void end() {
+            wallNanos = System.nanoTime() - startNanos;
+            long endCpuNanos = processCpuNanos();
+            cpuNanos = startCpuNanos < 0 || endCpuNanos < 0 ? -1 : endCpuNanos - startCpuNanos;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                    peakHeap += pool.getPeakUsage().getUsed();
+                }
+            }
+            metaspaceGrowth = metaspaceUsed() - startMetaspace;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return 墙钟时间（纳秒），阶段没有结束时为-1
+         */
+        long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         * @return 进程CPU时间（纳秒），JVM不支持时为-1
+         */
+        long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        long getPeakHeap() {
+            return peakHeap;
+        }
+
+        long getMetaspaceGrowth() {
+            return metaspaceGrowth;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s 用时%6d毫秒 CPU%7d毫秒 堆峰值%6.1fMB 元空间增长%6.1fMB", name, wallNanos / 1_000_000,
+                    cpuNanos / 1_000_000, peakHeap / 1048576.0, metaspaceGrowth / 1048576.0);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.wwx.compiler;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 内存文件管理器
+ * javac输出的字节码保存在内存中，不写class文件
+ */
+class MemoryJavaFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    /**
+     * 类全名->字节码
+     */
+    private final Map<String, byte[]> classBytes = new HashMap<>();
+
+    MemoryJavaFileManager(StandardJavaFileManager fileManager) {
+        super(fileManager);
+    }
+
+    @Override
+    public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                               FileObject sibling) throws IOException {
+        if (kind != JavaFileObject.Kind.CLASS) {
+            return super.getJavaFileForOutput(location, className, kind, sibling);
+        }
+        return new ClassBytesObject(className);
+    }
+
+    Map<String, byte[]> getClassBytes() {
+        return classBytes;
+    }
+
+    private class ClassBytesObject extends SimpleJavaFileObject {
+        private final String className;
+
+        ClassBytesObject(String className) {
+            super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+            this.className = className;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    classBytes.put(className, toByteArray());
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.wwx.compiler;
+
+import com.wwx.compiler.runtime.SqlTemplate;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Provider方法的模型
+ * 包括SQL模板的子句，以及决定各子句是否出现的参数检查（第i个检查对应掩码的第i位）
+ * 源码生成和字节码生成都从这个模型出发，两种方式生成的SQL一致
+ */
+class SqlMethodModel {
+    static final String SELECT = "select";
+    static final String INSERT = "insert";
+    static final String UPDATE = "update";
+    static final String DELETE = "delete";
+    static final String INSERT_BATCH = "insertBatch";
+    /**
+     * 按ID的语句中主键值的参数名，类型为Object
+     */
+    static final String ID_PARAM = "id";
+
+    private final String methodName;
+    /**
+     * 语句类型，同时也是创建模板的静态方法名
+     */
+    private final String type;
+    private final String table;
+    /**
+     * SELECT的列，其他语句为null
+     */
+    private final String columns;
+    /**
+     * Provider方法的参数名
+     */
+    private final List<String> params;
+    private final List<Check> checks = new ArrayList<>();
+    private final List<Clause> clauses = new ArrayList<>();
+    private String orderBy;
+    private int limit;
+    private boolean fetchFirst;
+    /**
+     * 固定的SQL，不需要Provider和模板，为null时由模板拼出
+     */
+    private String fixedSql;
+
+    SqlMethodModel(String methodName, String type, String table, String columns, String... params) {
+        this.methodName = methodName;
+        this.type = type;
+        this.table = table;
+        this.columns = columns;
+        this.params = Arrays.asList(params);
+    }
+
+    /**
+     * 添加一个参数检查
+     *
+     * @param param       参数名
+     * @param getter      参数的getter
+     * @param emptyString true表示检查字符串非空，false表示检查非null
+     * @return 检查对应的位
+     */
+    int check(String param, Method getter, boolean emptyString) {
+        checks.add(new Check(param, getter, emptyString));
+        return checks.size() - 1;
+    }
+
+    void where(int bit, String condition) {
+        clauses.add(new Clause("where", bit, condition));
+    }
+
+    void set(int bit, String assignment) {
+        clauses.add(new Clause("set", bit, assignment));
+    }
+
+    void value(int bit, String column, String value) {
+        clauses.add(new Clause("value", bit, column, value));
+    }
+
+    void orderBy(String orderBy) {
+        this.orderBy = orderBy;
+    }
+
+    /**
+     * @param fetchFirst 是否写作FETCH FIRST n ROWS ONLY，否则写作LIMIT n
+     */
+    void limit(int limit, boolean fetchFirst) {
+        this.limit = limit;
+        this.fetchFirst = fetchFirst;
+    }
+
+    void fixedSql(String fixedSql) {
+        this.fixedSql = fixedSql;
+    }
+
+    /**
+     * @return Provider中保存模板的静态字段名
+     */
+    String getTemplateField() {
+        return "SQL_" + methodName;
+    }
+
+    /**
+     * @return jdbc引擎的Impl中保存模板的静态字段名，模板拼出?占位的SQL
+     */
+    String getJdbcTemplateField() {
+        return "JDBC_" + methodName;
+    }
+
+    /**
+     * @return Impl中保存方法统计的静态字段名
+     */
+    String getMetricsField() {
+        return "METRICS_" + methodName;
+    }
+
+    /**
+     * @return 参数名，用逗号分隔，与Impl方法的参数一致
+     */
+    String getParamNames() {
+        return String.join(",", params);
+    }
+
+    /**
+     * @return 各参数检查：参数名.getter，检查字符串非空的以!结尾，用逗号分隔；慢查询时方法统计按它算出掩码
+     */
+    String getCheckNames() {
+        StringBuilder names = new StringBuilder();
+        for (Check check : checks) {
+            if (names.length() > 0) {
+                names.append(',');
+            }
+            names.append(check.getParam()).append('.').append(check.getGetter().getName());
+            if (check.isEmptyString()) {
+                names.append('!');
+            }
+        }
+        return names.toString();
+    }
+
+    /**
+     * @return session调用的Impl中保存语句id的静态字段名
+     */
+    String getStatementField() {
+        return "STATEMENT_" + methodName;
+    }
+
+    /**
+     * @return jdbc引擎的Impl中保存查询结果列下标的静态字段名
+     */
+    String getColumnsField() {
+        return "COLUMNS_" + methodName;
+    }
+
+    /**
+     * @return 是否固定SQL：直接声明在Mapper上，Provider中没有对应的方法
+     */
+    boolean isFixed() {
+        return fixedSql != null;
+    }
+
+    String getFixedSql() {
+        return fixedSql;
+    }
+
+    /**
+     * @return 是否多行INSERT：参数是实体的List，检查对每一行做
+     */
+    boolean isBatch() {
+        return INSERT_BATCH.equals(type);
+    }
+
+    String getMethodName() {
+        return methodName;
+    }
+
+    String getType() {
+        return type;
+    }
+
+    String getTable() {
+        return table;
+    }
+
+    String getColumns() {
+        return columns;
+    }
+
+    List<String> getParams() {
+        return params;
+    }
+
+    List<Check> getChecks() {
+        return checks;
+    }
+
+    /**
+     * @return 可选条件是否超过64个：掩码放不进long，生成的代码改用BitSet
+     */
+    boolean isWideMask() {
+        return checks.size() > Long.SIZE;
+    }
+
+    List<Clause> getClauses() {
+        return clauses;
+    }
+
+    String getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * @return SELECT的LIMIT，0表示不限制
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return 设置行数上限的模板方法名
+     */
+    String getLimitMethod() {
+        return fetchFirst ? "fetchFirst" : "limit";
+    }
+
+    /**
+     * 参数检查：参数的某个getter不为空时置位
+     */
+    static class Check {
+        private final String param;
+        private final Method getter;
+        private final boolean emptyString;
+
+        Check(String param, Method getter, boolean emptyString) {
+            this.param = param;
+            this.getter = getter;
+            this.emptyString = emptyString;
+        }
+
+        String getParam() {
+            return param;
+        }
+
+        Method getGetter() {
+            return getter;
+        }
+
+        boolean isEmptyString() {
+            return emptyString;
+        }
+    }
+
+    /**
+     * 模板子句，对应{@link SqlTemplate}的一个构建方法，参数为位和若干字符串
+     */
+    static class Clause {
+        private final String method;
+        private final int bit;
+        private final String[] args;
+
+        Clause(String method, int bit, String... args) {
+            this.method = method;
+            this.bit = bit;
+            this.args = args;
+        }
+
+        String getMethod() {
+            return method;
+        }
+
+        int getBit() {
+            return bit;
+        }
+
+        String[] getArgs() {
+            return args;
+        }
+    }
+}
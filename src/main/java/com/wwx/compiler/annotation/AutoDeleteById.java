@@ -0,0 +1,13 @@
+package com.wwx.compiler.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 按@ID字段删除一行，SQL固定，同{@link AutoSelectById}
+ * 方法有且仅有一个参数，即主键的值
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AutoDeleteById {
+}
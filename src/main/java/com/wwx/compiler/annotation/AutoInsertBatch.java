@@ -0,0 +1,25 @@
+package com.wwx.compiler.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 多行新增：INSERT INTO ... VALUES (...), (...)
+ * 方法有且仅有一个List参数，返回int[]，每个元素是一批插入的行数
+ * 同一批中任意一行不为空的列都会插入，其他行的该列插入NULL
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AutoInsertBatch {
+    /**
+     * 主键自增长，同{@link AutoInsert#idSeq()}
+     * @return 是否使用自增长的ID
+     */
+    boolean idSeq() default false;
+
+    /**
+     * 每条INSERT语句的最大行数，不大于0时使用-Ddaowom.insertBatch.chunkSize，默认500
+     * @return 每批行数
+     */
+    int chunkSize() default 0;
+}
@@ -6,6 +6,11 @@ import java.lang.annotation.*;
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface AutoSelect {
+    /**
+     * {@link #seekBy()}使用@ID字段
+     */
+    String SEEK_ID = "@ID";
+
     /**
      * SQL中的or、in等其他条件，每个元素以“->”连接
      * @return 如[COL_1->COL_1 = 1 OR COL_1 = 3, COL_2->COL_2 IN ('3', '4', '5')]
@@ -18,6 +23,12 @@ public @interface AutoSelect {
      */
     String[] compare() default {};
 
+    /**
+     * SELECT的列，为空时SELECT *；未选的列在返回的实体中为null
+     * @return 如[ID, NAME]
+     */
+    String[] columns() default {};
+
     /**
      * SQL中的ORDER BY 语句
      * @return 需要排序的字段
@@ -29,4 +40,27 @@ public @interface AutoSelect {
      * @return 需要排序的字段
      */
     String[] orderDescBy() default {};
+
+    /**
+     * SQL中的LIMIT，0表示不限制
+     * @return 最多返回的行数
+     */
+    int limit() default 0;
+
+    /**
+     * 按键翻页（keyset）：参数中该列的字段不为空时，条件由“列 = 值”变为“列 > 值”（orderDescBy时为“<”），
+     * 传入上一页最后一行的值即取下一页，不用OFFSET扫描前面的行
+     * 该列必须是排序的第一列，没有指定排序时按该列升序；该列应当唯一，否则同值的行可能跨页丢失
+     * 一般和{@link #limit()}一起使用
+     * @return 列名，或{@link #SEEK_ID}
+     */
+    String seekBy() default "";
+
+    /**
+     * 查询结果缓存的秒数，0表示不缓存
+     * 键是方法和参数所有字段的值，同一张表的INSERT、UPDATE、DELETE使结果失效，
+     * 见{@link com.wwx.compiler.runtime.QueryCache}
+     * @return 秒
+     */
+    long cacheSeconds() default 0;
 }
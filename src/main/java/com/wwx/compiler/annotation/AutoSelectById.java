@@ -0,0 +1,19 @@
+package com.wwx.compiler.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 按@ID字段查询一行
+ * SQL是固定的：SELECT 列 FROM 表 WHERE ID列 = #{id}，不检查参数，在Mapper上直接声明，只解析一次，
+ * 每次执行的SQL相同，可以被预编译语句缓存复用
+ * 方法有且仅有一个参数，即主键的值
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AutoSelectById {
+    /**
+     * @return 同{@link AutoSelect#columns()}
+     */
+    String[] columns() default {};
+}
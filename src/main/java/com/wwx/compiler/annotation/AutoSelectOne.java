@@ -17,4 +17,10 @@ public @interface AutoSelectOne {
      * @return 如[COL_1:<, COL_2:>=]
      */
     String[] compare() default {};
+
+    /**
+     * SELECT的列，为空时SELECT *；未选的列在返回的实体中为null
+     * @return 如[ID, NAME]
+     */
+    String[] columns() default {};
 }
@@ -0,0 +1,50 @@
+package com.wwx.compiler.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 流式查询，条件的写法同{@link AutoSelect}
+ * 方法有且仅有一个参数，返回Stream或者MyBatis的Cursor，结果逐行从数据库读取，不会一次加载到内存
+ * 查询使用单独的SqlSession，Stream或Cursor关闭时（Stream读完时也会）关闭SqlSession，释放连接，
+ * 所以使用完必须关闭：try (Stream<T> s = dao.xxx(t)) {...}
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AutoSelectStream {
+    /**
+     * MySQL驱动的逐行读取模式，其他值时MySQL会把结果全部读到内存
+     */
+    int MYSQL_STREAMING = Integer.MIN_VALUE;
+
+    /**
+     * @return 同{@link AutoSelect#other()}
+     */
+    String[] other() default {};
+
+    /**
+     * @return 同{@link AutoSelect#compare()}
+     */
+    String[] compare() default {};
+
+    /**
+     * @return 同{@link AutoSelect#columns()}
+     */
+    String[] columns() default {};
+
+    /**
+     * @return 同{@link AutoSelect#orderBy()}
+     */
+    String[] orderBy() default {};
+
+    /**
+     * @return 同{@link AutoSelect#orderDescBy()}
+     */
+    String[] orderDescBy() default {};
+
+    /**
+     * JDBC的fetchSize，为0时使用-Ddaowom.stream.fetchSize，默认1000；MySQL使用{@link #MYSQL_STREAMING}
+     * @return 每次从数据库读取的行数
+     */
+    int fetchSize() default 0;
+}
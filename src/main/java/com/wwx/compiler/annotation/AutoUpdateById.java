@@ -0,0 +1,14 @@
+package com.wwx.compiler.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 按@ID字段更新一行，SQL固定，同{@link AutoSelectById}
+ * 方法有且仅有一个实体参数，更新除@ID外的所有列，为null的字段也会更新为NULL；
+ * 只更新部分字段时用{@link AutoUpdate}
+ */
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AutoUpdateById {
+}
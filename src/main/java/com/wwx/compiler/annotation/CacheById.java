@@ -0,0 +1,26 @@
+package com.wwx.compiler.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 实体缓存，加在有@ID字段的实体类上
+ * 生成的dao中，SELECT_BY_ID和只有@ID字段不为空的@AutoSelectOne先查缓存，
+ * 按ID的更新、删除使对应的键失效，其他UPDATE、DELETE使整个实体的缓存失效
+ * 同一实体的所有dao共用一个缓存，计数见{@link com.wwx.compiler.runtime.IdCache}
+ * 缓存中存的和命中时返回的都是副本，调用方可以修改；实体需要无参构造器
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CacheById {
+    /**
+     * @return 最多缓存的实体数
+     */
+    int maxSize() default 10000;
+
+    /**
+     * 写入后多久过期，兜底不经过dao的修改
+     * @return 秒
+     */
+    long ttlSeconds() default 300;
+}
@@ -7,4 +7,9 @@ import java.lang.annotation.*;
 @Documented
 public @interface DaoProxy {
     String output();
+
+    /**
+     * 异步接口，通常继承{@link com.wwx.compiler.AsyncDao}，由生成器实现；默认没有
+     */
+    Class<?> async() default void.class;
 }
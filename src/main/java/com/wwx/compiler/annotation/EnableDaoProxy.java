@@ -0,0 +1,22 @@
+package com.wwx.compiler.annotation;
+
+import com.wwx.compiler.DaoBeanRegistrar;
+import org.springframework.context.annotation.Import;
+
+import java.lang.annotation.*;
+
+/**
+ * 把内存中生成的Mapper和Impl注册到Spring
+ * 放在配置类上，与@MapperScan一起使用
+ */
+@Target({ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Import(DaoBeanRegistrar.class)
+public @interface EnableDaoProxy {
+    /**
+     * 生成的Mapper使用的SqlSessionFactory
+     * @return SqlSessionFactory的bean名，为空时按类型注入
+     */
+    String sqlSessionFactoryRef() default "";
+}
@@ -0,0 +1,30 @@
+package com.wwx.compiler.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * 指定查询方法从哪个库读取，加在dao接口上对其中所有查询方法生效，加在方法上优先于接口上的
+ * 没有此注解时，生成的查询方法从从库读取，写方法始终在主库执行
+ * 只在SqlSessionFactory的数据源是{@link com.wwx.compiler.runtime.ReadWriteDataSource}时生效，
+ * 事务中的方法都在主库执行，见{@link com.wwx.compiler.runtime.DaoRouting}
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadFrom {
+    /**
+     * @return 查询使用的库，写后立即读等需要最新数据的查询用PRIMARY
+     */
+    Source value();
+
+    enum Source {
+        /**
+         * 主库
+         */
+        PRIMARY,
+        /**
+         * 从库，有多个时轮询
+         */
+        REPLICA
+    }
+}
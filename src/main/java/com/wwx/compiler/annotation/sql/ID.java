@@ -3,16 +3,16 @@ package com.wwx.compiler.annotation.sql;
 import java.lang.annotation.*;
 
 /**
- * 指定bean中的序列自增长ID字段
- * 如果字段是ID但不需要序列的，不需要改注解
+ * 指定bean中的ID字段
+ * 用于INSERT时的序列自增长，以及按ID的查询、删除、更新
  */
 @Target({ElementType.FIELD})
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
 public @interface ID {
     /**
-     * 数据库序列
+     * 数据库序列，不需要序列时为空
      * @return 序列名
      */
-    String seq();
+    String seq() default "";
 }
@@ -0,0 +1,7 @@
+package com.wwx.compiler.exception;
+
+public class DaoAsyncException extends RuntimeException {
+    public DaoAsyncException(String msg) {
+        super(msg);
+    }
+}
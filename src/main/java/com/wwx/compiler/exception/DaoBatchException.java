@@ -0,0 +1,7 @@
+package com.wwx.compiler.exception;
+
+public class DaoBatchException extends RuntimeException {
+    public DaoBatchException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,7 @@
+package com.wwx.compiler.exception;
+
+public class IDaoNoIdException extends RuntimeException {
+    public IDaoNoIdException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,56 @@
+package com.wwx.compiler.runtime;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 缓存失效的补充：在Spring事务或批量作用域中的写，提交前其他线程仍可能读到旧值并写入缓存，
+ * 所以结束后再执行一次失效
+ * 事务中不写入缓存：读到的可能是本事务还没提交的写，写入后其他线程就能看到，回滚了也还在；
+ * 事务写过的缓存在事务结束前本事务也不读，否则读不到自己的写
+ */
+final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * @param cache    被写的缓存，事务结束前当前事务不再从中读
+     * @param runnable 失效
+     */
+    static void run(Object cache, Runnable runnable) {
+        DaoBatch batch = DaoBatch.current();
+        if (batch != null) {
+            batch.afterClose(runnable);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            boolean marked = !TransactionSynchronizationManager.hasResource(cache);
+            if (marked) {
+                TransactionSynchronizationManager.bindResource(cache, Boolean.TRUE);
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (marked) {
+                        TransactionSynchronizationManager.unbindResourceIfPossible(cache);
+                    }
+                    runnable.run();
+                }
+            });
+        }
+    }
+
+    /**
+     * @return 当前线程是否在Spring事务中，事务中不写入缓存
+     */
+    static boolean inTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    /**
+     * @return 当前事务是否写过cache对应的数据，写过时不从cache读
+     */
+    static boolean writtenInTransaction(Object cache) {
+        return TransactionSynchronizationManager.hasResource(cache);
+    }
+}
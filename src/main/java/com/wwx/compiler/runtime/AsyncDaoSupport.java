@@ -0,0 +1,46 @@
+package com.wwx.compiler.runtime;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 生成的异步dao的父类，生成的Impl中的内部类Async继承它并实现@DaoProxy(async = ...)指定的接口
+ * 每个异步方法把参数交给{@link #submit}，在{@link DaoExecutor}的线程中由{@link #call}按方法下标调用同步的dao
+ * <p>
+ * 异步调用在执行器的线程中执行，不加入调用方的Spring事务，也不在调用方的批量作用域（{@link DaoBatch}）中
+ */
+public abstract class AsyncDaoSupport {
+    private final String dao;
+    private DaoExecutor executor;
+
+    /**
+     * @param dao 同步dao的接口名
+     */
+    protected AsyncDaoSupport(String dao) {
+        this.dao = dao;
+    }
+
+    @Autowired
+    public void setExecutor(DaoExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * 调用同步dao的方法
+     *
+     * @param method 方法的下标
+     * @param args   参数
+     * @return 方法的返回值
+     */
+    protected abstract Object call(int method, Object[] args);
+
+    @SuppressWarnings("unchecked")
+    protected <T> CompletableFuture<T> submit(int method, Object[] args) {
+        return executor.submit(dao, () -> (T) call(method, args));
+    }
+
+    protected RuntimeException noMethod(int method) {
+        return new IllegalArgumentException(dao + "没有下标为" + method + "的异步方法");
+    }
+}
@@ -0,0 +1,44 @@
+package com.wwx.compiler.runtime;
+
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.scripting.xmltags.XMLLanguageDriver;
+import org.apache.ibatis.session.Configuration;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 生成的Mapper方法使用的语言驱动
+ * ProviderSqlSource每次调用都会把Provider返回的SQL重新解析成SqlSource，
+ * 而同一形状的SQL是{@link SqlTemplate}缓存的同一个字符串，这里按参数类型和SQL缓存解析结果
+ * MyBatis为每个Configuration创建一个驱动实例，所以缓存不会跨Configuration
+ */
+public class CachingLanguageDriver extends XMLLanguageDriver {
+    /**
+     * 每种参数类型的容量上限，超过后不再缓存新的SQL
+     */
+    private static final int MAX_SOURCES = 4096;
+    private final Map<Class<?>, Map<String, SqlSource>> sqlSources = new ConcurrentHashMap<>();
+
+    @Override
+    public SqlSource createSqlSource(Configuration configuration, String script, Class<?> parameterType) {
+        if (parameterType == null) {
+            return super.createSqlSource(configuration, script, parameterType);
+        }
+        Map<String, SqlSource> sources = sqlSources.get(parameterType);
+        if (sources == null) {
+            sources = sqlSources.computeIfAbsent(parameterType, type -> new ConcurrentHashMap<>());
+        }
+        SqlSource sqlSource = sources.get(script);
+        if (sqlSource != null) {
+            SqlCacheStats.SOURCE_HITS.increment();
+            return sqlSource;
+        }
+        SqlCacheStats.SOURCE_MISSES.increment();
+        sqlSource = super.createSqlSource(configuration, script, parameterType);
+        if (sources.size() < MAX_SOURCES) {
+            sources.putIfAbsent(script, sqlSource);
+        }
+        return sqlSource;
+    }
+}
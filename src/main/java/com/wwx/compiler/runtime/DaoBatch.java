@@ -0,0 +1,210 @@
+package com.wwx.compiler.runtime;
+
+import com.wwx.compiler.exception.DaoBatchException;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量写的作用域
+ * 作用域内当前线程对生成的dao的INSERT、UPDATE、DELETE调用不会立即执行，而是加入一个ExecutorType.BATCH的SqlSession，
+ * 积累到flushSize条语句或者{@link #commit()}时一起执行（JDBC addBatch/executeBatch）
+ * <pre>
+ * try (DaoBatch batch = DaoBatch.open(sqlSessionFactory)) {
+ *     movies.forEach(movieDao::INSERT);
+ *     batch.commit();
+ * }
+ * 或者
+ * List&lt;BatchResult&gt; results = DaoBatch.run(sqlSessionFactory, () -&gt; movies.forEach(movieDao::INSERT));
+ * </pre>
+ * 作用域内：
+ * 1.写方法返回的是MyBatis的占位值，每条语句的行数在{@link #getResults()}中
+ * 2.查询不经过批，看不到还没有flush的写
+ * 3.SqlSession使用SqlSessionFactory的事务工厂，有Spring事务时加入该事务
+ * 4.没有调用commit就close（如作用域中抛出了异常）时回滚；但连接是自动提交的（没有Spring事务，DataSource默认自动提交）时，
+ * 已经按flushSize执行的语句已经提交，无法回滚
+ */
+public class DaoBatch implements AutoCloseable {
+    public static final int DEFAULT_FLUSH_SIZE = 1000;
+    private static final ThreadLocal<DaoBatch> CURRENT = new ThreadLocal<>();
+
+    private final SqlSession sqlSession;
+    private final int flushSize;
+    private final Thread owner;
+    private final List<BatchResult> results = new ArrayList<>();
+    private final List<Runnable> afterClose = new ArrayList<>();
+    private int pending;
+    /**
+     * 已提交或已回滚
+     */
+    private boolean closed;
+
+    private DaoBatch(SqlSessionFactory sqlSessionFactory, int flushSize) {
+        this.sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, false);
+        this.flushSize = flushSize;
+        this.owner = Thread.currentThread();
+    }
+
+    public static DaoBatch open(SqlSessionFactory sqlSessionFactory) {
+        return open(sqlSessionFactory, DEFAULT_FLUSH_SIZE);
+    }
+
+    /**
+     * 在当前线程打开批量作用域，同一线程不能嵌套
+     *
+     * @param flushSize 积累多少条语句执行一次
+     */
+    public static DaoBatch open(SqlSessionFactory sqlSessionFactory, int flushSize) {
+        if (flushSize <= 0) {
+            throw new DaoBatchException("flushSize必须大于0：" + flushSize);
+        }
+        if (CURRENT.get() != null) {
+            throw new DaoBatchException("当前线程已经在批量作用域中");
+        }
+        DaoBatch batch = new DaoBatch(sqlSessionFactory, flushSize);
+        CURRENT.set(batch);
+        return batch;
+    }
+
+    /**
+     * 在批量作用域中执行，正常结束时提交，抛出异常时回滚；
+     * 连接自动提交时，已经按flushSize执行的语句无法回滚，见类的说明
+     *
+     * @return 每条语句的执行结果
+     */
+    public static List<BatchResult> run(SqlSessionFactory sqlSessionFactory, int flushSize, Runnable work) {
+        try (DaoBatch batch = open(sqlSessionFactory, flushSize)) {
+            work.run();
+            batch.commit();
+            return batch.getResults();
+        }
+    }
+
+    public static List<BatchResult> run(SqlSessionFactory sqlSessionFactory, Runnable work) {
+        return run(sqlSessionFactory, DEFAULT_FLUSH_SIZE, work);
+    }
+
+    /**
+     * 由生成的Impl在写方法中调用：当前线程在批量作用域中时返回批量SqlSession的mapper，否则返回注入的mapper
+     *
+     * @param type   mapper接口
+     * @param mapper 注入的mapper
+     */
+    public static <T> T mapper(Class<T> type, T mapper) {
+        DaoBatch batch = enlist();
+        return batch == null ? mapper : batch.sqlSession.getMapper(type);
+    }
+
+    /**
+     * 由直接调用SqlSession的Impl在写方法中调用：当前线程在批量作用域中时返回批量SqlSession，否则返回注入的SqlSession
+     * 与{@link #mapper(Class, Object)}一样计入待执行的语句
+     *
+     * @param sqlSession 注入的SqlSession
+     */
+    public static SqlSession sqlSession(SqlSession sqlSession) {
+        DaoBatch batch = enlist();
+        return batch == null ? sqlSession : batch.sqlSession;
+    }
+
+    /**
+     * 当前线程在批量作用域中时计入一条语句，积累满flushSize条时先执行
+     *
+     * @return 当前线程的批量作用域，没有时为null
+     */
+    private static DaoBatch enlist() {
+        DaoBatch batch = CURRENT.get();
+        if (batch == null) {
+            return null;
+        }
+        batch.checkOpen();
+        if (batch.pending >= batch.flushSize) {
+            batch.flush();
+        }
+        batch.pending++;
+        return batch;
+    }
+
+    /**
+     * @return 当前线程的批量作用域，没有时为null
+     */
+    public static DaoBatch current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 执行已积累的语句
+     *
+     * @return 本次执行的每条语句的结果
+     */
+    public List<BatchResult> flush() {
+        checkOpen();
+        pending = 0;
+        List<BatchResult> flushed = sqlSession.flushStatements();
+        results.addAll(flushed);
+        return flushed;
+    }
+
+    /**
+     * 执行剩余的语句并提交，之后作用域中不能再写，需要close结束作用域
+     */
+    public void commit() {
+        flush();
+        sqlSession.commit(true);
+        closed = true;
+    }
+
+    /**
+     * 丢弃还没有执行的语句并回滚
+     */
+    public void rollback() {
+        checkOpen();
+        pending = 0;
+        sqlSession.rollback(true);
+        closed = true;
+    }
+
+    /**
+     * 结束作用域，没有提交时回滚
+     */
+    @Override
+    public void close() {
+        if (Thread.currentThread() != owner) {
+            throw new DaoBatchException("批量作用域只能在打开它的线程中关闭");
+        }
+        try {
+            if (!closed) {
+                sqlSession.rollback(true);
+            }
+        } finally {
+            closed = true;
+            CURRENT.remove();
+            sqlSession.close();
+            afterClose.forEach(Runnable::run);
+        }
+    }
+
+    /**
+     * 作用域结束（提交或回滚）后执行，如使缓存失效
+     */
+    public void afterClose(Runnable runnable) {
+        afterClose.add(runnable);
+    }
+
+    /**
+     * @return 已执行的每条语句的结果，包括每条语句影响的行数
+     */
+    public List<BatchResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new DaoBatchException("批量作用域已经结束");
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.wwx.compiler.runtime;
+
+import com.wwx.compiler.exception.DaoAsyncException;
+import org.apache.ibatis.datasource.pooled.PooledDataSource;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 生成的异步dao（见{@link AsyncDaoSupport}）的执行器
+ * 线程数固定，默认等于连接池的最大连接数，多出的线程只会等连接；等待队列有界，队列满时返回的future以
+ * {@link DaoAsyncException}失败，不会无限增加线程或排队
+ * 按dao统计排队、执行、完成、失败、拒绝的数量
+ * <p>
+ * -Ddaowom.async.threads指定线程数，-Ddaowom.async.queueSize指定队列长度（默认1024）
+ */
+public final class DaoExecutor {
+    public static final String THREADS_PROPERTY = "daowom.async.threads";
+    public static final String QUEUE_SIZE_PROPERTY = "daowom.async.queueSize";
+    private static final int DEFAULT_QUEUE_SIZE = 1024;
+    /**
+     * 常见连接池表示最大连接数的getter：HikariCP、DBCP2、Druid和Tomcat JDBC
+     */
+    private static final String[] POOL_SIZE_GETTERS = {"getMaximumPoolSize", "getMaxTotal", "getMaxActive"};
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final int queueSize;
+    /**
+     * dao接口名->统计
+     */
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public DaoExecutor(int threads, int queueSize) {
+        if (threads <= 0 || queueSize <= 0) {
+            throw new DaoAsyncException("线程数和队列长度必须大于0：" + threads + "，" + queueSize);
+        }
+        this.threads = threads;
+        this.queueSize = queueSize;
+        AtomicInteger threadNo = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+            Thread t = new Thread(r, "daowom-async-" + threadNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * 按SqlSessionFactory的连接池大小创建，系统属性优先
+     */
+    public static DaoExecutor forPool(SqlSessionFactory sqlSessionFactory) {
+        Integer threads = Integer.getInteger(THREADS_PROPERTY);
+        if (threads == null) {
+            Environment environment = sqlSessionFactory.getConfiguration().getEnvironment();
+            threads = environment == null ? -1 : poolSize(environment.getDataSource());
+        }
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return new DaoExecutor(threads, Integer.getInteger(QUEUE_SIZE_PROPERTY, DEFAULT_QUEUE_SIZE));
+    }
+
+    /**
+     * @return 连接池的最大连接数，不认识的DataSource为-1；读写分离时按主库，写方法都在主库执行
+     */
+    static int poolSize(DataSource dataSource) {
+        if (dataSource instanceof ReadWriteDataSource) {
+            return poolSize(((ReadWriteDataSource) dataSource).getPrimary());
+        }
+        if (dataSource instanceof PooledDataSource) {
+            return ((PooledDataSource) dataSource).getPoolMaximumActiveConnections();
+        }
+        for (String getter : POOL_SIZE_GETTERS) {
+            try {
+                Method method = dataSource.getClass().getMethod(getter);
+                Object size = method.invoke(dataSource);
+                if (size instanceof Integer) {
+                    return (Integer) size;
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // 没有这个getter，试下一个
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在执行器中调用，队列满或已关闭时返回的future以{@link DaoAsyncException}失败
+     *
+     * @param dao 统计用的dao接口名
+     */
+    <T> CompletableFuture<T> submit(String dao, Callable<T> call) {
+        Stats daoStats = stats.computeIfAbsent(dao, k -> new Stats());
+        CompletableFuture<T> future = new CompletableFuture<>();
+        daoStats.submitted.increment();
+        daoStats.enqueue();
+        try {
+            executor.execute(() -> {
+                daoStats.queued.decrementAndGet();
+                daoStats.active.incrementAndGet();
+                // 先更新统计再完成future，调用方join之后读到的统计已包含这次调用
+                T result;
+                try {
+                    result = call.call();
+                } catch (Throwable e) {
+                    daoStats.active.decrementAndGet();
+                    daoStats.failed.increment();
+                    future.completeExceptionally(e);
+                    return;
+                }
+                daoStats.active.decrementAndGet();
+                daoStats.completed.increment();
+                future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            daoStats.queued.decrementAndGet();
+            daoStats.rejected.increment();
+            future.completeExceptionally(new DaoAsyncException(executor.isShutdown() ? "异步执行器已关闭"
+                    : "异步执行器队列已满（" + queueSize + "），" + dao + "的调用被拒绝"));
+        }
+        return future;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @return 所有dao正在排队的调用数
+     */
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return dao的统计，没有调用过时为null
+     */
+    public Stats getStats(String dao) {
+        return stats.get(dao);
+    }
+
+    /**
+     * @return dao接口名->统计，按名字排序
+     */
+    public Map<String, Stats> getStats() {
+        return Collections.unmodifiableMap(new TreeMap<>(stats));
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder("线程" + threads + "，队列" + getQueued() + "/" + queueSize);
+        getStats().forEach((dao, daoStats) -> sb.append("；").append(dao).append("：").append(daoStats));
+        return sb.toString();
+    }
+
+    /**
+     * 不再接受新的调用，已排队的调用继续执行；由Spring在容器关闭时调用
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * 一个dao的异步调用统计
+     */
+    public static final class Stats {
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger maxQueued = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        private void enqueue() {
+            int depth = queued.incrementAndGet();
+            maxQueued.accumulateAndGet(depth, Math::max);
+        }
+
+        /**
+         * @return 已提交、还没有开始执行的调用数
+         */
+        public int getQueued() {
+            return queued.get();
+        }
+
+        /**
+         * @return 排队数的最大值
+         */
+        public int getMaxQueued() {
+            return maxQueued.get();
+        }
+
+        /**
+         * @return 正在执行的调用数
+         */
+        public int getActive() {
+            return active.get();
+        }
+
+        public long getSubmitted() {
+            return submitted.sum();
+        }
+
+        public long getCompleted() {
+            return completed.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        public long getRejected() {
+            return rejected.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "排队" + getQueued() + "（最多" + getMaxQueued() + "），执行中" + getActive() + "，提交" + getSubmitted()
+                    + "，完成" + getCompleted() + "，失败" + getFailed() + "，拒绝" + getRejected();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.wwx.compiler.runtime;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 生成的dao各方法的统计，见{@link MethodMetrics}
+ * 每个方法的统计在Impl类初始化时创建，同时注册为JMX的MBean：com.wwx.compiler:type=DaoMethod,dao=dao接口名,name=方法名
+ * 慢查询记录（{@link SlowQueryLog}）注册为com.wwx.compiler:type=SlowQueryLog
+ * <p>
+ * -Ddaowom.metrics=off：不记录，生成的Impl只多一次volatile读
+ * -Ddaowom.metrics.jmx=false：不注册MBean
+ */
+public final class DaoMetrics {
+    public static final String JMX_DOMAIN = "com.wwx.compiler";
+
+    static volatile boolean enabled = !"off".equalsIgnoreCase(System.getProperty("daowom.metrics", "on"));
+    private static final boolean JMX = Boolean.parseBoolean(System.getProperty("daowom.metrics.jmx", "true"));
+    /**
+     * dao接口名.方法名->统计，按名字排序
+     */
+    private static final Map<String, MethodMetrics> METHODS = new ConcurrentSkipListMap<>();
+
+    static {
+        if (JMX) {
+            try {
+                ObjectName name = new ObjectName(JMX_DOMAIN + ":type=SlowQueryLog");
+                if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                    ManagementFactory.getPlatformMBeanServer().registerMBean(
+                            new StandardMBean(new SlowQueryLog.Jmx(), SlowQueryLogMBean.class), name);
+                }
+            } catch (JMException e) {
+                System.err.println("慢查询记录注册JMX失败：" + e);
+            }
+        }
+    }
+
+    private DaoMetrics() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        DaoMetrics.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 由生成的Impl在类初始化时调用，同一方法多次生成时共用一个统计
+     *
+     * @param dao    dao接口的全名
+     * @param method 方法名
+     * @param params 方法的参数名，用逗号分隔
+     * @param checks Provider掩码各位的条件，用逗号分隔，慢查询时按它算出SQL形状，见{@link SlowQueryLog}
+     */
+    public static MethodMetrics method(String dao, String method, String params, String checks) {
+        return METHODS.computeIfAbsent(dao + "." + method, k -> register(new MethodMetrics(dao, method, params, checks)));
+    }
+
+    private static MethodMetrics register(MethodMetrics metrics) {
+        if (!JMX) {
+            return metrics;
+        }
+        try {
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=DaoMethod,dao=" + metrics.getDao()
+                    + ",name=" + metrics.getMethod());
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, name);
+            }
+        } catch (JMException e) {
+            System.err.println("dao方法统计注册JMX失败：" + metrics.getDao() + "." + metrics.getMethod() + " " + e);
+        }
+        return metrics;
+    }
+
+    /**
+     * @return 各方法的统计，按dao接口名、方法名排序
+     */
+    public static List<MethodMetrics.Snapshot> snapshot() {
+        List<MethodMetrics.Snapshot> snapshots = new ArrayList<>(METHODS.size());
+        for (MethodMetrics metrics : METHODS.values()) {
+            snapshots.add(metrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    public static void reset() {
+        METHODS.values().forEach(MethodMetrics::reset);
+    }
+
+    /**
+     * @return 有调用的方法的统计，每个方法一行
+     */
+    public static String summary() {
+        StringBuilder summary = new StringBuilder();
+        for (MethodMetrics.Snapshot snapshot : snapshot()) {
+            if (snapshot.getCalls() > 0) {
+                summary.append(snapshot).append('\n');
+            }
+        }
+        return summary.toString();
+    }
+}
@@ -0,0 +1,67 @@
+package com.wwx.compiler.runtime;
+
+import java.util.function.Supplier;
+
+/**
+ * 当前线程的读写路由，由{@link ReadWriteDataSource}在取连接时读取
+ * 生成的查询方法执行期间标记为{@link #REPLICA}，其他时候（写方法、@ReadFrom(PRIMARY)的查询）不标记，使用主库；
+ * 需要读到刚写入的数据时，用{@link #primary(Supplier)}使其中的查询也使用主库
+ * 标记可以嵌套，内层不会把主库改为从库
+ */
+public final class DaoRouting {
+    /**
+     * 未标记，使用主库
+     */
+    public static final int NONE = 0;
+    /**
+     * 使用从库
+     */
+    public static final int REPLICA = 1;
+    /**
+     * 强制使用主库
+     */
+    public static final int PRIMARY = 2;
+
+    private static final ThreadLocal<int[]> ROUTE = ThreadLocal.withInitial(() -> new int[1]);
+
+    private DaoRouting() {
+    }
+
+    /**
+     * 进入路由，已经强制使用主库时保持主库
+     *
+     * @return 进入前的路由，交给{@link #exit(int)}恢复
+     */
+    public static int enter(int route) {
+        int[] holder = ROUTE.get();
+        int previous = holder[0];
+        holder[0] = Math.max(previous, route);
+        return previous;
+    }
+
+    /**
+     * 恢复进入前的路由
+     */
+    public static void exit(int previous) {
+        ROUTE.get()[0] = previous;
+    }
+
+    /**
+     * @return 当前线程的路由
+     */
+    public static int current() {
+        return ROUTE.get()[0];
+    }
+
+    /**
+     * 执行action，其中的查询都使用主库
+     */
+    public static <T> T primary(Supplier<T> action) {
+        int previous = enter(PRIMARY);
+        try {
+            return action.get();
+        } finally {
+            exit(previous);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.wwx.compiler.runtime;
+
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.SqlSession;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.support.SqlSessionDaoSupport;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 流式查询，由生成的Impl调用
+ * SqlSessionTemplate在方法返回时就关闭SqlSession，Cursor随之失效，
+ * 所以这里用mapper所在的SqlSessionFactory单独打开一个SqlSession，由返回的Stream或Cursor负责关闭
+ * 有Spring事务时，新的SqlSession仍然使用事务的连接
+ */
+public final class DaoStreams {
+
+    private DaoStreams() {
+    }
+
+    /**
+     * @param mapperFactory mapper的MapperFactoryBean
+     * @param statement     mapper方法的语句id
+     * @param parameter     查询参数
+     * @return 逐行读取的Stream，关闭或读完时释放连接
+     */
+    public static <T> Stream<T> stream(SqlSessionDaoSupport mapperFactory, String statement, Object parameter) {
+        SessionCursor<T> cursor = cursor(mapperFactory, statement, parameter);
+        Iterator<T> iterator = new Iterator<T>() {
+            private final Iterator<T> delegate = cursor.iterator();
+
+            @Override
+            public boolean hasNext() {
+                if (delegate.hasNext()) {
+                    return true;
+                }
+                cursor.close();
+                return false;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return delegate.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .onClose(cursor::close);
+    }
+
+    /**
+     * @return 关闭时同时关闭SqlSession的Cursor
+     */
+    public static <T> SessionCursor<T> cursor(SqlSessionDaoSupport mapperFactory, String statement, Object parameter) {
+        SqlSession sqlSession = openSession(mapperFactory);
+        try {
+            Cursor<T> cursor = sqlSession.selectCursor(statement, parameter);
+            return new SessionCursor<>(cursor, sqlSession);
+        } catch (RuntimeException | Error e) {
+            sqlSession.close();
+            throw e;
+        }
+    }
+
+    private static SqlSession openSession(SqlSessionDaoSupport mapperFactory) {
+        SqlSession sqlSession = mapperFactory.getSqlSession();
+        if (!(sqlSession instanceof SqlSessionTemplate)) {
+            throw new IllegalStateException("流式查询需要mapper使用SqlSessionTemplate：" + sqlSession);
+        }
+        SqlSessionTemplate template = (SqlSessionTemplate) sqlSession;
+        return template.getSqlSessionFactory().openSession(template.getExecutorType());
+    }
+
+    /**
+     * 关闭时同时关闭SqlSession的Cursor
+     */
+    public static class SessionCursor<T> implements Cursor<T> {
+        private final Cursor<T> cursor;
+        private final SqlSession sqlSession;
+        private boolean closed;
+
+        SessionCursor(Cursor<T> cursor, SqlSession sqlSession) {
+            this.cursor = cursor;
+            this.sqlSession = sqlSession;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return cursor.isOpen();
+        }
+
+        @Override
+        public boolean isConsumed() {
+            return cursor.isConsumed();
+        }
+
+        @Override
+        public int getCurrentIndex() {
+            return cursor.getCurrentIndex();
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return cursor.iterator();
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                cursor.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                sqlSession.close();
+            }
+        }
+    }
+}
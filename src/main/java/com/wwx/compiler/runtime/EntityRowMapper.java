@@ -0,0 +1,171 @@
+package com.wwx.compiler.runtime;
+
+import org.apache.ibatis.session.Configuration;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 实体的行映射，生成的Mapper中的内部类RowMapper继承它，由{@link RowMapperInterceptor}代替MyBatis的自动映射
+ * 每次查询按ResultSetMetaData解析一次各属性的列下标，之后逐行按下标读取，由子类直接调用setter，没有MetaObject反射
+ * 与MyBatis自动映射的语义一致：
+ * 列名按mapUnderscoreToCamelCase去掉下划线后忽略大小写匹配属性，同一属性有多列时取最后一列；
+ * 值为null时只在callSettersOnNulls时调用setter；所有列都为null的行是null，除非returnInstanceForEmptyRow
+ *
+ * @param <T> 实体类
+ */
+public abstract class EntityRowMapper<T> {
+    private static final int STRING = 0;
+    private static final int INTEGER = 1;
+    private static final int LONG = 2;
+    private static final int DOUBLE = 3;
+    private static final int DATE = 4;
+
+    private final Class<T> entity;
+    /**
+     * 大写的属性名
+     */
+    private final String[] properties;
+    private final int[] types;
+
+    /**
+     * @param entity     实体类
+     * @param properties 可映射的属性名，用逗号分隔，顺序与{@link #set(Object, int, Object)}的下标一致
+     * @param types      属性的类型（String、Integer、Long、Double、Date），用逗号分隔
+     */
+    protected EntityRowMapper(Class<T> entity, String properties, String types) {
+        this.entity = entity;
+        this.properties = properties.toUpperCase(Locale.ENGLISH).split(",");
+        String[] typeNames = types.split(",");
+        this.types = new int[typeNames.length];
+        for (int i = 0; i < typeNames.length; i++) {
+            this.types[i] = typeOf(typeNames[i]);
+        }
+    }
+
+    /**
+     * @return 新的实体
+     */
+    protected abstract T newRow();
+
+    /**
+     * 调用属性的setter
+     *
+     * @param property 属性的下标
+     */
+    protected abstract void set(T row, int property, Object value);
+
+    public Class<T> getEntity() {
+        return entity;
+    }
+
+    /**
+     * 读取结果中的所有行，不关闭结果
+     */
+    List<Object> mapRows(ResultSet resultSet, Configuration configuration) throws SQLException {
+        int[] index = indexes(resultSet.getMetaData(), configuration);
+        boolean callSettersOnNulls = configuration.isCallSettersOnNulls();
+        boolean returnInstanceForEmptyRow = configuration.isReturnInstanceForEmptyRow();
+        List<Object> rows = new ArrayList<>();
+        while (resultSet.next()) {
+            T row = newRow();
+            boolean found = false;
+            for (int i = 0; i < index.length; i++) {
+                if (index[i] == 0) {
+                    continue;
+                }
+                Object value = read(resultSet, index[i], types[i]);
+                if (value != null) {
+                    found = true;
+                    set(row, i, value);
+                } else if (callSettersOnNulls) {
+                    set(row, i, null);
+                }
+            }
+            rows.add(found || returnInstanceForEmptyRow ? row : null);
+        }
+        return rows;
+    }
+
+    /**
+     * @return 各属性在结果中的列下标，没有对应的列时为0
+     */
+    private int[] indexes(ResultSetMetaData metaData, Configuration configuration) throws SQLException {
+        int[] index = new int[properties.length];
+        boolean useColumnLabel = configuration.isUseColumnLabel();
+        boolean camelCase = configuration.isMapUnderscoreToCamelCase();
+        int count = metaData.getColumnCount();
+        for (int column = 1; column <= count; column++) {
+            String name = useColumnLabel ? metaData.getColumnLabel(column) : metaData.getColumnName(column);
+            if (camelCase) {
+                name = name.replace("_", "");
+            }
+            name = name.toUpperCase(Locale.ENGLISH);
+            for (int i = 0; i < properties.length; i++) {
+                if (properties[i].equals(name)) {
+                    index[i] = column;
+                    break;
+                }
+            }
+        }
+        return index;
+    }
+
+    private static Object read(ResultSet resultSet, int column, int type) throws SQLException {
+        switch (type) {
+            case STRING:
+                return resultSet.getString(column);
+            case INTEGER:
+                return getInteger(resultSet, column);
+            case LONG:
+                return getLong(resultSet, column);
+            case DOUBLE:
+                return getDouble(resultSet, column);
+            default:
+                return getDate(resultSet, column);
+        }
+    }
+
+    private static int typeOf(String typeName) {
+        switch (typeName) {
+            case "String":
+                return STRING;
+            case "Integer":
+                return INTEGER;
+            case "Long":
+                return LONG;
+            case "Double":
+                return DOUBLE;
+            case "Date":
+                return DATE;
+            default:
+                throw new IllegalArgumentException("行映射不支持的类型：" + typeName);
+        }
+    }
+
+    static Integer getInteger(ResultSet resultSet, int column) throws SQLException {
+        int value = resultSet.getInt(column);
+        return value == 0 && resultSet.wasNull() ? null : value;
+    }
+
+    static Long getLong(ResultSet resultSet, int column) throws SQLException {
+        long value = resultSet.getLong(column);
+        return value == 0 && resultSet.wasNull() ? null : value;
+    }
+
+    static Double getDouble(ResultSet resultSet, int column) throws SQLException {
+        double value = resultSet.getDouble(column);
+        return value == 0 && resultSet.wasNull() ? null : value;
+    }
+
+    static Date getDate(ResultSet resultSet, int column) throws SQLException {
+        Timestamp value = resultSet.getTimestamp(column);
+        return value == null ? null : new Date(value.getTime());
+    }
+}
@@ -0,0 +1,430 @@
+package com.wwx.compiler.runtime;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按@ID缓存实体，由生成的Impl使用，每个实体类一个
+ * 读不加锁；满了以后写入时淘汰：按写入顺序取候选，访问频率高的候选放回队尾再给一次机会，
+ * 新实体的频率不高于被淘汰者时不写入（TinyLFU的准入），避免一次性扫描冲掉常用的实体
+ * 频率用count-min sketch近似统计，计数总和达到容量的10倍时减半，让旧的热度逐渐衰减
+ * 查询前取{@link #stamp()}，写入时如果期间有过失效就不写入，避免并发的更新之后写入旧值
+ * Spring事务中不写入，写过的事务在结束前不读，见{@link AfterCommit}
+ * 键统一转成@ID字段的类型，SELECT_BY_ID(2L)、DELETE_BY_ID("2")和UPDATE_BY_ID的Integer主键是同一个键；
+ * 不能无损转换的键不查也不写缓存，失效时使整个实体的缓存失效
+ * 写入和命中时都复制实体（字段浅拷贝，Date另复制一份），调用方修改拿到的实体不影响缓存和其他线程
+ */
+public final class IdCache {
+    private static final Map<Class<?>, IdCache> CACHES = new ConcurrentHashMap<>();
+    /**
+     * 淘汰时最多给高频候选几次机会
+     */
+    private static final int MAX_SECOND_CHANCES = 8;
+
+    private final Class<?> entity;
+    /**
+     * @ID字段的类型，包装类型
+     */
+    private final Class<?> idType;
+    private final Copier copier;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<Object, Entry> map = new ConcurrentHashMap<>();
+    private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final FrequencySketch sketch;
+    private final AtomicLong epoch = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private IdCache(Class<?> entity, Class<?> idType, int maxSize, long ttlSeconds) {
+        this.entity = entity;
+        this.idType = idType;
+        this.copier = new Copier(entity);
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlNanos = ttlSeconds <= 0 ? Long.MAX_VALUE : ttlSeconds * 1_000_000_000L;
+        this.sketch = new FrequencySketch(this.maxSize);
+    }
+
+    /**
+     * 取实体类的缓存，没有时按参数创建；同一实体的多个dao共用，以先创建的参数为准
+     */
+    public static IdCache of(Class<?> entity, Class<?> idType, int maxSize, long ttlSeconds) {
+        return CACHES.computeIfAbsent(entity, k -> new IdCache(entity, idType, maxSize, ttlSeconds));
+    }
+
+    /**
+     * @return 实体类的缓存，没有时为null
+     */
+    public static IdCache get(Class<?> entity) {
+        return CACHES.get(entity);
+    }
+
+    /**
+     * @return 实体类->缓存
+     */
+    public static Map<Class<?>, IdCache> all() {
+        return Collections.unmodifiableMap(CACHES);
+    }
+
+    /**
+     * @param id 主键，为null时不命中
+     * @return 缓存的实体的副本，没有或已过期时为null
+     */
+    public Object get(Object id) {
+        id = keyOf(id);
+        if (id == null) {
+            return null;
+        }
+        if (AfterCommit.writtenInTransaction(this)) {
+            misses.increment();
+            return null;
+        }
+        sketch.increment(id);
+        Entry entry = map.get(id);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (System.nanoTime() - entry.writeTime >= ttlNanos) {
+            map.remove(id, entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copier.copy(entry.value);
+    }
+
+    /**
+     * @return 查询前取的版本，传给{@link #put(Object, Object, long)}
+     */
+    public long stamp() {
+        return epoch.get();
+    }
+
+    /**
+     * 写入查询结果的副本，id或value为null、在Spring事务中、或者取stamp之后有过失效时不写入
+     *
+     * @return value，调用方可以修改
+     */
+    public Object put(Object id, Object value, long stamp) {
+        id = keyOf(id);
+        if (id == null || value == null || epoch.get() != stamp || AfterCommit.inTransaction()) {
+            return value;
+        }
+        if (map.size() >= maxSize && !map.containsKey(id) && !makeRoom(id)) {
+            rejections.increment();
+            return value;
+        }
+        Entry entry = new Entry(id, copier.copy(value), System.nanoTime());
+        map.put(id, entry);
+        order.add(entry);
+        if (queued.incrementAndGet() > maxSize * 2) {
+            compact();
+        }
+        // 写入和失效并发时，失效可能先于写入完成
+        if (epoch.get() != stamp) {
+            map.remove(id, entry);
+        }
+        return value;
+    }
+
+    /**
+     * 使一个键失效，见{@link AfterCommit}
+     */
+    public void invalidate(Object id) {
+        if (id == null) {
+            return;
+        }
+        Object key = keyOf(id);
+        if (key == null) {
+            invalidateAll();
+            return;
+        }
+        doInvalidate(key);
+        AfterCommit.run(this, () -> doInvalidate(key));
+    }
+
+    /**
+     * 使整个实体的缓存失效，用于影响行不确定的UPDATE、DELETE
+     */
+    public void invalidateAll() {
+        doInvalidateAll();
+        AfterCommit.run(this, this::doInvalidateAll);
+    }
+
+    /**
+     * 把主键转成@ID字段的类型，整数之间、整数和字符串之间按值转换
+     *
+     * @return 转换后的键，为null或不能无损转换时为null
+     */
+    private Object keyOf(Object id) {
+        if (id == null || idType.isInstance(id)) {
+            return id;
+        }
+        long value;
+        if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            value = ((Number) id).longValue();
+        } else if (id instanceof String) {
+            try {
+                value = Long.parseLong(((String) id).trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+        if (idType == Long.class) {
+            return value;
+        } else if (idType == Integer.class && value == (int) value) {
+            return (int) value;
+        } else if (idType == Short.class && value == (short) value) {
+            return (short) value;
+        } else if (idType == Byte.class && value == (byte) value) {
+            return (byte) value;
+        }
+        return null;
+    }
+
+    private void doInvalidate(Object id) {
+        epoch.incrementAndGet();
+        invalidations.increment();
+        map.remove(id);
+    }
+
+    private void doInvalidateAll() {
+        epoch.incrementAndGet();
+        invalidations.increment();
+        map.clear();
+    }
+
+    /**
+     * 淘汰一个实体给candidate腾出位置
+     *
+     * @return false表示candidate的频率不够，不写入
+     */
+    private boolean makeRoom(Object candidate) {
+        evictionLock.lock();
+        try {
+            int candidateFrequency = sketch.frequency(candidate);
+            for (int chances = 0; map.size() >= maxSize; ) {
+                Entry victim = order.poll();
+                if (victim == null) {
+                    return true;
+                }
+                queued.decrementAndGet();
+                if (map.get(victim.id) != victim) {
+                    continue;
+                }
+                int victimFrequency = sketch.frequency(victim.id);
+                if (victimFrequency > candidateFrequency && chances++ < MAX_SECOND_CHANCES) {
+                    order.add(victim);
+                    queued.incrementAndGet();
+                    continue;
+                }
+                if (victimFrequency > candidateFrequency) {
+                    // 候选都比新实体常用
+                    order.add(victim);
+                    queued.incrementAndGet();
+                    return false;
+                }
+                if (map.remove(victim.id, victim)) {
+                    evictions.increment();
+                }
+            }
+            return true;
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * 清掉队列中已失效或被覆盖的实体
+     */
+    private void compact() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            order.removeIf(entry -> map.get(entry.id) != entry);
+            queued.set(order.size());
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public Class<?> getEntity() {
+        return entity;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hit = getHits();
+        long total = hit + getMisses();
+        return total == 0 ? 0.0 : (double) hit / total;
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return 因频率不够没有写入的次数
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public String summary() {
+        return entity.getSimpleName() + "缓存" + size() + "/" + maxSize + "，命中" + getHits() + "，未命中" + getMisses()
+                + String.format("，命中率%.2f%%", getHitRatio() * 100) + "，淘汰" + getEvictions()
+                + "，拒绝" + getRejections() + "，失效" + getInvalidations();
+    }
+
+    private static final class Entry {
+        private final Object id;
+        private final Object value;
+        private final long writeTime;
+
+        Entry(Object id, Object value, long writeTime) {
+            this.id = id;
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+    }
+
+    /**
+     * 复制实体：用无参构造器创建，逐个复制字段（包括父类的），Date是可变的，另复制一份
+     */
+    private static final class Copier {
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+
+        Copier(Class<?> entity) {
+            try {
+                constructor = entity.getDeclaredConstructor();
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException(entity.getName() + "没有无参构造器，不能开启@CacheById", e);
+            }
+            constructor.setAccessible(true);
+            List<Field> list = new ArrayList<>();
+            for (Class<?> clz = entity; clz != null && clz != Object.class; clz = clz.getSuperclass()) {
+                for (Field field : clz.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        list.add(field);
+                    }
+                }
+            }
+            fields = list.toArray(new Field[0]);
+        }
+
+        Object copy(Object source) {
+            try {
+                Object copy = constructor.newInstance();
+                for (Field field : fields) {
+                    Object value = field.get(source);
+                    field.set(copy, value instanceof Date ? ((Date) value).clone() : value);
+                }
+                return copy;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("复制" + source.getClass().getName() + "失败", e);
+            }
+        }
+    }
+
+    /**
+     * count-min sketch：每个键在4行中各有一个计数，频率取最小值，计数上限15
+     * 不加锁，并发时的丢失计数不影响近似
+     */
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final int[] SEEDS = {0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f};
+
+        private final int[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int maxSize) {
+            int width = Integer.highestOneBit(Math.max(16, Math.min(maxSize, 1 << 24)) * 2 - 1);
+            table = new int[width * DEPTH];
+            mask = width - 1;
+            sampleSize = 10 * maxSize;
+        }
+
+        void increment(Object key) {
+            int hash = spread(key.hashCode());
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(hash, i);
+                if (table[index] < MAX_COUNT) {
+                    table[index]++;
+                }
+            }
+            if (++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, table[indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private int indexOf(int hash, int row) {
+            int h = hash * SEEDS[row];
+            h ^= h >>> 17;
+            return row * (mask + 1) + (h & mask);
+        }
+
+        private void reset() {
+            additions = 0;
+            for (int i = 0; i < table.length; i++) {
+                table[i] >>>= 1;
+            }
+        }
+
+        private static int spread(int h) {
+            h ^= h >>> 16;
+            h *= 0x45d9f3b;
+            return h ^ (h >>> 16);
+        }
+    }
+}
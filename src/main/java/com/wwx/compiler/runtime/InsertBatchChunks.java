@@ -0,0 +1,34 @@
+package com.wwx.compiler.runtime;
+
+import java.util.List;
+
+/**
+ * 多行INSERT的分批，由生成的Impl调用
+ * 每批生成一条INSERT语句，批的大小决定语句的长度，需要小于数据库的包大小限制
+ * 批大小：注解中的chunkSize，没有指定时取-Ddaowom.insertBatch.chunkSize，默认500
+ */
+public final class InsertBatchChunks {
+    private static final int DEFAULT_CHUNK_SIZE = Integer.getInteger("daowom.insertBatch.chunkSize", 500);
+
+    private InsertBatchChunks() {
+    }
+
+    /**
+     * @param declared 注解中的chunkSize，不大于0表示使用默认值
+     */
+    public static int chunkSize(int declared) {
+        return declared > 0 ? declared : DEFAULT_CHUNK_SIZE;
+    }
+
+    public static int chunkCount(List<?> list, int chunkSize) {
+        return (list.size() + chunkSize - 1) / chunkSize;
+    }
+
+    /**
+     * @return 第index批，原列表的视图
+     */
+    public static <T> List<T> chunk(List<T> list, int index, int chunkSize) {
+        int from = index * chunkSize;
+        return list.subList(from, Math.min(from + chunkSize, list.size()));
+    }
+}
@@ -0,0 +1,253 @@
+package com.wwx.compiler.runtime;
+
+import org.mybatis.spring.support.SqlSessionDaoSupport;
+import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * jdbc引擎的一次语句执行，由生成的Impl调用（-Ddaowom.engine=jdbc）
+ * 不经过MyBatis：参数按顺序用类型对应的set方法绑定，结果按列下标用类型对应的get方法读取，
+ * 生成的代码直接调用实体的getter、setter，没有反射
+ * 连接取自mapper所在SqlSessionFactory的DataSource，经过DataSourceUtils，有Spring事务时使用事务的连接
+ * SQLException按DataSource的错误码转换为Spring的DataAccessException，与MyBatis路径一致
+ * <pre>
+ * JdbcCall call = JdbcCall.prepare(mapperFactory, sql);
+ * try {
+ *     call.setString(var.getName());
+ *     return call.update();
+ * } finally {
+ *     call.close();
+ * }
+ * </pre>
+ */
+public final class JdbcCall {
+    private static final String TASK = "daowom";
+    private static final Map<DataSource, SQLExceptionTranslator> TRANSLATORS = new ConcurrentHashMap<>();
+
+    private final DataSource dataSource;
+    private final String sql;
+    private final Connection connection;
+    private final PreparedStatement statement;
+    private ResultSet resultSet;
+    private int parameterIndex;
+
+    private JdbcCall(DataSource dataSource, String sql, Connection connection, PreparedStatement statement) {
+        this.dataSource = dataSource;
+        this.sql = sql;
+        this.connection = connection;
+        this.statement = statement;
+    }
+
+    /**
+     * 取连接并预编译SQL，失败时释放连接
+     *
+     * @param mapperFactory mapper的MapperFactoryBean，从中取DataSource
+     * @param sql           ?占位的SQL
+     */
+    public static JdbcCall prepare(SqlSessionDaoSupport mapperFactory, String sql) {
+        DataSource dataSource = mapperFactory.getSqlSession().getConfiguration().getEnvironment().getDataSource();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            PreparedStatement statement = connection.prepareStatement(sql);
+            DataSourceUtils.applyTransactionTimeout(statement, dataSource);
+            return new JdbcCall(dataSource, sql, connection, statement);
+        } catch (SQLException e) {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+            throw translate(dataSource, sql, e);
+        }
+    }
+
+    /**
+     * @return 查询结果的唯一一行，没有时为null，多于一行时抛出异常
+     */
+    public static <T> T one(List<T> rows) {
+        if (rows.isEmpty()) {
+            return null;
+        }
+        if (rows.size() > 1) {
+            throw new IncorrectResultSizeDataAccessException(1, rows.size());
+        }
+        return rows.get(0);
+    }
+
+    public void setString(String value) {
+        try {
+            if (value == null) {
+                statement.setNull(++parameterIndex, Types.VARCHAR);
+            } else {
+                statement.setString(++parameterIndex, value);
+            }
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public void setInteger(Integer value) {
+        try {
+            if (value == null) {
+                statement.setNull(++parameterIndex, Types.INTEGER);
+            } else {
+                statement.setInt(++parameterIndex, value);
+            }
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public void setLong(Long value) {
+        try {
+            if (value == null) {
+                statement.setNull(++parameterIndex, Types.BIGINT);
+            } else {
+                statement.setLong(++parameterIndex, value);
+            }
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public void setDouble(Double value) {
+        try {
+            if (value == null) {
+                statement.setNull(++parameterIndex, Types.DOUBLE);
+            } else {
+                statement.setDouble(++parameterIndex, value);
+            }
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public void setDate(Date value) {
+        try {
+            if (value == null) {
+                statement.setNull(++parameterIndex, Types.TIMESTAMP);
+            } else {
+                statement.setTimestamp(++parameterIndex, new Timestamp(value.getTime()));
+            }
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    /**
+     * 按ID的主键值等类型不确定的参数
+     */
+    public void setObject(Object value) {
+        try {
+            if (value == null) {
+                statement.setNull(++parameterIndex, Types.NULL);
+            } else {
+                statement.setObject(++parameterIndex, value);
+            }
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    /**
+     * @return 影响的行数
+     */
+    public int update() {
+        try {
+            return statement.executeUpdate();
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    /**
+     * 执行查询
+     *
+     * @param columns 实体各列在结果中的位置
+     * @return 实体各列在结果中的下标，结果中没有的列为0
+     */
+    public int[] query(JdbcColumns columns) {
+        try {
+            resultSet = statement.executeQuery();
+            return columns.indexes(resultSet);
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public boolean next() {
+        try {
+            return resultSet.next();
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public String getString(int column) {
+        try {
+            return resultSet.getString(column);
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public Integer getInteger(int column) {
+        try {
+            return EntityRowMapper.getInteger(resultSet, column);
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public Long getLong(int column) {
+        try {
+            return EntityRowMapper.getLong(resultSet, column);
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public Double getDouble(int column) {
+        try {
+            return EntityRowMapper.getDouble(resultSet, column);
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    public Date getDate(int column) {
+        try {
+            return EntityRowMapper.getDate(resultSet, column);
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    /**
+     * 关闭结果和语句，释放连接（有Spring事务时由事务释放）
+     */
+    public void close() {
+        JdbcUtils.closeResultSet(resultSet);
+        JdbcUtils.closeStatement(statement);
+        DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+
+    private RuntimeException translate(SQLException e) {
+        return translate(dataSource, sql, e);
+    }
+
+    private static RuntimeException translate(DataSource dataSource, String sql, SQLException e) {
+        return TRANSLATORS.computeIfAbsent(dataSource, SQLErrorCodeSQLExceptionTranslator::new).translate(TASK, sql, e);
+    }
+}
@@ -0,0 +1,84 @@
+package com.wwx.compiler.runtime;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Locale;
+
+/**
+ * jdbc引擎中一个查询方法的实体列在结果中的下标，由生成的Impl持有
+ * 按结果的列名解析后缓存，连同结果的列名一起；之后每次查询先比较结果的列数和列名，
+ * 一致时直接使用，不一致时重新解析：SELECT *的列会随ALTER TABLE变化
+ * 列名比较时忽略大小写和下划线，与MyBatis的mapUnderscoreToCamelCase一致；结果中没有的列下标为0，不调用setter
+ */
+public final class JdbcColumns {
+    private final String[] labels;
+    private volatile Resolved resolved;
+
+    /**
+     * @param labels 实体的列名，用逗号分隔，顺序与生成的行映射一致
+     */
+    public JdbcColumns(String labels) {
+        this.labels = labels.split(",");
+    }
+
+    int[] indexes(ResultSet resultSet) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        Resolved result = resolved;
+        if (result == null || !result.matches(metaData)) {
+            result = resolve(metaData);
+            resolved = result;
+        }
+        return result.indexes;
+    }
+
+    private Resolved resolve(ResultSetMetaData metaData) throws SQLException {
+        int count = metaData.getColumnCount();
+        String[] columns = new String[count];
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            columns[i] = metaData.getColumnLabel(i + 1);
+            names[i] = normalize(columns[i]);
+        }
+        int[] indexes = new int[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            String label = normalize(labels[i]);
+            for (int j = 0; j < count; j++) {
+                if (label.equals(names[j])) {
+                    indexes[i] = j + 1;
+                    break;
+                }
+            }
+        }
+        return new Resolved(columns, indexes);
+    }
+
+    private static String normalize(String label) {
+        return label.replace("_", "").toUpperCase(Locale.ENGLISH);
+    }
+
+    /**
+     * 解析时结果的列名和得到的下标
+     */
+    private static final class Resolved {
+        private final String[] columns;
+        private final int[] indexes;
+
+        Resolved(String[] columns, int[] indexes) {
+            this.columns = columns;
+            this.indexes = indexes;
+        }
+
+        boolean matches(ResultSetMetaData metaData) throws SQLException {
+            if (metaData.getColumnCount() != columns.length) {
+                return false;
+            }
+            for (int i = 0; i < columns.length; i++) {
+                if (!columns[i].equals(metaData.getColumnLabel(i + 1))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
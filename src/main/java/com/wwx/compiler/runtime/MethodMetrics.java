@@ -0,0 +1,527 @@
+package com.wwx.compiler.runtime;
+
+import org.apache.ibatis.cursor.Cursor;
+
+import java.lang.reflect.Method;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+
+/**
+ * 一个dao方法的调用次数、异常次数、返回或影响的行数和耗时直方图，由{@link DaoMetrics#method(String, String)}创建
+ * 生成的Impl在执行语句前调用{@link #start()}，返回时用success包住结果，抛出异常时调用failure，都带上方法的参数；
+ * 缓存命中不执行语句，不计入；耗时超过阈值的调用再交给{@link SlowQueryLog}
+ * <p>
+ * 记录不分配对象：按线程分到若干条带，每条带是一个AtomicLongArray，条带在第一次使用时创建；
+ * 直方图按微秒分桶，小于8微秒每微秒一个桶，之后每翻一倍分8个桶，分位数的相对误差不超过12.5%
+ * 流式查询的行数在返回后才读取，不计行数
+ */
+public final class MethodMetrics implements MethodMetricsMBean {
+    /**
+     * 没有记录的调用
+     */
+    private static final long NOT_RECORDED = Long.MIN_VALUE;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * 超过2^32微秒（约71分钟）的都计入最后一个桶
+     */
+    private static final int MAX_EXPONENT = 32;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final int CALLS = BUCKETS;
+    private static final int ERRORS = BUCKETS + 1;
+    private static final int ROWS = BUCKETS + 2;
+    private static final int TOTAL_NANOS = BUCKETS + 3;
+    private static final int MAX_NANOS = BUCKETS + 4;
+    private static final int SLOTS = BUCKETS + 5;
+    private static final int STRIPES = stripes();
+
+    private final String dao;
+    private final String method;
+    /**
+     * 方法的参数名
+     */
+    private final String[] params;
+    /**
+     * Provider掩码各位的条件：参数名.getter，字符串判空的以!结尾；多行INSERT的行参数是row
+     */
+    private final String[] checks;
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    MethodMetrics(String dao, String method, String params, String checks) {
+        this.dao = dao;
+        this.method = method;
+        this.params = params.isEmpty() ? new String[0] : params.split(",");
+        this.checks = checks.isEmpty() ? new String[0] : checks.split(",");
+    }
+
+    /**
+     * @return 开始时间，关闭统计时为{@link Long#MIN_VALUE}
+     */
+    public long start() {
+        return DaoMetrics.enabled ? System.nanoTime() : NOT_RECORDED;
+    }
+
+    /**
+     * 记录一次成功的查询，List按元素数计行数，实体为1行，null为0行
+     *
+     * @return 原样返回结果
+     */
+    public <T> T success(T result, long started, Object arg0, Object arg1) {
+        if (started != NOT_RECORDED) {
+            record(started, rowsOf(result), false, arg0, arg1);
+        }
+        return result;
+    }
+
+    /**
+     * 记录一次成功的写入，负数（批量作用域中还没执行的写入、驱动不返回行数）不计行数
+     *
+     * @return 原样返回影响的行数
+     */
+    public int success(int count, long started, Object arg0, Object arg1) {
+        if (started != NOT_RECORDED) {
+            record(started, Math.max(count, 0), false, arg0, arg1);
+        }
+        return count;
+    }
+
+    public long success(long count, long started, Object arg0, Object arg1) {
+        if (started != NOT_RECORDED) {
+            record(started, Math.max(count, 0L), false, arg0, arg1);
+        }
+        return count;
+    }
+
+    public boolean success(boolean updated, long started, Object arg0, Object arg1) {
+        if (started != NOT_RECORDED) {
+            record(started, updated ? 1 : 0, false, arg0, arg1);
+        }
+        return updated;
+    }
+
+    /**
+     * 记录一次成功的批量写入，行数是各批之和
+     */
+    public int[] success(int[] counts, long started, Object arg0, Object arg1) {
+        if (started != NOT_RECORDED) {
+            long rows = 0;
+            for (int count : counts) {
+                rows += Math.max(count, 0);
+            }
+            record(started, rows, false, arg0, arg1);
+        }
+        return counts;
+    }
+
+    /**
+     * 记录一次抛出异常的调用
+     */
+    public void failure(long started, Object arg0, Object arg1) {
+        if (started != NOT_RECORDED) {
+            record(started, 0, true, arg0, arg1);
+        }
+    }
+
+    private static long rowsOf(Object result) {
+        if (result == null || result instanceof Stream || result instanceof Cursor) {
+            return 0;
+        }
+        return result instanceof Collection ? ((Collection<?>) result).size() : 1;
+    }
+
+    private void record(long started, long rows, boolean failed, Object arg0, Object arg1) {
+        long nanos = System.nanoTime() - started;
+        AtomicLongArray stripe = stripe();
+        stripe.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        stripe.incrementAndGet(CALLS);
+        if (failed) {
+            stripe.incrementAndGet(ERRORS);
+        }
+        if (rows != 0) {
+            stripe.addAndGet(ROWS, rows);
+        }
+        stripe.addAndGet(TOTAL_NANOS, nanos);
+        long max;
+        while (nanos > (max = stripe.get(MAX_NANOS))) {
+            if (stripe.compareAndSet(MAX_NANOS, max, nanos)) {
+                break;
+            }
+        }
+        if (nanos >= SlowQueryLog.thresholdNanos) {
+            SlowQueryLog.record(this, nanos, rows, failed, arg0, arg1);
+        }
+    }
+
+    /**
+     * 按参数算出Provider的掩码，与生成的Provider一致；只在慢查询时调用，用反射取值
+     * 可选条件超过64个时只取前64个，之后的字段不区分形状
+     */
+    long shapeMask(Object arg0, Object arg1) {
+        long mask = 0L;
+        for (int bit = 0; bit < checks.length && bit < Long.SIZE; bit++) {
+            Object arg = argOf(checks[bit], arg0, arg1);
+            if (arg instanceof List) {
+                // 多行INSERT：任意一行不为空
+                for (Object row : (List<?>) arg) {
+                    if (present(checks[bit], row)) {
+                        mask |= 1L << bit;
+                        break;
+                    }
+                }
+            } else if (present(checks[bit], arg)) {
+                mask |= 1L << bit;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return 掩码中不为空的字段，如var.name,var.lasts
+     */
+    String shapeOf(long mask) {
+        StringBuilder shape = new StringBuilder();
+        for (int bit = 0; bit < checks.length && bit < Long.SIZE; bit++) {
+            if ((mask & 1L << bit) != 0) {
+                if (shape.length() > 0) {
+                    shape.append(',');
+                }
+                shape.append(checkName(checks[bit]));
+            }
+        }
+        return shape.toString();
+    }
+
+    /**
+     * @return 绑定值的摘要：不是实体的参数（如主键）及掩码中各字段的值，每个值最多maxLength个字符；多行INSERT取第一行
+     */
+    String bindValues(Object arg0, Object arg1, long mask, int maxLength) {
+        StringBuilder binds = new StringBuilder();
+        for (int i = 0; i < params.length && i < 2; i++) {
+            Object arg = i == 0 ? arg0 : arg1;
+            if (arg instanceof List) {
+                binds.append(params[i]).append('[').append(((List<?>) arg).size()).append("行]");
+            } else if (arg == null || arg instanceof Number || arg instanceof CharSequence || arg instanceof Date) {
+                binds.append(params[i]).append('=').append(truncate(arg, maxLength));
+            } else {
+                continue;
+            }
+            binds.append(", ");
+        }
+        for (int bit = 0; bit < checks.length && bit < Long.SIZE; bit++) {
+            if ((mask & 1L << bit) == 0) {
+                continue;
+            }
+            Object arg = argOf(checks[bit], arg0, arg1);
+            if (arg instanceof List) {
+                arg = ((List<?>) arg).isEmpty() ? null : ((List<?>) arg).get(0);
+            }
+            binds.append(checkName(checks[bit])).append('=').append(truncate(valueOf(checks[bit], arg), maxLength)).append(", ");
+        }
+        if (binds.length() > 0) {
+            binds.setLength(binds.length() - 2);
+        }
+        return binds.toString();
+    }
+
+    private Object argOf(String check, Object arg0, Object arg1) {
+        String param = check.substring(0, check.indexOf('.'));
+        if (SqlTemplate.BATCH_ROW.equals(param) || params.length == 0 || params[0].equals(param)) {
+            return arg0;
+        }
+        return arg1;
+    }
+
+    private static boolean present(String check, Object arg) {
+        Object value = valueOf(check, arg);
+        if (check.endsWith("!")) {
+            return value != null && !value.toString().isEmpty();
+        }
+        return value != null;
+    }
+
+    private static Object valueOf(String check, Object arg) {
+        if (arg == null) {
+            return null;
+        }
+        String getter = check.substring(check.indexOf('.') + 1);
+        if (getter.endsWith("!")) {
+            getter = getter.substring(0, getter.length() - 1);
+        }
+        try {
+            Method method = arg.getClass().getMethod(getter);
+            return method.invoke(arg);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return 条件的字段名，如var.getName!->var.name
+     */
+    private static String checkName(String check) {
+        int dot = check.indexOf('.');
+        String getter = check.substring(dot + 1);
+        if (getter.endsWith("!")) {
+            getter = getter.substring(0, getter.length() - 1);
+        }
+        String property = getter.startsWith("get") ? getter.substring(3) : getter.startsWith("is") ? getter.substring(2) : getter;
+        if (!property.isEmpty()) {
+            property = Character.toLowerCase(property.charAt(0)) + property.substring(1);
+        }
+        return check.substring(0, dot + 1) + property;
+    }
+
+    private static String truncate(Object value, int maxLength) {
+        if (value == null) {
+            return "null";
+        }
+        String text = value instanceof Date ? new Timestamp(((Date) value).getTime()).toString() : value.toString();
+        if (text.length() > maxLength) {
+            text = text.substring(0, maxLength) + "...(" + text.length() + ")";
+        }
+        return value instanceof CharSequence ? "'" + text + "'" : text;
+    }
+
+    /**
+     * @return 当前线程的条带
+     */
+    private AtomicLongArray stripe() {
+        long id = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+        int index = (int) (id >>> 32) & (STRIPES - 1);
+        AtomicLongArray stripe = stripes.get(index);
+        if (stripe == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(SLOTS));
+            stripe = stripes.get(index);
+        }
+        return stripe;
+    }
+
+    /**
+     * @return 条带数：不少于CPU数的2的幂，最多16
+     */
+    private static int stripes() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() && stripes < 16) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return 桶的上界（不含），微秒
+     */
+    static long bucketLimit(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket + 1;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + bucket % SUB_BUCKETS + 1) << shift;
+    }
+
+    /**
+     * @return 各条带相加的计数
+     */
+    private long[] sum() {
+        long[] sum = new long[SLOTS];
+        for (int i = 0; i < STRIPES; i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe == null) {
+                continue;
+            }
+            for (int slot = 0; slot < SLOTS; slot++) {
+                if (slot == MAX_NANOS) {
+                    sum[slot] = Math.max(sum[slot], stripe.get(slot));
+                } else {
+                    sum[slot] += stripe.get(slot);
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return 某一时刻的统计，各计数分别读取，记录同时进行时不是严格一致的
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(dao, method, sum());
+    }
+
+    @Override
+    public String getDao() {
+        return dao;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public long getCalls() {
+        return snapshot().getCalls();
+    }
+
+    @Override
+    public long getErrors() {
+        return snapshot().getErrors();
+    }
+
+    @Override
+    public long getRows() {
+        return snapshot().getRows();
+    }
+
+    @Override
+    public double getMeanMicros() {
+        return snapshot().getMeanMicros();
+    }
+
+    @Override
+    public long getP50Micros() {
+        return snapshot().getP50Micros();
+    }
+
+    @Override
+    public long getP99Micros() {
+        return snapshot().getP99Micros();
+    }
+
+    @Override
+    public long getP999Micros() {
+        return snapshot().getP999Micros();
+    }
+
+    @Override
+    public long getMaxMicros() {
+        return snapshot().getMaxMicros();
+    }
+
+    /**
+     * 清零，与同时进行的记录不是原子的
+     */
+    @Override
+    public void reset() {
+        for (int i = 0; i < STRIPES; i++) {
+            AtomicLongArray stripe = stripes.get(i);
+            if (stripe != null) {
+                for (int slot = 0; slot < SLOTS; slot++) {
+                    stripe.set(slot, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个dao方法的统计，时间单位都是微秒，分位数是所在桶的上界，不超过最大值
+     */
+    public static final class Snapshot {
+        private final String dao;
+        private final String method;
+        private final long calls;
+        private final long errors;
+        private final long rows;
+        private final double meanMicros;
+        private final long p50Micros;
+        private final long p99Micros;
+        private final long p999Micros;
+        private final long maxMicros;
+
+        private Snapshot(String dao, String method, long[] sum) {
+            this.dao = dao;
+            this.method = method;
+            this.calls = sum[CALLS];
+            this.errors = sum[ERRORS];
+            this.rows = sum[ROWS];
+            this.meanMicros = calls == 0 ? 0 : sum[TOTAL_NANOS] / 1000.0 / calls;
+            this.maxMicros = TimeUnit.NANOSECONDS.toMicros(sum[MAX_NANOS]);
+            this.p50Micros = percentile(sum, 0.5);
+            this.p99Micros = percentile(sum, 0.99);
+            this.p999Micros = percentile(sum, 0.999);
+        }
+
+        private long percentile(long[] sum, double quantile) {
+            // 桶的计数和CALLS分别读取，以桶的总数为准
+            long total = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                total += sum[bucket];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long seen = 0;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                seen += sum[bucket];
+                if (seen >= rank) {
+                    return Math.min(bucketLimit(bucket), Math.max(maxMicros, 1));
+                }
+            }
+            return maxMicros;
+        }
+
+        public String getDao() {
+            return dao;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public long getCalls() {
+            return calls;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public double getMeanMicros() {
+            return meanMicros;
+        }
+
+        public long getP50Micros() {
+            return p50Micros;
+        }
+
+        public long getP99Micros() {
+            return p99Micros;
+        }
+
+        public long getP999Micros() {
+            return p999Micros;
+        }
+
+        public long getMaxMicros() {
+            return maxMicros;
+        }
+
+        @Override
+        public String toString() {
+            return dao + "." + method + "：调用" + calls + "次，异常" + errors + "次，行数" + rows
+                    + String.format("，平均%.1f微秒", meanMicros) + "，p50 " + p50Micros + "，p99 " + p99Micros
+                    + "，p999 " + p999Micros + "，最大" + maxMicros + "微秒";
+        }
+    }
+}
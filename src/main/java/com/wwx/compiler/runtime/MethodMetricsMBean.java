@@ -0,0 +1,28 @@
+package com.wwx.compiler.runtime;
+
+/**
+ * dao方法统计的JMX接口，时间单位都是微秒
+ */
+public interface MethodMetricsMBean {
+    String getDao();
+
+    String getMethod();
+
+    long getCalls();
+
+    long getErrors();
+
+    long getRows();
+
+    double getMeanMicros();
+
+    long getP50Micros();
+
+    long getP99Micros();
+
+    long getP999Micros();
+
+    long getMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,324 @@
+package com.wwx.compiler.runtime;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 查询结果缓存，由生成的Impl使用，每张表一个
+ * 键是 dao方法 + 参数所有字段的值（也就决定了掩码），值是结果List的副本
+ * 生成的INSERT、UPDATE、DELETE结束时使整张表的结果失效，见{@link #invalidate(String)}
+ * Spring事务中不写入，写过这张表的事务在结束前不读，见{@link AfterCommit}
+ * 所有表共用一个内存上限（-Ddaowom.queryCache.maxBytes，默认64MB），按估算的大小计，超过时按写入顺序淘汰
+ * 命中时返回新的List，其中的实体是缓存中的同一批对象，调用方不要修改
+ */
+public final class QueryCache {
+    public static final String MAX_BYTES_PROPERTY = "daowom.queryCache.maxBytes";
+    private static final Map<String, QueryCache> CACHES = new ConcurrentHashMap<>();
+    /**
+     * 所有表的结果按写入顺序排队，用于淘汰
+     */
+    private static final Queue<Entry> ORDER = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger QUEUED = new AtomicInteger();
+    private static final ReentrantLock COMPACT_LOCK = new ReentrantLock();
+    private static final AtomicLong TOTAL_BYTES = new AtomicLong();
+    private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+    private static volatile long maxBytes = Long.getLong(MAX_BYTES_PROPERTY, 64L << 20);
+
+    private final String table;
+    private final Map<List<Object>, Entry> map = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private QueryCache(String table) {
+        this.table = table;
+    }
+
+    /**
+     * @return 表的结果缓存，没有时创建
+     */
+    public static QueryCache of(String table) {
+        return CACHES.computeIfAbsent(table, QueryCache::new);
+    }
+
+    /**
+     * @return 表名->缓存
+     */
+    public static Map<String, QueryCache> all() {
+        return Collections.unmodifiableMap(CACHES);
+    }
+
+    /**
+     * 写方法结束时调用，使表的所有结果失效；没有方法缓存这张表时什么都不做
+     */
+    public static void invalidate(String table) {
+        QueryCache cache = CACHES.get(table);
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    public static void setMaxBytes(long maxBytes) {
+        QueryCache.maxBytes = maxBytes;
+    }
+
+    public static long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return 所有表的结果估算占用的字节数
+     */
+    public static long getTotalBytes() {
+        return TOTAL_BYTES.get();
+    }
+
+    /**
+     * @param method dao接口全名.方法名，不同dao（包括不同包中的同名dao）的同名方法不共用结果
+     * @param values 参数所有字段的值
+     */
+    public static List<Object> key(String method, Object... values) {
+        Object[] key = new Object[values.length + 1];
+        key[0] = method;
+        System.arraycopy(values, 0, key, 1, values.length);
+        return Arrays.asList(key);
+    }
+
+    /**
+     * @return 缓存结果的副本，没有或已过期时为null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> get(List<Object> key) {
+        Entry entry = map.get(key);
+        if (entry == null || AfterCommit.writtenInTransaction(this)) {
+            misses.increment();
+            return null;
+        }
+        if (System.nanoTime() >= entry.expireAt) {
+            remove(entry);
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new ArrayList<>((List<T>) entry.value);
+    }
+
+    /**
+     * @return 查询前取的版本，传给{@link #put(List, List, long, long)}
+     */
+    public long stamp() {
+        return epoch.get();
+    }
+
+    /**
+     * 写入查询结果的副本，在Spring事务中、或者取stamp之后表有过失效时不写入
+     *
+     * @return value
+     */
+    public <T> List<T> put(List<Object> key, List<T> value, long stamp, long ttlSeconds) {
+        if (value == null || epoch.get() != stamp || AfterCommit.inTransaction()) {
+            return value;
+        }
+        long bytes = estimate(key, value);
+        if (bytes > maxBytes) {
+            return value;
+        }
+        Entry entry = new Entry(this, key, new ArrayList<>(value), bytes,
+                System.nanoTime() + ttlSeconds * 1_000_000_000L);
+        Entry old = map.put(key, entry);
+        if (old != null) {
+            TOTAL_BYTES.addAndGet(-old.bytes);
+        }
+        TOTAL_BYTES.addAndGet(bytes);
+        ORDER.add(entry);
+        if (QUEUED.incrementAndGet() > 1024 + 2 * entryCount()) {
+            compact();
+        }
+        // 写入和失效并发时，失效可能先于写入完成
+        if (epoch.get() != stamp) {
+            remove(entry);
+        }
+        evictOverflow();
+        return value;
+    }
+
+    public void invalidateAll() {
+        doInvalidateAll();
+        AfterCommit.run(this, this::doInvalidateAll);
+    }
+
+    private void doInvalidateAll() {
+        epoch.incrementAndGet();
+        invalidations.increment();
+        for (Entry entry : map.values()) {
+            remove(entry);
+        }
+    }
+
+    private boolean remove(Entry entry) {
+        if (map.remove(entry.key, entry)) {
+            TOTAL_BYTES.addAndGet(-entry.bytes);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 超过内存上限时按写入顺序淘汰
+     */
+    private static void evictOverflow() {
+        while (TOTAL_BYTES.get() > maxBytes) {
+            Entry entry = ORDER.poll();
+            if (entry == null) {
+                return;
+            }
+            QUEUED.decrementAndGet();
+            if (entry.owner.remove(entry)) {
+                entry.owner.evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 失效的结果已不在map中，但还在队列中，积累多了清掉
+     */
+    private static void compact() {
+        if (!COMPACT_LOCK.tryLock()) {
+            return;
+        }
+        try {
+            ORDER.removeIf(entry -> entry.owner.map.get(entry.key) != entry);
+            QUEUED.set(ORDER.size());
+        } finally {
+            COMPACT_LOCK.unlock();
+        }
+    }
+
+    private static int entryCount() {
+        int count = 0;
+        for (QueryCache cache : CACHES.values()) {
+            count += cache.map.size();
+        }
+        return count;
+    }
+
+    /**
+     * 估算结果占用的字节数：对象头、引用和实体各字段的大小，字段列表按类缓存
+     */
+    private static long estimate(List<Object> key, List<?> value) {
+        long bytes = 64 + 8L * key.size() + 16 + 8L * value.size();
+        for (Object row : value) {
+            if (row == null) {
+                continue;
+            }
+            bytes += 16;
+            for (Field field : fieldsOf(row.getClass())) {
+                Object fieldValue;
+                try {
+                    fieldValue = field.get(row);
+                } catch (IllegalAccessException e) {
+                    fieldValue = null;
+                }
+                bytes += sizeOf(fieldValue);
+            }
+        }
+        return bytes;
+    }
+
+    private static long sizeOf(Object value) {
+        if (value == null) {
+            return 8;
+        }
+        if (value instanceof String) {
+            return 8 + 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof Date) {
+            return 8 + 24;
+        }
+        return 8 + 16;
+    }
+
+    private static Field[] fieldsOf(Class<?> clz) {
+        return FIELDS.computeIfAbsent(clz, k -> {
+            List<Field> fields = new ArrayList<>();
+            for (Field field : k.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+            return fields.toArray(new Field[0]);
+        });
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    public String summary() {
+        return table + "结果缓存" + size() + "条，命中" + getHits() + "，未命中" + getMisses()
+                + "，淘汰" + getEvictions() + "，失效" + getInvalidations();
+    }
+
+    /**
+     * @return 所有表的汇总和内存占用
+     */
+    public static String summaryAll() {
+        StringBuilder sb = new StringBuilder("结果缓存占用" + getTotalBytes() + "/" + maxBytes + "字节");
+        for (QueryCache cache : CACHES.values()) {
+            sb.append("\n").append(cache.summary());
+        }
+        return sb.toString();
+    }
+
+    private static final class Entry {
+        private final QueryCache owner;
+        private final List<Object> key;
+        private final List<?> value;
+        private final long bytes;
+        private final long expireAt;
+
+        Entry(QueryCache owner, List<Object> key, List<?> value, long bytes, long expireAt) {
+            this.owner = owner;
+            this.key = key;
+            this.value = value;
+            this.bytes = bytes;
+            this.expireAt = expireAt;
+        }
+    }
+}
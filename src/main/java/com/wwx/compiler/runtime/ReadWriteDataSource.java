@@ -0,0 +1,84 @@
+package com.wwx.compiler.runtime;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 读写分离的数据源，作为SqlSessionFactory的数据源使用
+ * 当前线程标记为{@link DaoRouting#REPLICA}（生成的查询方法执行期间）且不在事务中时，连接轮询取自各从库，其他都取自主库
+ * 事务开始时取得的连接在整个事务中使用，所以事务中的查询和写入都在主库执行
+ * 连接在取得时路由，MyBatis和jdbc引擎都在执行语句时才取连接，流式查询的连接在流关闭前一直取自同一个从库
+ */
+public final class ReadWriteDataSource extends AbstractRoutingDataSource {
+    private static final Integer PRIMARY_KEY = -1;
+
+    private final DataSource primary;
+    private final List<DataSource> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+    /**
+     * 各从库取连接的次数，最后一个是主库
+     */
+    private final AtomicLongArray connections;
+
+    /**
+     * @param primary  主库
+     * @param replicas 从库，为空时都使用主库
+     */
+    public ReadWriteDataSource(DataSource primary, List<DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.connections = new AtomicLongArray(replicas.size() + 1);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY_KEY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || DaoRouting.current() != DaoRouting.REPLICA
+                || TransactionSynchronizationManager.isActualTransactionActive()) {
+            connections.incrementAndGet(replicas.size());
+            return PRIMARY_KEY;
+        }
+        int replica = Math.floorMod(next.getAndIncrement(), replicas.size());
+        connections.incrementAndGet(replica);
+        return replica;
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+
+    public List<DataSource> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return 从库取连接的次数，下标与{@link #getReplicas()}一致
+     */
+    public long getReplicaConnections(int replica) {
+        return connections.get(replica);
+    }
+
+    /**
+     * @return 主库取连接的次数
+     */
+    public long getPrimaryConnections() {
+        return connections.get(replicas.size());
+    }
+}
@@ -0,0 +1,85 @@
+package com.wwx.compiler.runtime;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 无锁环形缓冲区
+ * 执行SQL的线程只把日志放进缓冲区，缓冲区满时直接丢弃并计数，从不等待；
+ * 后台守护线程取出日志交给下游输出
+ */
+public class RingBufferSqlLogAppender implements SqlLogAppender {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final AtomicReferenceArray<SqlLogEvent> slots;
+    private final int mask;
+    /**
+     * 下一个写入位置，生产者CAS占位
+     */
+    private final AtomicLong tail = new AtomicLong();
+    /**
+     * 下一个读取位置，只有后台线程写
+     */
+    private volatile long head;
+    private final LongAdder dropped = new LongAdder();
+    private final SqlLogAppender downstream;
+
+    /**
+     * @param capacity   缓冲区大小，向上取2的幂
+     * @param downstream 后台线程上的输出，可以阻塞
+     */
+    public RingBufferSqlLogAppender(int capacity, SqlLogAppender downstream) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.downstream = downstream;
+        Thread drainer = new Thread(this::drain, "daowom-sql-log");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @Override
+    public void append(SqlLogEvent event) {
+        while (true) {
+            long seq = tail.get();
+            if (seq - head >= slots.length()) {
+                dropped.increment();
+                return;
+            }
+            if (tail.compareAndSet(seq, seq + 1)) {
+                slots.lazySet((int) seq & mask, event);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return 因缓冲区满而丢弃的日志数量
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long h = head;
+            int index = (int) h & mask;
+            SqlLogEvent event = slots.get(index);
+            if (event == null) {
+                // 缓冲区空，或者生产者已占位还没写入
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            slots.lazySet(index, null);
+            head = h + 1;
+            try {
+                downstream.append(event);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
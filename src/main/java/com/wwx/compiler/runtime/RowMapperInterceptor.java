@@ -0,0 +1,144 @@
+package com.wwx.compiler.runtime;
+
+import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.factory.DefaultObjectFactory;
+import org.apache.ibatis.session.AutoMappingBehavior;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.DateTypeHandler;
+import org.apache.ibatis.type.DoubleTypeHandler;
+import org.apache.ibatis.type.IntegerTypeHandler;
+import org.apache.ibatis.type.LongTypeHandler;
+import org.apache.ibatis.type.StringTypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MyBatis插件：生成的Mapper的查询结果由{@link EntityRowMapper}映射，不经过DefaultResultSetHandler的自动映射
+ * 每个Configuration一个，由MapperFactoryBean在加入mapper时登记（见{@link #register}）
+ * 只处理结果是单个实体的自动映射的语句；游标（流式查询）、有显式结果映射或多结果集的语句仍由MyBatis处理
+ */
+@Intercepts(@Signature(type = ResultSetHandler.class, method = "handleResultSets", args = Statement.class))
+public final class RowMapperInterceptor implements Interceptor {
+    private static final Field MAPPED_STATEMENT;
+
+    static {
+        try {
+            MAPPED_STATEMENT = DefaultResultSetHandler.class.getDeclaredField("mappedStatement");
+            MAPPED_STATEMENT.setAccessible(true);
+        } catch (NoSuchFieldException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Configuration configuration;
+    /**
+     * Mapper类名（语句的namespace）->行映射
+     */
+    private final Map<String, EntityRowMapper<?>> rowMappers = new ConcurrentHashMap<>();
+
+    private RowMapperInterceptor(Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * 登记Mapper的行映射，Configuration还没有这个插件时加入
+     * Configuration有自定义的ObjectFactory或基本类型的TypeHandler时不登记，仍由MyBatis映射
+     *
+     * @return 是否登记
+     */
+    public static boolean register(Configuration configuration, Class<?> mapperInterface, EntityRowMapper<?> rowMapper) {
+        if (!usesDefaults(configuration)) {
+            return false;
+        }
+        RowMapperInterceptor interceptor = null;
+        synchronized (configuration) {
+            for (Interceptor existing : configuration.getInterceptors()) {
+                if (existing instanceof RowMapperInterceptor) {
+                    interceptor = (RowMapperInterceptor) existing;
+                }
+            }
+            if (interceptor == null) {
+                interceptor = new RowMapperInterceptor(configuration);
+                configuration.addInterceptor(interceptor);
+            }
+        }
+        interceptor.rowMappers.put(mapperInterface.getName(), rowMapper);
+        return true;
+    }
+
+    private static boolean usesDefaults(Configuration configuration) {
+        TypeHandlerRegistry registry = configuration.getTypeHandlerRegistry();
+        return configuration.getObjectFactory().getClass() == DefaultObjectFactory.class
+                && registry.getTypeHandler(String.class) instanceof StringTypeHandler
+                && registry.getTypeHandler(Integer.class) instanceof IntegerTypeHandler
+                && registry.getTypeHandler(Long.class) instanceof LongTypeHandler
+                && registry.getTypeHandler(Double.class) instanceof DoubleTypeHandler
+                && registry.getTypeHandler(Date.class) instanceof DateTypeHandler;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object target = invocation.getTarget();
+        if (!(target instanceof DefaultResultSetHandler)) {
+            return invocation.proceed();
+        }
+        MappedStatement mappedStatement = (MappedStatement) MAPPED_STATEMENT.get(target);
+        String id = mappedStatement.getId();
+        EntityRowMapper<?> rowMapper = rowMappers.get(id.substring(0, id.lastIndexOf('.')));
+        if (rowMapper == null || !supports(mappedStatement, rowMapper)) {
+            return invocation.proceed();
+        }
+        ResultSet resultSet = firstResultSet((Statement) invocation.getArgs()[0]);
+        if (resultSet == null) {
+            return new ArrayList<>();
+        }
+        try {
+            return rowMapper.mapRows(resultSet, configuration);
+        } finally {
+            resultSet.close();
+        }
+    }
+
+    /**
+     * @return 语句的结果是否只是实体的自动映射
+     */
+    private boolean supports(MappedStatement mappedStatement, EntityRowMapper<?> rowMapper) {
+        if (configuration.getAutoMappingBehavior() == AutoMappingBehavior.NONE
+                || mappedStatement.getResultSets() != null || mappedStatement.getResultMaps().size() != 1) {
+            return false;
+        }
+        ResultMap resultMap = mappedStatement.getResultMaps().get(0);
+        return resultMap.getType() == rowMapper.getEntity() && resultMap.getResultMappings().isEmpty()
+                && !Boolean.FALSE.equals(resultMap.getAutoMapping());
+    }
+
+    /**
+     * 跳过前面的更新计数，与DefaultResultSetHandler一致
+     */
+    private static ResultSet firstResultSet(Statement statement) throws SQLException {
+        ResultSet resultSet = statement.getResultSet();
+        while (resultSet == null) {
+            if (statement.getMoreResults()) {
+                resultSet = statement.getResultSet();
+            } else if (statement.getUpdateCount() == -1) {
+                return null;
+            }
+        }
+        return resultSet;
+    }
+}
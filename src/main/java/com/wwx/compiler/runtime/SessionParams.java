@@ -0,0 +1,32 @@
+package com.wwx.compiler.runtime;
+
+import org.apache.ibatis.binding.MapperMethod;
+import org.apache.ibatis.reflection.ParamNameResolver;
+
+import java.util.Map;
+
+/**
+ * 生成的Impl直接调用SqlSession时的参数对象，与MapperProxy经过ParamNameResolver得到的一致：
+ * 有@Param的参数按名字和param1、param2...放入ParamMap，取不存在的键时抛出BindingException
+ * 只有一个没有@Param的参数时直接使用该参数，不需要这里
+ */
+public final class SessionParams {
+    private SessionParams() {
+    }
+
+    public static Object named(String name, Object value) {
+        Map<String, Object> params = new MapperMethod.ParamMap<>();
+        params.put(name, value);
+        params.put(ParamNameResolver.GENERIC_NAME_PREFIX + 1, value);
+        return params;
+    }
+
+    public static Object named(String name1, Object value1, String name2, Object value2) {
+        Map<String, Object> params = new MapperMethod.ParamMap<>();
+        params.put(name1, value1);
+        params.put(name2, value2);
+        params.put(ParamNameResolver.GENERIC_NAME_PREFIX + 1, value1);
+        params.put(ParamNameResolver.GENERIC_NAME_PREFIX + 2, value2);
+        return params;
+    }
+}
@@ -0,0 +1,329 @@
+package com.wwx.compiler.runtime;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 慢查询记录：生成的dao方法耗时超过阈值时，按方法和SQL形状（Provider按参数中哪些字段不为空算出的掩码）分组，
+ * 记下次数、耗时，以及最慢一次的绑定值（截断）、行数和SQL（SqlLog记录了SQL时）
+ * 由{@link MethodMetrics}在记录耗时时判断，没超过阈值的调用只多一次比较；关闭方法统计时也不记录
+ * 最多保留topN个形状，满了之后新形状比表中最快的形状慢时替换它，否则丢弃
+ * 用{@link #dump()}输出，也可以通过JMX（com.wwx.compiler:type=SlowQueryLog）
+ * <p>
+ * -Ddaowom.slowQuery.ms=200：阈值，负数关闭
+ * -Ddaowom.slowQuery.topN=100：最多保留的形状数
+ * -Ddaowom.slowQuery.valueLength=32：每个绑定值最多保留的字符数
+ */
+public final class SlowQueryLog {
+    private static final Map<String, Entry> ENTRIES = new HashMap<>();
+
+    static volatile long thresholdNanos = thresholdNanos(Long.getLong("daowom.slowQuery.ms", 200L));
+    private static volatile int topN = Integer.getInteger("daowom.slowQuery.topN", 100);
+    private static volatile int valueLength = Integer.getInteger("daowom.slowQuery.valueLength", 32);
+    /**
+     * 表满后丢弃的慢查询数
+     */
+    private static long dropped;
+
+    private SlowQueryLog() {
+    }
+
+    private static long thresholdNanos(long millis) {
+        return millis < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    /**
+     * @param millis 阈值，负数关闭
+     */
+    public static void setThresholdMillis(long millis) {
+        thresholdNanos = thresholdNanos(millis);
+    }
+
+    /**
+     * @return 阈值，关闭时为-1
+     */
+    public static long getThresholdMillis() {
+        long nanos = thresholdNanos;
+        return nanos == Long.MAX_VALUE ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    public static void setTopN(int topN) {
+        SlowQueryLog.topN = topN;
+    }
+
+    public static void setValueLength(int valueLength) {
+        SlowQueryLog.valueLength = valueLength;
+    }
+
+    /**
+     * 记录一次慢查询，由{@link MethodMetrics}调用
+     *
+     * @param args 方法的参数，没有第二个参数时为null
+     */
+    static void record(MethodMetrics metrics, long nanos, long rows, boolean failed, Object arg0, Object arg1) {
+        long mask = metrics.shapeMask(arg0, arg1);
+        String binds = metrics.bindValues(arg0, arg1, mask, valueLength);
+        String sql = SqlLog.capturedSql();
+        long now = System.currentTimeMillis();
+        String key = metrics.getDao() + "." + metrics.getMethod() + "#" + mask;
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(key);
+            if (entry == null) {
+                if (ENTRIES.size() >= topN && !evictFasterThan(nanos)) {
+                    dropped++;
+                    return;
+                }
+                entry = new Entry(metrics.getDao(), metrics.getMethod(), mask, metrics.shapeOf(mask));
+                ENTRIES.put(key, entry);
+            }
+            entry.count++;
+            if (failed) {
+                entry.errors++;
+            }
+            entry.totalNanos += nanos;
+            entry.lastTimestamp = now;
+            if (nanos >= entry.maxNanos) {
+                entry.maxNanos = nanos;
+                entry.rows = rows;
+                entry.binds = binds;
+                entry.sql = sql;
+            }
+        }
+    }
+
+    /**
+     * 去掉表中最快的形状，它不比nanos慢时
+     *
+     * @return 是否去掉了
+     */
+    private static boolean evictFasterThan(long nanos) {
+        String fastest = null;
+        long fastestNanos = Long.MAX_VALUE;
+        for (Map.Entry<String, Entry> entry : ENTRIES.entrySet()) {
+            if (entry.getValue().maxNanos < fastestNanos) {
+                fastest = entry.getKey();
+                fastestNanos = entry.getValue().maxNanos;
+            }
+        }
+        if (fastest == null || fastestNanos >= nanos) {
+            return false;
+        }
+        ENTRIES.remove(fastest);
+        dropped++;
+        return true;
+    }
+
+    /**
+     * @return 各形状的副本，最慢的在前
+     */
+    public static List<Entry> entries() {
+        List<Entry> entries = new ArrayList<>();
+        synchronized (ENTRIES) {
+            for (Entry entry : ENTRIES.values()) {
+                entries.add(entry.copy());
+            }
+        }
+        entries.sort(Comparator.comparingLong(Entry::getMaxNanos).reversed());
+        return entries;
+    }
+
+    /**
+     * @return 表中的形状数
+     */
+    public static int getShapes() {
+        synchronized (ENTRIES) {
+            return ENTRIES.size();
+        }
+    }
+
+    /**
+     * @return 被丢弃的慢查询数
+     */
+    public static long getDropped() {
+        synchronized (ENTRIES) {
+            return dropped;
+        }
+    }
+
+    public static void reset() {
+        synchronized (ENTRIES) {
+            ENTRIES.clear();
+            dropped = 0;
+        }
+    }
+
+    /**
+     * @return 各形状的文本，最慢的在前
+     */
+    public static String dump() {
+        List<Entry> entries = entries();
+        StringBuilder dump = new StringBuilder();
+        dump.append("慢查询（阈值").append(getThresholdMillis()).append("ms）：").append(entries.size()).append("个形状，丢弃")
+                .append(getDropped()).append("次\n");
+        for (Entry entry : entries) {
+            dump.append(entry).append('\n');
+        }
+        return dump.toString();
+    }
+
+    /**
+     * JMX中的慢查询记录，由{@link DaoMetrics}注册
+     */
+    static final class Jmx implements SlowQueryLogMBean {
+        @Override
+        public long getThresholdMillis() {
+            return SlowQueryLog.getThresholdMillis();
+        }
+
+        @Override
+        public void setThresholdMillis(long millis) {
+            SlowQueryLog.setThresholdMillis(millis);
+        }
+
+        @Override
+        public int getShapes() {
+            return SlowQueryLog.getShapes();
+        }
+
+        @Override
+        public long getDropped() {
+            return SlowQueryLog.getDropped();
+        }
+
+        @Override
+        public String dump() {
+            return SlowQueryLog.dump();
+        }
+
+        @Override
+        public void reset() {
+            SlowQueryLog.reset();
+        }
+    }
+
+    /**
+     * 同一方法、同一形状的慢查询
+     */
+    public static final class Entry {
+        private final String dao;
+        private final String method;
+        private final long mask;
+        private final String shape;
+        private long count;
+        private long errors;
+        private long totalNanos;
+        private long maxNanos;
+        private long lastTimestamp;
+        private long rows;
+        private String binds;
+        private String sql;
+
+        private Entry(String dao, String method, long mask, String shape) {
+            this.dao = dao;
+            this.method = method;
+            this.mask = mask;
+            this.shape = shape;
+        }
+
+        private Entry copy() {
+            Entry copy = new Entry(dao, method, mask, shape);
+            copy.count = count;
+            copy.errors = errors;
+            copy.totalNanos = totalNanos;
+            copy.maxNanos = maxNanos;
+            copy.lastTimestamp = lastTimestamp;
+            copy.rows = rows;
+            copy.binds = binds;
+            copy.sql = sql;
+            return copy;
+        }
+
+        public String getDao() {
+            return dao;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        /**
+         * @return Provider的掩码，第i位表示第i个条件字段不为空
+         */
+        public long getMask() {
+            return mask;
+        }
+
+        /**
+         * @return 掩码中不为空的字段，如var.name,var.lasts
+         */
+        public String getShape() {
+            return shape;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public double getMaxMillis() {
+            return maxNanos / 1_000_000.0;
+        }
+
+        public double getMeanMillis() {
+            return count == 0 ? 0 : totalNanos / 1_000_000.0 / count;
+        }
+
+        public long getLastTimestamp() {
+            return lastTimestamp;
+        }
+
+        /**
+         * @return 最慢一次返回或影响的行数
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return 最慢一次的绑定值
+         */
+        public String getBinds() {
+            return binds;
+        }
+
+        /**
+         * @return 最慢一次的SQL，SqlLog没有记录时为null
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(dao).append('.').append(method).append(" 形状0x").append(Long.toHexString(mask))
+                    .append('[').append(shape).append("]：").append(count).append("次，异常").append(errors)
+                    .append(String.format("次，最慢%.1fms，平均%.1fms", getMaxMillis(), getMeanMillis()))
+                    .append("，最慢一次").append(rows).append("行，最后一次")
+                    .append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(lastTimestamp)))
+                    .append("\n  绑定值：").append(binds);
+            if (sql != null) {
+                text.append("\n  SQL：").append(sql);
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.wwx.compiler.runtime;
+
+/**
+ * 慢查询记录的JMX接口，见{@link SlowQueryLog}
+ */
+public interface SlowQueryLogMBean {
+    long getThresholdMillis();
+
+    void setThresholdMillis(long millis);
+
+    int getShapes();
+
+    long getDropped();
+
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,46 @@
+package com.wwx.compiler.runtime;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 生成SQL的缓存计数
+ * SQL：{@link SqlTemplate}按掩码缓存的SQL字符串
+ * SqlSource：{@link CachingLanguageDriver}按SQL缓存的解析结果
+ */
+public final class SqlCacheStats {
+    static final LongAdder SQL_HITS = new LongAdder();
+    static final LongAdder SQL_MISSES = new LongAdder();
+    static final LongAdder SOURCE_HITS = new LongAdder();
+    static final LongAdder SOURCE_MISSES = new LongAdder();
+
+    private SqlCacheStats() {
+    }
+
+    public static long getSqlHits() {
+        return SQL_HITS.sum();
+    }
+
+    public static long getSqlMisses() {
+        return SQL_MISSES.sum();
+    }
+
+    public static long getSqlSourceHits() {
+        return SOURCE_HITS.sum();
+    }
+
+    public static long getSqlSourceMisses() {
+        return SOURCE_MISSES.sum();
+    }
+
+    public static void reset() {
+        SQL_HITS.reset();
+        SQL_MISSES.reset();
+        SOURCE_HITS.reset();
+        SOURCE_MISSES.reset();
+    }
+
+    public static String summary() {
+        return "SQL命中" + getSqlHits() + "，未命中" + getSqlMisses()
+                + "；SqlSource命中" + getSqlSourceHits() + "，未命中" + getSqlSourceMisses();
+    }
+}
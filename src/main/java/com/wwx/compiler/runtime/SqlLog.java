@@ -0,0 +1,168 @@
+package com.wwx.compiler.runtime;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 生成的dao的SQL日志，默认关闭
+ * Impl在调用Mapper前后调用{@link #start()}和{@link #end(long, String)}，Provider通过{@link #capture(String)}交出SQL；
+ * 关闭或者没被采样的调用只有一次volatile读，不访问ThreadLocal
+ * <p>
+ * -Ddaowom.sqlLog=off|all|slow：关闭、按采样率记录、只记录慢SQL
+ * -Ddaowom.sqlLog.sampleRate=1.0：采样率，0到1
+ * -Ddaowom.sqlLog.slowMs=200：慢SQL阈值
+ * -Ddaowom.sqlLog.bufferSize=1024：默认输出的缓冲区大小，满了就丢弃
+ */
+public final class SqlLog {
+    /**
+     * 没有被采样的调用
+     */
+    private static final long NOT_SAMPLED = Long.MIN_VALUE;
+    private static final ThreadLocal<Capture> CAPTURE = ThreadLocal.withInitial(Capture::new);
+
+    private static volatile Mode mode = parseMode(System.getProperty("daowom.sqlLog"));
+    private static volatile double sampleRate = parseSampleRate(System.getProperty("daowom.sqlLog.sampleRate"));
+    private static volatile long slowNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("daowom.sqlLog.slowMs", 200L));
+    private static volatile SqlLogAppender appender;
+
+    public enum Mode {
+        OFF, ALL, SLOW
+    }
+
+    private SqlLog() {
+    }
+
+    /**
+     * 在静态初始化中解析，配置写错只告警，不能让类初始化失败，否则之后所有生成的dao调用都会NoClassDefFoundError
+     */
+    private static Mode parseMode(String value) {
+        if (value == null) {
+            return Mode.OFF;
+        }
+        try {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("-Ddaowom.sqlLog=" + value + "无效，应为off、all或slow，SQL日志关闭");
+            return Mode.OFF;
+        }
+    }
+
+    private static double parseSampleRate(String value) {
+        if (value == null) {
+            return 1.0;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("-Ddaowom.sqlLog.sampleRate=" + value + "无效，使用1.0");
+            return 1.0;
+        }
+    }
+
+    public static void setMode(Mode mode) {
+        SqlLog.mode = mode;
+    }
+
+    public static void setSampleRate(double sampleRate) {
+        SqlLog.sampleRate = sampleRate;
+    }
+
+    public static void setSlowMillis(long slowMillis) {
+        SqlLog.slowNanos = TimeUnit.MILLISECONDS.toNanos(slowMillis);
+    }
+
+    /**
+     * 替换日志输出，输出在执行SQL的线程上调用，不能阻塞
+     */
+    public static void setAppender(SqlLogAppender appender) {
+        SqlLog.appender = appender;
+    }
+
+    /**
+     * 由生成的Impl在调用Mapper前调用
+     *
+     * @return 开始时间，没有采样时为{@link Long#MIN_VALUE}
+     */
+    public static long start() {
+        if (mode == Mode.OFF) {
+            return NOT_SAMPLED;
+        }
+        double rate = sampleRate;
+        if (rate < 1.0 && ThreadLocalRandom.current().nextDouble() >= rate) {
+            return NOT_SAMPLED;
+        }
+        Capture capture = CAPTURE.get();
+        capture.active = true;
+        capture.sql = null;
+        return System.nanoTime();
+    }
+
+    /**
+     * 由生成的Provider调用，记下本次调用的SQL
+     *
+     * @return 原样返回SQL
+     */
+    public static String capture(String sql) {
+        if (mode != Mode.OFF) {
+            Capture capture = CAPTURE.get();
+            if (capture.active) {
+                capture.sql = sql;
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * @return 本次调用已记下的SQL，没有采样时为null；供{@link SlowQueryLog}在{@link #end}之前读取
+     */
+    static String capturedSql() {
+        if (mode == Mode.OFF) {
+            return null;
+        }
+        Capture capture = CAPTURE.get();
+        return capture.active ? capture.sql : null;
+    }
+
+    /**
+     * 由生成的Impl在Mapper返回或抛出异常后调用
+     *
+     * @param start  {@link #start()}的返回值
+     * @param method dao接口名.方法名
+     */
+    public static void end(long start, String method) {
+        if (start == NOT_SAMPLED) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        Capture capture = CAPTURE.get();
+        String sql = capture.sql;
+        capture.active = false;
+        capture.sql = null;
+        if (mode == Mode.SLOW && elapsed < slowNanos) {
+            return;
+        }
+        appender().append(new SqlLogEvent(System.currentTimeMillis(), Thread.currentThread().getName(),
+                method, sql, elapsed));
+    }
+
+    private static SqlLogAppender appender() {
+        SqlLogAppender result = appender;
+        if (result == null) {
+            synchronized (SqlLog.class) {
+                result = appender;
+                if (result == null) {
+                    result = new RingBufferSqlLogAppender(Integer.getInteger("daowom.sqlLog.bufferSize", 1024),
+                            System.out::println);
+                    appender = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static class Capture {
+        private boolean active;
+        private String sql;
+    }
+}
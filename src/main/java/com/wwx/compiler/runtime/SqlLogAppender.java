@@ -0,0 +1,10 @@
+package com.wwx.compiler.runtime;
+
+/**
+ * SQL日志的输出
+ * 在执行SQL的线程上调用，实现不能阻塞，需要IO的输出应放在{@link RingBufferSqlLogAppender}后面
+ */
+public interface SqlLogAppender {
+
+    void append(SqlLogEvent event);
+}
@@ -0,0 +1,56 @@
+package com.wwx.compiler.runtime;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次dao调用的SQL日志
+ */
+public class SqlLogEvent {
+    private final long timestamp;
+    private final String thread;
+    private final String method;
+    private final String sql;
+    private final long elapsedNanos;
+
+    SqlLogEvent(long timestamp, String thread, String method, String sql, long elapsedNanos) {
+        this.timestamp = timestamp;
+        this.thread = thread;
+        this.method = method;
+        this.sql = sql;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    /**
+     * @return dao接口名.方法名
+     */
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return Provider生成的SQL，没有经过Provider的调用为null
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(timestamp)) + " [" + thread + "] "
+                + method + " " + TimeUnit.NANOSECONDS.toMicros(elapsedNanos) / 1000.0 + "ms\n" + sql;
+    }
+}
@@ -0,0 +1,355 @@
+package com.wwx.compiler.runtime;
+
+import org.apache.ibatis.jdbc.SQL;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * 生成的Provider使用的SQL模板
+ * 模板由若干子句组成，每个子句要么总是出现，要么对应掩码中的一位：
+ * Provider根据参数中哪些字段不为空算出掩码，模板按掩码拼出SQL
+ * 同一掩码的SQL只拼一次，之后直接返回缓存的字符串：
+ * 可选子句不超过{@link #DENSE_BITS}个时按掩码下标存数组，查找不分配对象；否则存ConcurrentHashMap
+ * 可选子句超过64个时掩码放不进long，生成的代码改用BitSet，缓存以BitSet为键
+ */
+public final class SqlTemplate {
+    private static final String SELECT = "SELECT";
+    private static final String INSERT = "INSERT";
+    private static final String UPDATE = "UPDATE";
+    private static final String DELETE = "DELETE";
+    private static final String INSERT_BATCH = "INSERT_BATCH";
+    /**
+     * 总是出现的子句的位
+     */
+    public static final int ALWAYS = -1;
+    /**
+     * 多行INSERT中，值里的行参数写作#{row.字段}，拼SQL时替换为#{list[i].字段}
+     */
+    public static final String BATCH_ROW = "row";
+    public static final String BATCH_LIST = "list";
+    /**
+     * 多行INSERT缓存的最大行数，超过的不缓存
+     */
+    private static final int MAX_CACHED_ROWS = 1024;
+    /**
+     * 可选子句不超过这个数量时，用数组缓存所有形状
+     */
+    private static final int DENSE_BITS = 8;
+    /**
+     * 稀疏缓存的容量上限，超过后不再缓存新的形状
+     */
+    private static final int MAX_SHAPES = 4096;
+    private static final Pattern PLACEHOLDER = Pattern.compile("#\\{[^}]*}");
+
+    private final String type;
+    private final String table;
+    private final String columns;
+    private final List<Clause> clauses = new ArrayList<>();
+    private String orderBy;
+    private int limit;
+    private boolean fetchFirst;
+    private boolean jdbc;
+    private int maxBit = -1;
+    private volatile AtomicReferenceArray<String> denseCache;
+    /**
+     * 键为Long或BitSet
+     */
+    private final Map<Object, String> sparseCache = new ConcurrentHashMap<>();
+    private final Map<Object, AtomicReferenceArray<String>> batchCache = new ConcurrentHashMap<>();
+
+    private SqlTemplate(String type, String table, String columns) {
+        this.type = type;
+        this.table = table;
+        this.columns = columns;
+    }
+
+    public static SqlTemplate select(String table, String columns) {
+        return new SqlTemplate(SELECT, table, columns);
+    }
+
+    public static SqlTemplate insert(String table) {
+        return new SqlTemplate(INSERT, table, null);
+    }
+
+    /**
+     * 多行INSERT，由{@link #sql(long, int)}拼出
+     */
+    public static SqlTemplate insertBatch(String table) {
+        return new SqlTemplate(INSERT_BATCH, table, null);
+    }
+
+    public static SqlTemplate update(String table) {
+        return new SqlTemplate(UPDATE, table, null);
+    }
+
+    public static SqlTemplate delete(String table) {
+        return new SqlTemplate(DELETE, table, null);
+    }
+
+    /**
+     * @param bit       掩码中对应的位，{@link #ALWAYS}表示总是出现
+     * @param condition WHERE条件
+     */
+    public SqlTemplate where(int bit, String condition) {
+        maxBit = Math.max(maxBit, bit);
+        clauses.add(new Clause(ClauseType.WHERE, bit, condition, null));
+        return this;
+    }
+
+    /**
+     * @param bit        掩码中对应的位，{@link #ALWAYS}表示总是出现
+     * @param assignment UPDATE的SET赋值
+     */
+    public SqlTemplate set(int bit, String assignment) {
+        maxBit = Math.max(maxBit, bit);
+        clauses.add(new Clause(ClauseType.SET, bit, assignment, null));
+        return this;
+    }
+
+    /**
+     * @param bit    掩码中对应的位，{@link #ALWAYS}表示总是出现
+     * @param column INSERT的列
+     * @param value  INSERT的值
+     */
+    public SqlTemplate value(int bit, String column, String value) {
+        maxBit = Math.max(maxBit, bit);
+        clauses.add(new Clause(ClauseType.VALUE, bit, value, column));
+        return this;
+    }
+
+    public SqlTemplate orderBy(String orderBy) {
+        this.orderBy = orderBy;
+        return this;
+    }
+
+    /**
+     * @param limit SELECT最多返回的行数
+     */
+    public SqlTemplate limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * 同{@link #limit(int)}，写作标准SQL的FETCH FIRST n ROWS ONLY，用于Oracle 12c等不支持LIMIT的数据库
+     */
+    public SqlTemplate fetchFirst(int rows) {
+        this.limit = rows;
+        this.fetchFirst = true;
+        return this;
+    }
+
+    /**
+     * jdbc引擎使用：拼出的SQL中#{...}替换为?，参数由生成的代码按顺序绑定
+     */
+    public SqlTemplate jdbc() {
+        this.jdbc = true;
+        return this;
+    }
+
+    /**
+     * @return #{...}替换为?的SQL
+     */
+    public static String jdbcSql(String sql) {
+        return PLACEHOLDER.matcher(sql).replaceAll("?");
+    }
+
+    /**
+     * 取掩码对应的SQL，没有缓存时拼出并缓存
+     *
+     * @param mask 参数中不为空的字段对应的位
+     * @return SQL
+     */
+    public String sql(long mask) {
+        if (maxBit < DENSE_BITS) {
+            AtomicReferenceArray<String> cache = denseCache;
+            if (cache == null) {
+                cache = new AtomicReferenceArray<>(1 << (maxBit + 1));
+                denseCache = cache;
+            }
+            int index = (int) mask;
+            String sql = cache.get(index);
+            if (sql == null) {
+                SqlCacheStats.SQL_MISSES.increment();
+                sql = render(mask, null);
+                cache.lazySet(index, sql);
+            } else {
+                SqlCacheStats.SQL_HITS.increment();
+            }
+            return sql;
+        }
+        return sparseSql(mask, mask, null);
+    }
+
+    /**
+     * 可选子句超过64个时使用，同{@link #sql(long)}
+     *
+     * @param mask 参数中不为空的字段对应的位，调用后不能再修改
+     */
+    public String sql(BitSet mask) {
+        return sparseSql(mask, 0L, mask);
+    }
+
+    /**
+     * @param key      缓存的键，Long或BitSet
+     * @param wideMask 不为null时代替mask
+     */
+    private String sparseSql(Object key, long mask, BitSet wideMask) {
+        String sql = sparseCache.get(key);
+        if (sql == null) {
+            SqlCacheStats.SQL_MISSES.increment();
+            sql = render(mask, wideMask);
+            if (sparseCache.size() < MAX_SHAPES) {
+                sparseCache.putIfAbsent(key, sql);
+            }
+        } else {
+            SqlCacheStats.SQL_HITS.increment();
+        }
+        return sql;
+    }
+
+    /**
+     * 取多行INSERT的SQL，没有缓存时拼出并缓存
+     *
+     * @param mask 所有行中不为空的字段对应的位，任意一行不为空的列都会插入
+     * @param rows 行数
+     * @return SQL
+     */
+    public String sql(long mask, int rows) {
+        return batchSql(mask, mask, null, rows);
+    }
+
+    /**
+     * 可选子句超过64个时使用，同{@link #sql(long, int)}
+     *
+     * @param mask 所有行中不为空的字段对应的位，调用后不能再修改
+     */
+    public String sql(BitSet mask, int rows) {
+        return batchSql(mask, 0L, mask, rows);
+    }
+
+    private String batchSql(Object key, long mask, BitSet wideMask, int rows) {
+        if (rows > MAX_CACHED_ROWS) {
+            SqlCacheStats.SQL_MISSES.increment();
+            return renderBatch(mask, wideMask, rows);
+        }
+        AtomicReferenceArray<String> cache = batchCache.get(key);
+        if (cache == null) {
+            if (batchCache.size() >= MAX_SHAPES) {
+                SqlCacheStats.SQL_MISSES.increment();
+                return renderBatch(mask, wideMask, rows);
+            }
+            cache = batchCache.computeIfAbsent(key, k -> new AtomicReferenceArray<>(MAX_CACHED_ROWS + 1));
+        }
+        String sql = cache.get(rows);
+        if (sql == null) {
+            SqlCacheStats.SQL_MISSES.increment();
+            sql = renderBatch(mask, wideMask, rows);
+            cache.lazySet(rows, sql);
+        } else {
+            SqlCacheStats.SQL_HITS.increment();
+        }
+        return sql;
+    }
+
+    private String renderBatch(long mask, BitSet wideMask, int rows) {
+        SQL sql = new SQL();
+        sql.INSERT_INTO(table);
+        String rowParam = "#{" + BATCH_ROW + ".";
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.ADD_ROW();
+            }
+            String rowValue = "#{" + BATCH_LIST + "[" + i + "].";
+            for (Clause clause : clauses) {
+                if (!clause.present(mask, wideMask)) {
+                    continue;
+                }
+                if (i == 0) {
+                    sql.INTO_COLUMNS(clause.column);
+                }
+                sql.INTO_VALUES(clause.text.replace(rowParam, rowValue));
+            }
+        }
+        return jdbc ? jdbcSql(sql.toString()) : sql.toString();
+    }
+
+    /**
+     * 按掩码拼出SQL
+     *
+     * @param wideMask 不为null时代替mask
+     */
+    private String render(long mask, BitSet wideMask) {
+        SQL sql = new SQL();
+        switch (type) {
+            case SELECT:
+                sql.SELECT(columns).FROM(table);
+                break;
+            case INSERT:
+                sql.INSERT_INTO(table);
+                break;
+            case UPDATE:
+                sql.UPDATE(table);
+                break;
+            case DELETE:
+                sql.DELETE_FROM(table);
+                break;
+            default:
+        }
+        for (Clause clause : clauses) {
+            if (!clause.present(mask, wideMask)) {
+                continue;
+            }
+            switch (clause.type) {
+                case VALUE:
+                    sql.INTO_COLUMNS(clause.column).INTO_VALUES(clause.text);
+                    break;
+                case SET:
+                    sql.SET(clause.text);
+                    break;
+                default:
+                    sql.WHERE(clause.text);
+            }
+        }
+        if (orderBy != null) {
+            sql.ORDER_BY(orderBy);
+        }
+        if (limit > 0 && fetchFirst) {
+            sql.FETCH_FIRST_ROWS_ONLY(limit);
+        } else if (limit > 0) {
+            sql.LIMIT(limit);
+        }
+        return jdbc ? jdbcSql(sql.toString()) : sql.toString();
+    }
+
+    private enum ClauseType {
+        WHERE, SET, VALUE
+    }
+
+    private static class Clause {
+        private final ClauseType type;
+        private final int bit;
+        private final String text;
+        private final String column;
+
+        Clause(ClauseType type, int bit, String text, String column) {
+            this.type = type;
+            this.bit = bit;
+            this.text = text;
+            this.column = column;
+        }
+
+        boolean present(long mask, BitSet wideMask) {
+            if (bit == ALWAYS) {
+                return true;
+            }
+            return wideMask == null ? (mask & (1L << bit)) != 0 : wideMask.get(bit);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package springboot.root.config;
 
+import com.wwx.compiler.annotation.EnableDaoProxy;
+import com.wwx.compiler.runtime.ReadWriteDataSource;
 import org.apache.ibatis.datasource.pooled.PooledDataSource;
 import org.apache.ibatis.session.SqlSessionFactory;
 import org.mybatis.spring.SqlSessionFactoryBean;
@@ -11,10 +13,14 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
 import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
 import static springboot.root.config.MySQLDataSourceConfig.PACKAGE;
 
 @Configuration
 @MapperScan(basePackages = PACKAGE, sqlSessionFactoryRef = "mysqlSqlSessionFactory")
+@EnableDaoProxy(sqlSessionFactoryRef = "mysqlSqlSessionFactory")
 public class MySQLDataSourceConfig {
     public static final String PACKAGE = "springboot.root.mapper";
 
@@ -26,10 +32,29 @@ public class MySQLDataSourceConfig {
     private String username;
     @Value("${mysql.password}")
     private String password;
+    /**
+     * 从库的url，用逗号分隔，为空时不做读写分离
+     */
+    @Value("${mysql.replicaUrls:}")
+    private String replicaUrls;
 
+    /**
+     * 配置了从库时，生成的查询方法读从库，写方法和事务在主库执行
+     */
     @Bean(name = "mysqlDataSource")
     @Primary
     public DataSource mysqlDataSource() {
+        if (replicaUrls.trim().isEmpty()) {
+            return pooledDataSource(url);
+        }
+        List<DataSource> replicas = new ArrayList<>();
+        for (String replicaUrl : replicaUrls.split(",")) {
+            replicas.add(pooledDataSource(replicaUrl.trim()));
+        }
+        return new ReadWriteDataSource(pooledDataSource(url), replicas);
+    }
+
+    private PooledDataSource pooledDataSource(String url) {
         PooledDataSource dataSource = new PooledDataSource();
         dataSource.setDriver(driverClass);
         dataSource.setUrl(url);
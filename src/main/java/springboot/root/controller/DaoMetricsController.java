@@ -0,0 +1,40 @@
+package springboot.root.controller;
+
+import com.wwx.compiler.runtime.DaoMetrics;
+import com.wwx.compiler.runtime.MethodMetrics;
+import com.wwx.compiler.runtime.SlowQueryLog;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * 生成的dao各方法的统计：调用次数、异常次数、行数、耗时分位数（微秒）
+ * 同样的数据在JMX的com.wwx.compiler:type=DaoMethod下
+ * slow：按方法和SQL形状分组的慢查询，最慢的在前，见{@link SlowQueryLog}
+ */
+@RestController
+@RequestMapping("daoMetrics")
+public class DaoMetricsController {
+
+    @RequestMapping(method = RequestMethod.GET)
+    public List<MethodMetrics.Snapshot> metrics() {
+        return DaoMetrics.snapshot();
+    }
+
+    @RequestMapping(value = "reset", method = RequestMethod.POST)
+    public void reset() {
+        DaoMetrics.reset();
+    }
+
+    @RequestMapping(value = "slow", method = RequestMethod.GET)
+    public List<SlowQueryLog.Entry> slowQueries() {
+        return SlowQueryLog.entries();
+    }
+
+    @RequestMapping(value = "slow/reset", method = RequestMethod.POST)
+    public void resetSlowQueries() {
+        SlowQueryLog.reset();
+    }
+}
@@ -9,7 +9,7 @@ import springboot.root.entity.Movie;
 
 import java.util.List;
 
-@DaoProxy(output = MySQLDataSourceConfig.PACKAGE)
+@DaoProxy(output = MySQLDataSourceConfig.PACKAGE, async = MovieDaoAsync.class)
 public interface MovieDao extends Dao<Movie> {
 
     /**
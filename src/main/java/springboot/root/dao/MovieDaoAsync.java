@@ -0,0 +1,15 @@
+package springboot.root.dao;
+
+import com.wwx.compiler.AsyncDao;
+import springboot.root.entity.Movie;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * MovieDao的异步版本，由MovieDao的@DaoProxy(async = ...)指定，不需要实现
+ */
+public interface MovieDaoAsync extends AsyncDao<Movie> {
+
+    CompletableFuture<List<Movie>> selectByLastsLimits(Movie movie);
+}
@@ -1,17 +1,22 @@
 package springboot.root.service;
 
 import springboot.root.dao.MovieDao;
+import springboot.root.dao.MovieDaoAsync;
 import springboot.root.entity.Movie;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
 
 @Service
 public class MovieService {
 
     @Resource
     private MovieDao movieDao;
+    @Resource
+    private MovieDaoAsync movieDaoAsync;
 
     /**
      * 查询符合条件的所有电影
@@ -24,6 +29,19 @@ public class MovieService {
         return movies;
     }
 
+    /**
+     * 按多组条件查询电影，各组查询同时执行
+     *
+     * @param movies 每个元素封装一组查询条件
+     * @return 每组条件的电影结果集
+     */
+    public List<List<Movie>> queryMoviesConcurrently(List<Movie> movies) {
+        List<CompletableFuture<List<Movie>>> futures = movies.stream()
+                .map(movieDaoAsync::SELECT)
+                .collect(Collectors.toList());
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
     public int addMovie(Movie movie) {
         return movieDao.INSERT(movie);
     }